@@ -0,0 +1,70 @@
+#!/usr/bin/env bash
+# Start the desktop app with an AppCDS archive, and measure startup with and without it.
+#
+#   scripts/startup.sh train        run the app once to its fully built state and dump target/fitlife.jsa
+#   scripts/startup.sh run          start the app using the archive
+#   scripts/startup.sh bench [N]    N cold starts (default 10) with and without the archive, print the medians
+#
+# train and bench start the app with -Dfitlife.startup.exit=true, which builds every tab, prints
+# "startup firstFrameMs=.. allTabsMs=.." (both measured from JVM launch) and quits.
+# FITLIFE_HEADLESS=1 runs them under Monocle with no window; it needs the openjfx-monocle jar in ~/.m2 and
+# the pango and freetype libraries JavaFX renders text with.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+archive=target/fitlife.jsa
+# CDS only archives classes loaded from jars, so run the packaged jar rather than target/classes
+mvn -B -q package -DskipTests
+mvn -B -q dependency:build-classpath -DincludeScope=runtime -Dmdep.outputFile=target/javafx.path
+java_opts=(--module-path "$(cat target/javafx.path)" --add-modules javafx.controls
+           -cp target/fitness-tracker-1.0-SNAPSHOT.jar)
+main=fitlife.SimpleFitnessTrackerApp
+
+if [[ "${FITLIFE_HEADLESS:-0}" == 1 ]]; then
+    # Monocle would have to be patched into javafx.graphics, which CDS refuses to dump, so everything goes
+    # on the class path instead and FitlifeLauncher starts the app
+    monocle=$(ls ~/.m2/repository/org/testfx/openjfx-monocle/17*/openjfx-monocle-17*.jar | head -1)
+    java_opts=(-cp "target/fitness-tracker-1.0-SNAPSHOT.jar:$(cat target/javafx.path):$monocle"
+               -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw)
+    main=fitlife.FitlifeLauncher
+fi
+
+launch() {
+    java "${java_opts[@]}" "$@" "$main"
+}
+
+# Prints "<firstFrameMs> <allTabsMs>" for one cold start
+measure() {
+    launch -Dfitlife.startup.exit=true "$@" | sed -n 's/^startup firstFrameMs=\([0-9.]*\) allTabsMs=\([0-9.]*\)$/\1 \2/p'
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+case "${1:-run}" in
+    train)
+        rm -f "$archive"
+        launch -Dfitlife.startup.exit=true -XX:ArchiveClassesAtExit="$archive"
+        echo "wrote $archive"
+        ;;
+    run)
+        [[ -f "$archive" ]] || { echo "no $archive, run '$0 train' first" >&2; exit 1; }
+        launch -XX:SharedArchiveFile="$archive"
+        ;;
+    bench)
+        runs=${2:-10}
+        [[ -f "$archive" ]] || "$0" train
+        for mode in default appcds; do
+            flags=()
+            [[ "$mode" == appcds ]] && flags=(-XX:SharedArchiveFile="$archive")
+            results=$(for ((i = 0; i < runs; i++)); do measure "${flags[@]}"; done)
+            printf '%-8s runs=%d firstFrameMs=%s allTabsMs=%s\n' "$mode" "$runs" \
+                "$(cut -d' ' -f1 <<<"$results" | median)" "$(cut -d' ' -f2 <<<"$results" | median)"
+        done
+        ;;
+    *)
+        sed -n '2,10p' "$0" >&2
+        exit 1
+        ;;
+esac
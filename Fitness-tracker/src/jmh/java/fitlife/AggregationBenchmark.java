@@ -0,0 +1,94 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Totals over a date range: Fenwick range sums against a scan of the entry columns, plus the cost of updates
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregationBenchmark {
+
+    private static final int FIRST_DAY = 18_000;  // Early 2019
+    private static final int DAYS = 5 * 365;
+
+    @Param({"10000", "1000000"})
+    public int entries;
+
+    private EntryStore store;
+    private RangeAggregator totals;
+    private final int[] weekStarts = new int[1024];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        store = new EntryStore();
+        for (int i = 0; i < entries; i++) {
+            int day = FIRST_DAY + random.nextInt(DAYS);
+            if (random.nextInt(4) == 0) {
+                store.addWorkout(day, "Running", 20 + random.nextInt(40), 200 + random.nextInt(400));
+            } else {
+                store.addFood(day, random.nextInt(3), "banana", 50 + random.nextInt(500));
+            }
+        }
+        totals = new RangeAggregator();
+        totals.rebuild(store);
+        for (int i = 0; i < weekStarts.length; i++) {
+            weekStarts[i] = FIRST_DAY + random.nextInt(DAYS - 7);
+        }
+    }
+
+    @Benchmark
+    public long weekIntakeFenwick() {
+        int from = weekStarts[next++ & (weekStarts.length - 1)];
+        return totals.sum(RangeAggregator.INTAKE, from, from + 6);
+    }
+
+    @Benchmark
+    public long weekIntakeScan() {
+        int from = weekStarts[next++ & (weekStarts.length - 1)];
+        int to = from + 6;
+        long sum = 0;
+        for (int row = 0; row < store.size(); row++) {
+            int day = store.day(row);
+            if (day >= from && day <= to && !store.isWorkout(row)) {
+                sum += store.calories(row);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long yearNetFenwick() {
+        int from = weekStarts[next++ & (weekStarts.length - 1)];
+        return totals.netCalories(from, from + 364);
+    }
+
+    @Benchmark
+    public void addFoodIncremental() {
+        totals.addFood(weekStarts[next++ & (weekStarts.length - 1)], 105);
+    }
+
+    @Benchmark
+    public RangeAggregator rebuildFromStore() {
+        RangeAggregator rebuilt = new RangeAggregator();
+        rebuilt.rebuild(store);
+        return rebuilt;
+    }
+}
@@ -0,0 +1,80 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Calorie lookup: the original three-food switch against the indexed catalog, for hits, typos and prefixes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalorieLookupBenchmark {
+
+    private static final String[] SWITCH_FOODS = {"banana", "pizza", "soda"};
+    private static final String[] TYPOS = {"bananna", "piza", "sodda", "oatmael", "chiken breast"};
+
+    private FoodCatalog catalog;
+    private String[] catalogFoods;
+    private final int[] matches = new int[8];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        catalog = FoodCatalog.loadDefault();
+        catalogFoods = new String[catalog.size()];
+        for (int i = 0; i < catalogFoods.length; i++) {
+            catalogFoods[i] = catalog.name(i);
+        }
+    }
+
+    // The lookup the Add Food handler used before the catalog existed
+    private static int switchCalories(String food) {
+        switch (food) {
+            case "banana":
+                return 105;
+            case "pizza":
+                return 272;
+            case "soda":
+                return 190;
+            default:
+                return -1;
+        }
+    }
+
+    @Benchmark
+    public int switchHit() {
+        return switchCalories(SWITCH_FOODS[next++ % SWITCH_FOODS.length]);
+    }
+
+    @Benchmark
+    public int catalogHitSameFoods() {
+        return catalog.calories(catalog.resolve(SWITCH_FOODS[next++ % SWITCH_FOODS.length]));
+    }
+
+    @Benchmark
+    public int catalogHitAnyFood() {
+        return catalog.calories(catalog.resolve(catalogFoods[next++ % catalogFoods.length]));
+    }
+
+    @Benchmark
+    public int catalogTypo() {
+        return catalog.resolve(TYPOS[next++ % TYPOS.length]);
+    }
+
+    @Benchmark
+    public int catalogSuggest() {
+        return catalog.suggest("ch", matches, matches.length);
+    }
+}
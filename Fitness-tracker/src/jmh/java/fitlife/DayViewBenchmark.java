@@ -0,0 +1,72 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Opening a day in the calendar with 1M entries over ten years: a cache miss summarized from the
+// per-day row index, a hit, and the scan of every row a miss used to cost
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DayViewBenchmark {
+
+    private static final int FIRST_DAY = 16_000;
+    private static final int DAYS = 10 * 365;
+    private static final int ENTRIES = 1_000_000;
+
+    private TrackerCore core;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        core = new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        for (int i = 0; i < ENTRIES; i++) {
+            int day = FIRST_DAY + random.nextInt(DAYS);
+            if (i % 10 == 0) {
+                core.storeWorkout(day, "Running", 30, 300);
+            } else {
+                core.storeFood(day, random.nextInt(3), "banana", 105);
+            }
+        }
+    }
+
+    @Benchmark
+    public TrackerCore.Day miss() {
+        int day = FIRST_DAY + random.nextInt(DAYS);
+        core.dayCache().invalidate(day);
+        return core.day(day);
+    }
+
+    @Benchmark
+    public TrackerCore.Day hit() {
+        return core.day(FIRST_DAY + DAYS / 2);
+    }
+
+    @Benchmark
+    public long scanStore() {
+        int day = FIRST_DAY + random.nextInt(DAYS);
+        EntryStore entries = core.entries();
+        long intake = 0;
+        for (int row = 0; row < entries.size(); row++) {
+            if (entries.day(row) == day && !entries.isDeleted(row) && !entries.isWorkout(row)) {
+                intake += entries.calories(row);
+            }
+        }
+        return intake;
+    }
+}
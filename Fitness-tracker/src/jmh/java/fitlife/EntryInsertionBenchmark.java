@@ -0,0 +1,74 @@
+package fitlife;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Adding entries to a history view: display strings in an observable list (the original ListView<String>
+// items) against store rows handed to HistoryRows in one change, as the tracker service does
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryInsertionBenchmark {
+
+    private static final int ENTRIES = 10_000;
+    private static final String[] FOODS = {"banana", "pizza", "soda", "apple", "oatmeal"};
+    private static final int[] CALORIES = {105, 272, 190, 95, 150};
+
+    private final int[] rows = new int[ENTRIES];
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public ObservableList<String> stringItems() {
+        ObservableList<String> items = FXCollections.observableArrayList();
+        for (int i = 0; i < ENTRIES; i++) {
+            int food = i % FOODS.length;
+            items.add(FOODS[food] + " - " + CALORIES[food] + " calories");
+        }
+        return items;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public HistoryRows storeRows() {
+        EntryStore store = new EntryStore();
+        HistoryRows history = new HistoryRows();
+        for (int i = 0; i < ENTRIES; i++) {
+            int food = i % FOODS.length;
+            rows[i] = store.addFood(19_000 + i / 10, EntryStore.LUNCH, FOODS[food], CALORIES[food]);
+        }
+        history.addRows(rows, ENTRIES);
+        return history;
+    }
+
+    // Full add path without the FX thread: catalog lookup, store, per-day aggregates and totals
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public TrackerCore coreAddFood(CoreState state) {
+        TrackerCore core = new TrackerCore(state.catalog, state.energy);
+        for (int i = 0; i < ENTRIES; i++) {
+            core.addFood(19_000 + i / 10, FOODS[i % FOODS.length], EntryStore.LUNCH);
+        }
+        return core;
+    }
+
+    @State(Scope.Benchmark)
+    public static class CoreState {
+        final FoodCatalog catalog = FoodCatalog.loadDefault();
+        final EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+    }
+}
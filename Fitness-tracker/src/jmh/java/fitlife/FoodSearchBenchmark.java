@@ -0,0 +1,108 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Autocomplete and typo lookups in a catalog the size of a public food database: the trigram index (and the
+// length buckets for keys of up to 5 letters) against checking every name, as each keystroke would without it
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FoodSearchBenchmark {
+
+    private static final String[] PREPARATIONS = {"raw", "baked", "grilled", "fried", "steamed", "roasted", "smoked",
+            "frozen", "canned", "dried"};
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ta", "ren", "vo", "su", "bel", "dor", "ni", "pa", "quin"};
+    private static final int QUERIES = 256;
+
+    @Param({"300000"})
+    public int foods;
+
+    private FoodCatalog catalog;
+    private final String[] typos = new String[QUERIES];
+    private final String[] prefixes = new String[QUERIES];
+    private final String[] shortTypos = new String[QUERIES];  // "sodq", "aple": bundled names of up to 5 letters
+    private final int[] matches = new int[8];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        FoodCatalog bundled = FoodCatalog.loadDefault();
+        FoodCatalog.Builder builder = new FoodCatalog.Builder();
+        for (int i = 0; i < foods; i++) {
+            // e.g. "grilled chicken breast kalomi": a preparation, a bundled food and a made-up brand
+            StringBuilder brand = new StringBuilder();
+            for (int s = 2 + random.nextInt(2); s > 0; s--) {
+                brand.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            builder.add(PREPARATIONS[random.nextInt(PREPARATIONS.length)] + " " + bundled.name(random.nextInt(bundled.size()))
+                    + " " + brand, "1 serving", 50 + random.nextInt(500), 0f, 0f, 0f);
+        }
+        for (int i = 0; i < bundled.size(); i++) {
+            builder.add(bundled.name(i), bundled.serving(i), bundled.calories(i), 0f, 0f, 0f);
+        }
+        catalog = builder.build();
+        for (int q = 0; q < QUERIES; q++) {
+            String name = catalog.name(random.nextInt(catalog.size()));
+            StringBuilder typo = new StringBuilder(name);
+            typo.setCharAt(random.nextInt(typo.length()), (char) ('a' + random.nextInt(26)));
+            typo.deleteCharAt(random.nextInt(typo.length()));
+            typos[q] = typo.toString();
+            prefixes[q] = name.substring(0, 3 + random.nextInt(8));
+        }
+        String[] shortNames = new String[bundled.size()];
+        int shortCount = 0;
+        for (int i = 0; i < bundled.size(); i++) {
+            if (bundled.name(i).length() <= 5) {
+                shortNames[shortCount++] = bundled.name(i);
+            }
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            StringBuilder typo = new StringBuilder(shortNames[random.nextInt(shortCount)]);
+            typo.setCharAt(random.nextInt(typo.length()), (char) ('a' + random.nextInt(26)));
+            shortTypos[q] = typo.toString();
+        }
+    }
+
+    // What the Add Food field asks on each keystroke
+    @Benchmark
+    public int suggestPrefix() {
+        return catalog.suggest(prefixes[next++ % QUERIES], matches, matches.length);
+    }
+
+    @Benchmark
+    public int fuzzyIndexed() {
+        return catalog.fuzzy(typos[next++ % QUERIES], matches, matches.length);
+    }
+
+    @Benchmark
+    public int fuzzyScan() {
+        return catalog.fuzzyScan(typos[next++ % QUERIES], matches, matches.length);
+    }
+
+    @Benchmark
+    public int fuzzyShortIndexed() {
+        return catalog.fuzzy(shortTypos[next++ % QUERIES], matches, matches.length);
+    }
+
+    @Benchmark
+    public int fuzzyShortScan() {
+        return catalog.fuzzyScan(shortTypos[next++ % QUERIES], matches, matches.length);
+    }
+}
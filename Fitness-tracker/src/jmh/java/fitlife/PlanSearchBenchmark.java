@@ -0,0 +1,84 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Ranked plan search through the inverted index, against scanning every description, plus the cost of
+// indexing one edited plan
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlanSearchBenchmark {
+
+    private static final String[] WORDS = ("squat deadlift bench press tempo run intervals yoga pilates rows lunges"
+            + " plank hill sprint easy long recovery stretch core upper lower legs back chest arms mobility swim"
+            + " bike kettlebell burpee").split(" ");
+
+    @Param({"100000"})
+    public int plans;
+
+    @Param({"squat AND deadlift", "tempo run OR intervals"})
+    public String query;
+
+    private PlanStore store;
+    private int edited;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        store = new PlanStore();
+        for (int i = 0; i < plans; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int w = 4 + random.nextInt(20); w > 0; w--) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            store.addUndated(description.toString().trim());
+        }
+    }
+
+    @Benchmark
+    public List<PlanStore.Plan> indexedSearch() {
+        return store.search(query, 50);
+    }
+
+    // What a search without the index has to do: lower-case and test every description
+    @Benchmark
+    public List<PlanStore.Plan> scanDescriptions() {
+        String[] terms = query.replace(" OR ", " ").toLowerCase(Locale.ROOT).split(" ");
+        List<PlanStore.Plan> result = new ArrayList<>();
+        for (PlanStore.Plan plan : store.all()) {
+            String text = plan.description.toLowerCase(Locale.ROOT);
+            for (String term : terms) {
+                if (!term.equals("and") && text.contains(term)) {
+                    result.add(plan);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public PlanStore.Plan updateOnePlan() {
+        edited = edited % plans + 1;
+        return store.updateDescription(edited, "tempo run with hill sprints and squats");
+    }
+}
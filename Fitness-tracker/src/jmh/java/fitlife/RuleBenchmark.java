@@ -0,0 +1,93 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// What one entry costs the rules: the incremental engine adjusts one sum per window and binary-searches
+// the thresholds it crossed, against summing every rule's window again and comparing it with last time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleBenchmark {
+
+    private static final int FIRST_DAY = 18_000;  // Early 2019
+    private static final int DAYS = 365;
+    private static final int ENTRIES = 10_000;
+    private static final int[] WINDOWS = {1, 3, 7, 30};
+
+    @Param({"10", "1000"})
+    public int rules;
+
+    private TrackerCore core;
+    private List<RuleEngine.Rule> all;
+    private boolean[] held;  // Each rule's state at the last evaluation, for reevaluateAll
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        core = new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        for (int i = 0; i < ENTRIES; i++) {
+            core.storeFood(FIRST_DAY + random.nextInt(DAYS), random.nextInt(3), "banana", 50 + random.nextInt(500));
+        }
+        core.rules().advanceTo(FIRST_DAY + DAYS - 1);
+        for (int i = 0; i < rules; i++) {
+            int days = WINDOWS[random.nextInt(WINDOWS.length)];
+            core.rules().add("intake " + (random.nextBoolean() ? ">" : "<") + " " + days * (1000 + random.nextInt(8000))
+                    + " over " + days + " days");
+        }
+        all = core.rules().rules();
+        held = new boolean[all.size()];
+    }
+
+    private int row() {
+        next = next + 7919 < ENTRIES ? next + 7919 : (next + 7919) % ENTRIES;
+        return next;
+    }
+
+    // Delete an entry and undo it, with the rules checked at both steps
+    @Benchmark
+    public List<RuleEngine.Alert> deleteAndUndo() {
+        core.delete(row());
+        core.undo();
+        return core.rules().drainAlerts();
+    }
+
+    // The same entry change, with every rule evaluated again from the daily totals after each step
+    @Benchmark
+    public int reevaluateAll() {
+        core.delete(row());
+        int changed = reevaluate();
+        core.undo();
+        return changed + reevaluate();
+    }
+
+    private int reevaluate() {
+        RangeAggregator totals = core.dailyTotals();
+        int end = core.rules().endDay();
+        int changed = 0;
+        for (int i = 0; i < held.length; i++) {
+            RuleEngine.Rule rule = all.get(i);
+            boolean holds = rule.holds(totals.sum(rule.series, end - rule.days + 1, end));
+            changed += holds != held[i] ? 1 : 0;
+            held[i] = holds;
+        }
+        return changed;
+    }
+}
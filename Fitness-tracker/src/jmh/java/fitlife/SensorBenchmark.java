@@ -0,0 +1,95 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One hour of per-second heart rate, pace and position: compressing it into the sensor store, and
+// five-minute lap averages and a half-hour range from the compressed chunks, against boxed lists
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorBenchmark {
+
+    private static final int SECONDS = 3600;
+    private static final long LAP_MILLIS = 5 * 60_000;
+
+    private SensorStore.Recording recording;
+    private SensorStore store;
+    private SensorSeries heartRate;
+    private List<Long> boxedTimes;
+    private List<Double> boxedHeartRate;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        recording = new SensorStore.Recording();
+        boxedTimes = new ArrayList<>();
+        boxedHeartRate = new ArrayList<>();
+        double bpm = 120;
+        double pace = 330;
+        double latitude = 43.6532;
+        double longitude = -79.3832;
+        for (int s = 0; s < SECONDS; s++) {
+            bpm = Math.max(80, Math.min(190, bpm + random.nextInt(3) - 1));
+            pace = Math.max(240, Math.min(480, pace + (random.nextInt(11) - 5) / 10.0));
+            latitude += (random.nextDouble() - 0.3) * 2e-5;
+            longitude += (random.nextDouble() - 0.3) * 2e-5;
+            recording.add(s * 1000L);
+            recording.set(SensorStore.HEART_RATE, bpm);
+            recording.set(SensorStore.PACE, Math.round(pace * 10) / 10.0);
+            recording.set(SensorStore.LATITUDE, Math.round(latitude * 1e6) / 1e6);
+            recording.set(SensorStore.LONGITUDE, Math.round(longitude * 1e6) / 1e6);
+            boxedTimes.add(s * 1000L);
+            boxedHeartRate.add(bpm);
+        }
+        store = new SensorStore();
+        store.attach(0, recording);
+        heartRate = store.series(0, SensorStore.HEART_RATE);
+    }
+
+    @Benchmark
+    public long compressHour() {
+        return store.attach(1, recording);  // Replaces the previous copy, so chunks are recycled
+    }
+
+    @Benchmark
+    public SensorSeries.Aggregate[] lapsFromChunks() {
+        return heartRate.laps(LAP_MILLIS);
+    }
+
+    @Benchmark
+    public double[] lapsFromBoxedList() {
+        double[] means = new double[(SECONDS * 1000 - 1) / (int) LAP_MILLIS + 1];
+        int[] counts = new int[means.length];
+        for (int i = 0; i < boxedTimes.size(); i++) {
+            int lap = (int) (boxedTimes.get(i) / LAP_MILLIS);
+            means[lap] += boxedHeartRate.get(i);
+            counts[lap]++;
+        }
+        for (int lap = 0; lap < means.length; lap++) {
+            means[lap] /= counts[lap];
+        }
+        return means;
+    }
+
+    @Benchmark
+    public SensorSeries.Aggregate halfHourFromChunks() {
+        return heartRate.aggregate(15 * 60_000, 45 * 60_000);
+    }
+}
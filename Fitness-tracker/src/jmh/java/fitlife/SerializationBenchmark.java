@@ -0,0 +1,142 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Saving and loading history: the column snapshot against one display string per entry, and journal appends
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private static final int JOURNAL_BATCH = 1000;
+
+    @Param({"100000"})
+    public int entries;
+
+    private EntryStore store;
+    private byte[] snapshot;
+    private byte[] lines;
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        store = new EntryStore();
+        String[] foods = {"banana", "pizza", "soda", "apple", "oatmeal"};
+        for (int i = 0; i < entries; i++) {
+            if (i % 5 == 4) {
+                store.addWorkout(18_000 + i / 20, "Running", 30, 313);
+            } else {
+                store.addFood(18_000 + i / 20, i % 3, foods[i % foods.length], 100 + i % 200);
+            }
+        }
+        snapshot = writeSnapshot();
+        lines = writeLines();
+        buffer = new ByteArrayOutputStream(Math.max(snapshot.length, lines.length));
+    }
+
+    @Benchmark
+    public byte[] writeSnapshot() throws IOException {
+        ByteArrayOutputStream out = buffer != null ? buffer : new ByteArrayOutputStream();
+        out.reset();
+        store.write(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public EntryStore readSnapshot() throws IOException {
+        EntryStore loaded = new EntryStore();
+        loaded.read(new DataInputStream(new ByteArrayInputStream(snapshot)));
+        return loaded;
+    }
+
+    // What saving the original ListView items would cost: one string per entry
+    @Benchmark
+    public byte[] writeLines() throws IOException {
+        ByteArrayOutputStream out = buffer != null ? buffer : new ByteArrayOutputStream();
+        out.reset();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(store.size());
+        for (int row = 0; row < store.size(); row++) {
+            data.writeUTF(store.describe(row));
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<String> readLines() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(lines));
+        int count = in.readInt();
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(in.readUTF());
+        }
+        return items;
+    }
+
+    // Journal appends go through the mapped window; forcing to disk happens on the flusher thread
+    @Benchmark
+    @OperationsPerInvocation(JOURNAL_BATCH)
+    public void journalAppend(JournalState state) throws IOException {
+        for (int i = 0; i < JOURNAL_BATCH; i++) {
+            state.journal.appendFood(19_000, EntryStore.LUNCH, "banana", 105);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class JournalState {
+        Path directory;
+        EntryJournal journal;
+
+        @Setup(Level.Iteration)
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("fitlife-bench");
+            journal = EntryJournal.open(directory);
+            journal.recover(in -> { }, new EntryJournal.Listener() {
+                @Override
+                public void food(int epochDay, int meal, String name, int calories) {
+                }
+
+                @Override
+                public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                }
+            });
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() throws IOException {
+            journal.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The per-frame work of the trend chart over ten years of days: LTTB and min/max down to one value per
+// pixel column, against the copy of the daily totals the service makes when the chart asks for them
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrendBenchmark {
+
+    private static final int FIRST_DAY = 16_000;  // Late 2013
+    private static final int DAYS = 10 * 365;
+
+    @Param({"800", "2000"})
+    public int pixels;
+
+    private TrackerCore core;
+    private long[] intake;
+    private int[] indexes;
+    private long[] lows;
+    private long[] highs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        core = new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        for (int i = 0; i < DAYS * 4; i++) {
+            core.storeFood(FIRST_DAY + random.nextInt(DAYS), random.nextInt(3), "banana", 50 + random.nextInt(800));
+        }
+        intake = core.trend().intake;
+        indexes = new int[pixels];
+        lows = new long[pixels];
+        highs = new long[pixels];
+    }
+
+    @Benchmark
+    public int lttb() {
+        return Downsampler.lttb(intake, 0, intake.length, pixels, indexes);
+    }
+
+    @Benchmark
+    public long[] minMax() {
+        Downsampler.minMax(intake, 0, intake.length, pixels, lows, highs);
+        return highs;
+    }
+
+    @Benchmark
+    public TrackerCore.Trend copyDailyTotals() {
+        return core.trend();
+    }
+}
@@ -0,0 +1,81 @@
+package fitlife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// An edit or delete and its undo, which only touch one row and the totals of its day, against what an
+// undo step would cost if it copied the store or summed the totals again
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndoBenchmark {
+
+    private static final int FIRST_DAY = 18_000;  // Early 2019
+    private static final int DAYS = 5 * 365;
+
+    @Param({"10000", "1000000"})
+    public int entries;
+
+    private TrackerCore core;
+    private final ByteArrayOutputStream copy = new ByteArrayOutputStream(1 << 20);
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        core = new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        for (int i = 0; i < entries; i++) {
+            core.storeFood(FIRST_DAY + random.nextInt(DAYS), random.nextInt(3), "banana", 50 + random.nextInt(500));
+        }
+    }
+
+    private int row() {
+        next = next + 7919 < entries ? next + 7919 : (next + 7919) % entries;
+        return next;
+    }
+
+    @Benchmark
+    public TrackerCore.Edit deleteAndUndo() {
+        core.delete(row());
+        return core.undo();
+    }
+
+    @Benchmark
+    public TrackerCore.Edit editAndUndo() {
+        core.editFood(row(), "apple", EntryStore.LUNCH);
+        return core.undo();
+    }
+
+    // The store written out whole, as a copy-per-step undo would have to
+    @Benchmark
+    public int copyStore() throws IOException {
+        copy.reset();
+        core.entries().write(new DataOutputStream(copy));
+        return copy.size();
+    }
+
+    // Daily totals summed again from every row, instead of adjusted by the one that changed
+    @Benchmark
+    public RangeAggregator rebuildTotals() {
+        core.dailyTotals().rebuild(core.entries());
+        return core.dailyTotals();
+    }
+}
@@ -0,0 +1,637 @@
+package fitlife;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams CSV, GPX and TCX exports into entry batches using a worker pool, with bounded memory
+public class BulkImporter {
+
+    private static final int LINES_PER_CHUNK = 8192;  // CSV lines handed to a worker at a time
+    private static final int MAX_IN_FLIGHT = 16;      // Batches allowed between the reader and the consumer
+    private static final int POINTS_PER_BATCH = 1 << 18;  // Trackpoints a batch may carry before it is handed over
+
+    // Receives parsed batches on worker threads; call batch.complete() once it has been applied
+    public interface Sink {
+        void accept(ImportBatch batch);
+    }
+
+    private final FoodCatalog catalog;
+    private final EnergyEngine energy;
+    private final int workers;
+    private final int lastDay;  // Latest date a row may carry, a year ahead like FitlifeServer allows
+
+    public BulkImporter(FoodCatalog catalog, EnergyEngine energy) {
+        this(catalog, energy, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));  // Leave a core for the UI
+    }
+
+    // workers == 0 parses on the calling thread, for callers that are already running on a pool
+    public BulkImporter(FoodCatalog catalog, EnergyEngine energy, int workers) {
+        this.catalog = catalog;
+        this.energy = energy;
+        this.workers = workers;
+        this.lastDay = (int) LocalDate.now().plusYears(1).toEpochDay();
+    }
+
+    // Import one file, blocking until every batch has been handed to the sink; returns the entry count
+    public long importFile(Path file, Sink sink) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        if (name.endsWith(".gpx") || name.endsWith(".tcx")) {
+            try (InputStream in = Files.newInputStream(file)) {
+                return importXml(in, name.endsWith(".tcx"), sink, inFlight);
+            }
+        }
+        return importCsv(file, sink, inFlight);
+    }
+
+    // Hand a batch to the sink once a slot is free, so a slow consumer throttles the parser
+    private static void deliver(ImportBatch batch, Sink sink, Semaphore inFlight) {
+        if (batch.size() == 0) {
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        batch.permit = inFlight;
+        sink.accept(batch);
+    }
+
+    // ---- CSV ----
+
+    private long importCsv(Path file, Sink sink, Semaphore inFlight) throws IOException {
+        if (workers == 0) {
+            return importCsvInline(file, sink, inFlight);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "import-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicLong imported = new AtomicLong();
+        List<Future<?>> pending = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            CsvColumns columns = new CsvColumns(splitCsv(header));
+            Semaphore queued = new Semaphore(workers * 2);  // Bounds how many unparsed chunks sit in memory
+            String[] chunk = new String[LINES_PER_CHUNK];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk[count++] = line;
+                if (count == chunk.length) {
+                    pending.add(submit(pool, queued, chunk, count, columns, sink, inFlight, imported));
+                    chunk = new String[LINES_PER_CHUNK];
+                    count = 0;
+                }
+                if (pending.size() > workers * 4) {
+                    collectFinished(pending);
+                }
+            }
+            if (count > 0) {
+                pending.add(submit(pool, queued, chunk, count, columns, sink, inFlight, imported));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Import failed: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return imported.get();
+    }
+
+    // Same parsing without a pool; each batch is handed over as soon as it fills
+    private long importCsvInline(Path file, Sink sink, Semaphore inFlight) throws IOException {
+        long imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            CsvColumns columns = new CsvColumns(splitCsv(header));
+            ImportBatch batch = new ImportBatch(LINES_PER_CHUNK);
+            int lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parseCsvRow(splitCsv(line), columns, batch);
+                if (++lines == LINES_PER_CHUNK) {
+                    imported += batch.size();
+                    deliver(batch, sink, inFlight);
+                    batch = new ImportBatch(LINES_PER_CHUNK);
+                    lines = 0;
+                }
+            }
+            imported += batch.size();
+            deliver(batch, sink, inFlight);
+        }
+        return imported;
+    }
+
+    // Drop finished chunks from the pending list, surfacing any worker failure
+    private static void collectFinished(List<Future<?>> pending) throws InterruptedException, ExecutionException {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).isDone()) {
+                pending.remove(i).get();
+            }
+        }
+    }
+
+    private Future<?> submit(ExecutorService pool, Semaphore queued, String[] lines, int count, CsvColumns columns,
+                             Sink sink, Semaphore inFlight, AtomicLong imported) throws InterruptedException {
+        queued.acquire();
+        return pool.submit(() -> {
+            try {
+                ImportBatch batch = new ImportBatch(count);
+                for (int i = 0; i < count; i++) {
+                    parseCsvRow(splitCsv(lines[i]), columns, batch);
+                }
+                imported.addAndGet(batch.size());
+                deliver(batch, sink, inFlight);
+            } finally {
+                queued.release();
+            }
+        });
+    }
+
+    // Which header column holds each field, -1 when missing
+    private static final class CsvColumns {
+        final int date;
+        final int food;
+        final int meal;
+        final int activity;
+        final int minutes;
+        final int duration;
+        final int calories;
+
+        CsvColumns(String[] header) {
+            date = find(header, "date", "start_time", "timestamp", "time");
+            food = find(header, "food", "item");
+            meal = find(header, "meal", "time_of_day");
+            activity = find(header, "activity", "workout", "sport", "type");
+            minutes = find(header, "minutes", "duration_min");
+            duration = find(header, "duration", "elapsed_time", "seconds");
+            calories = find(header, "calories", "kcal", "energy");
+        }
+
+        private static int find(String[] header, String... names) {
+            for (String name : names) {
+                for (int i = 0; i < header.length; i++) {
+                    if (header[i].trim().equalsIgnoreCase(name)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private void parseCsvRow(String[] fields, CsvColumns columns, ImportBatch batch) {
+        if (columns.date < 0 || columns.date >= fields.length) {
+            return;
+        }
+        String timestamp = fields[columns.date].trim();
+        int day = parseDay(timestamp, lastDay);
+        if (day < 0) {
+            return;  // Unreadable or out-of-range date, skip the row
+        }
+        int calories = parseInt(field(fields, columns.calories), -1);
+
+        String food = field(fields, columns.food);
+        if (food.length() > TrackerCore.MAX_NAME_LENGTH) {
+            return;  // Longer than the journal can hold, and surely not a food
+        }
+        if (!food.isEmpty()) {
+            if (calories < 0) {
+                int index = catalog.resolve(food);
+                if (index == -1) {
+                    return;  // Same rule as the Add Food button: unknown foods are dropped
+                }
+                food = catalog.name(index);
+                calories = catalog.calories(index);
+            }
+            batch.addFood(day, mealCode(field(fields, columns.meal), timestamp), food.toLowerCase(Locale.ROOT), calories);
+            return;
+        }
+
+        String activity = normalizeActivity(field(fields, columns.activity));
+        int minutes = parseInt(field(fields, columns.minutes), -1);
+        if (minutes < 0) {
+            minutes = parseDurationMinutes(field(fields, columns.duration));
+        }
+        if (activity.isEmpty() || activity.length() > TrackerCore.MAX_NAME_LENGTH || !TrackerCore.validMinutes(minutes)) {
+            return;
+        }
+        batch.addWorkout(day, activity, minutes, calories >= 0 ? calories : energy.caloriesBurned(activity, minutes));
+    }
+
+    private static String field(String[] fields, int column) {
+        return column >= 0 && column < fields.length ? fields[column].trim() : "";
+    }
+
+    // Split one CSV line, honouring double-quoted fields
+    static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');  // Escaped quote inside a quoted field
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // ---- GPX / TCX ----
+
+    // Streams the XML once; each <trk> (GPX) or <Activity> (TCX) becomes one workout, with its
+    // calories taken from the file, else integrated from heart-rate samples, else estimated from METs.
+    // The trackpoints' heart rate, pace, cadence and position go with the workout as its recording.
+    private long importXml(InputStream in, boolean tcx, Sink sink, Semaphore inFlight) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        long imported = 0;
+        ImportBatch batch = new ImportBatch(LINES_PER_CHUNK);
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            String activity = "";
+            String firstTime = null;
+            String lastTime = null;
+            double lapSeconds = 0;
+            int calories = 0;
+            boolean inWorkout = false;
+            boolean inHeartRate = false;       // Inside a TCX <HeartRateBpm>, whose <Value> is a sample
+            int[] heartRates = new int[4096];  // Reused for every workout in the file
+            int heartRateCount = 0;
+            SensorStore.Recording recording = new SensorStore.Recording();
+            long startMillis = Long.MIN_VALUE;  // Time of the workout's first trackpoint
+            long pointsInBatch = 0;
+            boolean inPoint = false;            // Inside a <trkpt> (GPX) or <Trackpoint> (TCX)
+            double[] point = new double[SensorStore.STREAMS.length];  // The current trackpoint's values, NaN if absent
+            String pointTime = null;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if (tcx ? element.equals("Activity") : element.equals("trk")) {
+                        inWorkout = true;
+                        activity = tcx ? normalizeActivity(xml.getAttributeValue(null, "Sport")) : "";
+                        firstTime = null;
+                        lastTime = null;
+                        lapSeconds = 0;
+                        calories = 0;
+                        heartRateCount = 0;
+                        recording = new SensorStore.Recording();
+                        startMillis = Long.MIN_VALUE;
+                    } else if (!inWorkout) {
+                        continue;
+                    } else if (tcx ? element.equals("Trackpoint") : element.equals("trkpt")) {
+                        inPoint = true;
+                        pointTime = null;
+                        Arrays.fill(point, Double.NaN);
+                        if (!tcx) {
+                            point[SensorStore.LATITUDE] = parseCoordinate(xml.getAttributeValue(null, "lat"));
+                            point[SensorStore.LONGITUDE] = parseCoordinate(xml.getAttributeValue(null, "lon"));
+                        }
+                    } else if (element.equals("type") && !tcx) {
+                        activity = normalizeActivity(xml.getElementText());
+                    } else if (element.equals("time") || element.equals("Time") || element.equals("Id")) {
+                        String time = xml.getElementText().trim();
+                        if (firstTime == null) {
+                            firstTime = time;
+                        }
+                        lastTime = time;
+                        if (inPoint) {
+                            pointTime = time;
+                        }
+                    } else if (inPoint && element.equals("LatitudeDegrees")) {
+                        point[SensorStore.LATITUDE] = parseCoordinate(xml.getElementText());
+                    } else if (inPoint && element.equals("LongitudeDegrees")) {
+                        point[SensorStore.LONGITUDE] = parseCoordinate(xml.getElementText());
+                    } else if (inPoint && (element.equals("cad") || element.equals("Cadence") || element.equals("RunCadence"))) {
+                        point[SensorStore.CADENCE] = parseDouble(xml.getElementText());
+                    } else if (inPoint && (element.equals("Speed") || element.equals("speed"))) {
+                        double metresPerSecond = parseDouble(xml.getElementText());
+                        if (metresPerSecond > 0) {
+                            point[SensorStore.PACE] = Math.round(10_000 / metresPerSecond) / 10.0;  // Seconds per km, to 0.1 s
+                        }
+                    } else if (element.equals("TotalTimeSeconds")) {
+                        lapSeconds += parseDouble(xml.getElementText());
+                    } else if (element.equals("Calories")) {
+                        calories += parseInt(xml.getElementText().trim(), 0);
+                    } else if (element.equals("HeartRateBpm")) {
+                        inHeartRate = true;
+                    } else if ((inHeartRate && element.equals("Value")) || element.equals("hr")) {
+                        if (heartRateCount == heartRates.length) {
+                            heartRates = Arrays.copyOf(heartRates, heartRateCount * 2);
+                        }
+                        heartRates[heartRateCount] = parseInt(xml.getElementText().trim(), 0);
+                        if (inPoint) {
+                            point[SensorStore.HEART_RATE] = heartRates[heartRateCount];
+                        }
+                        heartRateCount++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("HeartRateBpm")) {
+                    inHeartRate = false;
+                } else if (event == XMLStreamConstants.END_ELEMENT && inPoint
+                        && xml.getLocalName().equals(tcx ? "Trackpoint" : "trkpt")) {
+                    inPoint = false;
+                    long millis = parseMillis(pointTime);
+                    if (millis != Long.MIN_VALUE) {
+                        if (startMillis == Long.MIN_VALUE) {
+                            startMillis = millis;
+                        }
+                        // Out-of-order points (a device clock jumping back) are dropped rather than reordered
+                        if (millis >= startMillis && (recording.size() == 0 || millis - startMillis >= recording.lastTime())) {
+                            recording.add(millis - startMillis);
+                            for (int stream = 0; stream < point.length; stream++) {
+                                if (!Double.isNaN(point[stream])) {
+                                    recording.set(stream, point[stream]);
+                                }
+                            }
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && inWorkout
+                        && (tcx ? xml.getLocalName().equals("Activity") : xml.getLocalName().equals("trk"))) {
+                    inWorkout = false;
+                    int day = firstTime == null ? -1 : parseDay(firstTime, lastDay);
+                    double elapsedMinutes = lapSeconds > 0 ? lapSeconds / 60 : elapsedMinutes(firstTime, lastTime);
+                    int minutes = (int) Math.round(elapsedMinutes);
+                    if (activity.isEmpty()) {
+                        activity = "Running";  // GPX tracks without a type are usually runs
+                    }
+                    if (calories <= 0 && heartRateCount > 0) {
+                        double sampleSeconds = elapsedMinutes * 60 / heartRateCount;
+                        calories = (int) Math.round(energy.kcalFromHeartRate(heartRates, 0, heartRateCount, sampleSeconds));
+                    }
+                    if (activity.length() > TrackerCore.MAX_NAME_LENGTH) {
+                        activity = activity.substring(0, TrackerCore.MAX_NAME_LENGTH);  // A sport name, not worth losing the track over
+                    }
+                    if (day >= 0 && TrackerCore.validMinutes(minutes)) {
+                        batch.addWorkout(day, activity, minutes, calories > 0 ? calories : energy.caloriesBurned(activity, minutes),
+                                recording.size() > 0 ? recording : null);
+                        imported++;
+                        pointsInBatch += recording.size();
+                        if (batch.size() == LINES_PER_CHUNK || pointsInBatch >= POINTS_PER_BATCH) {
+                            deliver(batch, sink, inFlight);
+                            batch = new ImportBatch(LINES_PER_CHUNK);
+                            pointsInBatch = 0;
+                        }
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException("Could not read workout file: " + ex.getMessage(), ex);
+        }
+        deliver(batch, sink, inFlight);
+        return imported;
+    }
+
+    // Epoch milliseconds of an ISO-8601 timestamp with offset, Long.MIN_VALUE when missing or unreadable
+    private static long parseMillis(String time) {
+        if (time == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static double parseCoordinate(String text) {
+        if (text == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static double elapsedMinutes(String firstTime, String lastTime) {
+        if (firstTime == null || lastTime == null) {
+            return 0;
+        }
+        try {
+            return Duration.between(OffsetDateTime.parse(firstTime), OffsetDateTime.parse(lastTime)).getSeconds() / 60.0;
+        } catch (DateTimeParseException ex) {
+            return 0;
+        }
+    }
+
+    // ---- Field parsing ----
+
+    // Epoch day from "yyyy-MM-dd" or anything starting with it; -1 when unreadable, or before 1970 or
+    // after lastDay, so every imported row is a day the daily totals accept
+    static int parseDay(String timestamp, int lastDay) {
+        if (timestamp.length() < 10 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-') {
+            return -1;
+        }
+        int year = parseInt(timestamp.substring(0, 4), -1);
+        int month = parseInt(timestamp.substring(5, 7), -1);
+        int day = parseInt(timestamp.substring(8, 10), -1);
+        if (year < 1970 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+        try {
+            long epochDay = LocalDate.of(year, month, day).toEpochDay();
+            return epochDay <= lastDay ? (int) epochDay : -1;
+        } catch (DateTimeException ex) {
+            return -1;
+        }
+    }
+
+    // Meal from an explicit column, otherwise from the hour of the timestamp
+    private static int mealCode(String meal, String timestamp) {
+        switch (meal.toLowerCase(Locale.ROOT)) {
+            case "morning":
+            case "breakfast":
+                return EntryStore.MORNING;
+            case "lunch":
+                return EntryStore.LUNCH;
+            case "dinner":
+            case "supper":
+                return EntryStore.DINNER;
+            default:
+                int hour = timestamp.length() >= 13 ? parseInt(timestamp.substring(11, 13), 12) : 12;
+                return hour < 11 ? EntryStore.MORNING : hour < 16 ? EntryStore.LUNCH : EntryStore.DINNER;
+        }
+    }
+
+    // Map the many spellings used by watch exports onto the app's activity names
+    static String normalizeActivity(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return "";
+        }
+        String activity = raw.trim().toLowerCase(Locale.ROOT);
+        if (activity.contains("run") || activity.contains("jog")) {
+            return "Running";
+        }
+        if (activity.contains("bik") || activity.contains("cycl") || activity.contains("ride")) {
+            return "Cycling";
+        }
+        if (activity.contains("swim")) {
+            return "Swimming";
+        }
+        return Character.toUpperCase(activity.charAt(0)) + activity.substring(1);
+    }
+
+    // Minutes from "h:mm:ss", "mm:ss" or a plain number of seconds
+    private static int parseDurationMinutes(String duration) {
+        if (duration.isEmpty()) {
+            return -1;
+        }
+        if (duration.indexOf(':') < 0) {
+            return (int) Math.round(parseDouble(duration) / 60);
+        }
+        String[] parts = duration.split(":");
+        int seconds = 0;
+        for (String part : parts) {
+            seconds = seconds * 60 + parseInt(part.trim(), 0);
+        }
+        return Math.round(seconds / 60f);
+    }
+
+    private static int parseInt(String text, int fallback) {
+        try {
+            return text.isEmpty() ? fallback : (int) Math.round(Double.parseDouble(text));
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    private static double parseDouble(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    // A block of parsed entries in primitive arrays, handed to the sink as one unit
+    public static class ImportBatch {
+        private final int[] days;
+        private final byte[] codes;
+        private final int[] calories;
+        private final int[] minutes;
+        private final String[] names;
+        private final SensorStore.Recording[] recordings;  // Trackpoints of imported workouts, null for the rest
+        private int size = 0;
+        private Semaphore permit;  // Released by complete() so the importer can parse the next batch
+
+        ImportBatch(int capacity) {
+            days = new int[capacity];
+            codes = new byte[capacity];
+            calories = new int[capacity];
+            minutes = new int[capacity];
+            names = new String[capacity];
+            recordings = new SensorStore.Recording[capacity];
+        }
+
+        void addFood(int day, int meal, String food, int kcal) {
+            add(day, (byte) meal, kcal, 0, food);
+        }
+
+        void addWorkout(int day, String activity, int workoutMinutes, int caloriesBurned) {
+            add(day, EntryStore.WORKOUT, caloriesBurned, workoutMinutes, activity);
+        }
+
+        void addWorkout(int day, String activity, int workoutMinutes, int caloriesBurned, SensorStore.Recording recording) {
+            recordings[size] = recording;
+            add(day, EntryStore.WORKOUT, caloriesBurned, workoutMinutes, activity);
+        }
+
+        private void add(int day, byte code, int kcal, int workoutMinutes, String name) {
+            days[size] = day;
+            codes[size] = code;
+            calories[size] = kcal;
+            minutes[size] = workoutMinutes;
+            names[size] = name;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int day(int i) {
+            return days[i];
+        }
+
+        public int code(int i) {
+            return codes[i];
+        }
+
+        public boolean isWorkout(int i) {
+            return codes[i] == EntryStore.WORKOUT;
+        }
+
+        public int calories(int i) {
+            return calories[i];
+        }
+
+        public int minutes(int i) {
+            return minutes[i];
+        }
+
+        public String name(int i) {
+            return names[i];
+        }
+
+        // The workout's trackpoints, or null
+        public SensorStore.Recording recording(int i) {
+            return recordings[i];
+        }
+
+        // Signal that the consumer is done with this batch
+        public void complete() {
+            if (permit != null) {
+                permit.release();
+                permit = null;
+            }
+        }
+    }
+}
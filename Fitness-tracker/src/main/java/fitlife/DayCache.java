@@ -0,0 +1,240 @@
+package fitlife;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+// A bounded map from epoch day to a computed value, evicting with W-TinyLFU: new days enter a recency
+// window, and a day pushed out of the window only replaces the oldest day of the main area if it has
+// been asked for more often (going by a small frequency sketch). A one-off scan across many dates
+// therefore cannot flush the days that are looked at again and again. Calendar scrubbing is mostly
+// recency, so the window is an eighth of the cache rather than the usual 1%, which also leaves room
+// for a prefetched week. Not thread-safe: the owner (one TrackerCore) is only used from one thread.
+// The statistics are volatile so a metrics thread can read them.
+public class DayCache<V> {
+
+    private static final int ENTRY_OVERHEAD = 64;  // Map entry, boxed key and linked-list pointers, roughly
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;  // Main area is split into probation (seen once) and protected (hit again)
+    private final ToIntFunction<V> weigher;
+    private final FrequencySketch sketch;
+
+    // Access-ordered, so the first entry of each is the least recently used
+    private final LinkedHashMap<Integer, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, V> protectedDays = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long evictions;
+    private volatile long invalidations;
+    private volatile long bytes;  // Estimated heap held by the cached values and their entries
+
+    public DayCache(int capacity, ToIntFunction<V> weigher) {
+        this.capacity = Math.max(capacity, 2);
+        this.windowCapacity = Math.max(this.capacity / 8, 1);
+        this.protectedCapacity = (this.capacity - windowCapacity) * 4 / 5;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(this.capacity);
+    }
+
+    // The cached value, or null; counts towards the day's frequency either way
+    public V get(int day) {
+        sketch.increment(day);
+        V value = window.get(day);
+        if (value == null) {
+            value = protectedDays.get(day);
+        }
+        if (value == null) {
+            value = probation.remove(day);
+            if (value != null) {
+                promote(day, value);
+            }
+        }
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    // Whether the day is cached, without touching recency, frequency or the statistics
+    public boolean contains(int day) {
+        return window.containsKey(day) || probation.containsKey(day) || protectedDays.containsKey(day);
+    }
+
+    // Cache a value, e.g. after a miss or as a prefetch; replaces the value of a day that is already cached
+    public void put(int day, V value) {
+        if (replace(window, day, value) || replace(probation, day, value) || replace(protectedDays, day, value)) {
+            return;
+        }
+        window.put(day, value);
+        bytes += weight(value);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+        // The window overflowed: its oldest day competes for a place in the main area
+        Map.Entry<Integer, V> candidate = removeEldest(window);
+        if (probation.size() + protectedDays.size() < capacity - windowCapacity) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        LinkedHashMap<Integer, V> victims = probation.isEmpty() ? protectedDays : probation;
+        int victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            bytes -= weight(victims.remove(victim));
+            probation.put(candidate.getKey(), candidate.getValue());
+        } else {
+            bytes -= weight(candidate.getValue());
+        }
+        evictions++;
+    }
+
+    // Drop a day whose entries changed; the next get recomputes it
+    public void invalidate(int day) {
+        V removed = window.remove(day);
+        if (removed == null) {
+            removed = probation.remove(day);
+        }
+        if (removed == null) {
+            removed = protectedDays.remove(day);
+        }
+        if (removed != null) {
+            bytes -= weight(removed);
+            invalidations++;
+        }
+    }
+
+    public void clear() {
+        window.clear();
+        probation.clear();
+        protectedDays.clear();
+        bytes = 0;
+    }
+
+    public int size() {
+        return window.size() + probation.size() + protectedDays.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public long invalidations() {
+        return invalidations;
+    }
+
+    public long estimatedBytes() {
+        return bytes;
+    }
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    // A second hit moves a day from probation to protected; protected overflow goes back to probation
+    private void promote(int day, V value) {
+        protectedDays.put(day, value);
+        if (protectedDays.size() > protectedCapacity) {
+            Map.Entry<Integer, V> demoted = removeEldest(protectedDays);
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private boolean replace(LinkedHashMap<Integer, V> segment, int day, V value) {
+        V previous = segment.replace(day, value);
+        if (previous == null) {
+            return false;
+        }
+        bytes += weight(value) - weight(previous);
+        return true;
+    }
+
+    private int weight(V value) {
+        return ENTRY_OVERHEAD + weigher.applyAsInt(value);
+    }
+
+    private static <V> Map.Entry<Integer, V> removeEldest(LinkedHashMap<Integer, V> segment) {
+        Iterator<Map.Entry<Integer, V>> entries = segment.entrySet().iterator();
+        Map.Entry<Integer, V> eldest = entries.next();
+        Map.Entry<Integer, V> copy = Map.entry(eldest.getKey(), eldest.getValue());
+        entries.remove();
+        return copy;
+    }
+
+    // Count-min sketch of 4-bit counters, four per day, halved every 10 x capacity increments so that
+    // old popularity fades
+    private static final class FrequencySketch {
+        private final long[] table;  // Sixteen 4-bit counters per long
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        void increment(int day) {
+            int hash = spread(day);
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = index(hash, i);
+                int offset = counterOffset(hash, i);
+                if (((table[index] >>> offset) & 0xF) < 15) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777_7777_7777_7777L;  // Halve every counter at once
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int day) {
+            int hash = spread(day);
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, (int) ((table[index(hash, i)] >>> counterOffset(hash, i)) & 0xF));
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int i) {
+            long h = (hash + (long) i * 0x9E37_79B9) * 0xBF58_476D_1CE4_E5B9L;
+            return (int) (h >>> 40) & mask;
+        }
+
+        // Row i uses one of the four counters in the i-th quarter of its long
+        private static int counterOffset(int hash, int i) {
+            return (i << 4) + (((hash >>> (i << 3)) & 3) << 2);
+        }
+
+        private static int spread(int day) {
+            int h = day * 0x9E37_79B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
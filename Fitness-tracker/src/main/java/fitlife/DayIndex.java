@@ -0,0 +1,82 @@
+package fitlife;
+
+import java.util.Arrays;
+
+// The store rows of each day in row order, so one day's entries are found without scanning the store.
+// Days sit in an array from baseDay, grown like RangeAggregator's trees; deleted rows stay listed, since
+// an undo can bring them back, and readers skip them.
+final class DayIndex {
+
+    private int baseDay = -1;
+    private int[][] rows = new int[64][];
+    private int[] counts = new int[64];
+
+    // Rows arrive in increasing order from the store, so appending keeps each day sorted
+    void add(int epochDay, int row) {
+        int slot = slot(epochDay);
+        int[] list = rows[slot];
+        if (list == null) {
+            list = rows[slot] = new int[4];
+        } else if (counts[slot] == list.length) {
+            list = rows[slot] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[counts[slot]++] = row;
+    }
+
+    // For an edit that moved a row to another day; a no-op when the day stayed the same
+    void move(int row, int fromDay, int toDay) {
+        if (fromDay == toDay) {
+            return;
+        }
+        int from = fromDay - baseDay;
+        if (baseDay >= 0 && from >= 0 && from < rows.length && rows[from] != null) {
+            int at = Arrays.binarySearch(rows[from], 0, counts[from], row);
+            if (at >= 0) {
+                System.arraycopy(rows[from], at + 1, rows[from], at, counts[from] - at - 1);
+                counts[from]--;
+            }
+        }
+        add(toDay, row);
+        int slot = toDay - baseDay;
+        Arrays.sort(rows[slot], 0, counts[slot]);  // The moved row may be older than the day's others
+    }
+
+    // How many rows were stored on a day, and each of them by position
+    int count(int epochDay) {
+        int slot = epochDay - baseDay;
+        return baseDay < 0 || slot < 0 || slot >= rows.length ? 0 : counts[slot];
+    }
+
+    int row(int epochDay, int i) {
+        return rows[epochDay - baseDay][i];
+    }
+
+    void clear() {
+        baseDay = -1;
+        rows = new int[64][];
+        counts = new int[64];
+    }
+
+    private int slot(int epochDay) {
+        if (baseDay < 0) {
+            baseDay = Math.max(0, epochDay - rows.length / 2);
+        }
+        if (epochDay < baseDay || epochDay >= baseDay + rows.length) {
+            int from = Math.min(epochDay, baseDay);
+            int to = Math.max(epochDay, baseDay + rows.length - 1);
+            int capacity = rows.length;
+            while (capacity < to - from + 1) {
+                capacity *= 2;
+            }
+            int newBase = epochDay < baseDay ? Math.max(0, to - capacity + 1) : baseDay;
+            int[][] grownRows = new int[capacity][];
+            int[] grownCounts = new int[capacity];
+            System.arraycopy(rows, 0, grownRows, baseDay - newBase, rows.length);
+            System.arraycopy(counts, 0, grownCounts, baseDay - newBase, counts.length);
+            rows = grownRows;
+            counts = grownCounts;
+            baseDay = newBase;
+        }
+        return epochDay - baseDay;
+    }
+}
@@ -0,0 +1,77 @@
+package fitlife;
+
+// Reduces a long daily series to what a chart of a given pixel width can show. The x value of each
+// point is its index, so both methods work on a slice of the series in place and write into caller
+// buffers; drawing a frame allocates nothing however many days are visible.
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    // Largest-Triangle-Three-Buckets: keeps the first and last point and, from each of threshold - 2
+    // equal buckets in between, the point forming the largest triangle with the point kept before it
+    // and the average of the next bucket. Writes the kept indexes in order and returns how many.
+    public static int lttb(long[] values, int from, int to, int threshold, int[] indexes) {
+        int n = to - from;
+        if (threshold >= n || threshold < 3) {
+            for (int i = 0; i < n; i++) {
+                indexes[i] = from + i;
+            }
+            return Math.max(n, 0);
+        }
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int kept = from;
+        int count = 0;
+        indexes[count++] = from;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (the last point for the final one)
+            int averageFrom = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int averageTo = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, to);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = averageFrom; i < averageTo; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            int averageCount = Math.max(averageTo - averageFrom, 1);
+            averageX /= averageCount;
+            averageY /= averageCount;
+
+            int rangeFrom = from + (int) (bucket * bucketSize) + 1;
+            int rangeTo = from + (int) ((bucket + 1) * bucketSize) + 1;
+            double keptY = values[kept];
+            double largestArea = -1;
+            int next = rangeFrom;
+            for (int i = rangeFrom; i < rangeTo; i++) {
+                // Twice the triangle area; only the comparison matters
+                double area = Math.abs((kept - averageX) * (values[i] - keptY) - (kept - i) * (averageY - keptY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    next = i;
+                }
+            }
+            indexes[count++] = next;
+            kept = next;
+        }
+        indexes[count++] = to - 1;
+        return count;
+    }
+
+    // Smallest and largest value in each of buckets equal slices of [from, to), e.g. one per pixel
+    // column, so no spike disappears however far the chart is zoomed out. Needs to - from >= buckets.
+    public static void minMax(long[] values, int from, int to, int buckets, long[] min, long[] max) {
+        long n = to - from;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = from + (int) (bucket * n / buckets);
+            int end = from + (int) ((bucket + 1) * n / buckets);
+            long low = values[start];
+            long high = low;
+            for (int i = start + 1; i < end; i++) {
+                low = Math.min(low, values[i]);
+                high = Math.max(high, values[i]);
+            }
+            min[bucket] = low;
+            max[bucket] = high;
+        }
+    }
+}
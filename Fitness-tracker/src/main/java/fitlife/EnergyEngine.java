@@ -0,0 +1,190 @@
+package fitlife;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Calorie burn from MET values and the user's profile, or from heart-rate samples when a workout has them
+public class EnergyEngine {
+
+    private static final double DEFAULT_MET = 5.0;   // Moderate effort, used for activities missing from the table
+
+    private final String[] activities;  // Display names in table order
+    private final String[] keys;        // Lower-case names, sorted for binary search
+    private final double[] keyMets;     // MET value for each sorted key
+    private volatile UserProfile profile;
+
+    // Shares the sorted table with another engine, so each user of a batch can carry their own profile
+    private EnergyEngine(EnergyEngine table, UserProfile profile) {
+        this.activities = table.activities;
+        this.keys = table.keys;
+        this.keyMets = table.keyMets;
+        this.profile = profile;
+    }
+
+    public EnergyEngine(String[] activities, double[] mets, UserProfile profile) {
+        this.activities = activities.clone();
+        this.profile = profile;
+        Integer[] order = new Integer[activities.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> activities[a].toLowerCase(Locale.ROOT).compareTo(activities[b].toLowerCase(Locale.ROOT)));
+        keys = new String[order.length];
+        keyMets = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = activities[order[i]].toLowerCase(Locale.ROOT);
+            keyMets[i] = mets[order[i]];
+        }
+    }
+
+    // Load the bundled met.csv table
+    public static EnergyEngine loadDefault(UserProfile profile) {
+        List<String> names = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        InputStream in = EnergyEngine.class.getResourceAsStream("met.csv");
+        if (in != null) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comma = line.lastIndexOf(',');
+                    if (line.isEmpty() || line.charAt(0) == '#' || comma < 0) {
+                        continue;
+                    }
+                    try {
+                        values.add(Double.parseDouble(line.substring(comma + 1).trim()));
+                        names.add(line.substring(0, comma).trim());
+                    } catch (NumberFormatException ex) {
+                        // Skip malformed rows
+                    }
+                }
+            } catch (IOException ex) {
+                // Fall through with whatever was read
+            }
+        }
+        double[] mets = new double[values.size()];
+        for (int i = 0; i < mets.length; i++) {
+            mets[i] = values.get(i);
+        }
+        return new EnergyEngine(names.toArray(new String[0]), mets, profile);
+    }
+
+    public String[] activities() {
+        return activities.clone();
+    }
+
+    public UserProfile profile() {
+        return profile;
+    }
+
+    public void setProfile(UserProfile profile) {
+        this.profile = profile;
+    }
+
+    public EnergyEngine withProfile(UserProfile profile) {
+        return new EnergyEngine(this, profile);
+    }
+
+    // MET for an activity name; unknown names fall back to their first word ("Running, hills" -> "running")
+    public double met(String activity) {
+        String key = activity.trim().toLowerCase(Locale.ROOT);
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            int space = key.indexOf(' ');
+            int comma = key.indexOf(',');
+            int cut = space < 0 ? comma : comma < 0 ? space : Math.min(space, comma);
+            index = cut > 0 ? Arrays.binarySearch(keys, key.substring(0, cut)) : -1;
+        }
+        return index >= 0 ? keyMets[index] : DEFAULT_MET;
+    }
+
+    public int caloriesBurned(String activity, int minutes) {
+        return (int) Math.round(kcalFromMet(met(activity), minutes, profile));
+    }
+
+    // MET tables assume a standard 3.5 mL O2/kg/min at rest; using this person's own resting
+    // burn as 1 MET corrects for weight, height, age and sex (Kozey et al. 2010)
+    public static double kcalFromMet(double met, double minutes, UserProfile profile) {
+        return met * restingKcalPerMinute(profile) * minutes;
+    }
+
+    // Energy per minute at rest, which is what 1 MET means for this person
+    public static double restingKcalPerMinute(UserProfile profile) {
+        return profile.restingKcalPerDay() / 1440;
+    }
+
+    // Integrate calories over heart-rate samples (Keytel et al. 2005), one sample every sampleSeconds
+    public double kcalFromHeartRate(int[] bpm, int from, int count, double sampleSeconds) {
+        UserProfile p = profile;
+        // kcal per minute = slope * bpm + intercept; unspecified sex averages the two equations
+        double maleSlope = 0.6309;
+        double maleIntercept = -55.0969 + 0.1988 * p.weightKg + 0.2017 * p.age;
+        double femaleSlope = 0.4472;
+        double femaleIntercept = -20.4022 - 0.1263 * p.weightKg + 0.074 * p.age;
+        double slope;
+        double intercept;
+        if (UserProfile.MALE.equals(p.sex)) {
+            slope = maleSlope;
+            intercept = maleIntercept;
+        } else if (UserProfile.FEMALE.equals(p.sex)) {
+            slope = femaleSlope;
+            intercept = femaleIntercept;
+        } else {
+            slope = (maleSlope + femaleSlope) / 2;
+            intercept = (maleIntercept + femaleIntercept) / 2;
+        }
+        slope /= 4.184;  // The equations give kJ per minute
+        intercept /= 4.184;
+        double resting = restingKcalPerMinute(p);
+        int restingHeartRate = p.restingHeartRate;
+
+        double kcalPerMinuteTotal = 0;
+        int end = from + count;
+        for (int i = from; i < end; i++) {
+            int heartRate = bpm[i];
+            if (heartRate <= 0) {
+                continue;  // Sensor dropout, no reading for this sample
+            }
+            // Near resting heart rate the regression is unreliable, so never go below resting burn
+            double perMinute = heartRate <= restingHeartRate ? resting : slope * heartRate + intercept;
+            kcalPerMinuteTotal += perMinute > resting ? perMinute : resting;
+        }
+        return kcalPerMinuteTotal * sampleSeconds / 60;
+    }
+
+    // Re-estimate, with the current profile, the burn of every workout whose stored burn is the MET estimate
+    // under the previous profile; out[row] gets the new burn, or -1 for rows to leave alone (foods, deleted
+    // rows, and burns that came from a file or from heart rate). Returns how many rows get a new burn.
+    public int recompute(EntryStore store, UserProfile previous, int[] out) {
+        // Resolve each distinct activity name once, then run a flat loop over the columns
+        double[] metByName = new double[store.nameCount()];
+        for (int id = 0; id < metByName.length; id++) {
+            metByName[id] = met(store.nameById(id));
+        }
+        double oldPerMetMinute = restingKcalPerMinute(previous);
+        double perMetMinute = restingKcalPerMinute(profile);
+        int changed = 0;
+        int size = store.size();
+        for (int row = 0; row < size; row++) {
+            out[row] = -1;
+            if (!store.isWorkout(row) || store.isDeleted(row)) {
+                continue;
+            }
+            double metMinutes = metByName[store.nameId(row)] * store.minutes(row);
+            if (store.calories(row) == (int) Math.round(metMinutes * oldPerMetMinute)) {
+                int burn = (int) Math.round(metMinutes * perMetMinute);
+                if (burn != store.calories(row)) {
+                    out[row] = burn;
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,465 @@
+package fitlife;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Streams entry history out for analysis, as CSV or as a compact columnar file, through a FileChannel
+// from fixed-size direct buffers: the exporter's memory does not grow with the number of rows, only with
+// the number of distinct food and activity names. Rows come from an EntryStore or from anything that
+// drives an EntryJournal.Listener, such as a journal replay or readColumnar.
+//
+// The CSV uses the column names BulkImporter looks for, so an export can be imported again:
+//   date,meal,food,activity,minutes,calories
+//
+// Columnar layout (".flc", big-endian):
+//   header      int magic "FLCX", int version
+//   row groups  up to 16384 rows each: int rows, int first day, five int column lengths, then the columns
+//                 day       zigzag varint, change from the previous row (the first row's is from the first day)
+//                 code      one byte per row: meal 0-2, or 3 for a workout
+//                 name      varint index into the dictionary
+//                 minutes   varint, 0 for food
+//                 calories  zigzag varint
+//   dictionary  int count, then per name an unsigned short length and the UTF-8 bytes
+//   footer      long rows, int row groups, long dictionary offset, int magic
+public abstract class EntryExporter implements EntryJournal.Listener, AutoCloseable {
+
+    protected final FileChannel channel;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[] storeNames = new int[64];  // Export name id + 1 for each store name id, 0 until first seen
+    private long rows;
+    private Map<Integer, TrackerCore.Entry> edited = Map.of();  // Journal rows changed after being logged, null if deleted
+    private int nextRow;  // Journal row number of the next food or workout record
+
+    protected EntryExporter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // CSV for files ending in .csv, columnar for anything else
+    public static EntryExporter open(Path file) throws IOException {
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return new Csv(file);
+        }
+        return new Columnar(file);
+    }
+
+    // Every row of the store in order, deleted ones left out; the caller must keep the store from changing meanwhile
+    public void exportStore(EntryStore store) throws IOException {
+        if (storeNames.length < store.nameCount()) {
+            storeNames = Arrays.copyOf(storeNames, Math.max(store.nameCount(), storeNames.length * 2));
+        }
+        for (int row = 0; row < store.size(); row++) {
+            if (store.isDeleted(row)) {
+                continue;
+            }
+            int storeName = store.nameId(row);
+            if (storeNames[storeName] == 0) {
+                storeNames[storeName] = nameId(store.nameById(storeName)) + 1;
+            }
+            writeRow(store.day(row), store.code(row), storeNames[storeName] - 1, store.minutes(row), store.calories(row));
+            rows++;
+        }
+    }
+
+    // Before replaying a journal's log: records are numbered from firstRow as they arrive, and rows in edited
+    // are written with their final values instead, or left out when deleted. A first pass over the log
+    // collects them (see FitlifeExport), so the export still streams.
+    public void replayEdits(int firstRow, Map<Integer, TrackerCore.Entry> edited) {
+        this.nextRow = firstRow;
+        this.edited = edited;
+    }
+
+    @Override
+    public void food(int epochDay, int meal, String name, int calories) {
+        if (writeEdited(nextRow++)) {
+            return;
+        }
+        try {
+            writeRow(epochDay, meal, nameId(name), 0, calories);
+            rows++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);  // Listener methods cannot throw; callers unwrap it
+        }
+    }
+
+    @Override
+    public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+        if (writeEdited(nextRow++)) {
+            return;
+        }
+        try {
+            writeRow(epochDay, EntryStore.WORKOUT, nameId(activity), minutes, caloriesBurned);
+            rows++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private boolean writeEdited(int row) {
+        if (edited.isEmpty() || !edited.containsKey(row)) {
+            return false;
+        }
+        TrackerCore.Entry entry = edited.get(row);
+        if (entry != null) {
+            try {
+                writeRow(entry.epochDay, entry.code, nameId(entry.name), entry.minutes, entry.calories);
+                rows++;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return true;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    protected abstract void writeRow(int epochDay, int code, int nameId, int minutes, int calories) throws IOException;
+
+    // Write out whatever is buffered (and the columnar trailer), then close the file
+    @Override
+    public abstract void close() throws IOException;
+
+    protected String name(int nameId) {
+        return names.get(nameId);
+    }
+
+    protected int nameCount() {
+        return names.size();
+    }
+
+    private int nameId(String name) {
+        Integer id = dictionary.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            dictionary.put(name, id);
+        }
+        return id;
+    }
+
+    // Gathering write of the buffers from position to limit, looping until the channel has taken everything
+    protected static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    // Feed every row of a columnar export to listener; returns the number of rows
+    public static long readColumnar(Path file, EntryJournal.Listener listener) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < Columnar.FILE_HEADER + Columnar.FOOTER) {
+                throw new IOException("Not a Fitlife columnar export: " + file.getFileName());
+            }
+            ByteBuffer fixed = ByteBuffer.allocate(Columnar.FOOTER);
+            readFully(in, fixed, size - Columnar.FOOTER);
+            long rowCount = fixed.getLong();
+            int groups = fixed.getInt();
+            long dictionaryOffset = fixed.getLong();
+            if (fixed.getInt() != Columnar.MAGIC) {
+                throw new IOException("Not a Fitlife columnar export: " + file.getFileName());
+            }
+            ByteBuffer header = ByteBuffer.allocate(Columnar.FILE_HEADER);
+            readFully(in, header, 0);
+            if (header.getInt() != Columnar.MAGIC || header.getInt() != Columnar.VERSION) {
+                throw new IOException("Unsupported columnar export version: " + file.getFileName());
+            }
+
+            ByteBuffer dictionary = in.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                    size - Columnar.FOOTER - dictionaryOffset);
+            String[] names = new String[dictionary.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[dictionary.getShort() & 0xFFFF];
+                dictionary.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            long position = Columnar.FILE_HEADER;
+            for (int group = 0; group < groups; group++) {
+                ByteBuffer groupHeader = ByteBuffer.allocate(Columnar.GROUP_HEADER);
+                readFully(in, groupHeader, position);
+                int count = groupHeader.getInt();
+                int day = groupHeader.getInt();
+                int[] lengths = new int[Columnar.COLUMNS];
+                int total = 0;
+                for (int c = 0; c < lengths.length; c++) {
+                    lengths[c] = groupHeader.getInt();
+                    total += lengths[c];
+                }
+                ByteBuffer body = in.map(FileChannel.MapMode.READ_ONLY, position + Columnar.GROUP_HEADER, total);
+                ByteBuffer[] columns = new ByteBuffer[Columnar.COLUMNS];
+                int start = 0;
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = body.slice(start, lengths[c]);
+                    start += lengths[c];
+                }
+                for (int i = 0; i < count; i++) {
+                    day += unzigzag(getVarint(columns[0]));
+                    int code = columns[1].get();
+                    String name = names[getVarint(columns[2])];
+                    int minutes = getVarint(columns[3]);
+                    int calories = unzigzag(getVarint(columns[4]));
+                    if (code == EntryStore.WORKOUT) {
+                        listener.workout(day, name, minutes, calories);
+                    } else {
+                        listener.food(day, code, name, calories);
+                    }
+                }
+                position += Columnar.GROUP_HEADER + total;
+            }
+            return rowCount;
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Columnar export is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    // Small magnitudes of either sign become small unsigned numbers: 0, -1, 1, -2 ... -> 0, 1, 2, 3 ...
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ---- CSV ----
+
+    private static final class Csv extends EntryExporter {
+        private static final int BUFFER_BYTES = 1 << 18;
+        private static final int ROW_SLACK = 64;  // Room for everything on a line except the name
+        private static final byte[] HEADER = "date,meal,food,activity,minutes,calories\n".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[][] MEALS = {
+                TrackerCore.mealName(EntryStore.MORNING).getBytes(StandardCharsets.US_ASCII),
+                TrackerCore.mealName(EntryStore.LUNCH).getBytes(StandardCharsets.US_ASCII),
+                TrackerCore.mealName(EntryStore.DINNER).getBytes(StandardCharsets.US_ASCII)};
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final List<byte[]> quotedNames = new ArrayList<>();  // CSV-ready UTF-8 per name id
+
+        Csv(Path file) throws IOException {
+            super(file);
+            buffer.put(HEADER);
+        }
+
+        @Override
+        protected void writeRow(int epochDay, int code, int nameId, int minutes, int calories) throws IOException {
+            while (quotedNames.size() <= nameId) {
+                quotedNames.add(quote(name(quotedNames.size())));
+            }
+            byte[] name = quotedNames.get(nameId);
+            if (buffer.remaining() < name.length + ROW_SLACK) {
+                flush();
+            }
+            putDate(epochDay);
+            buffer.put((byte) ',');
+            if (code == EntryStore.WORKOUT) {
+                buffer.put((byte) ',').put((byte) ',').put(name).put((byte) ',');
+                putInt(minutes);
+            } else {
+                buffer.put(MEALS[code]).put((byte) ',').put(name).put((byte) ',').put((byte) ',');
+            }
+            buffer.put((byte) ',');
+            putInt(calories);
+            buffer.put((byte) '\n');
+        }
+
+        // yyyy-MM-dd straight into the buffer (civil-from-days), without a LocalDate per row
+        private void putDate(int epochDay) {
+            int z = epochDay + 719468;
+            int era = Math.floorDiv(z, 146097);
+            int dayOfEra = z - era * 146097;
+            int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            int monthIndex = (5 * dayOfYear + 2) / 153;
+            int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+            int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+            int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+            putDigits(year, 4);
+            buffer.put((byte) '-');
+            putDigits(month, 2);
+            buffer.put((byte) '-');
+            putDigits(day, 2);
+        }
+
+        private void putDigits(int value, int width) {
+            for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+                buffer.put((byte) ('0' + value / divisor % 10));
+            }
+        }
+
+        private void putInt(int value) {
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;  // Calories and minutes never reach Integer.MIN_VALUE
+            }
+            int divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                buffer.put((byte) ('0' + value / divisor % 10));
+            }
+        }
+
+        // Quoted only when the name holds a comma, quote or line break, with quotes doubled
+        private static byte[] quote(String name) {
+            if (name.indexOf(',') < 0 && name.indexOf('"') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+                return name.getBytes(StandardCharsets.UTF_8);
+            }
+            return ('"' + name.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // ---- Columnar ----
+
+    private static final class Columnar extends EntryExporter {
+        static final int MAGIC = 0x464C4358;  // "FLCX"
+        static final int VERSION = 1;
+        static final int COLUMNS = 5;
+        static final int FILE_HEADER = 8;
+        static final int GROUP_HEADER = 8 + 4 * COLUMNS;
+        static final int FOOTER = 8 + 4 + 8 + 4;
+        private static final int GROUP_ROWS = 16384;
+        private static final int MAX_VARINT = 5;
+
+        private final ByteBuffer groupHeader = ByteBuffer.allocateDirect(GROUP_HEADER);
+        private final ByteBuffer days = ByteBuffer.allocateDirect(GROUP_ROWS * MAX_VARINT);
+        private final ByteBuffer codes = ByteBuffer.allocateDirect(GROUP_ROWS);
+        private final ByteBuffer nameIds = ByteBuffer.allocateDirect(GROUP_ROWS * MAX_VARINT);
+        private final ByteBuffer minutes = ByteBuffer.allocateDirect(GROUP_ROWS * MAX_VARINT);
+        private final ByteBuffer calories = ByteBuffer.allocateDirect(GROUP_ROWS * MAX_VARINT);
+        private final ByteBuffer[] group = {groupHeader, days, codes, nameIds, minutes, calories};
+        private int groupRows;
+        private int groupFirstDay;
+        private int previousDay;
+        private int groups;
+
+        Columnar(Path file) throws IOException {
+            super(file);
+            writeFully(channel, ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION).flip());
+        }
+
+        @Override
+        protected void writeRow(int epochDay, int code, int nameId, int minutes, int calories) throws IOException {
+            if (groupRows == 0) {
+                groupFirstDay = epochDay;
+                previousDay = epochDay;
+            }
+            putVarint(days, zigzag(epochDay - previousDay));
+            previousDay = epochDay;
+            codes.put((byte) code);
+            putVarint(nameIds, nameId);
+            putVarint(this.minutes, minutes);
+            putVarint(this.calories, zigzag(calories));
+            if (++groupRows == GROUP_ROWS) {
+                flushGroup();
+            }
+        }
+
+        // One gathering write for the group header and all five columns
+        private void flushGroup() throws IOException {
+            if (groupRows == 0) {
+                return;
+            }
+            groupHeader.clear().putInt(groupRows).putInt(groupFirstDay);
+            for (int c = 1; c < group.length; c++) {
+                groupHeader.putInt(group[c].position());
+            }
+            for (ByteBuffer buffer : group) {
+                buffer.flip();
+            }
+            writeFully(channel, group);
+            for (ByteBuffer buffer : group) {
+                buffer.clear();
+            }
+            groups++;
+            groupRows = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushGroup();
+                long dictionaryOffset = channel.position();
+                ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+                out.putInt(nameCount());
+                for (int i = 0; i < nameCount(); i++) {
+                    byte[] bytes = name(i).getBytes(StandardCharsets.UTF_8);
+                    int length = Math.min(bytes.length, 0xFFFF);
+                    if (out.remaining() < 2 + length) {
+                        writeFully(channel, out.flip());
+                        out.clear();
+                    }
+                    out.putShort((short) length).put(bytes, 0, length);
+                }
+                if (out.remaining() < FOOTER) {
+                    writeFully(channel, out.flip());
+                    out.clear();
+                }
+                out.putLong(rows()).putInt(groups).putLong(dictionaryOffset).putInt(MAGIC);
+                writeFully(channel, out.flip());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
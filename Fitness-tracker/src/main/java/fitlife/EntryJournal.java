@@ -0,0 +1,505 @@
+package fitlife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only binary log of food and workout entries and the edits made to them, written through a memory-mapped
+// window. The log is split into numbered segments (journal-00000001.log, ...): every snapshot starts a new one,
+// and the segments only the snapshot before last still needs are deleted, so the log does not grow for good.
+public class EntryJournal implements AutoCloseable {
+
+    public static final byte FOOD = 1;     // Record type for a food entry
+    public static final byte WORKOUT = 2;  // Record type for a workout entry
+    public static final byte UPDATE = 3;   // New values for an existing row (an edit, or an undone delete)
+    public static final byte DELETE = 4;   // An existing row was deleted
+
+    private static final int MAP_CHUNK = 1 << 20;           // Size of each mapped write window (1 MB)
+    private static final int READ_WINDOW = 8 << 20;         // Size of each mapped read window during replay
+    private static final int HEADER = 4 + 4;                // Length and CRC-32C of the payload in front of every record
+    private static final int LEGACY_HEADER = 4;             // journal.log, from before segments, has the length only
+    private static final int FIXED_PAYLOAD = 1 + 4 + 1 + 4 + 4 + 2;  // type, day, slot, value1, value2, name length
+    private static final int ROW_SUFFIX = 4;                // Row number after the name, for UPDATE and DELETE
+    private static final int MAX_NAME_BYTES = 1024;         // Longest name stored in a record
+    private static final int SNAPSHOT_MAGIC = 0x46495453;   // "FITS"
+    // Bumped whenever the snapshot body changes. Snapshots before 6 are ignored, which is safe because their log
+    // (journal.log) was never compacted; from 6 on the log before a snapshot is deleted, so a new version has to
+    // keep reading this one.
+    private static final int SNAPSHOT_VERSION = 6;
+    private static final int SNAPSHOT_HEADER = 4 + 4 + 8;   // Magic, version, first segment to replay after it
+    private static final int SNAPSHOT_TRAILER = 4;          // CRC-32 of everything before it
+    private static final long DAMAGED = -1;                 // readSnapshot(): the file failed its checks
+    private static final long NO_SNAPSHOT = -2;             // readSnapshot(): no file, or one from an older version
+    private static final long FLUSH_INTERVAL_MS = 100;      // Group commit: force dirty pages at most this often
+    private static final int SNAPSHOT_EVERY = 10_000;       // Appends between suggested snapshots
+    private static final long MIN_SNAPSHOT_INTERVAL_MS = 60_000;  // Keeps bulk imports from snapshotting constantly
+
+    // Receives records during replay
+    public interface Listener {
+        void food(int epochDay, int meal, String name, int calories);
+
+        void workout(int epochDay, String activity, int minutes, int caloriesBurned);
+
+        // Rows are numbered in the order food and workout records (and snapshot rows) were logged.
+        // Listeners that only pass rows along, like an export of a columnar file, can ignore edits.
+        default void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+        }
+
+        default void delete(int row) {
+        }
+    }
+
+    // Writes the caller's state into a snapshot
+    public interface StateWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Reads the caller's state back from a snapshot
+    public interface StateReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    private static final String LEGACY_LOG = "journal.log";  // Segment 0
+
+    private final Path directory;
+    private final Path snapshotFile;
+    private final Path previousSnapshotFile;  // The snapshot before, kept until the next one in case this one is damaged
+    private final ScheduledExecutorService flusher;
+    private final CRC32C checksum = new CRC32C();
+
+    private FileChannel channel;            // Current segment, opened by recover()
+    private long segment;                   // Its number
+    private long snapshotSegment = -1;      // First segment the current snapshot.bin needs, -1 without one
+    private MappedByteBuffer window;        // Current mapped write window
+    private long windowStart;               // File offset where the window begins
+    private long writePosition = -1;        // Next append offset, -1 until recover() has run
+    private boolean dirty;                  // True when appends have not been forced to disk yet
+    private int appendsSinceSnapshot;       // Used to decide when a new snapshot is worthwhile
+    private long lastSnapshotMillis;        // When the last snapshot was written
+    private Path discardedSnapshot;         // Where recover() moved a damaged snapshot, or null
+    private Path damagedSegment;            // Segment whose replay stopped at a record failing its checksum, or null
+
+    private EntryJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        snapshotFile = directory.resolve("snapshot.bin");
+        previousSnapshotFile = directory.resolve("snapshot.prev");
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Open (or create) the journal stored in directory
+    public static EntryJournal open(Path directory) throws IOException {
+        return new EntryJournal(directory);
+    }
+
+    // Load the latest snapshot into reader, then replay only the segments written after it. A damaged snapshot
+    // (e.g. torn by a power loss) is moved aside to snapshot.bad and the one before it is used instead, whose
+    // segments are kept until the next snapshot; without either the whole log is replayed. Replay stops at the
+    // first record failing its checksum: later segments are moved aside (as .bad) and appends carry on from
+    // there, since the rows logged after a lost record would not line up any more.
+    public synchronized int recover(StateReader reader, Listener listener) throws IOException {
+        long first = readSnapshot(snapshotFile, reader);
+        if (first == DAMAGED) {
+            discardedSnapshot = snapshotFile.resolveSibling("snapshot.bad");
+            Files.move(snapshotFile, discardedSnapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (first < 0 && Files.exists(previousSnapshotFile)) {  // Damaged, or lost between the two renames of snapshot()
+            first = readSnapshot(previousSnapshotFile, reader);
+        }
+        first = Math.max(first, 0);
+        snapshotSegment = first;
+        List<Long> segments = replaySegments(directory, first);
+        long[] end = new long[1];
+        int replayed = 0;
+        segment = Math.max(first, 1);
+        for (int i = 0; i < segments.size(); i++) {
+            segment = segments.get(i);
+            try (FileChannel log = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.READ)) {
+                replayed += replay(log, segment, listener, end);
+            }
+            if (end[0] < 0) {
+                damagedSegment = segmentFile(directory, segment);
+                end[0] = -end[0] - 1;
+                for (long later : segments.subList(i + 1, segments.size())) {
+                    Path file = segmentFile(directory, later);
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+                }
+                break;
+            }
+        }
+        if (segment == 0) {
+            startSegment(1);  // journal.log has no checksums, so new records go into a segment of their own
+        } else {
+            channel = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writePosition = end[0];
+            clearTail(writePosition);
+            mapWindow(writePosition);
+        }
+        return replayed;
+    }
+
+    // Where recover() moved a damaged snapshot before replaying the whole log, or null when it had no need to
+    public synchronized Path discardedSnapshot() {
+        return discardedSnapshot;
+    }
+
+    // The segment recover() found a record with a bad checksum in, or null; whatever was logged from that
+    // record on could not be restored
+    public synchronized Path damagedSegment() {
+        return damagedSegment;
+    }
+
+    // Read a journal directory without opening it for writing, e.g. from a batch job; returns the records replayed.
+    // Like recover() it stops at the first record failing its checksum, but it moves nothing aside.
+    public static int read(Path directory, StateReader reader, Listener listener) throws IOException {
+        long first = readSnapshot(directory.resolve("snapshot.bin"), reader);
+        if (first < 0 && Files.exists(directory.resolve("snapshot.prev"))) {
+            first = readSnapshot(directory.resolve("snapshot.prev"), reader);
+        }
+        int replayed = 0;
+        long[] end = new long[1];
+        for (long segment : replaySegments(directory, Math.max(first, 0))) {
+            try (FileChannel readOnly = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.READ)) {
+                replayed += replay(readOnly, segment, listener, end);
+            }
+            if (end[0] < 0) {
+                break;
+            }
+        }
+        return replayed;
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(segment == 0 ? LEGACY_LOG : String.format("journal-%08d.log", segment));
+    }
+
+    // The segments from first on, in order
+    private static List<Long> segments(Path directory, long first) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (first == 0 && Files.exists(directory.resolve(LEGACY_LOG))) {
+            segments.add(0L);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("journal-\\d{8}\\.log"))
+                    .map(name -> Long.parseLong(name.substring(8, 16)))
+                    .filter(segment -> segment >= first)
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    // The segments a replay from the snapshot's first segment needs. Without a usable snapshot that is the
+    // whole history, which is gone once two snapshots have compacted the log (both must have been damaged);
+    // replaying a later segment alone would attach its edits to the wrong rows.
+    private static List<Long> replaySegments(Path directory, long first) throws IOException {
+        List<Long> segments = segments(directory, first);
+        if (first == 0 && !segments.isEmpty() && segments.get(0) > 1) {
+            throw new IOException("The snapshots are damaged and the log before " + segmentFile(directory, segments.get(0))
+                    + " was already compacted away");
+        }
+        return segments;
+    }
+
+    // Load a snapshot into reader; returns the first segment to replay after it, NO_SNAPSHOT when there is
+    // none or it is from an older version, and DAMAGED. The checksum is verified before reader sees a byte,
+    // so a damaged snapshot leaves the caller's state untouched.
+    private static long readSnapshot(Path snapshotFile, StateReader reader) throws IOException {
+        if (!Files.isReadable(snapshotFile)) {
+            return NO_SNAPSHOT;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (Files.size(snapshotFile) < 8 || in.readInt() != SNAPSHOT_MAGIC) {
+                return DAMAGED;
+            }
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return NO_SNAPSHOT;
+            }
+        }
+        if (!intact(snapshotFile)) {
+            return DAMAGED;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            in.skipBytes(8);
+            long first = in.readLong();
+            reader.read(in);
+            return first;
+        }
+    }
+
+    // True when the snapshot's trailing CRC-32 matches the bytes in front of it
+    private static boolean intact(Path snapshotFile) throws IOException {
+        long size = Files.size(snapshotFile);
+        if (size < SNAPSHOT_HEADER + SNAPSHOT_TRAILER) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long remaining = size - SNAPSHOT_TRAILER;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = in.read(buffer);
+                if (read < 0) {
+                    return false;
+                }
+                buffer.flip();
+                crc.update(buffer);
+                remaining -= read;
+            }
+            ByteBuffer stored = ByteBuffer.allocate(SNAPSHOT_TRAILER);
+            while (stored.hasRemaining()) {
+                if (in.read(stored) < 0) {
+                    return false;
+                }
+            }
+            return stored.getInt(0) == (int) crc.getValue();
+        }
+    }
+
+    // Replay one segment; end[0] is set to the offset just past the last complete record, or to -(offset + 1)
+    // of a record that failed its checksum. Segment 0 is journal.log, whose records carry no checksum.
+    private static int replay(FileChannel channel, long segment, Listener listener, long[] end) throws IOException {
+        int header = segment == 0 ? LEGACY_HEADER : HEADER;
+        CRC32C crc = new CRC32C();
+        int replayed = 0;
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer buffer = null;
+        long bufferStart = 0;
+        while (position + header <= size) {
+            // Remap when the next record header or body falls outside the current read window
+            if (buffer == null || position + header > bufferStart + buffer.limit()) {
+                bufferStart = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(READ_WINDOW, size - position));
+            }
+            int length = buffer.getInt((int) (position - bufferStart));
+            if (length <= 0 || position + header + length > size) {
+                break;  // Zero-filled tail or a torn final record marks the end of the log
+            }
+            if (position + header + length > bufferStart + buffer.limit()) {
+                bufferStart = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(READ_WINDOW, size - position));
+            }
+            int start = (int) (position - bufferStart);
+            if (header == HEADER) {
+                crc.reset();
+                crc.update(buffer.duplicate().limit(start + HEADER + length).position(start + HEADER));
+                if (buffer.getInt(start + 4) != (int) crc.getValue() || length < FIXED_PAYLOAD) {
+                    end[0] = -position - 1;  // Torn or corrupted: nothing after it can be trusted
+                    return replayed;
+                }
+            }
+            buffer.position(start + header);
+            dispatch(buffer, listener);
+            position += header + length;
+            replayed++;
+        }
+        end[0] = position;
+        return replayed;
+    }
+
+    private static void dispatch(ByteBuffer buffer, Listener listener) {
+        byte type = buffer.get();
+        int day = buffer.getInt();
+        int slot = buffer.get();
+        int value1 = buffer.getInt();
+        int value2 = buffer.getInt();
+        byte[] nameBytes = new byte[buffer.getShort()];
+        buffer.get(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        if (type == FOOD) {
+            listener.food(day, slot, name, value1);
+        } else if (type == WORKOUT) {
+            listener.workout(day, name, value1, value2);
+        } else if (type == UPDATE) {
+            listener.update(buffer.getInt(), day, slot, name, value1, value2);
+        } else if (type == DELETE) {
+            listener.delete(buffer.getInt());
+        }
+    }
+
+    public void appendFood(int epochDay, int meal, String name, int calories) throws IOException {
+        append(FOOD, epochDay, meal, calories, 0, name, -1);
+    }
+
+    public void appendWorkout(int epochDay, String activity, int minutes, int caloriesBurned) throws IOException {
+        append(WORKOUT, epochDay, 0, minutes, caloriesBurned, activity, -1);
+    }
+
+    // The values a row has after an edit, undo or redo
+    public void appendUpdate(int row, int epochDay, int code, String name, int calories, int minutes) throws IOException {
+        append(UPDATE, epochDay, code, calories, minutes, name, row);
+    }
+
+    public void appendDelete(int row) throws IOException {
+        append(DELETE, 0, 0, 0, 0, "", row);
+    }
+
+    // Row is only written for UPDATE and DELETE records, so food and workout records keep their old layout
+    private synchronized void append(byte type, int day, int slot, int value1, int value2, String name, int row) throws IOException {
+        if (writePosition < 0) {
+            throw new IllegalStateException("recover() must run before appending");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name too long for the journal: " + name.length() + " characters");
+        }
+        int length = FIXED_PAYLOAD + nameBytes.length + (row >= 0 ? ROW_SUFFIX : 0);
+        if (writePosition + HEADER + length > windowStart + window.capacity()) {
+            mapWindow(writePosition);
+        }
+        int start = (int) (writePosition - windowStart);
+        window.position(start + HEADER);
+        window.put(type).putInt(day).put((byte) slot).putInt(value1).putInt(value2).putShort((short) nameBytes.length).put(nameBytes);
+        if (row >= 0) {
+            window.putInt(row);
+        }
+        checksum.reset();
+        checksum.update(window.duplicate().limit(start + HEADER + length).position(start + HEADER));
+        window.putInt(start + 4, (int) checksum.getValue());
+        window.putInt(start, length);  // Length goes in last so a half-written record reads as the end of the log
+        writePosition += HEADER + length;
+        dirty = true;
+        appendsSinceSnapshot++;
+    }
+
+    private void mapWindow(long position) throws IOException {
+        if (window != null && dirty) {
+            window.force();  // Make sure the old window is on disk before letting go of it
+            dirty = false;
+        }
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, MAP_CHUNK);
+    }
+
+    // Group commit: one force() covers every append since the last flush
+    public synchronized void flush() {
+        if (dirty && window != null) {
+            window.force();
+            dirty = false;
+        }
+    }
+
+    // True once enough records have piled up that replaying them would be noticeably slower than a snapshot
+    public synchronized boolean snapshotDue() {
+        return appendsSinceSnapshot >= SNAPSHOT_EVERY
+                && System.currentTimeMillis() - lastSnapshotMillis >= MIN_SNAPSHOT_INTERVAL_MS;
+    }
+
+    // Persist the caller's state and start a new segment after it. The new file is forced to disk before
+    // the renames and the directory after them, so a power loss leaves the old snapshot or the complete new
+    // one; the checksum catches whatever a disk that lies about force() leaves behind. The old snapshot is
+    // kept as snapshot.prev, and the segments from before it are deleted.
+    public synchronized void snapshot(StateWriter writer) throws IOException {
+        flush();
+        startSegment(segment + 1);
+        Path temp = snapshotFile.resolveSibling("snapshot.tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(segment);
+            writer.write(out);
+            out.flush();
+            new DataOutputStream(buffered).writeInt((int) crc.getValue());
+            buffered.flush();
+            file.force(true);
+        }
+        long previousSegment = Files.exists(snapshotFile) ? snapshotSegment : -1;
+        if (previousSegment >= 0) {
+            Files.move(snapshotFile, previousSnapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+        snapshotSegment = segment;
+        appendsSinceSnapshot = 0;
+        lastSnapshotMillis = System.currentTimeMillis();
+        for (long old : segments(directory, 0)) {
+            if (old >= previousSegment) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segmentFile(directory, old));
+            } catch (IOException ex) {
+                // Still mapped on some platforms; the next snapshot tries again
+            }
+        }
+    }
+
+    // Zero what the next write window will cover, so nothing left of a torn or rejected record (or of the
+    // records after it) follows the next append and replays as if it belonged there
+    private void clearTail(long position) throws IOException {
+        long end = Math.min(channel.size(), position + MAP_CHUNK);
+        ByteBuffer zeros = ByteBuffer.allocate(1 << 16);
+        while (position < end) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), end - position));
+            position += channel.write(zeros, position);
+        }
+        channel.force(false);
+    }
+
+    // Force the current segment and continue in a new, empty one
+    private void startSegment(long next) throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+        segment = next;
+        channel = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        forceDirectory(directory);
+        window = null;
+        writePosition = 0;
+        mapWindow(0);
+    }
+
+    // Make a rename durable. Not every platform can open a directory (Windows cannot, and NTFS journals the
+    // rename itself), so this is best effort.
+    private static void forceDirectory(Path directory) {
+        try (FileChannel handle = FileChannel.open(directory, StandardOpenOption.READ)) {
+            handle.force(true);
+        } catch (IOException ex) {
+            // Nothing more can be done from Java
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdown();
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package fitlife;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Food and workout entries kept in primitive columns, one array per field, indexed by row number. Rows are
+// never removed, so a row number stays valid for good: editing overwrites a row in place and deleting only
+// flags it, which is also what lets an undo put the row back exactly where it was.
+public class EntryStore {
+
+    public static final byte MORNING = 0;   // Codes 0-2 are the meal a food entry belongs to
+    public static final byte LUNCH = 1;
+    public static final byte DINNER = 2;
+    public static final byte WORKOUT = 3;   // Code for a workout entry
+    public static final int MAX_MINUTES = Short.MAX_VALUE;  // Longest workout a row can hold
+
+    // Rows are written by one thread and read by the FX thread; volatile makes a grown array safe to read
+    private volatile int[] days = new int[1024];        // Epoch day of each entry
+    private volatile byte[] codes = new byte[1024];     // Meal code or WORKOUT
+    private volatile int[] calories = new int[1024];    // Calories eaten, or calories burned for workouts
+    private volatile short[] minutes = new short[1024]; // Workout length in minutes, 0 for food
+    private volatile int[] nameIds = new int[1024];     // Index into the name dictionary
+    private volatile boolean[] deleted = new boolean[1024];  // Deleted rows stay in place, skipped by every reader
+    private int size = 0;
+    private volatile int edits = 0;  // Bumped by every edit and delete, so cells know to re-format a row
+
+    // Food and activity names are stored once and referenced by id
+    private volatile String[] names = new String[64];
+    private final Map<String, Integer> nameLookup = new HashMap<>();
+
+    public int addFood(int epochDay, int meal, String food, int kcal) {
+        return add(epochDay, (byte) meal, kcal, 0, food);
+    }
+
+    public int addWorkout(int epochDay, String activity, int workoutMinutes, int caloriesBurned) {
+        return add(epochDay, WORKOUT, caloriesBurned, workoutMinutes, activity);
+    }
+
+    private int add(int epochDay, byte code, int kcal, int workoutMinutes, String name) {
+        if (size == days.length) {
+            grow(size * 2);
+        }
+        days[size] = epochDay;
+        codes[size] = code;
+        calories[size] = kcal;
+        minutes[size] = (short) Math.min(workoutMinutes, MAX_MINUTES);
+        nameIds[size] = nameId(name);
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        days = Arrays.copyOf(days, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+        calories = Arrays.copyOf(calories, capacity);
+        minutes = Arrays.copyOf(minutes, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+
+    // Overwrite a row with new values; a deleted row comes back
+    public void update(int row, int epochDay, int code, int kcal, int workoutMinutes, String name) {
+        days[row] = epochDay;
+        codes[row] = (byte) code;
+        calories[row] = kcal;
+        minutes[row] = (short) Math.min(workoutMinutes, MAX_MINUTES);
+        nameIds[row] = nameId(name);
+        deleted[row] = false;
+        edits++;
+    }
+
+    public void setDeleted(int row, boolean isDeleted) {
+        deleted[row] = isDeleted;
+        edits++;
+    }
+
+    public boolean isDeleted(int row) {
+        return deleted[row];
+    }
+
+    public int edits() {
+        return edits;
+    }
+
+    private int nameId(String name) {
+        Integer id = nameLookup.get(name);
+        if (id != null) {
+            return id;
+        }
+        int next = nameLookup.size();
+        if (next == names.length) {
+            names = Arrays.copyOf(names, next * 2);
+        }
+        names[next] = name;
+        nameLookup.put(name, next);
+        return next;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int day(int row) {
+        return days[row];
+    }
+
+    public int code(int row) {
+        return codes[row];
+    }
+
+    public boolean isWorkout(int row) {
+        return codes[row] == WORKOUT;
+    }
+
+    public int calories(int row) {
+        return calories[row];
+    }
+
+    public int minutes(int row) {
+        return minutes[row];
+    }
+
+    public String name(int row) {
+        return names[nameIds[row]];
+    }
+
+    public int nameId(int row) {
+        return nameIds[row];
+    }
+
+    public int nameCount() {
+        return nameLookup.size();
+    }
+
+    public String nameById(int id) {
+        return names[id];
+    }
+
+    // Display text for a row, built only when a cell actually shows it
+    public String describe(int row) {
+        if (codes[row] == WORKOUT) {
+            return names[nameIds[row]] + " - " + minutes[row] + " minutes - " + calories[row] + " calories burned";
+        }
+        return names[nameIds[row]] + " - " + calories[row] + " calories";
+    }
+
+    // Columns are written as whole arrays so a snapshot loads with a few bulk reads
+    public void write(DataOutputStream out) throws IOException {
+        int nameCount = nameLookup.size();
+        out.writeInt(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            out.writeUTF(names[i]);
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(days[i]);
+        }
+        out.write(codes, 0, size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(calories[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeShort(minutes[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(nameIds[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeBoolean(deleted[i]);
+        }
+    }
+
+    // Replace the contents of this store with a snapshot written by write()
+    public void read(DataInputStream in) throws IOException {
+        nameLookup.clear();
+        int nameCount = in.readInt();
+        names = new String[Math.max(64, nameCount)];
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = in.readUTF();
+            nameLookup.put(names[i], i);
+        }
+        size = in.readInt();
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, size)) << 1);
+        days = new int[capacity];
+        codes = new byte[capacity];
+        calories = new int[capacity];
+        minutes = new short[capacity];
+        nameIds = new int[capacity];
+        deleted = new boolean[capacity];
+        for (int i = 0; i < size; i++) {
+            days[i] = in.readInt();
+        }
+        in.readFully(codes, 0, size);
+        for (int i = 0; i < size; i++) {
+            calories[i] = in.readInt();
+        }
+        for (int i = 0; i < size; i++) {
+            minutes[i] = in.readShort();
+        }
+        for (int i = 0; i < size; i++) {
+            nameIds[i] = in.readInt();
+        }
+        for (int i = 0; i < size; i++) {
+            deleted[i] = in.readBoolean();
+        }
+        edits++;
+    }
+}
@@ -0,0 +1,196 @@
+package fitlife;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Headless entry point: turns many users' entry logs into per-user daily summaries without starting JavaFX.
+// Each entry of the input directory is one user, either a directory holding the app's journal (journal-*.log,
+// snapshot.bin), exported CSV/GPX/TCX files and an optional profile.properties, or a single export file.
+//
+//   java fitlife.FitlifeBatch <users-dir> <output-dir> [parallelism]
+//
+// Writes <output-dir>/<user>.csv with one line per day that has entries.
+public class FitlifeBatch {
+
+    private static final String HEADER = "date,intake,food_entries,workout_minutes,burned,workouts,net";
+
+    private final FoodCatalog foodCatalog;
+    private final EnergyEngine energy;  // MET table shared by every user; each user gets their own profile on top
+    private final Path outputDirectory;
+
+    public FitlifeBatch(FoodCatalog foodCatalog, EnergyEngine energy, Path outputDirectory) {
+        this.foodCatalog = foodCatalog;
+        this.energy = energy;
+        this.outputDirectory = outputDirectory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java fitlife.FitlifeBatch <users-dir> <output-dir> [parallelism]");
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Files.createDirectories(output);
+
+        List<Path> users = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input)) {
+            for (Path user : stream) {
+                if (Files.isDirectory(user) || isExport(user)) {
+                    users.add(user);
+                }
+            }
+        }
+        users.sort(null);
+
+        FitlifeBatch batch = new FitlifeBatch(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()), output);
+        long started = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long entries;
+        try {
+            entries = pool.invoke(batch.new UserRange(users.toArray(new Path[0]), 0, users.size()));
+        } finally {
+            pool.shutdown();
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        System.out.println("Summarized " + entries + " entries for " + users.size() + " users in " + millis + " ms");
+    }
+
+    private static boolean isExport(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".csv") || name.endsWith(".gpx") || name.endsWith(".tcx");
+    }
+
+    // Splits the user list in half until one user is left; users never share state, so halves run independently
+    private final class UserRange extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path[] users;
+        private final int from;
+        private final int to;
+
+        UserRange(Path[] users, int from, int to) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from == 0) {
+                return 0L;
+            }
+            if (to - from == 1) {
+                try {
+                    return (long) summarize(users[from]);
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println("Skipped " + users[from].getFileName() + ": " + ex.getMessage());
+                    return 0L;
+                }
+            }
+            int middle = (from + to) >>> 1;
+            UserRange left = new UserRange(users, from, middle);
+            left.fork();
+            long right = new UserRange(users, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Load one user's history and write their daily summaries; returns the number of entries read
+    public int summarize(Path user) throws IOException {
+        String name = user.getFileName().toString();
+        List<Path> exports = new ArrayList<>();
+        UserProfile profile = UserProfile.defaults();
+        if (Files.isDirectory(user)) {
+            profile = UserProfile.load(user.resolve("profile.properties"));
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(user)) {
+                for (Path file : stream) {
+                    if (isExport(file)) {
+                        exports.add(file);
+                    }
+                }
+            }
+            exports.sort(null);
+        } else {
+            exports.add(user);
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+
+        TrackerCore core = new TrackerCore(foodCatalog, energy.withProfile(profile));
+        if (Files.isDirectory(user)) {
+            EntryJournal.read(user, core::read, new EntryJournal.Listener() {
+                @Override
+                public void food(int epochDay, int meal, String food, int calories) {
+                    core.storeFood(epochDay, meal, food, calories);
+                }
+
+                @Override
+                public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                    core.storeWorkout(epochDay, activity, minutes, caloriesBurned);
+                }
+
+                @Override
+                public void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+                    core.replace(row, new TrackerCore.Entry(epochDay, code, name, calories, minutes));
+                }
+
+                @Override
+                public void delete(int row) {
+                    core.replace(row, null);
+                }
+            });
+        }
+        // Already on a fork-join worker, so parse on this thread instead of starting another pool
+        BulkImporter importer = new BulkImporter(foodCatalog, core.energy(), 0);
+        for (Path export : exports) {
+            importer.importFile(export, batch -> {
+                try {
+                    core.apply(batch);
+                } finally {
+                    batch.complete();
+                }
+            });
+        }
+        writeDays(core, outputDirectory.resolve(name + ".csv"));
+        return core.entries().size();
+    }
+
+    private static void writeDays(TrackerCore core, Path file) throws IOException {
+        EntryStore entries = core.entries();
+        RangeAggregator totals = core.dailyTotals();
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+        for (int row = 0; row < entries.size(); row++) {
+            firstDay = Math.min(firstDay, entries.day(row));
+            lastDay = Math.max(lastDay, entries.day(row));
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (int day = firstDay; day <= lastDay; day++) {
+                long foods = totals.day(RangeAggregator.FOOD_ENTRIES, day);
+                long workouts = totals.day(RangeAggregator.WORKOUTS, day);
+                if (foods == 0 && workouts == 0) {
+                    continue;
+                }
+                long intake = totals.day(RangeAggregator.INTAKE, day);
+                long burned = totals.day(RangeAggregator.BURNED, day);
+                out.write(LocalDate.ofEpochDay(day) + "," + intake + "," + foods + ","
+                        + totals.day(RangeAggregator.WORKOUT_MINUTES, day) + "," + burned + "," + workouts + ","
+                        + (intake - burned));
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fitlife;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events, so a recording (java -XX:StartFlightRecording ...) lines tracker work up with GC,
+// lock and allocation data. Events cost next to nothing while no recording is running.
+public final class FitlifeEvents {
+
+    private FitlifeEvents() {
+    }
+
+    @Name("fitlife.Action")
+    @Label("Tracker Action")
+    @Category("Fitlife")
+    @Description("A user action handled on the FX thread, the tracker service or the HTTP server")
+    @StackTrace(false)
+    public static class Action extends Event {
+        @Label("Action")
+        public String action;
+
+        @Label("Queue Wait")
+        @Description("Time between the action being submitted and starting to run")
+        @Timespan(Timespan.NANOSECONDS)
+        public long queueWait;
+
+        public Action(String action) {
+            this.action = action;
+        }
+    }
+
+    @Name("fitlife.SlowFrame")
+    @Label("Slow Frame")
+    @Category("Fitlife")
+    @Description("Two FX pulses further apart than the frame budget, i.e. at least one dropped frame")
+    @StackTrace(false)
+    public static class SlowFrame extends Event {
+        @Label("Interval")
+        @Timespan(Timespan.NANOSECONDS)
+        public long interval;
+
+        @Label("Frames Dropped")
+        public int framesDropped;
+    }
+
+    @Name("fitlife.Snapshot")
+    @Label("Journal Snapshot")
+    @Category("Fitlife")
+    @StackTrace(false)
+    public static class Snapshot extends Event {
+        @Label("Entries")
+        public int entries;
+    }
+}
@@ -0,0 +1,12 @@
+package fitlife;
+
+// Starts the desktop app with JavaFX on the class path instead of the module path. The java launcher
+// refuses a main class that extends Application in that case, so this one does not. scripts/startup.sh
+// uses it under Monocle: Monocle has to be patched into javafx.graphics on the module path, and a CDS
+// archive cannot be dumped with --patch-module.
+public class FitlifeLauncher {
+
+    public static void main(String[] args) {
+        SimpleFitnessTrackerApp.main(args);
+    }
+}
@@ -0,0 +1,692 @@
+package fitlife;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless HTTP/JSON mode for the web front end, many users per process, built on the JDK's own HTTP server.
+//
+//   java fitlife.FitlifeServer [port] [threads]
+//
+//   POST   /api/users/{user}/foods           {"food": "banana", "meal": "Lunch", "date": "2024-05-01"}
+//   POST   /api/users/{user}/workouts        {"activity": "Running", "minutes": 30, "date": "2024-05-01"}
+//   PUT    /api/users/{user}/entries/{row}   {"food": "apple", "meal": "Lunch"} or {"activity": "Cycling", "minutes": 45}
+//   DELETE /api/users/{user}/entries/{row}
+//   POST   /api/users/{user}/entries/undo    (and /redo) the newest add, edit or delete of an entry
+//   GET    /api/users/{user}/summary?date=2024-05-01
+//   GET    /api/users/{user}/plans[?date=2024-05-01 | ?q=squat+AND+deadlift[&limit=50]]
+//   POST   /api/users/{user}/plans           {"description": "...", "date": "...", "weekdays": 5, "weeks": 12}
+//   PUT    /api/users/{user}/plans/{id}      {"description": "..."}
+//   DELETE /api/users/{user}/plans/{id}
+//   POST   /api/users/{user}/plans/undo      (and /redo)
+//   PUT    /api/users/{user}/workouts/{row}/samples   CSV: seconds,heartRate,pace,cadence,latitude,longitude
+//   GET    /api/users/{user}/workouts/{row}/laps?stream=heartRate[&lap=300][&from=0&to=1800]   (seconds)
+//   GET    /api/users/{user}/rules           each rule with its window's current sum
+//   POST   /api/users/{user}/rules           {"rule": "workouts < 1 over 3 days"}   (see RuleEngine)
+//   DELETE /api/users/{user}/rules/{id}
+//   GET    /api/stats
+//   GET    /api/metrics                      per-endpoint latency histograms (JSON)
+//
+// Responses to entry changes carry an "alerts" array of the rules they fired or cleared. "date" defaults to today; "weekdays" is a Monday = 1 ... Sunday = 64 bit mask, as in PlanStore.
+public class FitlifeServer {
+
+    // One user's state; entries and plans have separate locks, and users never share one
+    private static final class UserState {
+        final TrackerCore core;
+        final PlanStore plans = new PlanStore();
+
+        UserState(TrackerCore core) {
+            this.core = core;
+        }
+    }
+
+    private final FoodCatalog foodCatalog;
+    private final EnergyEngine energy;
+    private final Map<String, UserState> users = new ConcurrentHashMap<>();
+
+    // Server-wide counters, bumped by every handler thread, so they are striped rather than one contended field
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder foodEntries = new LongAdder();
+    private final LongAdder workoutEntries = new LongAdder();
+    private final LongAdder totalCalories = new LongAdder();
+    private final LongAdder totalWorkoutMinutes = new LongAdder();
+    private final LongAdder totalCaloriesBurned = new LongAdder();
+
+    private final Metrics metrics = new Metrics();  // One latency histogram per endpoint
+
+    private HttpServer server;
+    private ExecutorService handlers;
+
+    public FitlifeServer(FoodCatalog foodCatalog, EnergyEngine energy) {
+        this.foodCatalog = foodCatalog;
+        this.energy = energy;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+        FitlifeServer server = new FitlifeServer(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        server.start(port, threads);
+        System.out.println("Fitlife API listening on http://localhost:" + server.port() + "/api/");
+    }
+
+    // Requests are short and never block on each other, so a fixed pool of about two threads per core keeps up
+    public void start(int port, int threads) throws IOException {
+        // Small JSON replies otherwise sit behind Nagle's algorithm waiting for a delayed ACK (~40 ms each);
+        // the JDK server reads this once, so it has to be set before the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        handlers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "http-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdown();
+    }
+
+    private UserState user(String name) {
+        return users.computeIfAbsent(name, n -> new UserState(new TrackerCore(foodCatalog, energy)));
+    }
+
+    // ---- Routing ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        long started = System.nanoTime();
+        String endpoint = endpoint(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath());
+        FitlifeEvents.Action event = new FitlifeEvents.Action(endpoint);
+        event.begin();
+        int status;
+        String body;
+        try {
+            Response response = route(exchange.getRequestMethod(), exchange.getRequestURI(), exchange.getRequestBody());
+            status = response.status;
+            body = response.body;
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            status = 400;
+            body = error(ex.getMessage());
+        } catch (RuntimeException ex) {
+            status = 500;
+            body = error("Internal error");
+            System.err.println("Request failed: " + ex);
+        }
+        if (status >= 400) {
+            failures.increment();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");  // WebApp.html may be opened from a file
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        metrics.record(endpoint, System.nanoTime() - started);
+        event.commit();
+    }
+
+    // Histogram name for a request, e.g. "POST /users/{user}/foods"; unknown paths share one name so
+    // clients cannot create unbounded numbers of histograms
+    private static String endpoint(String method, String rawPath) {
+        String[] path = rawPath.startsWith("/api/") ? rawPath.substring("/api/".length()).split("/") : new String[0];
+        if (path.length == 1 && (path[0].equals("stats") || path[0].equals("metrics"))) {
+            return method + " /" + path[0];
+        }
+        if (path.length >= 3 && path[0].equals("users")) {
+            switch (path[2]) {
+                case "foods":
+                case "workouts":
+                case "entries":
+                case "summary":
+                case "plans":
+                case "rules":
+                    if (path.length == 4 && (path[3].equals("undo") || path[3].equals("redo"))) {
+                        return method + " /users/{user}/" + path[2] + "/" + path[3];
+                    }
+                    return method + " /users/{user}/" + path[2] + (path.length == 4 ? "/{id}" : "")
+                            + (path.length == 5 ? "/{id}/" + path[4] : "");
+                default:
+                    break;
+            }
+        }
+        return "other";
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Response route(String method, URI uri, InputStream requestBody) throws IOException {
+        String[] path = uri.getRawPath().substring("/api/".length()).split("/");
+        Map<String, String> query = query(uri.getRawQuery());
+        if (path.length == 1 && path[0].equals("stats") && method.equals("GET")) {
+            return new Response(200, stats());
+        }
+        if (path.length == 1 && path[0].equals("metrics") && method.equals("GET")) {
+            return new Response(200, metrics.toJson());
+        }
+        if (path.length < 3 || !path[0].equals("users") || path[1].isEmpty()) {
+            return new Response(404, error("No such endpoint"));
+        }
+        UserState user = user(URLDecoder.decode(path[1], StandardCharsets.UTF_8));
+        String resource = path[2];
+        if (path.length == 3) {
+            switch (method + " " + resource) {
+                case "POST foods":
+                    return addFood(user, body(requestBody));
+                case "POST workouts":
+                    return addWorkout(user, body(requestBody));
+                case "GET summary":
+                    return summary(user, day(query.get("date")));
+                case "GET plans":
+                    return listPlans(user, query);
+                case "POST plans":
+                    return addPlan(user, body(requestBody));
+                case "GET rules":
+                    return listRules(user);
+                case "POST rules":
+                    return addRule(user, body(requestBody));
+                default:
+                    break;
+            }
+        } else if (path.length == 4 && method.equals("POST") && (path[3].equals("undo") || path[3].equals("redo"))) {
+            boolean undo = path[3].equals("undo");
+            if (resource.equals("entries")) {
+                return undoEntry(user, undo);
+            }
+            if (resource.equals("plans")) {
+                return undoPlan(user, undo);
+            }
+        } else if (path.length == 4 && resource.equals("entries")) {
+            int row = Integer.parseInt(path[3]);
+            if (method.equals("PUT")) {
+                return editEntry(user, row, body(requestBody));
+            }
+            if (method.equals("DELETE")) {
+                return deleteEntry(user, row);
+            }
+        } else if (path.length == 4 && resource.equals("plans")) {
+            int id = Integer.parseInt(path[3]);
+            if (method.equals("PUT")) {
+                return updatePlan(user, id, body(requestBody));
+            }
+            if (method.equals("DELETE")) {
+                return removePlan(user, id);
+            }
+        } else if (path.length == 4 && resource.equals("rules") && method.equals("DELETE")) {
+            return removeRule(user, Integer.parseInt(path[3]));
+        } else if (path.length == 5 && resource.equals("workouts")) {
+            int row = Integer.parseInt(path[3]);
+            if (method.equals("PUT") && path[4].equals("samples")) {
+                return attachSamples(user, row, requestBody);
+            }
+            if (method.equals("GET") && path[4].equals("laps")) {
+                return laps(user, row, query);
+            }
+        }
+        return new Response(404, error("No such endpoint"));
+    }
+
+    // ---- Entries ----
+
+    private Response addFood(UserState user, Map<String, String> request) {
+        String food = required(request, "food");
+        int meal = TrackerCore.mealCode(request.getOrDefault("meal", "Morning"));
+        int day = day(request.get("date"));
+        int row;
+        TrackerCore.Entry entry;
+        String alerts;
+        synchronized (user.core) {
+            row = user.core.addFood(day, food, meal);
+            if (row == -1) {
+                return new Response(404, error("Unknown food or meal"));
+            }
+            entry = user.core.entry(row);
+            alerts = alerts(user);
+        }
+        count(entry, 1);
+        return new Response(201, new Json.ObjectWriter().field("row", row).field("food", entry.name)
+                .field("calories", entry.calories).field("date", LocalDate.ofEpochDay(day).toString()).raw("alerts", alerts).toString());
+    }
+
+    private Response addWorkout(UserState user, Map<String, String> request) {
+        String activity = required(request, "activity");
+        String minutesText = required(request, "minutes");
+        int day = day(request.get("date"));
+        int row;
+        TrackerCore.Entry entry;
+        String alerts;
+        synchronized (user.core) {
+            row = user.core.addWorkout(day, activity, minutesText);
+            if (row == -1) {
+                return new Response(400, error("Invalid workout"));
+            }
+            entry = user.core.entry(row);
+            alerts = alerts(user);
+        }
+        count(entry, 1);
+        return new Response(201, new Json.ObjectWriter().field("row", row).field("activity", activity)
+                .field("minutes", entry.minutes).field("caloriesBurned", entry.calories)
+                .field("date", LocalDate.ofEpochDay(day).toString()).raw("alerts", alerts).toString());
+    }
+
+    // Food rows take "food" and optionally "meal", workout rows "activity" and "minutes"; the date stays
+    private Response editEntry(UserState user, int row, Map<String, String> request) {
+        TrackerCore.Entry old;
+        TrackerCore.Entry entry;
+        String alerts;
+        synchronized (user.core) {
+            old = user.core.entry(row);
+            if (old == null) {
+                return new Response(404, error("No such entry"));
+            }
+            boolean edited = old.isWorkout()
+                    ? user.core.editWorkout(row, request.getOrDefault("activity", old.name), request.getOrDefault("minutes", String.valueOf(old.minutes)))
+                    : user.core.editFood(row, required(request, "food"), TrackerCore.mealCode(request.getOrDefault("meal", TrackerCore.mealName(old.code))));
+            if (!edited) {
+                return new Response(400, error(old.isWorkout() ? "Invalid workout" : "Unknown food or meal"));
+            }
+            entry = user.core.entry(row);
+            alerts = alerts(user);
+        }
+        count(old, -1);
+        count(entry, 1);
+        return new Response(200, entry(row, entry).raw("alerts", alerts).toString());
+    }
+
+    private Response deleteEntry(UserState user, int row) {
+        TrackerCore.Entry entry;
+        String alerts;
+        synchronized (user.core) {
+            entry = user.core.entry(row);
+            if (entry == null || !user.core.delete(row)) {
+                return new Response(404, error("No such entry"));
+            }
+            alerts = alerts(user);
+        }
+        count(entry, -1);
+        return new Response(200, entry(row, entry).raw("alerts", alerts).toString());
+    }
+
+    // The change that was undone or redone, with the row's values before and after it (absent when deleted)
+    private Response undoEntry(UserState user, boolean undo) {
+        TrackerCore.Edit edit;
+        String alerts;
+        synchronized (user.core) {
+            edit = undo ? user.core.undo() : user.core.redo();
+            alerts = alerts(user);
+        }
+        if (edit == null) {
+            return new Response(409, error(undo ? "Nothing to undo" : "Nothing to redo"));
+        }
+        count(undo ? edit.after : edit.before, -1);  // Undo takes the row from after back to before
+        count(undo ? edit.before : edit.after, 1);
+        Json.ObjectWriter json = new Json.ObjectWriter().field("row", edit.row).field("change", edit.describe());
+        if (edit.before != null) {
+            json.raw("before", entry(edit.row, edit.before).toString());
+        }
+        if (edit.after != null) {
+            json.raw("after", entry(edit.row, edit.after).toString());
+        }
+        return new Response(200, json.raw("alerts", alerts).toString());
+    }
+
+    // Move the server-wide totals by an entry's values: sign 1 when it starts counting, -1 when it stops.
+    // Every add, edit, delete, undo and redo goes through here, so /stats agrees with the users' summaries.
+    private void count(TrackerCore.Entry entry, int sign) {
+        if (entry == null) {
+            return;  // A deleted row, or one that did not exist yet
+        }
+        if (entry.isWorkout()) {
+            workoutEntries.add(sign);
+            totalWorkoutMinutes.add((long) sign * entry.minutes);
+            totalCaloriesBurned.add((long) sign * entry.calories);
+        } else {
+            foodEntries.add(sign);
+            totalCalories.add((long) sign * entry.calories);
+        }
+    }
+
+    private static Json.ObjectWriter entry(int row, TrackerCore.Entry entry) {
+        Json.ObjectWriter json = new Json.ObjectWriter().field("row", row).field("date", LocalDate.ofEpochDay(entry.epochDay).toString());
+        if (entry.isWorkout()) {
+            return json.field("activity", entry.name).field("minutes", entry.minutes).field("caloriesBurned", entry.calories);
+        }
+        return json.field("food", entry.name).field("meal", TrackerCore.mealName(entry.code)).field("calories", entry.calories);
+    }
+
+    // The rules fired or cleared since the last call, oldest first, as a JSON array; the windows move on
+    // to today first, so a streak broken by the days in between shows up too. Call with user.core held.
+    private static String alerts(UserState user) {
+        RuleEngine rules = user.core.rules();
+        rules.advanceTo((int) LocalDate.now().toEpochDay());
+        StringBuilder array = new StringBuilder("[");
+        for (RuleEngine.Alert alert : rules.drainAlerts()) {
+            appendItem(array, new Json.ObjectWriter().field("rule", alert.rule.id).field("fired", alert.fired)
+                    .field("value", alert.value).field("date", LocalDate.ofEpochDay(alert.epochDay).toString())
+                    .field("message", alert.describe()).toString());
+        }
+        return array.append(']').toString();
+    }
+
+    // Replace a workout's recording with the samples of a CSV body (see SensorStore.readCsv)
+    private Response attachSamples(UserState user, int row, InputStream requestBody) {
+        SensorStore.Recording recording;
+        try {
+            recording = SensorStore.readCsv(new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8)));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+        long samples;
+        long compressedBytes;
+        synchronized (user.core) {
+            if (!isWorkout(user, row)) {
+                return new Response(404, error("No such workout"));
+            }
+            samples = user.core.sensors().attach(row, recording);
+            compressedBytes = 0;
+            for (int stream = 0; stream < SensorStore.STREAMS.length; stream++) {
+                SensorSeries series = user.core.sensors().series(row, stream);
+                compressedBytes += series == null ? 0 : series.compressedBytes();
+            }
+        }
+        return new Response(200, new Json.ObjectWriter().field("row", row).field("samples", samples)
+                .field("compressedBytes", compressedBytes).toString());
+    }
+
+    // Aggregates of one stream: consecutive laps of "lap" seconds over [from, to), or the range as one lap
+    private Response laps(UserState user, int row, Map<String, String> query) {
+        int stream = SensorStore.streamCode(required(query, "stream"));
+        if (stream == -1) {
+            throw new IllegalArgumentException("\"stream\" is one of " + String.join(", ", SensorStore.STREAMS));
+        }
+        SensorSeries.Aggregate[] laps;
+        synchronized (user.core) {
+            SensorSeries series = isWorkout(user, row) ? user.core.sensors().series(row, stream) : null;
+            if (series == null) {
+                return new Response(404, error("No " + SensorStore.STREAMS[stream] + " recorded for this workout"));
+            }
+            long from = query.containsKey("from") ? Math.round(Double.parseDouble(query.get("from")) * 1000) : series.firstTime();
+            long to = query.containsKey("to") ? Math.round(Double.parseDouble(query.get("to")) * 1000) : series.lastTime() + 1;
+            long lap = query.containsKey("lap") ? Math.round(Double.parseDouble(query.get("lap")) * 1000) : to - from;
+            if (lap <= 0 || to <= from) {
+                throw new IllegalArgumentException("Laps need a positive length and from < to");
+            }
+            laps = series.laps(from, lap, (int) Math.min((to - from + lap - 1) / lap, 100_000));
+        }
+        StringBuilder array = new StringBuilder("[");
+        for (SensorSeries.Aggregate lap : laps) {
+            Json.ObjectWriter item = new Json.ObjectWriter().field("from", lap.from / 1000.0).field("to", lap.to / 1000.0)
+                    .field("count", lap.count);
+            if (lap.count > 0) {
+                item.field("min", lap.min).field("max", lap.max).field("mean", lap.mean());
+            }
+            appendItem(array, item.toString());
+        }
+        return new Response(200, new Json.ObjectWriter().field("row", row).field("stream", SensorStore.STREAMS[stream])
+                .raw("laps", array.append(']').toString()).toString());
+    }
+
+    private static boolean isWorkout(UserState user, int row) {
+        TrackerCore.Entry entry = user.core.entry(row);
+        return entry != null && entry.isWorkout();
+    }
+
+    private Response summary(UserState user, int day) {
+        TrackerCore.Summary summary;
+        long dayIntake;
+        long dayBurned;
+        synchronized (user.core) {
+            summary = user.core.summary(LocalDate.ofEpochDay(day));
+            dayIntake = user.core.dailyTotals().day(RangeAggregator.INTAKE, day);
+            dayBurned = user.core.dailyTotals().day(RangeAggregator.BURNED, day);
+        }
+        return new Response(200, new Json.ObjectWriter()
+                .field("date", LocalDate.ofEpochDay(day).toString())
+                .field("totalCalories", summary.totalCalories)
+                .field("totalWorkoutMinutes", summary.totalWorkoutMinutes)
+                .field("totalCaloriesBurned", summary.totalCaloriesBurned)
+                .field("dayIntake", dayIntake)
+                .field("dayBurned", dayBurned)
+                .field("weekIntake", summary.weekIntake)
+                .field("weekBurned", summary.weekBurned)
+                .field("weekNet", summary.weekNet()).toString());
+    }
+
+    // ---- Rules ----
+
+    private Response listRules(UserState user) {
+        StringBuilder array = new StringBuilder("[");
+        synchronized (user.core) {
+            RuleEngine rules = user.core.rules();
+            rules.advanceTo((int) LocalDate.now().toEpochDay());
+            for (RuleEngine.Rule rule : rules.rules()) {
+                appendItem(array, rule(rule, rules.value(rule)));
+            }
+        }
+        return new Response(200, new Json.ObjectWriter().raw("rules", array.append(']').toString()).toString());
+    }
+
+    // Alerts start from the rule's state when it is added: a rule that already holds does not fire
+    private Response addRule(UserState user, Map<String, String> request) {
+        String text = required(request, "rule");
+        String json;
+        synchronized (user.core) {
+            RuleEngine rules = user.core.rules();
+            rules.advanceTo((int) LocalDate.now().toEpochDay());
+            RuleEngine.Rule rule = rules.add(text);
+            json = rule(rule, rules.value(rule));
+        }
+        return new Response(201, json);
+    }
+
+    private Response removeRule(UserState user, int id) {
+        String json;
+        synchronized (user.core) {
+            RuleEngine rules = user.core.rules();
+            RuleEngine.Rule rule = rules.rule(id);
+            if (rule == null) {
+                return new Response(404, error("No such rule"));
+            }
+            json = rule(rule, rules.value(rule));
+            rules.remove(id);
+        }
+        return new Response(200, json);
+    }
+
+    private static String rule(RuleEngine.Rule rule, long value) {
+        return new Json.ObjectWriter().field("id", rule.id).field("rule", rule.describe())
+                .field("value", value).field("holds", rule.holds(value)).toString();
+    }
+
+    // ---- Plans ----
+
+    // A search (best match first) when there is a "q", else the plans on "date", else every plan
+    private Response listPlans(UserState user, Map<String, String> query) {
+        String date = query.get("date");
+        String search = query.get("q");
+        StringBuilder array = new StringBuilder("[");
+        synchronized (user.plans) {
+            if (search != null) {
+                int limit = Integer.parseInt(query.getOrDefault("limit", "50"));
+                for (PlanStore.Plan plan : user.plans.search(search, limit)) {
+                    appendItem(array, plan(plan));
+                }
+            } else if (date == null) {
+                for (PlanStore.Plan plan : user.plans.all()) {
+                    appendItem(array, plan(plan));
+                }
+            } else {
+                List<PlanStore.Occurrence> occurrences = user.plans.on(day(date));
+                for (PlanStore.Occurrence occurrence : occurrences) {
+                    appendItem(array, plan(occurrence.plan));
+                }
+            }
+        }
+        return new Response(200, new Json.ObjectWriter().raw("plans", array.append(']').toString()).toString());
+    }
+
+    private Response addPlan(UserState user, Map<String, String> request) {
+        String description = required(request, "description");
+        String date = request.get("date");
+        int weekdays = Integer.parseInt(request.getOrDefault("weekdays", "0"));
+        PlanStore.Plan plan;
+        synchronized (user.plans) {
+            if (date == null) {
+                plan = user.plans.addUndated(description);
+            } else if (weekdays != 0) {
+                plan = user.plans.addRecurring(description, day(date), weekdays, Integer.parseInt(request.getOrDefault("weeks", "12")));
+            } else {
+                plan = user.plans.addOnDay(description, day(date));
+            }
+        }
+        return new Response(201, plan(plan));
+    }
+
+    private Response updatePlan(UserState user, int id, Map<String, String> request) {
+        PlanStore.Plan plan;
+        synchronized (user.plans) {
+            plan = user.plans.updateDescription(id, required(request, "description"));
+        }
+        return plan == null ? new Response(404, error("No such plan")) : new Response(200, plan(plan));
+    }
+
+    private Response removePlan(UserState user, int id) {
+        PlanStore.Plan plan;
+        synchronized (user.plans) {
+            plan = user.plans.remove(id);
+        }
+        return plan == null ? new Response(404, error("No such plan")) : new Response(200, plan(plan));
+    }
+
+    private Response undoPlan(UserState user, boolean undo) {
+        PlanStore.Edit edit;
+        synchronized (user.plans) {
+            edit = undo ? user.plans.undo() : user.plans.redo();
+        }
+        if (edit == null) {
+            return new Response(409, error(undo ? "Nothing to undo" : "Nothing to redo"));
+        }
+        Json.ObjectWriter json = new Json.ObjectWriter().field("change", edit.describe());
+        if (edit.before != null) {
+            json.raw("before", plan(edit.before));
+        }
+        if (edit.after != null) {
+            json.raw("after", plan(edit.after));
+        }
+        return new Response(200, json.toString());
+    }
+
+    private static String plan(PlanStore.Plan plan) {
+        Json.ObjectWriter json = new Json.ObjectWriter().field("id", plan.id).field("description", plan.description);
+        if (plan.startDay != PlanStore.NO_DATE) {
+            json.field("date", LocalDate.ofEpochDay(plan.startDay).toString());
+        }
+        if (plan.isRecurring()) {
+            json.field("until", LocalDate.ofEpochDay(plan.endDay).toString()).field("weekdays", plan.weekdayMask);
+        }
+        return json.field("text", plan.describe()).toString();
+    }
+
+    // ---- Helpers ----
+
+    private String stats() {
+        return new Json.ObjectWriter()
+                .field("users", users.size())
+                .field("requests", requests.sum())
+                .field("failures", failures.sum())
+                .field("foodEntries", foodEntries.sum())
+                .field("workoutEntries", workoutEntries.sum())
+                .field("totalCalories", totalCalories.sum())
+                .field("totalWorkoutMinutes", totalWorkoutMinutes.sum())
+                .field("totalCaloriesBurned", totalCaloriesBurned.sum()).toString();
+    }
+
+    private static void appendItem(StringBuilder array, String json) {
+        if (array.length() > 1) {
+            array.append(',');
+        }
+        array.append(json);
+    }
+
+    private static Map<String, String> body(InputStream in) throws IOException {
+        return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static String required(Map<String, String> request, String field) {
+        String value = request.get(field);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing \"" + field + "\"");
+        }
+        return value;
+    }
+
+    // Dates from 1970 up to a year ahead; anything else is a typo or an attempt to make the totals huge
+    private static int day(String date) {
+        LocalDate today = LocalDate.now();
+        if (date == null) {
+            return (int) today.toEpochDay();
+        }
+        LocalDate parsed = LocalDate.parse(date);
+        if (parsed.isBefore(LocalDate.EPOCH) || parsed.isAfter(today.plusYears(1))) {
+            throw new IllegalArgumentException("Dates must be between 1970-01-01 and " + today.plusYears(1));
+        }
+        return (int) parsed.toEpochDay();
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String error(String message) {
+        return new Json.ObjectWriter().field("error", message == null ? "Bad request" : message).toString();
+    }
+}
@@ -0,0 +1,531 @@
+package fitlife;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Food catalog kept in sorted primitive columns so lookups are binary searches instead of a switch
+public class FoodCatalog {
+
+    private static final int MAX_TYPO_EDITS = 2;  // Largest spelling mistake the fuzzy lookup forgives
+    private static final int GRAM = 3;            // Letters per trigram in the typo index
+    private static final char PAD = '\0';         // Marks the start and end of a name in its trigrams
+
+    private final String[] names;          // Lower-case food names, sorted so prefixes form a contiguous range
+    private final short[] servingIds;      // Index into servingNames for each food
+    private final String[] servingNames;   // Distinct serving descriptions ("1 medium", "100 g", ...)
+    private final int[] kcal;              // Calories per serving
+    private final float[] protein;         // Grams of protein per serving
+    private final float[] carbs;           // Grams of carbohydrate per serving
+    private final float[] fat;             // Grams of fat per serving
+    private final byte[] lengths;          // Name lengths, so the fuzzy scan never touches the strings
+    private final int[] letterMasks;       // One bit per letter present in the name, for cheap typo filtering
+
+    // Trigram index for typo lookups: the names containing gram g are postings[offsets[p] .. offsets[p + 1])
+    // where gramKeys[p] == g, in ascending order. An edit changes at most GRAM of a word's trigrams, so a
+    // name within k edits of the key contains all but k * GRAM of the key's distinct trigrams, and so at
+    // least one of any k * GRAM + 1 of them. Reading only the rarest k * GRAM + 1 postings finds every
+    // candidate; common trigrams ("ed ", "the") are never read.
+    private final long[] gramKeys;         // Distinct trigrams of all names, sorted
+    private final int[] offsets;           // Start of each trigram's postings, plus one past the end
+    private final int[] postings;          // Name indexes
+
+    // Keys too short for the trigram bound (up to 5 letters) can only match names a couple of letters longer
+    // or shorter, so those are looked up by length instead of scanning the catalog
+    private final int[] byLength;          // Name indexes ordered by length, catalog order within a length
+    private final int[] lengthStarts;      // Names of length n are byLength[lengthStarts[n] .. lengthStarts[n + 1])
+
+    // Scratch rows for the edit-distance check, reused so fuzzy lookups do not allocate per candidate
+    private final int[] previousRow = new int[64];
+    private final int[] currentRow = new int[64];
+    private final boolean[] seen;          // Names already taken as candidates, all false between lookups
+    private final int[] touched;           // The candidates, in the order they were found
+
+    private FoodCatalog(String[] names, short[] servingIds, String[] servingNames,
+                        int[] kcal, float[] protein, float[] carbs, float[] fat) {
+        this.names = names;
+        this.servingIds = servingIds;
+        this.servingNames = servingNames;
+        this.kcal = kcal;
+        this.protein = protein;
+        this.carbs = carbs;
+        this.fat = fat;
+        this.lengths = new byte[names.length];
+        this.letterMasks = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            lengths[i] = (byte) Math.min(names[i].length(), Byte.MAX_VALUE);
+            letterMasks[i] = letterMask(names[i]);
+        }
+
+        // Collect every distinct trigram, then count and fill the postings in two passes over the names
+        long[][] gramsOf = new long[names.length][];
+        int total = 0;
+        for (int i = 0; i < names.length; i++) {
+            gramsOf[i] = grams(names[i]);
+            total += gramsOf[i].length;
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (long[] grams : gramsOf) {
+            System.arraycopy(grams, 0, all, at, grams.length);
+            at += grams.length;
+        }
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        gramKeys = Arrays.copyOf(all, distinct);
+        int[] positions = new int[total];  // Each name's trigrams as indexes into gramKeys, name after name
+        offsets = new int[distinct + 1];
+        at = 0;
+        for (long[] grams : gramsOf) {
+            for (long gram : grams) {
+                positions[at] = Arrays.binarySearch(gramKeys, gram);
+                offsets[positions[at++] + 1]++;
+            }
+        }
+        for (int p = 0; p < distinct; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        postings = new int[total];
+        int[] next = Arrays.copyOf(offsets, distinct);
+        at = 0;
+        for (int i = 0; i < names.length; i++) {
+            for (int g = 0; g < gramsOf[i].length; g++) {
+                postings[next[positions[at++]]++] = i;
+            }
+        }
+        seen = new boolean[names.length];
+        touched = new int[names.length];
+
+        lengthStarts = new int[Byte.MAX_VALUE + 2];
+        for (byte length : lengths) {
+            lengthStarts[length + 1]++;
+        }
+        for (int n = 0; n <= Byte.MAX_VALUE; n++) {
+            lengthStarts[n + 1] += lengthStarts[n];
+        }
+        byLength = new int[names.length];
+        int[] nextOfLength = Arrays.copyOf(lengthStarts, Byte.MAX_VALUE + 1);
+        for (int i = 0; i < names.length; i++) {
+            byLength[nextOfLength[lengths[i]]++] = i;
+        }
+    }
+
+    // Load the catalog from foods.csv in the working directory if present, otherwise the bundled one
+    public static FoodCatalog loadDefault() {
+        try {
+            Path userCatalog = Path.of("foods.csv");
+            if (Files.isReadable(userCatalog)) {
+                return load(userCatalog);
+            }
+            InputStream bundled = FoodCatalog.class.getResourceAsStream("foods.csv");
+            if (bundled == null) {
+                return new Builder().build();
+            }
+            try (Reader reader = new InputStreamReader(bundled, StandardCharsets.UTF_8)) {
+                return read(reader);
+            }
+        } catch (IOException ex) {
+            return new Builder().build();  // An empty catalog keeps the app usable
+        }
+    }
+
+    // Load a catalog file with lines of: name,serving,kcal,protein,carbs,fat
+    public static FoodCatalog load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    private static FoodCatalog read(Reader source) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader reader = new BufferedReader(source, 1 << 16);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;  // Skip blank lines and comments
+            }
+            String[] parts = line.split(",");
+            if (parts.length < 3) {
+                continue;
+            }
+            try {
+                builder.add(parts[0], parts[1], Integer.parseInt(parts[2].trim()),
+                        parts.length > 3 ? Float.parseFloat(parts[3].trim()) : 0f,
+                        parts.length > 4 ? Float.parseFloat(parts[4].trim()) : 0f,
+                        parts.length > 5 ? Float.parseFloat(parts[5].trim()) : 0f);
+            } catch (NumberFormatException ex) {
+                // Ignore malformed rows rather than rejecting the whole catalog
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Exact lookup, returns the food index or -1 when the name is not in the catalog
+    public int indexOf(String food) {
+        int index = Arrays.binarySearch(names, normalize(food));
+        return index >= 0 ? index : -1;
+    }
+
+    // Exact lookup first, then the closest name within a couple of typos, or -1
+    public int resolve(String food) {
+        String key = normalize(food);
+        int index = Arrays.binarySearch(names, key);
+        if (index >= 0) {
+            return index;
+        }
+        int[] best = new int[1];
+        return fuzzy(key, best, 1) == 1 ? best[0] : -1;
+    }
+
+    // Fill out with the indexes of names starting with prefix, returns how many were written
+    public int prefix(String prefix, int[] out, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return 0;
+        }
+        int low = Arrays.binarySearch(names, key);
+        if (low < 0) {
+            low = -low - 1;  // Insertion point is the first name >= prefix
+        }
+        int count = 0;
+        int max = Math.min(limit, out.length);
+        for (int i = low; i < names.length && count < max && names[i].startsWith(key); i++) {
+            out[count++] = i;
+        }
+        return count;
+    }
+
+    // Autocomplete suggestions: prefix matches, falling back to typo-tolerant matches
+    public int suggest(String text, int[] out, int limit) {
+        int count = prefix(text, out, limit);
+        if (count > 0) {
+            return count;
+        }
+        String key = normalize(text);
+        return key.length() < 3 ? 0 : fuzzy(key, out, limit);
+    }
+
+    // Closest names within MAX_TYPO_EDITS, best first (ties in catalog order). Only names found in the key's
+    // rarest trigram postings are checked, so the cost follows those postings, not the catalog size; keys
+    // too short for the trigram bound to rule anything out check the names of a length within reach.
+    public synchronized int fuzzy(String key, int[] out, int limit) {
+        int max = Math.min(limit, out.length);
+        if (max == 0 || key.isEmpty() || key.length() >= previousRow.length) {
+            return 0;
+        }
+        int allowed = allowedEdits(key);
+        long[] keyGrams = grams(key);
+        int read = allowed * GRAM + 1;  // Postings that must be read to find every candidate
+        int candidates = read >= keyGrams.length
+                ? lengthCandidates(key.length(), allowed)
+                : gramCandidates(keyGrams, read, key.length(), allowed);
+        Arrays.sort(touched, 0, candidates);  // Catalog order, as the scan visits them
+        Matches matches = new Matches(out, max);
+        int keyMask = letterMask(key);
+        for (int c = 0; c < candidates; c++) {
+            check(key, keyMask, allowed, touched[c], matches);
+        }
+        return matches.count;
+    }
+
+    // Every name whose length is within allowed of the key's, into touched; returns how many
+    private int lengthCandidates(int keyLength, int allowed) {
+        int from = lengthStarts[Math.max(0, keyLength - allowed)];
+        int to = lengthStarts[Math.min(Byte.MAX_VALUE, keyLength + allowed) + 1];
+        System.arraycopy(byLength, from, touched, 0, to - from);
+        return to - from;
+    }
+
+    // The names in the rarest read postings of the key's trigrams, into touched; returns how many
+    private int gramCandidates(long[] keyGrams, int read, int keyLength, int allowed) {
+        // Posting list sizes of the key's trigrams (a trigram no name has counts as an empty list), rarest first
+        long[] bySize = new long[keyGrams.length];
+        for (int g = 0; g < keyGrams.length; g++) {
+            int p = Arrays.binarySearch(gramKeys, keyGrams[g]);
+            bySize[g] = p < 0 ? -1 : (long) (offsets[p + 1] - offsets[p]) << 32 | p;
+        }
+        Arrays.sort(bySize);
+        int candidates = 0;
+        for (int g = 0; g < read; g++) {
+            if (bySize[g] < 0) {
+                continue;
+            }
+            int p = (int) bySize[g];
+            for (int j = offsets[p]; j < offsets[p + 1]; j++) {
+                int i = postings[j];
+                if (!seen[i] && Math.abs(lengths[i] - keyLength) <= allowed) {
+                    seen[i] = true;
+                    touched[candidates++] = i;
+                }
+            }
+        }
+        for (int c = 0; c < candidates; c++) {
+            seen[touched[c]] = false;
+        }
+        return candidates;
+    }
+
+    // The same lookup by checking every name; the baseline in tests and benchmarks
+    synchronized int fuzzyScan(String key, int[] out, int limit) {
+        int max = Math.min(limit, out.length);
+        if (max == 0 || key.isEmpty() || key.length() >= previousRow.length) {
+            return 0;
+        }
+        int allowed = allowedEdits(key);
+        Matches matches = new Matches(out, max);
+        int keyMask = letterMask(key);
+        for (int i = 0; i < names.length; i++) {
+            check(key, keyMask, allowed, i, matches);
+        }
+        return matches.count;
+    }
+
+    private static int allowedEdits(String key) {
+        return key.length() <= 4 ? 1 : MAX_TYPO_EDITS;  // Short words get less slack
+    }
+
+    // The small result list of a fuzzy lookup, ordered by distance
+    private static final class Matches {
+        final int[] out;
+        final int[] distances;
+        final int max;
+        int count;
+
+        Matches(int[] out, int max) {
+            this.out = out;
+            this.distances = new int[max];
+            this.max = max;
+        }
+
+        void add(int index, int distance) {
+            int position = count < max ? count++ : max;
+            while (position > 0 && distances[position - 1] > distance) {
+                if (position < max) {
+                    distances[position] = distances[position - 1];
+                    out[position] = out[position - 1];
+                }
+                position--;
+            }
+            if (position < max) {
+                distances[position] = distance;
+                out[position] = index;
+            }
+        }
+    }
+
+    private void check(String key, int keyMask, int allowed, int i, Matches matches) {
+        if (Math.abs(lengths[i] - key.length()) > allowed) {
+            return;  // Length alone rules it out
+        }
+        // Each edit adds or removes at most one distinct letter, so compare letter sets first
+        int mask = letterMasks[i];
+        if (Integer.bitCount(keyMask & ~mask) > allowed || Integer.bitCount(mask & ~keyMask) > allowed) {
+            return;
+        }
+        String name = names[i];
+        if (name.length() >= previousRow.length) {
+            return;
+        }
+        int distance = editDistance(key, name, allowed);
+        if (distance <= allowed) {
+            matches.add(i, distance);
+        }
+    }
+
+    // Levenshtein distance that gives up as soon as every path exceeds the limit. Only cells within limit
+    // of the diagonal can stay under it, so each row fills just that band; the rest counts as limit + 1.
+    private int editDistance(String a, String b, int limit) {
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        int over = limit + 1;
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - limit);
+            int to = Math.min(b.length(), i + limit);
+            current[0] = Math.min(i, over);
+            if (from > 1) {
+                current[from - 1] = over;
+            }
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < b.length()) {
+                current[to + 1] = over;
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public String serving(int index) {
+        return servingNames[servingIds[index]];
+    }
+
+    public int calories(int index) {
+        return kcal[index];
+    }
+
+    public float protein(int index) {
+        return protein[index];
+    }
+
+    public float carbs(int index) {
+        return carbs[index];
+    }
+
+    public float fat(int index) {
+        return fat[index];
+    }
+
+    // Bit i is set when the i-th letter of the alphabet appears, bit 26 covers everything else
+    private static int letterMask(String text) {
+        int mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            mask |= c >= 'a' && c <= 'z' ? 1 << (c - 'a') : 1 << 26;
+        }
+        return mask;
+    }
+
+    // Distinct trigrams of the text padded with GRAM - 1 PADs at each end, sorted, three chars to a long
+    private static long[] grams(String text) {
+        int length = text.length() + GRAM - 1;
+        long[] grams = new long[length];
+        for (int start = 0; start < length; start++) {
+            long gram = 0;
+            for (int k = start - (GRAM - 1); k <= start; k++) {
+                gram = gram << 16 | (k < 0 || k >= text.length() ? PAD : text.charAt(k));
+            }
+            grams[start] = gram;
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);  // In a Turkish default locale "I" would become a dotless "ı"
+    }
+
+    // Collects rows into growable primitive arrays, then sorts them once into the final catalog
+    public static class Builder {
+        private String[] names = new String[1024];
+        private short[] servingIds = new short[1024];
+        private int[] kcal = new int[1024];
+        private float[] protein = new float[1024];
+        private float[] carbs = new float[1024];
+        private float[] fat = new float[1024];
+        private final Map<String, Short> servingLookup = new HashMap<>();
+        private String[] servingNames = new String[16];
+        private int size = 0;
+
+        public Builder add(String name, String serving, int calories, float proteinGrams, float carbGrams, float fatGrams) {
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                servingIds = Arrays.copyOf(servingIds, capacity);
+                kcal = Arrays.copyOf(kcal, capacity);
+                protein = Arrays.copyOf(protein, capacity);
+                carbs = Arrays.copyOf(carbs, capacity);
+                fat = Arrays.copyOf(fat, capacity);
+            }
+            names[size] = normalize(name);
+            servingIds[size] = servingId(serving.trim());
+            kcal[size] = calories;
+            protein[size] = proteinGrams;
+            carbs[size] = carbGrams;
+            fat[size] = fatGrams;
+            size++;
+            return this;
+        }
+
+        private short servingId(String serving) {
+            Short id = servingLookup.get(serving);
+            if (id != null) {
+                return id;
+            }
+            if (servingLookup.size() == Short.MAX_VALUE) {
+                return 0;  // Out of ids, fall back to the first serving description
+            }
+            short next = (short) servingLookup.size();
+            if (next == servingNames.length) {
+                servingNames = Arrays.copyOf(servingNames, next * 2);
+            }
+            servingNames[next] = serving;
+            servingLookup.put(serving, next);
+            return next;
+        }
+
+        public FoodCatalog build() {
+            // Sort row numbers by name, then copy the columns into that order
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+
+            int unique = 0;
+            String[] sortedNames = new String[size];
+            short[] sortedServings = new short[size];
+            int[] sortedKcal = new int[size];
+            float[] sortedProtein = new float[size];
+            float[] sortedCarbs = new float[size];
+            float[] sortedFat = new float[size];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                if (unique > 0 && sortedNames[unique - 1].equals(names[row])) {
+                    unique--;  // Duplicate name, the later row wins
+                }
+                sortedNames[unique] = names[row];
+                sortedServings[unique] = servingIds[row];
+                sortedKcal[unique] = kcal[row];
+                sortedProtein[unique] = protein[row];
+                sortedCarbs[unique] = carbs[row];
+                sortedFat[unique] = fat[row];
+                unique++;
+            }
+            return new FoodCatalog(Arrays.copyOf(sortedNames, unique), Arrays.copyOf(sortedServings, unique),
+                    Arrays.copyOf(servingNames, Math.max(1, servingLookup.size())), Arrays.copyOf(sortedKcal, unique),
+                    Arrays.copyOf(sortedProtein, unique), Arrays.copyOf(sortedCarbs, unique), Arrays.copyOf(sortedFat, unique));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package fitlife;
+
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.util.Callback;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+// The row numbers shown in one history view; the entries themselves stay in the EntryStore columns
+public class HistoryRows extends ObservableListBase<Integer> {
+
+    private int[] rows = new int[256];  // Store row numbers in display order
+    private int size = 0;
+
+    // Append rows, firing a single change however many there are
+    public void addRows(int[] newRows, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (size + count > rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + count));
+        }
+        System.arraycopy(newRows, 0, rows, size, count);
+        beginChange();
+        nextAdd(size, size + count);
+        size += count;
+        endChange();
+    }
+
+    // Replace every row, firing a single change
+    public void setRows(int[] newRows, int count) {
+        int previousSize = size;
+        rows = Arrays.copyOf(newRows, Math.max(256, count));
+        size = count;
+        if (previousSize == 0 && count == 0) {
+            return;
+        }
+        beginChange();
+        if (previousSize > 0) {
+            nextRemove(0, Collections.<Integer>nCopies(previousSize, null));  // Old rows are not needed by the views
+        }
+        if (count > 0) {
+            nextAdd(0, count);
+        }
+        endChange();
+    }
+
+    // Take a row out of the view, e.g. once it is deleted or moved to another meal
+    public void removeRow(int row) {
+        int index = Arrays.binarySearch(rows, 0, size, row);  // Rows are kept in store order
+        if (index < 0) {
+            return;
+        }
+        Integer removed = rows[index];
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        size--;
+        beginChange();
+        nextRemove(index, removed);
+        endChange();
+    }
+
+    // Put a row back at its place in store order, e.g. when a delete is undone
+    public void insertRow(int row) {
+        int index = Arrays.binarySearch(rows, 0, size, row);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        rows[index] = row;
+        size++;
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    // Redraw a row whose values were edited
+    public void updateRow(int row) {
+        int index = Arrays.binarySearch(rows, 0, size, row);
+        if (index >= 0) {
+            beginChange();
+            nextUpdate(index);
+            endChange();
+        }
+    }
+
+    public int row(int index) {
+        return rows[index];
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return rows[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Cells format their text from the store on demand and are recycled while scrolling
+    public static Callback<ListView<Integer>, ListCell<Integer>> cellFactory(EntryStore store) {
+        return view -> new ListCell<>() {
+            private int shownRow = -1;  // Skip re-formatting when a cell is refreshed with the same, unedited row
+            private int shownEdits = -1;
+
+            @Override
+            protected void updateItem(Integer row, boolean empty) {
+                super.updateItem(row, empty);
+                if (empty || row == null) {
+                    shownRow = -1;
+                    setText(null);
+                } else if (row != shownRow || store.edits() != shownEdits) {
+                    shownRow = row;
+                    shownEdits = store.edits();
+                    setText(store.describe(row));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,179 @@
+package fitlife;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Just enough JSON for the HTTP API: flat objects whose values are strings, numbers, booleans or null
+final class Json {
+
+    private Json() {
+    }
+
+    // Parse {"key": value, ...} into raw value strings; nested objects and arrays are rejected
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] at = {skipSpace(text, 0)};
+        expect(text, at, '{');
+        if (peek(text, at) == '}') {
+            at[0]++;
+            return fields;
+        }
+        while (true) {
+            String key = readString(text, at);
+            expect(text, at, ':');
+            String value = peek(text, at) == '"' ? readString(text, at) : readLiteral(text, at);
+            fields.put(key, value);
+            char next = peek(text, at);
+            at[0]++;
+            if (next == '}') {
+                return fields;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at " + (at[0] - 1));
+            }
+        }
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static char peek(String text, int[] at) {
+        at[0] = skipSpace(text, at[0]);
+        if (at[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(at[0]);
+    }
+
+    private static void expect(String text, int[] at, char c) {
+        if (peek(text, at) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + at[0]);
+        }
+        at[0]++;
+    }
+
+    private static String readString(String text, int[] at) {
+        expect(text, at, '"');
+        StringBuilder value = new StringBuilder();
+        int i = at[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                at[0] = i;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Bad \\u escape");
+                    }
+                    value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped);  // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static String readLiteral(String text, int[] at) {
+        int start = skipSpace(text, at[0]);
+        int i = start;
+        while (i < text.length() && ",}".indexOf(text.charAt(i)) < 0 && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        String literal = text.substring(start, i);
+        if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+            throw new IllegalArgumentException("Unsupported value at " + start);
+        }
+        at[0] = i;
+        return literal.equals("null") ? null : literal;
+    }
+
+    static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    // Builds one JSON object field by field
+    static final class ObjectWriter {
+        private final StringBuilder out = new StringBuilder("{");
+
+        private ObjectWriter name(String name) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append(quote(name)).append(':');
+            return this;
+        }
+
+        ObjectWriter field(String name, String value) {
+            name(name).out.append(value == null ? "null" : quote(value));
+            return this;
+        }
+
+        ObjectWriter field(String name, long value) {
+            name(name).out.append(value);
+            return this;
+        }
+
+        ObjectWriter field(String name, double value) {
+            name(name).out.append(value);
+            return this;
+        }
+
+        ObjectWriter field(String name, boolean value) {
+            name(name).out.append(value);
+            return this;
+        }
+
+        // Value that is already JSON, e.g. an array built by the caller
+        ObjectWriter raw(String name, String json) {
+            name(name).out.append(json);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return out + "}";
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fitlife;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the style of HdrHistogram: values below 128 ns get their own bucket, larger
+// values share 64 buckets per power of two, so any recorded value is reported within 1.6% of what it was.
+// Recording is a few atomic adds with no allocation, and any thread may record while another reads.
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;   // 128 exact buckets at the bottom
+    private static final int HALF = SUB_COUNT / 2;         // 64 buckets per power of two above that
+    private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) Math.max(0, value);
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;  // At least 1 here
+        return SUB_COUNT + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    // Largest value that lands in the bucket, which is what percentiles report
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / HALF + 1;
+        long sub = (bucket - SUB_COUNT) % HALF + HALF;
+        long highest = ((sub + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;  // The top bucket runs past Long.MAX_VALUE
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // Value at or below which the given fraction (0..1) of recordings fall; 0 when nothing was recorded
+    public long percentile(double fraction) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestInBucket(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,155 @@
+package fitlife;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives FitlifeServer with a mix of requests from many simulated users and reports throughput and latency.
+//
+//   java fitlife.LoadGenerator [base-url | embedded] [connections] [seconds] [users]
+//
+// "embedded" starts a server in this JVM on a free port, which is the quickest way to measure on one machine.
+// The mix is roughly what the web front end sends: mostly food entries, then workouts, summaries and plans.
+public class LoadGenerator {
+
+    private static final String[] FOODS = {"banana", "apple", "pizza", "soda", "oatmeal", "rice", "chicken breast", "salad"};
+    private static final String[] MEALS = {"Morning", "Lunch", "Dinner"};
+    private static final String[] ACTIVITIES = {"Running", "Cycling", "Swimming", "Walking", "Yoga"};
+    private static final int MAX_SAMPLES = 1 << 20;  // Latency samples kept per connection
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "embedded";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int users = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+
+        FitlifeServer embedded = null;
+        if (target.equals("embedded")) {
+            embedded = new FitlifeServer(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+            embedded.start(0, Runtime.getRuntime().availableProcessors() * 2);
+            target = "http://localhost:" + embedded.port();
+        }
+        String base = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long[][] samples = new long[connections][];
+        int[] sampleCounts = new int[connections];
+
+        // Warm up the server's and the client's code paths before measuring
+        runFor(client, base, Math.min(connections, 8), users, 2_000, new LongAdder(), new LongAdder(), null, null);
+
+        long started = System.nanoTime();
+        runFor(client, base, connections, users, seconds * 1000L, completed, failed, samples, sampleCounts);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        int total = 0;
+        for (int count : sampleCounts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(samples[c], 0, all, at, sampleCounts[c]);
+            at += sampleCounts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d requests in %.1f s over %d connections, %d users: %.0f req/s, %d failed%n",
+                completed.sum(), elapsed, connections, users, completed.sum() / elapsed, failed.sum());
+        System.out.printf("latency p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n",
+                micros(all, 0.50), micros(all, 0.90), micros(all, 0.99), micros(all, 0.999), micros(all, 1.0));
+        if (embedded != null) {
+            embedded.stop();
+        }
+    }
+
+    private static void runFor(HttpClient client, String base, int connections, int users, long millis,
+                               LongAdder completed, LongAdder failed, long[][] samples, int[] sampleCounts)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            threads[c] = new Thread(() -> {
+                long[] latencies = samples == null ? null : new long[MAX_SAMPLES];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = nextRequest(base, users);
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400 && response.statusCode() != 404) {
+                            failed.increment();
+                        }
+                    } catch (IOException ex) {
+                        failed.increment();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    completed.increment();
+                    if (latencies != null && count < latencies.length) {
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                }
+                if (samples != null) {
+                    samples[connection] = latencies;
+                    sampleCounts[connection] = count;
+                }
+            }, "load-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static HttpRequest nextRequest(String base, int users) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String user = base + "/api/users/user" + random.nextInt(users);
+        String date = LocalDate.now().minusDays(random.nextInt(30)).toString();
+        int pick = random.nextInt(100);
+        if (pick < 55) {
+            return post(user + "/foods", new Json.ObjectWriter().field("food", FOODS[random.nextInt(FOODS.length)])
+                    .field("meal", MEALS[random.nextInt(MEALS.length)]).field("date", date).toString());
+        }
+        if (pick < 75) {
+            return post(user + "/workouts", new Json.ObjectWriter().field("activity", ACTIVITIES[random.nextInt(ACTIVITIES.length)])
+                    .field("minutes", 10 + random.nextInt(80)).field("date", date).toString());
+        }
+        if (pick < 92) {
+            return HttpRequest.newBuilder(URI.create(user + "/summary?date=" + date)).GET().build();
+        }
+        if (pick < 97) {
+            return HttpRequest.newBuilder(URI.create(user + "/plans?date=" + date)).GET().build();
+        }
+        return post(user + "/plans", new Json.ObjectWriter().field("description", "Intervals 6x400m")
+                .field("date", date).field("weekdays", 1 + random.nextInt(127)).field("weeks", 8).toString());
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static String micros(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return String.format("%.0f us", sorted[Math.max(0, index)] / 1000.0);
+    }
+}
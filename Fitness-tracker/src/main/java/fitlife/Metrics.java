@@ -0,0 +1,110 @@
+package fitlife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Named latency histograms, counters and gauges, shared by the UI, the tracker service and the HTTP server,
+// and written out as text or JSON for profiling slow interactions on real data
+public class Metrics {
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();  // Read when the metrics are written
+    private final long startedNanos = System.nanoTime();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    public long counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // A value owned elsewhere, e.g. a cache's hit ratio; the supplier is called from whichever thread writes the metrics
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // One line per histogram (times in microseconds), then one per counter and gauge, sorted by name
+    public String toText() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("uptime %.1f s%n", (System.nanoTime() - startedNanos) / 1e9));
+        out.append(String.format("%-28s %9s %10s %10s %10s %10s %10s %10s%n",
+                "histogram", "count", "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            out.append(String.format("%-28s %9d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), h.count(),
+                    h.mean() / 1000, h.percentile(0.5) / 1000.0, h.percentile(0.9) / 1000.0,
+                    h.percentile(0.99) / 1000.0, h.percentile(0.999) / 1000.0, h.max() / 1000.0));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            out.append(String.format("%-28s %9d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            out.append(String.format("%-28s %9.3f%n", entry.getKey(), entry.getValue().getAsDouble()));
+        }
+        return out.toString();
+    }
+
+    // {"uptimeSeconds":..,"histograms":{"name":{"count":..,"p50":..,...}},"counters":{"name":..},"gauges":{"name":..}},
+    // times in nanoseconds
+    public String toJson() {
+        StringBuilder histogramJson = new StringBuilder("{");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            if (histogramJson.length() > 1) {
+                histogramJson.append(',');
+            }
+            histogramJson.append(Json.quote(entry.getKey())).append(':').append(new Json.ObjectWriter()
+                    .field("count", h.count())
+                    .field("meanNanos", Math.round(h.mean()))
+                    .field("p50Nanos", h.percentile(0.5))
+                    .field("p90Nanos", h.percentile(0.9))
+                    .field("p99Nanos", h.percentile(0.99))
+                    .field("p999Nanos", h.percentile(0.999))
+                    .field("maxNanos", h.max()));
+        }
+        Json.ObjectWriter counterJson = new Json.ObjectWriter();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            counterJson.field(entry.getKey(), entry.getValue().sum());
+        }
+        Json.ObjectWriter gaugeJson = new Json.ObjectWriter();
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            gaugeJson.field(entry.getKey(), entry.getValue().getAsDouble());
+        }
+        return new Json.ObjectWriter()
+                .field("uptimeSeconds", (System.nanoTime() - startedNanos) / 1e9)
+                .raw("histograms", histogramJson.append('}').toString())
+                .raw("counters", counterJson.toString())
+                .raw("gauges", gaugeJson.toString())
+                .toString();
+    }
+
+    // Write the JSON form next to the journal, replacing the previous dump in one move
+    public void dump(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,46 @@
+package fitlife;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Serves a Metrics registry on the loopback interface only:
+//   GET /metrics       plain-text table
+//   GET /metrics.json  the same numbers as JSON
+public class MetricsEndpoint implements AutoCloseable {
+
+    private final HttpServer server;
+
+    public MetricsEndpoint(Metrics metrics, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 8);
+        server.createContext("/metrics", exchange -> {
+            boolean json = exchange.getRequestURI().getPath().endsWith(".json");
+            send(exchange, json ? metrics.toJson() : metrics.toText(),
+                    json ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+        });
+        server.start();  // Runs on the server's own dispatcher thread; each request only reads counters
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    static void send(HttpExchange exchange, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,319 @@
+package fitlife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index over plan descriptions, kept up to date one plan at a time, with BM25-ranked search.
+// Each term has a posting list of plan ids (ascending) with the term's count in each plan. Queries are
+// terms combined with AND and OR, AND binding tighter; terms written next to each other are ANDed:
+//   squat AND deadlift     tempo run     tempo run OR intervals
+// Matching plans are ranked by the BM25 score of every query term they contain. Not thread-safe; the
+// owning PlanStore is confined to one thread (or lock) already.
+public class PlanIndex {
+
+    private static final double K1 = 1.2;   // BM25 term-frequency saturation
+    private static final double B = 0.75;   // BM25 length normalization
+
+    // Plan ids holding one term, ascending, with how often the term occurs in each
+    private static final class Postings {
+        int[] ids = new int[4];
+        int[] counts = new int[4];
+        int size;
+
+        // Insert or replace, keeping ids sorted; new plans have the largest id so this is usually an append
+        void put(int id, int count) {
+            int at = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) {
+                counts[at] = count;
+                return;
+            }
+            at = at < 0 ? -at - 1 : at;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(counts, at, counts, at + 1, size - at);
+            ids[at] = id;
+            counts[at] = count;
+            size++;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();  // By term id
+    private int[][] planTerms = new int[64][];  // Distinct term ids of each indexed plan, by plan id; null if not indexed
+    private int[] planLengths = new int[64];    // Token count of each plan, for length normalization
+    private int plans;
+    private long totalLength;
+
+    // Scratch space for search, indexed by plan id and reused between queries
+    private int[] matchedStamp = new int[64];
+    private double[] scores = new double[64];
+    private int stamp;
+
+    // Index a plan's text, replacing whatever was indexed for the id before
+    public void put(int id, String text) {
+        remove(id);
+        ensureCapacity(id);
+        List<String> tokens = tokenize(text);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (String token : tokens) {
+            Integer termId = termIds.get(token);
+            if (termId == null) {
+                termId = postings.size();
+                termIds.put(token, termId);
+                postings.add(new Postings());
+            }
+            counts.merge(termId, 1, Integer::sum);
+        }
+        int[] terms = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            terms[i++] = entry.getKey();
+            postings.get(entry.getKey()).put(id, entry.getValue());
+        }
+        planTerms[id] = terms;
+        planLengths[id] = tokens.size();
+        plans++;
+        totalLength += tokens.size();
+    }
+
+    public void remove(int id) {
+        if (id >= planTerms.length || planTerms[id] == null) {
+            return;
+        }
+        for (int termId : planTerms[id]) {
+            postings.get(termId).remove(id);
+        }
+        planTerms[id] = null;
+        plans--;
+        totalLength -= planLengths[id];
+    }
+
+    public int size() {
+        return plans;
+    }
+
+    // Ids of the best-scoring plans matching the query, best first, at most limit of them
+    public int[] search(String query, int limit) {
+        List<List<String>> clauses = parse(query);
+        if (clauses.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        if (++stamp == 0) {  // Wrapped: old stamps could collide with new ones
+            Arrays.fill(matchedStamp, 0);
+            stamp = 1;
+        }
+
+        // Mark every plan matching at least one clause; a clause matches when it has all of its terms
+        List<Postings> queryTerms = new ArrayList<>();
+        for (List<String> clause : clauses) {
+            Postings[] lists = new Postings[clause.size()];
+            boolean missing = false;
+            for (int i = 0; i < lists.length; i++) {
+                Integer termId = termIds.get(clause.get(i));
+                if (termId == null || postings.get(termId).size == 0) {
+                    missing = true;
+                    break;
+                }
+                lists[i] = postings.get(termId);
+                if (!queryTerms.contains(lists[i])) {
+                    queryTerms.add(lists[i]);
+                }
+            }
+            if (!missing) {
+                intersect(lists);
+            }
+        }
+
+        // Score matched plans over all query terms, so a plan matching more of the query ranks higher
+        double averageLength = plans == 0 ? 1 : Math.max((double) totalLength / plans, 1);
+        int matched = 0;
+        int[] hits = new int[64];
+        for (Postings list : queryTerms) {
+            double idf = Math.log(1 + (plans - list.size + 0.5) / (list.size + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                int mark = matchedStamp[id];
+                if (mark != stamp && mark != -stamp) {
+                    continue;
+                }
+                if (mark == stamp) {  // First term scored for this plan
+                    matchedStamp[id] = -stamp;
+                    scores[id] = 0;
+                    if (matched == hits.length) {
+                        hits = Arrays.copyOf(hits, matched * 2);
+                    }
+                    hits[matched++] = id;
+                }
+                int count = list.counts[i];
+                double norm = K1 * (1 - B + B * planLengths[id] / averageLength);
+                scores[id] += idf * count * (K1 + 1) / (count + norm);
+            }
+        }
+        return top(hits, matched, limit);
+    }
+
+    // Stamp the plans present in every list, walking the shortest and galloping through the others
+    private void intersect(Postings[] lists) {
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings shortest = lists[0];
+        int[] positions = new int[lists.length];
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int id = shortest.ids[i];
+            for (int l = 1; l < lists.length; l++) {
+                int at = gallop(lists[l], positions[l], id);
+                positions[l] = at;
+                if (at == lists[l].size) {
+                    return;  // This list is exhausted, so no later candidate can match either
+                }
+                if (lists[l].ids[at] != id) {
+                    continue candidates;
+                }
+            }
+            if (matchedStamp[id] != -stamp) {
+                matchedStamp[id] = stamp;
+            }
+        }
+    }
+
+    // First position at or after from whose id is >= id, probing 1, 2, 4 ... ahead before a binary search
+    private static int gallop(Postings list, int from, int id) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < list.size && list.ids[high] < id) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, list.size);
+        int at = Arrays.binarySearch(list.ids, low, high, id);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    // Partial selection of the limit best scores; ties go to the older plan
+    private int[] top(int[] hits, int count, int limit) {
+        int n = Math.min(limit, count);
+        int[] heap = new int[n];  // Min-heap on score: the root is the weakest result kept so far
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int id = hits[i];
+            if (size < n) {
+                heap[size] = id;
+                siftUp(heap, size++);
+            } else if (better(id, heap[0])) {
+                heap[0] = id;
+                siftDown(heap, size);
+            }
+        }
+        int[] ranked = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return ranked;
+    }
+
+    private boolean better(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void siftUp(int[] heap, int at) {
+        while (at > 0) {
+            int parent = (at - 1) / 2;
+            if (!better(heap[parent], heap[at])) {
+                break;
+            }
+            int swap = heap[parent];
+            heap[parent] = heap[at];
+            heap[at] = swap;
+            at = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int at = 0;
+        while (true) {
+            int weakest = at;
+            for (int child = 2 * at + 1; child <= 2 * at + 2 && child < size; child++) {
+                if (better(heap[weakest], heap[child])) {
+                    weakest = child;
+                }
+            }
+            if (weakest == at) {
+                return;
+            }
+            int swap = heap[weakest];
+            heap[weakest] = heap[at];
+            heap[at] = swap;
+            at = weakest;
+        }
+    }
+
+    // OR-separated clauses of ANDed terms; the operators are the upper-case words AND and OR
+    static List<List<String>> parse(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        List<String> clause = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR")) {
+                if (!clause.isEmpty()) {
+                    clauses.add(clause);
+                    clause = new ArrayList<>();
+                }
+            } else if (!word.equals("AND")) {
+                clause.addAll(tokenize(word));
+            }
+        }
+        if (!clause.isEmpty()) {
+            clauses.add(clause);
+        }
+        return clauses;
+    }
+
+    // Lower-cased runs of letters and digits, with a plural "s" dropped so "squats" finds "squat"
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+                    token = token.substring(0, token.length() - 1);
+                }
+                tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= planTerms.length) {
+            int capacity = Math.max(id + 1, planTerms.length * 2);
+            planTerms = Arrays.copyOf(planTerms, capacity);
+            planLengths = Arrays.copyOf(planLengths, capacity);
+            matchedStamp = Arrays.copyOf(matchedStamp, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package fitlife;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+// Workout plans indexed by date; recurring plans are stored once and only expanded for the days asked about
+public class PlanStore {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;  // Day value for plans without a date
+
+    // One plan: a single day, a weekly recurrence over a range of days, or no date at all
+    public static final class Plan {
+        public final int id;
+        public final String description;
+        public final int startDay;     // Epoch day of the first (or only) occurrence, NO_DATE when undated
+        public final int endDay;       // Last day a recurrence may fall on, equal to startDay for one-off plans
+        public final int weekdayMask;  // Bit 0 = Monday ... bit 6 = Sunday; 0 for one-off and undated plans
+
+        Plan(int id, String description, int startDay, int endDay, int weekdayMask) {
+            this.id = id;
+            this.description = description;
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.weekdayMask = weekdayMask;
+        }
+
+        public boolean isRecurring() {
+            return weekdayMask != 0;
+        }
+
+        public boolean occursOn(int epochDay) {
+            if (startDay == NO_DATE || epochDay < startDay || epochDay > endDay) {
+                return false;
+            }
+            return !isRecurring() || (weekdayMask & (1 << weekday(epochDay))) != 0;
+        }
+
+        Plan withDescription(String newDescription) {
+            return new Plan(id, newDescription, startDay, endDay, weekdayMask);
+        }
+
+        // Text for the plan list, in the same "(Date: ...)" style the planner has always used
+        public String describe() {
+            if (startDay == NO_DATE) {
+                return description;
+            }
+            if (!isRecurring()) {
+                return description + " (Date: " + LocalDate.ofEpochDay(startDay) + ")";
+            }
+            StringBuilder days = new StringBuilder();
+            for (int d = 0; d < 7; d++) {
+                if ((weekdayMask & (1 << d)) != 0) {
+                    if (days.length() > 0) {
+                        days.append('/');
+                    }
+                    String name = DayOfWeek.of(d + 1).toString();
+                    days.append(name.charAt(0)).append(name.substring(1, 3).toLowerCase(Locale.ROOT));
+                }
+            }
+            return description + " (Every " + days + " from " + LocalDate.ofEpochDay(startDay)
+                    + " to " + LocalDate.ofEpochDay(endDay) + ")";
+        }
+    }
+
+    // A plan falling on a particular day
+    public static final class Occurrence {
+        public final Plan plan;
+        public final int epochDay;
+
+        Occurrence(Plan plan, int epochDay) {
+            this.plan = plan;
+            this.epochDay = epochDay;
+        }
+
+        public String describe() {
+            return plan.description + " (Date: " + LocalDate.ofEpochDay(epochDay) + ")";
+        }
+    }
+
+    // One undoable change: a plan before and after, null where it did not exist. Plans are immutable, so
+    // an undo step shares them with the store instead of copying anything.
+    public static final class Edit {
+        public final Plan before;
+        public final Plan after;
+
+        Edit(Plan before, Plan after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        // For the Undo and Redo buttons, e.g. "delete plan Leg day"
+        public String describe() {
+            String action = before == null ? "add plan " : after == null ? "delete plan " : "edit plan ";
+            String description = (before == null ? after : before).description.strip();
+            return action + (description.length() > 24 ? description.substring(0, 24) + "..." : description);
+        }
+    }
+
+    public static final int UNDO_DEPTH = 100;  // Changes that can be undone, at least
+    public static final int MAX_WEEKS = 520;   // Longest a recurring plan can run, about ten years
+
+    private final Map<Integer, Plan> plans = new TreeMap<>();              // Every plan by id, which is creation order
+    private final Map<Integer, List<Plan>> oneOffByDay = new HashMap<>();  // Single-day plans keyed by epoch day
+    // Recurring plans as intervals of weeks, split into aligned blocks of 1, 2, 4 ... 512 weeks (a segment
+    // tree kept in a map). A plan of n weeks lands in at most about 2 log2(n) blocks, not in every week it
+    // spans, and the plans covering a week are in the one block per size that contains the week.
+    private static final int BLOCK_LEVELS = 32 - Integer.numberOfLeadingZeros(MAX_WEEKS + 1);
+    private final Map<Long, List<Plan>> recurringByBlock = new HashMap<>();
+    private final PlanIndex text = new PlanIndex();  // Words of every plan's description, for search
+    private UndoHistory<Edit> history = UndoHistory.empty(UNDO_DEPTH);
+    private int nextId = 1;
+
+    // 0 = Monday ... 6 = Sunday; epoch day 0 (1970-01-01) was a Thursday
+    static int weekday(int epochDay) {
+        return Math.floorMod(epochDay + 3, 7);
+    }
+
+    // Monday-based week number, so every day of a week shares one bucket
+    static int week(int epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+
+    // The block of 2^level weeks holding a week
+    private static long block(int level, int week) {
+        return (long) level << 32 | (week >> level) & 0xFFFF_FFFFL;
+    }
+
+    public Plan addUndated(String description) {
+        return record(null, insert(new Plan(nextId++, description, NO_DATE, NO_DATE, 0)));
+    }
+
+    public Plan addOnDay(String description, int epochDay) {
+        return record(null, insert(new Plan(nextId++, description, epochDay, epochDay, 0)));
+    }
+
+    // Repeat on the given weekdays for a number of weeks, starting with the week of startDay
+    public Plan addRecurring(String description, int startDay, int weekdayMask, int weeks) {
+        if (weekdayMask <= 0 || weekdayMask > 0x7F) {
+            throw new IllegalArgumentException("A recurring plan needs a weekday mask from 1 (Monday) to 127 (every day)");
+        }
+        if (weeks < 1 || weeks > MAX_WEEKS) {
+            throw new IllegalArgumentException("A recurring plan runs for 1 to " + MAX_WEEKS + " weeks");
+        }
+        int endDay = startDay + weeks * 7 - 1;
+        return record(null, insert(new Plan(nextId++, description, startDay, endDay, weekdayMask)));
+    }
+
+    public Plan get(int id) {
+        return plans.get(id);
+    }
+
+    // Change a plan's text, keeping its schedule
+    public Plan updateDescription(int id, String description) {
+        Plan old = plans.get(id);
+        if (old == null) {
+            return null;
+        }
+        Plan updated = old.withDescription(description);
+        swap(old, updated);
+        return record(old, updated);
+    }
+
+    public Plan remove(int id) {
+        Plan plan = plans.get(id);
+        if (plan != null) {
+            swap(plan, null);
+            record(plan, null);
+        }
+        return plan;
+    }
+
+    private Plan record(Plan before, Plan after) {
+        history = history.push(new Edit(before, after));
+        return after;
+    }
+
+    // Revert the newest change; returns it, or null when there is nothing to undo
+    public Edit undo() {
+        Edit edit = history.nextUndo();
+        if (edit != null) {
+            swap(edit.after, edit.before);
+            history = history.undone();
+        }
+        return edit;
+    }
+
+    // Apply the newest undone change again; returns it, or null when there is nothing to redo
+    public Edit redo() {
+        Edit edit = history.nextRedo();
+        if (edit != null) {
+            swap(edit.before, edit.after);
+            history = history.redone();
+        }
+        return edit;
+    }
+
+    public UndoHistory<Edit> history() {
+        return history;
+    }
+
+    // Replace one version of a plan with another, either of which may be null; plans keep their id,
+    // so a plan brought back by undo is in its old place in the list
+    private void swap(Plan from, Plan to) {
+        if (from != null) {
+            plans.remove(from.id);
+            unindex(from);
+            text.remove(from.id);
+        }
+        if (to != null) {
+            insert(to);
+        }
+    }
+
+    // Put a plan (new, or re-added with its old id) back into the store
+    Plan insert(Plan plan) {
+        plans.put(plan.id, plan);
+        nextId = Math.max(nextId, plan.id + 1);
+        index(plan);
+        text.put(plan.id, plan.description);
+        return plan;
+    }
+
+    private void index(Plan plan) {
+        if (plan.startDay == NO_DATE) {
+            return;
+        }
+        if (plan.isRecurring()) {
+            forEachBlock(plan, block -> recurringByBlock.computeIfAbsent(block, b -> new ArrayList<>(2)).add(plan));
+        } else {
+            oneOffByDay.computeIfAbsent(plan.startDay, d -> new ArrayList<>(2)).add(plan);
+        }
+    }
+
+    private void unindex(Plan plan) {
+        if (plan.startDay == NO_DATE) {
+            return;
+        }
+        if (plan.isRecurring()) {
+            forEachBlock(plan, block -> removeFrom(recurringByBlock, block, plan));
+        } else {
+            removeFrom(oneOffByDay, plan.startDay, plan);
+        }
+    }
+
+    // The fewest aligned blocks that exactly cover the weeks of a recurring plan: from the first week, each
+    // step takes the largest block that starts there and does not run past the last week
+    private static void forEachBlock(Plan plan, LongConsumer action) {
+        int last = week(plan.endDay);
+        for (int week = week(plan.startDay); week <= last; ) {
+            int level = Math.min(Integer.numberOfTrailingZeros(week), 31 - Integer.numberOfLeadingZeros(last - week + 1));
+            action.accept(block(level, week));
+            week += 1 << level;
+        }
+    }
+
+    // Recurring plans with an occurrence in the week, in creation order
+    private List<Plan> recurringIn(int week) {
+        List<Plan> result = null;
+        for (int level = 0; level < BLOCK_LEVELS; level++) {
+            List<Plan> plans = recurringByBlock.get(block(level, week));
+            if (plans != null) {
+                if (result == null) {
+                    result = new ArrayList<>(plans);
+                } else {
+                    result.addAll(plans);
+                }
+            }
+        }
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        result.sort((a, b) -> Integer.compare(a.id, b.id));
+        return result;
+    }
+
+    private static <K> void removeFrom(Map<K, List<Plan>> index, K key, Plan plan) {
+        List<Plan> bucket = index.get(key);
+        if (bucket == null) {
+            return;
+        }
+        bucket.removeIf(p -> p.id == plan.id);
+        if (bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    // Plans that fall on one day: one hash lookup for single-day plans and one per block size for that
+    // week's recurrences
+    public List<Occurrence> on(int epochDay) {
+        List<Occurrence> result = new ArrayList<>();
+        collect(epochDay, recurringIn(week(epochDay)), result);
+        return result;
+    }
+
+    // Expand plans only for the visible window, e.g. the month shown by the calendar; the recurring plans
+    // are looked up once per week
+    public List<Occurrence> between(int fromDay, int toDay) {
+        List<Occurrence> result = new ArrayList<>();
+        List<Plan> recurring = null;
+        for (int day = fromDay; day <= toDay; day++) {
+            if (recurring == null || weekday(day) == 0) {
+                recurring = recurringIn(week(day));
+            }
+            collect(day, recurring, result);
+        }
+        return result;
+    }
+
+    // Number of plans on a day, without building the occurrence list (used to mark calendar cells)
+    public int countOn(int epochDay) {
+        int count = 0;
+        List<Plan> oneOff = oneOffByDay.get(epochDay);
+        if (oneOff != null) {
+            count += oneOff.size();
+        }
+        for (Plan plan : recurringIn(week(epochDay))) {
+            if (plan.occursOn(epochDay)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void collect(int epochDay, List<Plan> recurring, List<Occurrence> result) {
+        List<Plan> oneOff = oneOffByDay.get(epochDay);
+        if (oneOff != null) {
+            for (Plan plan : oneOff) {
+                result.add(new Occurrence(plan, epochDay));
+            }
+        }
+        for (Plan plan : recurring) {
+            if (plan.occursOn(epochDay)) {
+                result.add(new Occurrence(plan, epochDay));
+            }
+        }
+    }
+
+    // Plans whose description matches a query such as "squat AND deadlift", "tempo run" or
+    // "yoga OR pilates", best match first (see PlanIndex)
+    public List<Plan> search(String query, int limit) {
+        List<Plan> result = new ArrayList<>();
+        for (int id : text.search(query, limit)) {
+            result.add(plans.get(id));
+        }
+        return result;
+    }
+
+    // Every plan, in the order they were created
+    public List<Plan> all() {
+        return Collections.unmodifiableList(new ArrayList<>(plans.values()));
+    }
+
+    public int size() {
+        return plans.size();
+    }
+}
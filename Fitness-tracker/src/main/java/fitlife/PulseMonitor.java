@@ -0,0 +1,46 @@
+package fitlife;
+
+import javafx.animation.AnimationTimer;
+
+// Times the gap between FX pulses. JavaFX does not expose how long a pulse itself took, but a pulse that runs
+// long (layout, CSS, a slow handler) pushes the next one back, so the gap is what the user sees as jank.
+// While started it keeps pulses coming every frame, so the app only runs it when metrics are switched on.
+public class PulseMonitor extends AnimationTimer {
+
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;  // Frame budget at 60 fps
+
+    private final LatencyHistogram intervals;
+    private final Metrics metrics;
+    private long lastPulse = -1;
+
+    public PulseMonitor(Metrics metrics) {
+        this.metrics = metrics;
+        this.intervals = metrics.histogram("fx.pulseInterval");
+    }
+
+    @Override
+    public void handle(long now) {
+        if (lastPulse >= 0) {
+            long interval = now - lastPulse;
+            intervals.record(interval);
+            // Allow half a frame of jitter before calling it a drop
+            int dropped = (int) ((interval + FRAME_NANOS / 2) / FRAME_NANOS) - 1;
+            if (dropped > 0) {
+                metrics.increment("fx.slowFrames");
+                FitlifeEvents.SlowFrame event = new FitlifeEvents.SlowFrame();
+                if (event.shouldCommit()) {
+                    event.interval = interval;
+                    event.framesDropped = dropped;
+                    event.commit();
+                }
+            }
+        }
+        lastPulse = now;
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        lastPulse = -1;  // The gap while stopped is not a dropped frame
+    }
+}
@@ -0,0 +1,221 @@
+package fitlife;
+
+import java.util.Arrays;
+
+// Per-day totals held in Fenwick trees so any date range sums in O(log n) and updates stay incremental
+public class RangeAggregator {
+
+    public static final int INTAKE = 0;          // Calories eaten
+    public static final int WORKOUT_MINUTES = 1; // Minutes of exercise
+    public static final int BURNED = 2;          // Calories burned by workouts
+    public static final int FOOD_ENTRIES = 3;    // Number of food entries
+    public static final int WORKOUTS = 4;        // Number of workout entries
+    private static final int SERIES = 5;
+    public static final int MAX_SPAN = 1 << 17;  // Days from the first to the last entry, about 358 years; 5 MB of trees
+
+    private long[][] trees;    // One Fenwick tree per series, indexed by (epoch day - baseDay) + 1
+    private int capacity;      // Number of days each tree covers, starting at baseDay
+    private int baseDay = -1;  // First day covered, placed by the first entry; -1 while empty
+    private int firstDay = -1; // Earliest and latest days any entry was logged on; -1 while empty
+    private int lastDay = -1;
+
+    public RangeAggregator() {
+        this(64);  // Grows to the span of days actually used, so an idle user costs a few KB
+    }
+
+    public RangeAggregator(int initialDays) {
+        capacity = Integer.highestOneBit(Math.max(2, initialDays - 1)) << 1;
+        trees = new long[SERIES][capacity + 1];
+    }
+
+    public void addFood(int epochDay, int calories) {
+        add(INTAKE, epochDay, calories);
+        add(FOOD_ENTRIES, epochDay, 1);
+    }
+
+    public void removeFood(int epochDay, int calories) {
+        add(INTAKE, epochDay, -calories);
+        add(FOOD_ENTRIES, epochDay, -1);
+    }
+
+    public void addWorkout(int epochDay, int minutes, int caloriesBurned) {
+        add(WORKOUT_MINUTES, epochDay, minutes);
+        add(BURNED, epochDay, caloriesBurned);
+        add(WORKOUTS, epochDay, 1);
+    }
+
+    public void removeWorkout(int epochDay, int minutes, int caloriesBurned) {
+        add(WORKOUT_MINUTES, epochDay, -minutes);
+        add(BURNED, epochDay, -caloriesBurned);
+        add(WORKOUTS, epochDay, -1);
+    }
+
+    // Apply a change to one series on one day; edits are a remove followed by an add
+    public void add(int series, int epochDay, long delta) {
+        checkDay(epochDay);
+        if (baseDay < 0) {
+            baseDay = Math.max(0, epochDay - capacity / 2);  // Leave room for back-dated entries too
+        }
+        if (epochDay < baseDay || epochDay >= baseDay + capacity) {
+            resize(Math.min(epochDay, baseDay), Math.max(epochDay, baseDay + capacity - 1));
+        }
+        if (firstDay < 0 || epochDay < firstDay) {
+            firstDay = epochDay;
+        }
+        lastDay = Math.max(lastDay, epochDay);
+        long[] tree = trees[series];
+        for (int i = epochDay - baseDay + 1; i <= capacity; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Throws IllegalArgumentException for a day add() would refuse, so a caller can check before it
+    // changes anything else
+    public void checkDay(int epochDay) {
+        if (epochDay < 0) {
+            throw new IllegalArgumentException("Dates before 1970 are not supported: day " + epochDay);
+        }
+        if (baseDay >= 0 && (epochDay < baseDay || epochDay >= baseDay + capacity)) {
+            checkSpan(Math.min(epochDay, baseDay), Math.max(epochDay, baseDay + capacity - 1));
+        }
+    }
+
+    // Sum of a series over the inclusive range [fromDay, toDay]
+    public long sum(int series, int fromDay, int toDay) {
+        if (toDay < fromDay) {
+            return 0;
+        }
+        return prefix(series, toDay) - prefix(series, fromDay - 1);
+    }
+
+    // Average per calendar day over the inclusive range
+    public double average(int series, int fromDay, int toDay) {
+        return toDay < fromDay ? 0 : (double) sum(series, fromDay, toDay) / (toDay - fromDay + 1);
+    }
+
+    // Calories eaten minus calories burned over the inclusive range
+    public long netCalories(int fromDay, int toDay) {
+        return sum(INTAKE, fromDay, toDay) - sum(BURNED, fromDay, toDay);
+    }
+
+    public long day(int series, int epochDay) {
+        return sum(series, epochDay, epochDay);
+    }
+
+    public int firstDay() {
+        return firstDay;
+    }
+
+    public int lastDay() {
+        return lastDay;
+    }
+
+    // One value per day from fromDay into out, walking the prefix sums once instead of two lookups per day
+    public void daily(int series, int fromDay, long[] out) {
+        long previous = prefix(series, fromDay - 1);
+        for (int i = 0; i < out.length; i++) {
+            long current = prefix(series, fromDay + i);
+            out[i] = current - previous;
+            previous = current;
+        }
+    }
+
+    // Sum of every day up to and including epochDay
+    private long prefix(int series, int epochDay) {
+        if (baseDay < 0 || epochDay < baseDay) {
+            return 0;
+        }
+        long[] tree = trees[series];
+        long total = 0;
+        for (int i = Math.min(epochDay - baseDay + 1, capacity); i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+    // Rebuild everything from the store in O(n + days), used after loading a snapshot
+    public void rebuild(EntryStore store) {
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = -1;
+        for (int row = 0; row < store.size(); row++) {
+            int day = store.day(row);
+            if (day >= 0 && !store.isDeleted(row)) {
+                minDay = Math.min(minDay, day);
+                maxDay = Math.max(maxDay, day);
+            }
+        }
+        for (long[] tree : trees) {
+            Arrays.fill(tree, 0);
+        }
+        if (maxDay < 0) {
+            baseDay = -1;
+            firstDay = -1;
+            lastDay = -1;
+            return;
+        }
+        baseDay = minDay;
+        firstDay = minDay;
+        lastDay = maxDay;
+        if (maxDay - minDay + 1 > capacity) {
+            checkSpan(minDay, maxDay);
+            capacity = Integer.highestOneBit(maxDay - minDay) << 1;
+            trees = new long[SERIES][capacity + 1];
+        }
+        // Accumulate raw daily values, then turn each array into a Fenwick tree in place
+        for (int row = 0; row < store.size(); row++) {
+            int index = store.day(row) - baseDay + 1;
+            if (index <= 0 || store.isDeleted(row)) {
+                continue;
+            }
+            if (store.isWorkout(row)) {
+                trees[WORKOUT_MINUTES][index] += store.minutes(row);
+                trees[BURNED][index] += store.calories(row);
+                trees[WORKOUTS][index]++;
+            } else {
+                trees[INTAKE][index] += store.calories(row);
+                trees[FOOD_ENTRIES][index]++;
+            }
+        }
+        for (long[] tree : trees) {
+            build(tree);
+        }
+    }
+
+    // Grow to cover fromDay..toDay, keeping the existing totals; growing downwards moves the base day
+    private void resize(int fromDay, int toDay) {
+        checkSpan(fromDay, toDay);
+        int newCapacity = capacity;
+        while (newCapacity < toDay - fromDay + 1) {
+            newCapacity <<= 1;
+        }
+        int newBase = fromDay < baseDay ? Math.max(0, toDay - newCapacity + 1) : baseDay;
+        long[][] grown = new long[SERIES][newCapacity + 1];
+        for (int s = 0; s < SERIES; s++) {
+            for (int day = baseDay; day < baseDay + capacity; day++) {
+                grown[s][day - newBase + 1] = sum(s, day, day);
+            }
+            build(grown[s]);
+        }
+        trees = grown;
+        capacity = newCapacity;
+        baseDay = newBase;
+    }
+
+    // Refuse a span the trees cannot cover, before anything is allocated or changed
+    private static void checkSpan(int fromDay, int toDay) {
+        if ((long) toDay - fromDay + 1 > MAX_SPAN) {
+            throw new IllegalArgumentException("Entries more than " + MAX_SPAN + " days apart are not supported: days "
+                    + fromDay + " to " + toDay);
+        }
+    }
+
+    // Linear-time Fenwick construction from raw values stored at index (day - baseDay) + 1
+    private static void build(long[] tree) {
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package fitlife;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Goal and alert rules over sliding windows of daily totals, written like
+//   net > 2000                      eaten minus burned today is over 2000
+//   workouts < 1 over 3 days        no workout in the last three days (streak broken)
+//   minutes > 150 over 7 days
+// Rules are evaluated incrementally as entries come and go. Rules on the same series and window length
+// share one window: the daily values of its days in a ring, plus their running sum, which every entry
+// change and every new day adjusts in O(1). Each window keeps its rules' thresholds sorted, so when the
+// sum moves the rules it tipped over are found with two binary searches, however many rules there are.
+// Rules are edge-triggered: an alert fires when a condition becomes true and clears when it stops being
+// true. Windows end on the day last given to advanceTo (today, in the app and the server). Entries older
+// than a window do not change it, and entries for later days wait in the daily totals until advanceTo
+// reaches them, so a future-dated entry cannot drag the windows away from today. Not thread-safe: owned
+// by a TrackerCore.
+public class RuleEngine {
+
+    public static final int NET = 5;  // Intake minus burned; series 0-4 are RangeAggregator's
+    public static final String[] SERIES = {"intake", "minutes", "burned", "foods", "workouts", "net"};
+    public static final int MAX_DAYS = 366;
+
+    private static final Pattern RULE = Pattern.compile(
+            "\\s*([a-z]+)\\s*([<>])\\s*(-?\\d+)\\s*(?:over\\s+(\\d+)\\s+days?)?\\s*", Pattern.CASE_INSENSITIVE);
+
+    // A condition on the sum of one series over the last days days
+    public static final class Rule {
+        public final int id;
+        public final int series;
+        public final boolean above;  // Holds when the sum is above the threshold, else when it is below
+        public final long threshold;
+        public final int days;
+
+        Rule(int id, int series, boolean above, long threshold, int days) {
+            this.id = id;
+            this.series = series;
+            this.above = above;
+            this.threshold = threshold;
+            this.days = days;
+        }
+
+        public boolean holds(long value) {
+            return above ? value > threshold : value < threshold;
+        }
+
+        // In the syntax parse() reads, e.g. "workouts < 1 over 3 days"
+        public String describe() {
+            String text = SERIES[series] + (above ? " > " : " < ") + threshold;
+            return days == 1 ? text : text + " over " + days + " days";
+        }
+    }
+
+    // A rule whose condition became true (fired) or stopped being true on a day
+    public static final class Alert {
+        public final Rule rule;
+        public final int epochDay;  // Last day of the window
+        public final long value;    // The window's sum after the change
+        public final boolean fired;
+
+        Alert(Rule rule, int epochDay, long value, boolean fired) {
+            this.rule = rule;
+            this.epochDay = epochDay;
+            this.value = value;
+            this.fired = fired;
+        }
+
+        public String describe() {
+            return (fired ? "Alert: " : "Cleared: ") + rule.describe() + " (now " + value + ")";
+        }
+    }
+
+    // The last days days of one series, and the rules that watch it
+    private static final class Window {
+        final int series;
+        final int days;
+        final long[] values;  // Daily values by epoch day modulo days
+        long sum;
+        long[] aboveThresholds = new long[0];  // Ascending, with the rule of each in the parallel array
+        Rule[] aboveRules = new Rule[0];
+        long[] belowThresholds = new long[0];
+        Rule[] belowRules = new Rule[0];
+
+        Window(int series, int days) {
+            this.series = series;
+            this.days = days;
+            this.values = new long[days];
+        }
+
+        boolean isEmpty() {
+            return aboveRules.length == 0 && belowRules.length == 0;
+        }
+    }
+
+    private final RangeAggregator totals;  // Fills a new window with the days it already covers
+    private final Map<Rule, Window> windowOfRule = new HashMap<>();
+    private final Map<Integer, Window> windows = new HashMap<>();  // By series * (MAX_DAYS + 1) + days
+    private final List<List<Window>> windowsOfSeries = new ArrayList<>();  // Indexed by series
+    private final Map<Integer, Rule> rules = new LinkedHashMap<>();  // By id, in the order they were added
+    private final List<Alert> alerts = new ArrayList<>();  // Since the last drainAlerts()
+    private int endDay = -1;  // Last day of every window, -1 until known
+    private int nextId = 1;
+
+    public RuleEngine(RangeAggregator totals) {
+        this.totals = totals;
+        for (int series = 0; series < SERIES.length; series++) {
+            windowsOfSeries.add(new ArrayList<>());
+        }
+    }
+
+    // Parse a rule without adding it; throws IllegalArgumentException with a readable message
+    public static Rule parse(String text) {
+        Matcher matcher = RULE.matcher(text);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Rules look like \"net > 2000\" or \"workouts < 1 over 3 days\"");
+        }
+        int series = Arrays.asList(SERIES).indexOf(matcher.group(1).toLowerCase(Locale.ROOT));
+        if (series == -1) {
+            throw new IllegalArgumentException("A rule watches one of " + String.join(", ", SERIES));
+        }
+        int days = matcher.group(4) == null ? 1 : Integer.parseInt(matcher.group(4));
+        if (days < 1 || days > MAX_DAYS) {
+            throw new IllegalArgumentException("A rule's window is 1 to " + MAX_DAYS + " days");
+        }
+        return new Rule(0, series, matcher.group(2).equals(">"), Long.parseLong(matcher.group(3)), days);
+    }
+
+    public Rule add(String text) {
+        Rule parsed = parse(text);
+        Rule rule = new Rule(nextId++, parsed.series, parsed.above, parsed.threshold, parsed.days);
+        Window window = windows.get(key(rule.series, rule.days));
+        if (window == null) {
+            window = new Window(rule.series, rule.days);
+            fill(window);
+            windows.put(key(rule.series, rule.days), window);
+            windowsOfSeries.get(rule.series).add(window);
+        }
+        if (rule.above) {
+            int at = upperBound(window.aboveThresholds, rule.threshold);
+            window.aboveThresholds = insert(window.aboveThresholds, at, rule.threshold);
+            window.aboveRules = insert(window.aboveRules, at, rule);
+        } else {
+            int at = upperBound(window.belowThresholds, rule.threshold);
+            window.belowThresholds = insert(window.belowThresholds, at, rule.threshold);
+            window.belowRules = insert(window.belowRules, at, rule);
+        }
+        windowOfRule.put(rule, window);
+        rules.put(rule.id, rule);
+        return rule;
+    }
+
+    // Returns the removed rule, or null
+    public Rule remove(int id) {
+        Rule rule = rules.remove(id);
+        if (rule == null) {
+            return null;
+        }
+        Window window = windowOfRule.remove(rule);
+        if (rule.above) {
+            int at = Arrays.asList(window.aboveRules).indexOf(rule);
+            window.aboveThresholds = delete(window.aboveThresholds, at);
+            window.aboveRules = delete(window.aboveRules, at);
+        } else {
+            int at = Arrays.asList(window.belowRules).indexOf(rule);
+            window.belowThresholds = delete(window.belowThresholds, at);
+            window.belowRules = delete(window.belowRules, at);
+        }
+        if (window.isEmpty()) {
+            windows.remove(key(window.series, window.days));
+            windowsOfSeries.get(window.series).remove(window);
+        }
+        return rule;
+    }
+
+    public Rule rule(int id) {
+        return rules.get(id);
+    }
+
+    public List<Rule> rules() {
+        return new ArrayList<>(rules.values());
+    }
+
+    // The sum the rule currently compares against its threshold
+    public long value(Rule rule) {
+        Window window = windowOfRule.get(rule);
+        return window == null ? 0 : window.sum;
+    }
+
+    public int endDay() {
+        return endDay;
+    }
+
+    // Alerts raised since the last call, oldest first
+    public List<Alert> drainAlerts() {
+        List<Alert> drained = new ArrayList<>(alerts);
+        alerts.clear();
+        return drained;
+    }
+
+    // A food entry counted (sign 1) or taken back (sign -1), called wherever the daily totals change
+    public void food(int epochDay, int calories, int sign) {
+        if (windows.isEmpty() || epochDay > endDay) {
+            return;  // A day still ahead of the windows is read from the totals when advanceTo reaches it
+        }
+        change(RangeAggregator.INTAKE, epochDay, (long) sign * calories);
+        change(RangeAggregator.FOOD_ENTRIES, epochDay, sign);
+        change(NET, epochDay, (long) sign * calories);
+    }
+
+    public void workout(int epochDay, int minutes, int calories, int sign) {
+        if (windows.isEmpty() || epochDay > endDay) {
+            return;
+        }
+        change(RangeAggregator.WORKOUT_MINUTES, epochDay, (long) sign * minutes);
+        change(RangeAggregator.BURNED, epochDay, (long) sign * calories);
+        change(RangeAggregator.WORKOUTS, epochDay, sign);
+        change(NET, epochDay, -(long) sign * calories);
+    }
+
+    private void change(int series, int epochDay, long delta) {
+        for (Window window : windowsOfSeries.get(series)) {
+            if (epochDay <= endDay - window.days) {
+                continue;  // Older than the window
+            }
+            long before = window.sum;
+            window.values[Math.floorMod(epochDay, window.days)] += delta;
+            window.sum += delta;
+            crossed(window, before);
+        }
+    }
+
+    // Slide every window forward to end on epochDay, dropping the days that fall out and taking in the
+    // new ones from the daily totals; a day with no entries, e.g. a new day without a workout, is what
+    // breaks a streak. Nothing happens for days that are not later than the current end. The first call
+    // only fills the windows, so rules that already hold do not fire.
+    public void advanceTo(int epochDay) {
+        if (epochDay <= endDay) {
+            return;
+        }
+        int previous = endDay;
+        endDay = epochDay;
+        for (Window window : windows.values()) {
+            long before = window.sum;
+            if (previous < 0 || epochDay - previous >= window.days) {
+                fill(window);
+            } else {
+                for (int day = previous + 1; day <= epochDay; day++) {
+                    int slot = Math.floorMod(day, window.days);
+                    long value = dayValue(window.series, day);  // Usually 0, unless logged ahead of time
+                    window.sum += value - window.values[slot];
+                    window.values[slot] = value;
+                }
+            }
+            if (previous >= 0) {
+                crossed(window, before);
+            }
+        }
+    }
+
+    // Fill every window from the daily totals again, e.g. after a snapshot replaced them; raises no alerts
+    public void refill() {
+        for (Window window : windows.values()) {
+            fill(window);
+        }
+    }
+
+    private void fill(Window window) {
+        Arrays.fill(window.values, 0);
+        window.sum = 0;
+        if (endDay < 0) {
+            return;
+        }
+        for (int day = Math.max(endDay - window.days + 1, 0); day <= endDay; day++) {
+            long value = dayValue(window.series, day);
+            window.values[Math.floorMod(day, window.days)] = value;
+            window.sum += value;
+        }
+    }
+
+    private long dayValue(int series, int epochDay) {
+        return series == NET
+                ? totals.day(RangeAggregator.INTAKE, epochDay) - totals.day(RangeAggregator.BURNED, epochDay)
+                : totals.day(series, epochDay);
+    }
+
+    // Raise an alert for every rule whose condition the move from before to the window's sum changed.
+    // "Above t" changes for thresholds in [low, high), "below t" for thresholds in (low, high].
+    private void crossed(Window window, long before) {
+        long after = window.sum;
+        if (after == before) {
+            return;
+        }
+        long low = Math.min(before, after);
+        long high = Math.max(before, after);
+        int to = lowerBound(window.aboveThresholds, high);
+        for (int i = lowerBound(window.aboveThresholds, low); i < to; i++) {
+            alerts.add(new Alert(window.aboveRules[i], endDay, after, after > before));
+        }
+        to = upperBound(window.belowThresholds, high);
+        for (int i = upperBound(window.belowThresholds, low); i < to; i++) {
+            alerts.add(new Alert(window.belowRules[i], endDay, after, after < before));
+        }
+    }
+
+    // One rule per line, in the syntax add() reads; ids are handed out again on load
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Rule rule : rules.values()) {
+                out.write(rule.describe());
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Add the rules saved in file, skipping lines that no longer parse; returns how many were added
+    public int load(Path file) throws IOException {
+        if (!Files.isReadable(file)) {
+            return 0;
+        }
+        int loaded = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            try {
+                if (!line.isBlank()) {
+                    add(line);
+                    loaded++;
+                }
+            } catch (IllegalArgumentException ex) {
+                System.err.println("Skipping rule \"" + line + "\": " + ex.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    private static int key(int series, int days) {
+        return series * (MAX_DAYS + 1) + days;
+    }
+
+    // First index whose threshold is >= value
+    private static int lowerBound(long[] thresholds, long value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose threshold is > value
+    private static int upperBound(long[] thresholds, long value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] insert(long[] array, int at, long value) {
+        long[] grown = new long[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, at);
+        grown[at] = value;
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        return grown;
+    }
+
+    private static Rule[] insert(Rule[] array, int at, Rule rule) {
+        Rule[] grown = new Rule[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, at);
+        grown[at] = rule;
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        return grown;
+    }
+
+    private static long[] delete(long[] array, int at) {
+        long[] shrunk = new long[array.length - 1];
+        System.arraycopy(array, 0, shrunk, 0, at);
+        System.arraycopy(array, at + 1, shrunk, at, shrunk.length - at);
+        return shrunk;
+    }
+
+    private static Rule[] delete(Rule[] array, int at) {
+        Rule[] shrunk = new Rule[array.length - 1];
+        System.arraycopy(array, 0, shrunk, 0, at);
+        System.arraycopy(array, at + 1, shrunk, at, shrunk.length - at);
+        return shrunk;
+    }
+}
@@ -0,0 +1,534 @@
+package fitlife;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// One sensor stream of a workout (heart rate, pace, ...): timestamped doubles compressed the Gorilla way
+// into fixed-size chunks of off-heap memory.
+//   time:  delta-of-delta, so a steady one-per-second stream costs a single '0' bit per sample;
+//          otherwise '10' + 7 bits, '110' + 9, '1110' + 12 or '1111' + 32 bits of two's complement
+//   value: XOR with the previous value's bits; '0' when equal, '10' + the meaningful bits when they fit
+//          inside the previous sample's window, else '11' + 5 bits of leading zeros + 6 bits of length
+//          + the meaningful bits
+// Every chunk starts over with a raw time and value, so it decodes on its own, and keeps its count,
+// min, max and sum on the heap. Range and lap aggregates add up the chunks they cover whole and only
+// decode the (at most two) chunks cut by the range ends.
+public class SensorSeries {
+
+    public static final int CHUNK_BYTES = 256;
+    private static final int CHUNK_BITS = CHUNK_BYTES * 8;
+    private static final int MAX_SAMPLE_BITS = 36 + 77;  // Worst case after the first sample: '1111' + 32, '11' + 5 + 6 + 64
+    private static final int FIRST_SAMPLE_BITS = 128;    // Raw time and raw value
+
+    // Off-heap memory handed out in chunks; slabs are allocated as needed and freed chunks reused
+    public static final class Pool {
+        private static final int SLAB_BYTES = 1 << 20;
+        private static final int CHUNKS_PER_SLAB = SLAB_BYTES / CHUNK_BYTES;
+
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private volatile long reservedBytes;  // Read by metrics threads
+        private int[] free = new int[16];  // Handles of released chunks
+        private int freeCount;
+        private int nextUnused;            // Handles from here on have never been handed out
+
+        int allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];  // Old contents are harmless: every word is stored whole before it is read
+            }
+            if (nextUnused == slabs.size() * CHUNKS_PER_SLAB) {
+                slabs.add(ByteBuffer.allocateDirect(SLAB_BYTES));
+                reservedBytes += SLAB_BYTES;
+            }
+            return nextUnused++;
+        }
+
+        void release(int handle) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = handle;
+        }
+
+        ByteBuffer slab(int handle) {
+            return slabs.get(handle / CHUNKS_PER_SLAB);
+        }
+
+        static int offset(int handle) {
+            return (handle % CHUNKS_PER_SLAB) * CHUNK_BYTES;
+        }
+
+        // Off-heap bytes reserved, including free chunks
+        public long reservedBytes() {
+            return reservedBytes;
+        }
+
+        public int chunksInUse() {
+            return nextUnused - freeCount;
+        }
+    }
+
+    // Count, min, max and sum of the samples in a time range [from, to)
+    public static final class Aggregate {
+        public final long from;
+        public final long to;
+        public final int count;
+        public final double min;  // NaN when count is 0, like max and mean()
+        public final double max;
+        public final double sum;
+
+        Aggregate(long from, long to, int count, double min, double max, double sum) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.min = count == 0 ? Double.NaN : min;
+            this.max = count == 0 ? Double.NaN : max;
+            this.sum = sum;
+        }
+
+        public double mean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+    }
+
+    // Receives decoded samples in time order
+    public interface Visitor {
+        void sample(long time, double value);
+    }
+
+    private final Pool pool;
+    private final Reader reader = new Reader();  // Reused by every decode; the series is confined to one thread
+
+    // Per chunk, on the heap: where it lives and what it holds
+    private int[] handles = new int[4];
+    private int[] counts = new int[4];
+    private int[] bitLengths = new int[4];
+    private long[] firstTimes = new long[4];
+    private long[] lastTimes = new long[4];
+    private double[] mins = new double[4];
+    private double[] maxes = new double[4];
+    private double[] sums = new double[4];
+    private int chunks;
+    private long samples;
+
+    // Encoder state of the last chunk
+    private long previousTime;
+    private long previousDelta;
+    private long previousBits;
+    private int previousLeading;
+    private int previousTrailing;
+    private long openWord;  // Bits written so far to the last chunk's partly filled word
+
+    public SensorSeries(Pool pool) {
+        this.pool = pool;
+    }
+
+    // Add a sample; times are milliseconds and must not go backwards
+    public void append(long time, double value) {
+        if (samples > 0 && time < previousTime) {
+            throw new IllegalArgumentException("Sample at " + time + " ms comes before " + previousTime + " ms");
+        }
+        long delta = time - previousTime;
+        if (samples > 0 && delta > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Gap of " + delta + " ms between samples is too long");
+        }
+        int last = chunks - 1;
+        if (chunks == 0 || bitLengths[last] + MAX_SAMPLE_BITS > CHUNK_BITS) {
+            last = newChunk();
+            long bits = Double.doubleToRawLongBits(value);
+            write(last, time, 64);
+            write(last, bits, 64);
+            previousDelta = 0;
+            previousBits = bits;
+            previousLeading = Integer.MAX_VALUE;  // No window yet: the first XOR writes its own
+            firstTimes[last] = time;
+            mins[last] = value;
+            maxes[last] = value;
+        } else {
+            writeTime(last, delta - previousDelta);
+            writeValue(last, Double.doubleToRawLongBits(value));
+            previousDelta = delta;
+            mins[last] = Math.min(mins[last], value);
+            maxes[last] = Math.max(maxes[last], value);
+        }
+        previousTime = time;
+        lastTimes[last] = time;
+        sums[last] += value;
+        counts[last]++;
+        samples++;
+    }
+
+    private void writeTime(int chunk, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            write(chunk, 0b0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta < 64) {
+            write(chunk, 0b10, 2);
+            write(chunk, deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta < 256) {
+            write(chunk, 0b110, 3);
+            write(chunk, deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta < 2048) {
+            write(chunk, 0b1110, 4);
+            write(chunk, deltaOfDelta, 12);
+        } else {
+            write(chunk, 0b1111, 4);
+            write(chunk, deltaOfDelta, 32);
+        }
+    }
+
+    private void writeValue(int chunk, long bits) {
+        long xor = bits ^ previousBits;
+        previousBits = bits;
+        if (xor == 0) {
+            write(chunk, 0b0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading != Integer.MAX_VALUE && leading >= previousLeading && trailing >= previousTrailing) {
+            write(chunk, 0b10, 2);
+            write(chunk, xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int length = 64 - leading - trailing;
+            write(chunk, 0b11, 2);
+            write(chunk, leading, 5);
+            write(chunk, length - 1, 6);
+            write(chunk, xor >>> trailing, length);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    // Append the low n bits of value to the last chunk, most significant first. The word being filled is
+    // kept in a field and stored whole, so the buffer is only ever written.
+    private void write(int chunk, long value, int n) {
+        int position = bitLengths[chunk];
+        ByteBuffer slab = pool.slab(handles[chunk]);
+        int word = Pool.offset(handles[chunk]) + (position >>> 6) * 8;
+        int free = 64 - (position & 63);
+        long bits = n == 64 ? value : value & ((1L << n) - 1);
+        if (n < free) {
+            openWord |= bits << (free - n);
+            slab.putLong(word, openWord);
+        } else {
+            openWord |= bits >>> (n - free);
+            slab.putLong(word, openWord);
+            openWord = n == free ? 0 : bits << (64 - (n - free));
+            if (n > free) {
+                slab.putLong(word + 8, openWord);
+            }
+        }
+        bitLengths[chunk] = position + n;
+    }
+
+    private int newChunk() {
+        if (chunks == handles.length) {
+            int capacity = chunks * 2;
+            handles = Arrays.copyOf(handles, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            bitLengths = Arrays.copyOf(bitLengths, capacity);
+            firstTimes = Arrays.copyOf(firstTimes, capacity);
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxes = Arrays.copyOf(maxes, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+        }
+        handles[chunks] = pool.allocate();
+        openWord = 0;
+        counts[chunks] = 0;
+        bitLengths[chunks] = 0;
+        sums[chunks] = 0;
+        return chunks++;
+    }
+
+    // Visit the samples with from <= time < to, decoding only the chunks that overlap the range
+    public void scan(long from, long to, Visitor visitor) {
+        for (int chunk = firstChunkEndingAtOrAfter(from); chunk < chunks && firstTimes[chunk] < to; chunk++) {
+            decode(chunk, from, to, visitor);
+        }
+    }
+
+    // Aggregate over [from, to): chunks inside the range contribute their stored totals without decoding
+    public Aggregate aggregate(long from, long to) {
+        return laps(from, to - from, 1)[0];
+    }
+
+    // Consecutive laps of lapMillis each, from the first sample to the last
+    public Aggregate[] laps(long lapMillis) {
+        if (samples == 0 || lapMillis <= 0) {
+            return new Aggregate[0];
+        }
+        return laps(firstTimes[0], lapMillis, (int) ((previousTime - firstTimes[0]) / lapMillis) + 1);
+    }
+
+    // One pass over the chunks overlapping the laps: a chunk inside a single lap adds its stored totals,
+    // any other chunk is decoded once and its samples shared out, so no chunk is decoded twice
+    public Aggregate[] laps(long from, long lapMillis, int laps) {
+        LapTotals totals = new LapTotals(from, lapMillis, laps);
+        long to = from + lapMillis * laps;
+        for (int chunk = firstChunkEndingAtOrAfter(from); chunk < chunks && firstTimes[chunk] < to; chunk++) {
+            long first = firstTimes[chunk] - from;
+            long last = lastTimes[chunk] - from;
+            if (first >= 0 && lastTimes[chunk] < to && first / lapMillis == last / lapMillis) {
+                int lap = (int) (first / lapMillis);
+                totals.min[lap] = Math.min(totals.min[lap], mins[chunk]);
+                totals.max[lap] = Math.max(totals.max[lap], maxes[chunk]);
+                totals.sum[lap] += sums[chunk];
+                totals.count[lap] += counts[chunk];
+            } else {
+                totals.seek(firstTimes[chunk]);
+                decode(chunk, from, to, totals);
+            }
+        }
+        Aggregate[] result = new Aggregate[laps];
+        for (int lap = 0; lap < laps; lap++) {
+            result[lap] = new Aggregate(from + lap * lapMillis, from + (lap + 1) * lapMillis,
+                    totals.count[lap], totals.min[lap], totals.max[lap], totals.sum[lap]);
+        }
+        return result;
+    }
+
+    // Running totals per lap; decoded samples arrive in time order, so the current lap only moves forward
+    private static final class LapTotals implements Visitor {
+        final double[] min;
+        final double[] max;
+        final double[] sum;
+        final int[] count;
+        private final long from;
+        private final long lapMillis;
+        private int lap;
+        private long lapEnd;
+
+        LapTotals(long from, long lapMillis, int laps) {
+            this.from = from;
+            this.lapMillis = lapMillis;
+            min = new double[laps];
+            max = new double[laps];
+            sum = new double[laps];
+            count = new int[laps];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        // Position on the lap holding time (or the first lap, for a chunk starting before from)
+        void seek(long time) {
+            lap = time < from ? 0 : (int) ((time - from) / lapMillis);
+            lapEnd = from + (lap + 1) * lapMillis;
+        }
+
+        @Override
+        public void sample(long time, double value) {
+            while (time >= lapEnd) {
+                lap++;
+                lapEnd += lapMillis;
+            }
+            if (value < min[lap]) {
+                min[lap] = value;
+            }
+            if (value > max[lap]) {
+                max[lap] = value;
+            }
+            sum[lap] += value;
+            count[lap]++;
+        }
+    }
+
+    // Binary search on the chunks' last times
+    private int firstChunkEndingAtOrAfter(long time) {
+        int low = 0;
+        int high = chunks;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lastTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Decode one chunk, handing the samples in [from, to) to the visitor and stopping at to
+    private void decode(int chunk, long from, long to, Visitor visitor) {
+        Reader in = reader;
+        in.load(pool.slab(handles[chunk]), Pool.offset(handles[chunk]), bitLengths[chunk]);
+        long time = in.read(64);
+        long bits = in.read(64);
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; ; ) {
+            if (time >= to) {
+                return;
+            }
+            if (time >= from) {
+                visitor.sample(time, Double.longBitsToDouble(bits));
+            }
+            if (++i == counts[chunk]) {
+                return;
+            }
+            delta += readDeltaOfDelta(in);
+            time += delta;
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    int length = (int) in.read(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+        }
+    }
+
+    private static long readDeltaOfDelta(Reader in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return in.readSigned(7);
+        }
+        if (in.read(1) == 0) {
+            return in.readSigned(9);
+        }
+        return in.read(1) == 0 ? in.readSigned(12) : in.readSigned(32);
+    }
+
+    // Reads bits back in the order write() put them in, from an on-heap copy of the chunk: a chunk is
+    // only a few dozen words, and plain array reads decode several times faster than buffer reads
+    private static final class Reader {
+        private final long[] words = new long[CHUNK_BYTES / 8 + 1];  // One spare so a read may look past the end
+        private int position;
+
+        void load(ByteBuffer slab, int base, int bitLength) {
+            for (int word = 0; word < (bitLength + 63) / 64; word++) {
+                words[word] = slab.getLong(base + word * 8);
+            }
+            position = 0;
+        }
+
+        long read(int n) {
+            int word = position >>> 6;
+            int used = position & 63;
+            position += n;
+            // The n bits starting at used, taken from this word and, if they run over, the next one
+            long value = used == 0 ? words[word] : words[word] << used | words[word + 1] >>> (64 - used);
+            return value >>> (64 - n);
+        }
+
+        long readSigned(int n) {
+            return read(n) << (64 - n) >> (64 - n);
+        }
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    public long firstTime() {
+        return samples == 0 ? 0 : firstTimes[0];
+    }
+
+    public long lastTime() {
+        return previousTime;
+    }
+
+    // Bytes the encoded samples take, not counting the unused tail of each chunk
+    public long compressedBytes() {
+        long bits = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            bits += bitLengths[chunk];
+        }
+        return (bits + 7) / 8;
+    }
+
+    // Off-heap chunks plus the per-chunk index on the heap
+    public long footprintBytes() {
+        return (long) chunks * (CHUNK_BYTES + 4 * 3 + 8 * 5);
+    }
+
+    // Give the chunks back to the pool; the series is empty afterwards
+    public void release() {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            pool.release(handles[chunk]);
+        }
+        chunks = 0;
+        samples = 0;
+        previousTime = 0;
+    }
+
+    // The chunks as they are in memory, plus the encoder state so appends can continue after read()
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            out.writeInt(counts[chunk]);
+            out.writeInt(bitLengths[chunk]);
+            out.writeLong(firstTimes[chunk]);
+            out.writeLong(lastTimes[chunk]);
+            out.writeDouble(mins[chunk]);
+            out.writeDouble(maxes[chunk]);
+            out.writeDouble(sums[chunk]);
+            ByteBuffer slab = pool.slab(handles[chunk]);
+            int offset = Pool.offset(handles[chunk]);
+            for (int word = 0; word < (bitLengths[chunk] + 63) / 64; word++) {
+                out.writeLong(slab.getLong(offset + word * 8));
+            }
+        }
+        out.writeLong(samples);
+        out.writeLong(previousTime);
+        out.writeLong(previousDelta);
+        out.writeLong(previousBits);
+        out.writeInt(previousLeading);
+        out.writeInt(previousTrailing);
+    }
+
+    // A series as write() left it, in chunks from pool; throws IOException for a truncated or damaged one
+    public static SensorSeries read(DataInputStream in, Pool pool) throws IOException {
+        SensorSeries series = new SensorSeries(pool);
+        try {
+            series.readChunks(in);
+        } catch (IOException | RuntimeException ex) {
+            series.release();  // A truncated or damaged file must not keep the chunks read so far
+            throw ex;
+        }
+        return series;
+    }
+
+    private void readChunks(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Damaged sensor data: " + count + " chunks");
+        }
+        for (int i = 0; i < count; i++) {
+            int chunk = newChunk();
+            counts[chunk] = in.readInt();
+            bitLengths[chunk] = in.readInt();
+            if (bitLengths[chunk] < 0 || bitLengths[chunk] > CHUNK_BYTES * 8) {
+                throw new IOException("Damaged sensor data: chunk of " + bitLengths[chunk] + " bits");
+            }
+            firstTimes[chunk] = in.readLong();
+            lastTimes[chunk] = in.readLong();
+            mins[chunk] = in.readDouble();
+            maxes[chunk] = in.readDouble();
+            sums[chunk] = in.readDouble();
+            ByteBuffer slab = pool.slab(handles[chunk]);
+            int offset = Pool.offset(handles[chunk]);
+            for (int word = 0; word < (bitLengths[chunk] + 63) / 64; word++) {
+                slab.putLong(offset + word * 8, in.readLong());
+            }
+        }
+        samples = in.readLong();
+        previousTime = in.readLong();
+        previousDelta = in.readLong();
+        previousBits = in.readLong();
+        previousLeading = in.readInt();
+        previousTrailing = in.readInt();
+        int last = chunks - 1;
+        if (chunks > 0 && (bitLengths[last] & 63) != 0) {
+            openWord = pool.slab(handles[last]).getLong(Pool.offset(handles[last]) + (bitLengths[last] >>> 6) * 8);
+        }
+    }
+}
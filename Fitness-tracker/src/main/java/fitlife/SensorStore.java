@@ -0,0 +1,298 @@
+package fitlife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Sensor streams recorded during workouts, keyed by the workout's store row. All streams share one pool
+// of off-heap chunks (see SensorSeries). A recording is attached to a workout in one go, e.g. from a
+// GPX/TCX import or an uploaded CSV, and saved as its own file next to the journal, so the journal and
+// snapshots stay small. Not thread-safe: owned by a TrackerCore; the totals are volatile so a metrics
+// thread can read them.
+public class SensorStore {
+
+    public static final int HEART_RATE = 0;  // Beats per minute
+    public static final int PACE = 1;        // Seconds per kilometre
+    public static final int CADENCE = 2;     // Steps or revolutions per minute
+    public static final int LATITUDE = 3;    // Degrees
+    public static final int LONGITUDE = 4;   // Degrees
+    public static final String[] STREAMS = {"heartRate", "pace", "cadence", "latitude", "longitude"};
+
+    private static final int FILE_MAGIC = 0x464C5353;  // "FLSS"
+    private static final int FILE_VERSION = 2;  // 2 adds the workout's day and name, checked on load
+
+    private final SensorSeries.Pool pool = new SensorSeries.Pool();
+    private final Map<Integer, SensorSeries[]> workouts = new HashMap<>();  // Streams by workout row, null where not recorded
+    private volatile long samples;
+    private volatile long compressedBytes;
+
+    // Samples of one workout as parsed, before compression: one row per point in time, NaN where a stream
+    // has no value at that time. Built on the importer's threads and handed over with the workout.
+    public static final class Recording {
+        private long[] times = new long[1024];  // Milliseconds since the start of the workout
+        private final double[][] values = new double[STREAMS.length][1024];
+        private int size;
+
+        // Start a new point; its values are NaN until set
+        public void add(long time) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                for (int stream = 0; stream < values.length; stream++) {
+                    values[stream] = Arrays.copyOf(values[stream], size * 2);
+                }
+            }
+            times[size] = time;
+            for (double[] column : values) {
+                column[size] = Double.NaN;
+            }
+            size++;
+        }
+
+        // Set a stream's value at the last point added
+        public void set(int stream, double value) {
+            values[stream][size - 1] = value;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long lastTime() {
+            return times[size - 1];
+        }
+
+        public long samples() {
+            long samples = 0;
+            for (double[] column : values) {
+                for (int i = 0; i < size; i++) {
+                    samples += Double.isNaN(column[i]) ? 0 : 1;
+                }
+            }
+            return samples;
+        }
+    }
+
+    // Stream code for a name in STREAMS, or -1
+    public static int streamCode(String name) {
+        return Arrays.asList(STREAMS).indexOf(name);
+    }
+
+    // The recorded stream, or null
+    public SensorSeries series(int row, int stream) {
+        SensorSeries[] streams = workouts.get(row);
+        return streams == null ? null : streams[stream];
+    }
+
+    public boolean has(int row) {
+        return workouts.containsKey(row);
+    }
+
+    // Replace a workout's recording; returns the number of samples stored. Throws IllegalArgumentException,
+    // leaving the old recording in place, when times go backwards.
+    public long attach(int row, Recording recording) {
+        SensorSeries[] streams = new SensorSeries[STREAMS.length];
+        long stored = 0;
+        try {
+            for (int stream = 0; stream < streams.length; stream++) {
+                double[] column = recording.values[stream];
+                for (int i = 0; i < recording.size; i++) {
+                    if (Double.isNaN(column[i])) {
+                        continue;
+                    }
+                    if (streams[stream] == null) {
+                        streams[stream] = new SensorSeries(pool);
+                    }
+                    streams[stream].append(recording.times[i], column[i]);
+                    stored++;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            release(streams);
+            throw ex;
+        }
+        remove(row);
+        put(row, streams);
+        return stored;
+    }
+
+    private void put(int row, SensorSeries[] streams) {
+        workouts.put(row, streams);
+        for (SensorSeries series : streams) {
+            if (series != null) {
+                samples += series.samples();
+                compressedBytes += series.compressedBytes();
+            }
+        }
+    }
+
+    // Parse a CSV with a header naming the columns: "seconds" (elapsed time, fractions allowed) and any
+    // of STREAMS. Empty cells are skipped, so streams sampled at different rates can share a file.
+    public static Recording readCsv(BufferedReader in) throws IOException {
+        String header = in.readLine();
+        if (header == null) {
+            throw new IOException("Empty sensor file");
+        }
+        String[] columns = header.trim().split("\\s*,\\s*");
+        int timeColumn = Arrays.asList(columns).indexOf("seconds");
+        if (timeColumn == -1) {
+            throw new IOException("Sensor file needs a \"seconds\" column");
+        }
+        int[] streamOfColumn = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            streamOfColumn[c] = c == timeColumn ? -1 : streamCode(columns[c]);
+        }
+
+        Recording recording = new Recording();
+        int lineNumber = 1;
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] cells = line.split(",", -1);
+                recording.add(Math.round(Double.parseDouble(cells[timeColumn].trim()) * 1000));
+                for (int c = 0; c < cells.length && c < columns.length; c++) {
+                    String cell = cells[c].trim();
+                    if (streamOfColumn[c] != -1 && !cell.isEmpty()) {
+                        recording.set(streamOfColumn[c], Double.parseDouble(cell));
+                    }
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            throw new IOException("Line " + lineNumber + ": " + ex.getMessage(), ex);
+        }
+        return recording;
+    }
+
+    // Drop a workout's recording and give its chunks back to the pool
+    public void remove(int row) {
+        SensorSeries[] streams = workouts.remove(row);
+        if (streams != null) {
+            for (SensorSeries series : streams) {
+                if (series != null) {
+                    samples -= series.samples();
+                    compressedBytes -= series.compressedBytes();
+                }
+            }
+            release(streams);
+        }
+    }
+
+    public void clear() {
+        for (SensorSeries[] streams : workouts.values()) {
+            release(streams);
+        }
+        workouts.clear();
+        samples = 0;
+        compressedBytes = 0;
+    }
+
+    private static void release(SensorSeries[] streams) {
+        for (SensorSeries series : streams) {
+            if (series != null) {
+                series.release();
+            }
+        }
+    }
+
+    public int workouts() {
+        return workouts.size();
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    public long compressedBytes() {
+        return compressedBytes;
+    }
+
+    public long reservedBytes() {
+        return pool.reservedBytes();
+    }
+
+    // Write one workout's recording to <directory>/<row>.sensors, replacing the file atomically. The file
+    // names the workout's day and activity too, so load() can tell when the row now holds something else.
+    public void save(int row, EntryStore entries, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(row + ".sensors");
+        SensorSeries[] streams = workouts.get(row);
+        if (streams == null) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Path temp = directory.resolve(row + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(entries.day(row));
+            out.writeUTF(entries.name(row));
+            for (SensorSeries series : streams) {
+                out.writeBoolean(series != null);
+                if (series != null) {
+                    series.write(out);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Load the saved recordings of the store's workouts. A file whose row is not a live workout of the same
+    // day and activity is deleted: the recording of a row lost with the journal's unflushed tail would
+    // otherwise be attached to whatever entry takes that row number next. A damaged file is skipped.
+    public int load(Path directory, EntryStore entries) throws IOException {
+        clear();
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.sensors")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.matches("\\d{1,9}\\.sensors")) {
+                    continue;
+                }
+                int row = Integer.parseInt(name.substring(0, name.length() - ".sensors".length()));
+                if (row >= entries.size() || entries.isDeleted(row) || !entries.isWorkout(row)) {
+                    Files.delete(file);
+                    continue;
+                }
+                SensorSeries[] streams = new SensorSeries[STREAMS.length];
+                boolean stale = false;
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                    if (in.readInt() != FILE_MAGIC) {
+                        continue;
+                    }
+                    int version = in.readInt();
+                    if (version == FILE_VERSION) {
+                        stale = in.readInt() != entries.day(row) || !in.readUTF().equals(entries.name(row));
+                    } else if (version != 1) {  // Version 1 files only had the row to go on
+                        continue;
+                    }
+                    for (int stream = 0; !stale && stream < streams.length; stream++) {
+                        streams[stream] = in.readBoolean() ? SensorSeries.read(in, pool) : null;
+                    }
+                } catch (IOException ex) {
+                    release(streams);  // Truncated or damaged: skip this file, keep loading the others
+                    continue;
+                }
+                if (stale) {
+                    Files.delete(file);
+                    continue;
+                }
+                put(row, streams);
+            }
+        }
+        return workouts.size();
+    }
+}
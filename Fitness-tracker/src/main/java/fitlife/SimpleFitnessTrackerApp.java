@@ -0,0 +1,937 @@
+package fitlife;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;  // Import necessary classes from JavaFX library
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.geometry.Side;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class SimpleFitnessTrackerApp extends Application {  // Define a JavaFX application class
+
+    // Food tracker UI components
+    private ListView<Integer> morningHistoryView;  // List to show morning food history
+    private ListView<Integer> lunchHistoryView;    // List to show lunch food history
+    private ListView<Integer> dinnerHistoryView;   // List to show dinner food history
+    private Label totalCaloriesLabel;             // Label to display total calories
+    private FoodCatalog foodCatalog;              // Indexed food catalog used for calorie lookup
+    private EnergyEngine energy;                  // MET table and profile behind burn estimates
+    private final int[] suggestionIndexes = new int[8];  // Reused buffer for autocomplete results
+
+    // Fitness tracker UI components
+    private ListView<Integer> fitnessHistoryView;  // List to show fitness activity history
+    private Label totalWorkoutMinutesLabel;       // Label to display total workout minutes
+    private Label totalCaloriesBurnedLabel;       // Label to display total calories burned
+    private static final long LAP_MILLIS = 5 * 60_000;  // Lap length for the selected workout's recording
+    private Label lapsLabel;                      // Per-lap heart rate, pace and cadence of the selected workout
+
+    // Workout planner UI components
+    private static final int PLAN_SEARCH_LIMIT = 200;  // Rows shown for a plan search, best matches first
+    private ListView<String> workoutPlanView;     // List to display workout plans
+    private ObservableList<String> workoutPlans;  // Observable list to manage workout plans
+    private TextArea workoutTextArea;             // Text area for adding/editing workout plans
+    private final PlanStore planStore = new PlanStore();  // Plans indexed by date, recurring plans expanded on demand
+    private final List<Integer> shownPlanIds = new ArrayList<>();  // Plan id behind each row of workoutPlanView
+    private final CheckBox[] repeatDays = new CheckBox[7];  // Monday to Sunday toggles for recurring plans
+    private TextField repeatWeeksInput;           // Number of weeks a recurring plan runs for
+    private TextField planSearchInput;            // Full-text query over plan descriptions; empty shows plans by date
+
+    // Calendar UI components
+    private DatePicker calendarPicker;            // Date picker for selecting dates
+    private VBox calendarView;                    // Vertical box to contain calendar UI elements
+    private final HistoryRows dayRows = new HistoryRows();  // Entries logged on the selected date
+    private Label dayTotalsLabel;                 // Label showing the selected date's intake and workouts
+
+    // History views, indexed by store code: the three meals, then workouts
+    private final HistoryRows[] historyRows = {new HistoryRows(), new HistoryRows(), new HistoryRows(), new HistoryRows()};
+    private Label weekSummaryLabel;               // Label showing this week's intake, burn and net calories
+    private Label importStatusLabel;              // Label showing bulk import progress
+
+    // Undo and Redo for entries, one pair on each tab with history views; the service says what they would do
+    private final List<Button> entryUndoButtons = new ArrayList<>();
+    private final List<Button> entryRedoButtons = new ArrayList<>();
+    private String entryUndoText;                 // Null when there is nothing to undo
+    private String entryRedoText;
+    private Button planUndoButton;
+    private Button planRedoButton;
+
+    // Trends tab: daily intake against burn, refreshed from the service while the tab is showing
+    private Tab trendTab;
+    private TrendChart trendChart;
+
+    // Goal and alert rules, listed on the Trends tab; the newest alert also shows under the food totals
+    private static final int ALERTS_SHOWN = 50;
+    private Label alertLabel;
+    private final ObservableList<String> ruleItems = FXCollections.observableArrayList();  // Each rule with its current sum
+    private final List<Integer> shownRuleIds = new ArrayList<>();  // Rule id behind each row of ruleItems
+    private final ObservableList<String> alertItems = FXCollections.observableArrayList();  // Recent alerts, newest first
+
+    // Tracker logic runs on the service thread; results come back through one coalesced runLater
+    private final UiPublisher uiPublisher = new UiPublisher();
+    private TrackerService trackerService;
+    private final Path dataDirectory = Path.of(System.getProperty("user.home"), ".fitlife");  // Journal, snapshot and profile
+
+    // Handler and service latencies, dumped to metrics.json on exit; -Dfitlife.metrics.port=N also serves
+    // them on localhost and times FX pulses, which keeps the FX thread pulsing every frame
+    private final Metrics metrics = new Metrics();
+    private PulseMonitor pulseMonitor;
+    private MetricsEndpoint metricsEndpoint;
+
+    // Only Home is built before the first frame; the other tabs are built when first selected, or one per
+    // frame once the window is up. -Dfitlife.startup.exit=true prints the startup times and quits (CDS training)
+    private final Map<Tab, Supplier<Node>> pendingTabs = new LinkedHashMap<>();
+    private final boolean exitAfterStartup = Boolean.getBoolean("fitlife.startup.exit");
+
+    @Override
+    public void start(Stage primaryStage) {  
+        primaryStage.setTitle("Fitlife");  // Set the title of the primary stage
+
+        foodCatalog = FoodCatalog.loadDefault();  // Load the food catalog before wiring up the handlers
+        energy = EnergyEngine.loadDefault(UserProfile.load(dataDirectory.resolve("profile.properties")));
+        trackerService = new TrackerService(foodCatalog, energy, uiPublisher, trackerView(), metrics);
+
+        // Labels the service updates exist from the start, since results can arrive before their tab is built
+        totalCaloriesLabel = new Label("Total Calories: 0");
+        weekSummaryLabel = new Label();
+        totalWorkoutMinutesLabel = new Label("Total Workout Minutes: 0");
+        totalCaloriesBurnedLabel = new Label("Total Calories Burned: 0");
+        importStatusLabel = new Label();
+        alertLabel = new Label();
+
+        // Create tabs for different sections
+        TabPane tabPane = new TabPane();
+
+        Tab homeTab = new Tab("Home");  // Create a tab for the Home section
+        homeTab.setClosable(false);  // Disable closing of the tab
+        VBox homeLayout = new VBox(20);  // Vertical box for Home section with spacing
+        homeLayout.setPadding(new Insets(10));  // Set padding around the layout
+        homeLayout.setAlignment(Pos.CENTER);  // Center-align the content within the layout
+        homeLayout.setStyle("-fx-background-color: #add8e6; -fx-font-size: 40px;");  // Set background color and font size
+        homeLayout.getChildren().add(new Label("Welcome to Fitlife!"));  // Add label to layout
+
+       
+        // Create buttons for navigating to other features
+        Button activityTrackerButton = new Button("Go to Activity Tracker");
+        Button caloriesCounterButton = new Button("Go to Calories Counter");
+        Button workoutPlannerButton = new Button("Go to Workout Planner");
+
+        // Add buttons to the Home layout
+        homeLayout.getChildren().addAll(activityTrackerButton, caloriesCounterButton, workoutPlannerButton);
+
+        // Set the content of the Home tab to the homeLayout
+        homeTab.setContent(homeLayout);
+
+        // Create tabs for the Food, Fitness, and Workout sections; their controls are built on first use
+        Tab foodTab = lazyTab("Food", this::buildFoodTab);
+        Tab fitnessTab = lazyTab("Fitness", () -> buildFitnessTab(primaryStage));
+        Tab workoutTab = lazyTab("Workout", this::buildWorkoutTab);
+        trendTab = lazyTab("Trends", this::buildTrendTab);
+        trendTab.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            if (selected) {
+                trackerService.requestTrend();  // Hidden charts are not kept up to date
+                trackerService.requestRules();
+            }
+        });
+
+        // Add all tabs to the TabPane
+        tabPane.getTabs().addAll(homeTab, foodTab, fitnessTab, workoutTab, trendTab);
+
+        // Set the scene with the TabPane as root node
+        Scene scene = new Scene(tabPane, 800, 600);  // Create a scene with specified dimensions
+        scene.getStylesheets().add(getClass().getResource("styles.css").toExternalForm());  // Add external CSS stylesheet
+        // Ctrl+Z and Ctrl+Y (Cmd on macOS) undo and redo plans on the Workout tab and entries everywhere else;
+        // a focused text input handles them itself first
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), () -> {
+            if (workoutTab.isSelected()) {
+                undoPlan();
+            } else {
+                trackerService.undo();
+            }
+        });
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), () -> {
+            if (workoutTab.isSelected()) {
+                redoPlan();
+            } else {
+                trackerService.redo();
+            }
+        });
+        primaryStage.setScene(scene);  // Set the scene to the primary stage
+        primaryStage.show();  // Display the primary stage
+
+        trackerService.open(dataDirectory);  // Restore saved history in the background
+        startMetricsEndpoint();
+        warmRemainingTabs();
+    }
+
+    // Food tab: food entry with autocomplete and the three meal histories
+    private Node buildFoodTab() {
+        // Initialize UI for food tracker
+        TextField foodInput = new TextField();
+        foodInput.setPromptText("Enter food (e.g., banana, pizza, soda)");
+        ContextMenu foodSuggestions = new ContextMenu();  // Popup listing autocomplete suggestions
+
+        // Suggest catalog foods as the user types
+        foodInput.textProperty().addListener((observable, oldText, newText) -> {
+            int count = newText == null ? 0 : foodCatalog.suggest(newText, suggestionIndexes, suggestionIndexes.length);
+            if (count == 0 || !foodInput.isFocused()) {
+                foodSuggestions.hide();
+                return;
+            }
+            foodSuggestions.getItems().clear();
+            for (int i = 0; i < count; i++) {
+                int index = suggestionIndexes[i];
+                String name = foodCatalog.name(index);
+                if (name.equals(newText.trim().toLowerCase(Locale.ROOT))) {
+                    foodSuggestions.hide();  // Already an exact match, nothing to suggest
+                    return;
+                }
+                MenuItem item = new MenuItem(name + " (" + foodCatalog.serving(index) + ", " + foodCatalog.calories(index) + " cal)");
+                item.setOnAction(event -> {
+                    foodInput.setText(name);
+                    foodInput.positionCaret(name.length());
+                });
+                foodSuggestions.getItems().add(item);
+            }
+            if (!foodSuggestions.isShowing()) {
+                foodSuggestions.show(foodInput, Side.BOTTOM, 0, 0);
+            }
+        });
+        ComboBox<String> timeOfDay = new ComboBox<>();
+        timeOfDay.getItems().addAll("Morning", "Lunch", "Dinner");
+        timeOfDay.setPromptText("Select time of day");
+        Button addFoodButton = new Button("Add Food");
+        Button updateFoodButton = new Button("Update Selected");
+        Button deleteFoodButton = new Button("Delete Selected");
+
+        morningHistoryView = historyView(historyRows[EntryStore.MORNING]);
+        lunchHistoryView = historyView(historyRows[EntryStore.LUNCH]);
+        dinnerHistoryView = historyView(historyRows[EntryStore.DINNER]);
+        // One selection across the three meals, so the buttons below know which entry is meant
+        for (ListView<Integer> mealView : List.of(morningHistoryView, lunchHistoryView, dinnerHistoryView)) {
+            mealView.getSelectionModel().selectedItemProperty().addListener((observable, oldRow, newRow) -> {
+                if (newRow != null) {
+                    for (ListView<Integer> other : List.of(morningHistoryView, lunchHistoryView, dinnerHistoryView)) {
+                        if (other != mealView) {
+                            other.getSelectionModel().clearSelection();
+                        }
+                    }
+                }
+            });
+        }
+
+        // Action event for the Add Food button
+        addFoodButton.setOnAction(timed("fx.addFood", e -> {
+            String food = foodInput.getText();
+            int meal = TrackerCore.mealCode(timeOfDay.getValue());
+            foodSuggestions.hide();
+
+            // Lookup, storage and totals happen on the service thread
+            if (meal != -1) {
+                trackerService.addFood(food, meal);
+                foodInput.clear();
+            }
+        }));
+
+        // The selected entry becomes the food and meal in the inputs above; the meal defaults to the one it is in
+        updateFoodButton.setOnAction(timed("fx.editFood", e -> {
+            Integer row = selectedFoodRow();
+            if (row != null) {
+                int meal = TrackerCore.mealCode(timeOfDay.getValue());
+                trackerService.editFood(row, foodInput.getText(), meal == -1 ? trackerService.entries().code(row) : meal);
+                foodSuggestions.hide();
+                foodInput.clear();
+            }
+        }));
+        deleteFoodButton.setOnAction(timed("fx.delete", e -> {
+            Integer row = selectedFoodRow();
+            if (row != null) {
+                trackerService.delete(row);
+            }
+        }));
+
+        // Layout for food tracker
+        VBox foodLayout = new VBox(10);
+        foodLayout.getStyleClass().add("food-tracker");  // Add CSS class for styling
+        foodLayout.getChildren().addAll(
+                new Label("Food Tracker"),
+                new HBox(10, foodInput, timeOfDay, addFoodButton),  // Add spacing between inputs
+                new HBox(10, updateFoodButton, deleteFoodButton, entryUndoButton(), entryRedoButton()),
+                new Label("Breakfast"),
+                morningHistoryView,
+                new Label("Lunch"),
+                lunchHistoryView,
+                new Label("Dinner"),
+                dinnerHistoryView,
+                totalCaloriesLabel,
+                weekSummaryLabel,
+                alertLabel
+        );
+        return foodLayout;
+    }
+
+    // Fitness tab: workouts, history import and the profile used for burn estimates
+    private Node buildFitnessTab(Stage primaryStage) {
+        // Initialize UI for fitness tracker
+        ComboBox<String> workoutInput = new ComboBox<>();
+        workoutInput.getItems().addAll(energy.activities());  // Every activity in the MET table
+        workoutInput.setPromptText("Select workout");
+        TextField minutesInput = new TextField();
+        minutesInput.setPromptText("Enter minutes");
+        Button addWorkoutButton = new Button("Add Workout");
+        Button updateWorkoutButton = new Button("Update Selected");
+        Button deleteWorkoutButton = new Button("Delete Selected");
+
+        fitnessHistoryView = historyView(historyRows[EntryStore.WORKOUT]);
+        lapsLabel = new Label();
+        lapsLabel.setWrapText(true);
+        // Imported workouts carry their trackpoints; show them lap by lap when one is selected
+        fitnessHistoryView.getSelectionModel().selectedItemProperty().addListener((observable, oldRow, newRow) -> {
+            if (newRow == null) {
+                lapsLabel.setText("");
+            } else {
+                trackerService.requestLaps(newRow, LAP_MILLIS);
+            }
+        });
+
+        // Profile used for calorie burn estimates
+        UserProfile profile = energy.profile();
+        TextField weightInput = new TextField(String.valueOf(profile.weightKg));
+        weightInput.setPromptText("Weight (kg)");
+        weightInput.setPrefColumnCount(5);
+        TextField heightInput = new TextField(String.valueOf(profile.heightCm));
+        heightInput.setPromptText("Height (cm)");
+        heightInput.setPrefColumnCount(5);
+        TextField ageInput = new TextField(String.valueOf(profile.age));
+        ageInput.setPromptText("Age");
+        ageInput.setPrefColumnCount(3);
+        ComboBox<String> sexInput = new ComboBox<>();
+        sexInput.getItems().addAll(UserProfile.MALE, UserProfile.FEMALE, UserProfile.UNSPECIFIED);
+        sexInput.setValue(profile.sex);
+        TextField restingHeartRateInput = new TextField(String.valueOf(profile.restingHeartRate));
+        restingHeartRateInput.setPromptText("Resting HR");
+        restingHeartRateInput.setPrefColumnCount(3);
+        Button saveProfileButton = new Button("Save Profile");
+
+        // Action event for the Save Profile button
+        saveProfileButton.setOnAction(timed("fx.saveProfile", e -> {
+            try {
+                trackerService.updateProfile(new UserProfile(
+                        Double.parseDouble(weightInput.getText().trim()),
+                        Double.parseDouble(heightInput.getText().trim()),
+                        Integer.parseInt(ageInput.getText().trim()),
+                        sexInput.getValue(),
+                        Integer.parseInt(restingHeartRateInput.getText().trim())));
+            } catch (IllegalArgumentException ex) {
+                importStatusLabel.setText("Profile values must be positive numbers");
+            }
+        }));
+
+        // Bulk import of watch and food-log exports
+        Button importButton = new Button("Import History");
+        importButton.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Import workouts or food log");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Exports (*.csv, *.gpx, *.tcx)", "*.csv", "*.gpx", "*.tcx"));
+            File file = chooser.showOpenDialog(primaryStage);
+            if (file != null) {
+                importButton.setDisable(true);  // One import at a time
+                importStatusLabel.setText("Importing " + file.getName() + "...");
+                trackerService.importFile(file.toPath(), () -> importButton.setDisable(false));
+            }
+        });
+
+        // Export of the whole history for analysis
+        Button exportButton = new Button("Export History");
+        exportButton.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Export history");
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"),
+                    new FileChooser.ExtensionFilter("Columnar (*.flc)", "*.flc"));
+            chooser.setInitialFileName("fitlife-history.csv");
+            File file = chooser.showSaveDialog(primaryStage);
+            if (file != null) {
+                exportButton.setDisable(true);  // One export at a time
+                importStatusLabel.setText("Exporting to " + file.getName() + "...");
+                trackerService.exportFile(file.toPath(), () -> exportButton.setDisable(false));
+            }
+        });
+
+        // Action event for the Add Workout button
+        addWorkoutButton.setOnAction(timed("fx.addWorkout", e -> {
+            // Parsing, calorie calculation and totals happen on the service thread
+            trackerService.addWorkout(workoutInput.getValue(), minutesInput.getText());
+            workoutInput.getSelectionModel().clearSelection();
+            minutesInput.clear();
+        }));
+
+        // The selected workout takes the activity and minutes in the inputs; the burn is estimated again
+        updateWorkoutButton.setOnAction(timed("fx.editWorkout", e -> {
+            Integer row = fitnessHistoryView.getSelectionModel().getSelectedItem();
+            if (row != null) {
+                String activity = workoutInput.getValue() == null ? trackerService.entries().name(row) : workoutInput.getValue();
+                trackerService.editWorkout(row, activity, minutesInput.getText());
+                workoutInput.getSelectionModel().clearSelection();
+                minutesInput.clear();
+            }
+        }));
+        deleteWorkoutButton.setOnAction(timed("fx.delete", e -> {
+            Integer row = fitnessHistoryView.getSelectionModel().getSelectedItem();
+            if (row != null) {
+                trackerService.delete(row);
+            }
+        }));
+
+        // Layout for fitness tracker
+        VBox fitnessLayout = new VBox(10);
+        fitnessLayout.getStyleClass().add("fitness-tracker");  // Add CSS class for styling
+        fitnessLayout.getChildren().addAll(
+                new Label("Fitness Tracker"),
+                new HBox(10, workoutInput, minutesInput, addWorkoutButton),  // Add spacing between inputs
+                new HBox(10, updateWorkoutButton, deleteWorkoutButton, entryUndoButton(), entryRedoButton()),
+                new HBox(10, importButton, exportButton, importStatusLabel),
+                new HBox(10, new Label("Profile"), weightInput, heightInput, ageInput, sexInput, restingHeartRateInput, saveProfileButton),
+                totalWorkoutMinutesLabel,
+                totalCaloriesBurnedLabel,
+                fitnessHistoryView,
+                lapsLabel
+        );
+        return fitnessLayout;
+    }
+
+    // Workout tab: the planner and its calendar
+    private Node buildWorkoutTab() {
+        // Initialize workout plans list
+        workoutPlans = FXCollections.observableArrayList();
+        workoutPlanView = new ListView<>(workoutPlans);
+
+        // Initialize workout planner UI components
+        Label workoutPlanLabel = new Label("Workout Plans");
+        workoutTextArea = new TextArea();
+        workoutTextArea.setPromptText("Add exercises here...");
+        workoutTextArea.setPrefHeight(150);
+        Button addWorkoutPlanButton = new Button("Add Workout Plan");
+        Button saveWorkoutPlanButton = new Button("Save Workout Plan");
+        Button deleteWorkoutPlanButton = new Button("Delete Workout Plan");
+        planUndoButton = new Button();
+        planUndoButton.setOnAction(timed("fx.undoPlan", e -> undoPlan()));
+        labelHistoryButton(planUndoButton, "Undo", null);
+        planRedoButton = new Button();
+        planRedoButton.setOnAction(timed("fx.redoPlan", e -> redoPlan()));
+        labelHistoryButton(planRedoButton, "Redo", null);
+
+        // Optional weekly repeat for a plan added on the selected date
+        HBox repeatBox = new HBox(5, new Label("Repeat on"));
+        for (int d = 0; d < repeatDays.length; d++) {
+            String name = DayOfWeek.of(d + 1).toString();
+            repeatDays[d] = new CheckBox(name.charAt(0) + name.substring(1, 3).toLowerCase(Locale.ROOT));
+            repeatBox.getChildren().add(repeatDays[d]);
+        }
+        repeatWeeksInput = new TextField("12");
+        repeatWeeksInput.setPrefColumnCount(3);
+        repeatBox.getChildren().addAll(new Label("for"), repeatWeeksInput, new Label("weeks"));
+
+        // Searching replaces the date view while there is a query, e.g. "squat AND deadlift" or "tempo run"
+        planSearchInput = new TextField();
+        planSearchInput.setPromptText("Search plans");
+        planSearchInput.textProperty().addListener((observable, oldQuery, newQuery) -> refreshPlanView());
+
+        // Action event for adding a new workout plan
+        addWorkoutPlanButton.setOnAction(timed("fx.addPlan", e -> {
+            String planDescription = workoutTextArea.getText();
+
+            if (!planDescription.isEmpty()) {
+                LocalDate selectedDate = calendarPicker.getValue();
+                int weekdayMask = 0;
+                for (int d = 0; d < repeatDays.length; d++) {
+                    weekdayMask |= repeatDays[d].isSelected() ? 1 << d : 0;
+                }
+                if (selectedDate == null) {
+                    planStore.addUndated(planDescription);
+                } else if (weekdayMask != 0) {
+                    int weeks;
+                    try {
+                        weeks = Integer.parseInt(repeatWeeksInput.getText().trim());
+                    } catch (NumberFormatException ex) {
+                        weeks = 0;
+                    }
+                    if (weeks <= 0 || weeks > PlanStore.MAX_WEEKS) {
+                        repeatWeeksInput.clear();
+                        return;
+                    }
+                    planStore.addRecurring(planDescription, (int) selectedDate.toEpochDay(), weekdayMask, weeks);
+                } else {
+                    planStore.addOnDay(planDescription, (int) selectedDate.toEpochDay());
+                }
+                refreshPlanView();
+                workoutTextArea.clear();
+            }
+        }));
+
+        // Action event for saving a workout plan
+        saveWorkoutPlanButton.setOnAction(timed("fx.savePlan", e -> {
+            int selectedIndex = workoutPlanView.getSelectionModel().getSelectedIndex();
+            if (selectedIndex != -1) {
+                planStore.updateDescription(shownPlanIds.get(selectedIndex), workoutTextArea.getText());
+                refreshPlanView();
+                workoutTextArea.clear();
+            }
+        }));
+
+        deleteWorkoutPlanButton.setOnAction(timed("fx.deletePlan", e -> {
+            int selectedIndex = workoutPlanView.getSelectionModel().getSelectedIndex();
+            if (selectedIndex != -1) {
+                planStore.remove(shownPlanIds.get(selectedIndex));
+                refreshPlanView();
+            }
+        }));
+
+        // Initialize UI for calendar view
+        calendarPicker = new DatePicker();
+        calendarPicker.setPromptText("Select date");
+        calendarPicker.valueProperty().addListener((observable, oldDate, newDate) -> {
+            refreshPlanView();
+            refreshDayView();
+        });
+        // Highlight days that have plans; only the cells of the month on screen ask the index
+        calendarPicker.setDayCellFactory(picker -> new DateCell() {
+            @Override
+            public void updateItem(LocalDate date, boolean empty) {
+                super.updateItem(date, empty);
+                getStyleClass().remove("has-plan");
+                if (!empty && date != null && planStore.countOn((int) date.toEpochDay()) > 0) {
+                    getStyleClass().add("has-plan");
+                }
+            }
+        });
+
+        dayTotalsLabel = new Label();
+        ListView<Integer> dayView = historyView(dayRows);
+        dayView.setPrefHeight(120);
+
+        calendarView = new VBox(10);
+        calendarView.getChildren().addAll(
+                new Label("Workout Plans"),
+                calendarPicker,
+                dayTotalsLabel,
+                dayView,
+                new Label("Workout Plan Details"),
+                planSearchInput,
+                workoutPlanView,
+                workoutTextArea,
+                repeatBox,
+                new HBox(10, addWorkoutPlanButton, saveWorkoutPlanButton, deleteWorkoutPlanButton,
+                        planUndoButton, planRedoButton) // Add spacing between buttons
+        );
+
+        calendarView.setPadding(new Insets(10));
+
+        // Layout for workout planner
+        calendarView.getStyleClass().add("workout-planner");  // Add CSS class for styling
+        return calendarView;
+    }
+
+    // Trends tab: one chart over the whole history, and the rules checked against every entry
+    private Node buildTrendTab() {
+        trendChart = new TrendChart(metrics);
+
+        TextField ruleInput = new TextField();
+        ruleInput.setPromptText("e.g. net > 2000, or workouts < 1 over 3 days");
+        ruleInput.setPrefColumnCount(24);
+        Label ruleMessage = new Label();
+        Button addRuleButton = new Button("Add Rule");
+        addRuleButton.setOnAction(timed("fx.addRule", e -> {
+            try {
+                RuleEngine.parse(ruleInput.getText());
+            } catch (IllegalArgumentException ex) {
+                ruleMessage.setText(ex.getMessage());
+                return;
+            }
+            trackerService.addRule(ruleInput.getText().trim());
+            ruleInput.clear();
+            ruleMessage.setText("");
+        }));
+        ListView<String> ruleView = new ListView<>(ruleItems);
+        ruleView.setPrefHeight(100);
+        Button deleteRuleButton = new Button("Delete Rule");
+        deleteRuleButton.setOnAction(timed("fx.deleteRule", e -> {
+            int selectedIndex = ruleView.getSelectionModel().getSelectedIndex();
+            if (selectedIndex != -1) {
+                trackerService.removeRule(shownRuleIds.get(selectedIndex));
+            }
+        }));
+        ListView<String> alertView = new ListView<>(alertItems);
+        alertView.setPrefHeight(100);
+
+        VBox trendLayout = new VBox(10, new Label("Calories per Day"), trendChart,
+                new Label("Scroll to zoom, drag to pan, double-click to show everything"),
+                new Label("Rules"),
+                new HBox(10, ruleInput, addRuleButton, deleteRuleButton, ruleMessage),
+                new HBox(10, ruleView, alertView));
+        trendLayout.setPadding(new Insets(10));
+        VBox.setVgrow(trendChart, Priority.ALWAYS);
+        return trendLayout;
+    }
+
+    // A tab whose content is built the first time it is needed
+    private Tab lazyTab(String title, Supplier<Node> builder) {
+        Tab tab = new Tab(title);
+        tab.setClosable(false);  // Disable closing of the tab
+        pendingTabs.put(tab, builder);
+        tab.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            if (selected) {
+                ensureBuilt(tab);
+            }
+        });
+        return tab;
+    }
+
+    private void ensureBuilt(Tab tab) {
+        Supplier<Node> builder = pendingTabs.remove(tab);
+        if (builder != null) {
+            long started = System.nanoTime();
+            tab.setContent(builder.get());
+            metrics.record("fx.buildTab", System.nanoTime() - started);
+        }
+    }
+
+    // After the first frames are on screen, build the remaining tabs one per pulse so switching to them
+    // later is instant and no single frame pays for all of them
+    private void warmRemainingTabs() {
+        new AnimationTimer() {
+            private int frames;
+
+            @Override
+            public void handle(long now) {
+                if (++frames == 1) {
+                    metrics.record("startup.firstFrame", sinceLaunch());
+                    return;
+                }
+                if (frames < 4) {
+                    return;  // Let the first frames settle before doing more work
+                }
+                Iterator<Tab> remaining = pendingTabs.keySet().iterator();
+                if (remaining.hasNext()) {
+                    ensureBuilt(remaining.next());
+                    return;
+                }
+                stop();
+                metrics.record("startup.allTabs", sinceLaunch());
+                if (exitAfterStartup) {
+                    System.out.printf("startup firstFrameMs=%.1f allTabsMs=%.1f%n",
+                            metrics.histogram("startup.firstFrame").max() / 1e6,
+                            metrics.histogram("startup.allTabs").max() / 1e6);
+                    Platform.exit();
+                }
+            }
+        }.start();
+    }
+
+    // Nanoseconds since the JVM process started, so class loading and JavaFX start-up count too
+    private static long sinceLaunch() {
+        return ProcessHandle.current().info().startInstant()
+                .map(started -> Duration.between(started, Instant.now()).toNanos())
+                .orElse(0L);
+    }
+
+    private void startMetricsEndpoint() {
+        Integer port = Integer.getInteger("fitlife.metrics.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            metricsEndpoint = new MetricsEndpoint(metrics, port);
+            pulseMonitor = new PulseMonitor(metrics);
+            pulseMonitor.start();
+        } catch (IOException ex) {
+            System.err.println("Metrics endpoint could not start: " + ex.getMessage());
+        }
+    }
+
+    // Time a button handler on the FX thread; anything slow here is time the window cannot repaint
+    private EventHandler<ActionEvent> timed(String action, EventHandler<ActionEvent> handler) {
+        return e -> {
+            FitlifeEvents.Action event = new FitlifeEvents.Action(action);
+            event.begin();
+            long started = System.nanoTime();
+            try {
+                handler.handle(e);
+            } finally {
+                metrics.record(action, System.nanoTime() - started);
+                event.commit();
+            }
+        };
+    }
+
+    // Show the plans matching the search box, else the plans for the selected date (an indexed lookup),
+    // or every plan when no date is selected
+    private void refreshPlanView() {
+        List<String> rows = new ArrayList<>();
+        shownPlanIds.clear();
+        LocalDate selectedDate = calendarPicker.getValue();
+        String query = planSearchInput.getText().trim();
+        if (!query.isEmpty()) {
+            long started = System.nanoTime();
+            for (PlanStore.Plan plan : planStore.search(query, PLAN_SEARCH_LIMIT)) {
+                rows.add(plan.describe());
+                shownPlanIds.add(plan.id);
+            }
+            metrics.record("fx.searchPlans", System.nanoTime() - started);
+        } else if (selectedDate == null) {
+            for (PlanStore.Plan plan : planStore.all()) {
+                rows.add(plan.describe());
+                shownPlanIds.add(plan.id);
+            }
+        } else {
+            for (PlanStore.Occurrence occurrence : planStore.on((int) selectedDate.toEpochDay())) {
+                rows.add(occurrence.describe());
+                shownPlanIds.add(occurrence.plan.id);
+            }
+        }
+        workoutPlans.setAll(rows);
+        UndoHistory<PlanStore.Edit> history = planStore.history();
+        labelHistoryButton(planUndoButton, "Undo", history.nextUndo() == null ? null : history.nextUndo().describe());
+        labelHistoryButton(planRedoButton, "Redo", history.nextRedo() == null ? null : history.nextRedo().describe());
+    }
+
+    private void undoPlan() {
+        if (planStore.undo() != null) {
+            refreshPlanView();
+        }
+    }
+
+    private void redoPlan() {
+        if (planStore.redo() != null) {
+            refreshPlanView();
+        }
+    }
+
+    // Entry undo runs on the service thread; the buttons are labelled when it reports the history back
+    private Button entryUndoButton() {
+        Button button = new Button();
+        button.setOnAction(timed("fx.undo", e -> trackerService.undo()));
+        labelHistoryButton(button, "Undo", entryUndoText);
+        entryUndoButtons.add(button);
+        return button;
+    }
+
+    private Button entryRedoButton() {
+        Button button = new Button();
+        button.setOnAction(timed("fx.redo", e -> trackerService.redo()));
+        labelHistoryButton(button, "Redo", entryRedoText);
+        entryRedoButtons.add(button);
+        return button;
+    }
+
+    // "Undo delete banana", or a disabled "Undo" when there is nothing to undo
+    private static void labelHistoryButton(Button button, String action, String change) {
+        button.setText(change == null ? action : action + " " + change);
+        button.setDisable(change == null);
+    }
+
+    // The entry selected in any of the meal views, or null
+    private Integer selectedFoodRow() {
+        for (ListView<Integer> mealView : List.of(morningHistoryView, lunchHistoryView, dinnerHistoryView)) {
+            Integer row = mealView.getSelectionModel().getSelectedItem();
+            if (row != null) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    // Ask the service for the selected date's entries; the answer usually comes straight from its day cache
+    private void refreshDayView() {
+        LocalDate selectedDate = calendarPicker.getValue();
+        if (selectedDate == null) {
+            dayRows.setRows(new int[0], 0);
+            dayTotalsLabel.setText("");
+        } else {
+            trackerService.requestDay((int) selectedDate.toEpochDay());
+        }
+    }
+
+    // History views display store rows through recycled cells instead of holding formatted strings
+    private ListView<Integer> historyView(HistoryRows rows) {
+        ListView<Integer> view = new ListView<>(rows);
+        view.setCellFactory(HistoryRows.cellFactory(trackerService.entries()));
+        view.setFixedCellSize(24);  // Uniform rows let the view skip measuring every cell
+        view.setOnKeyPressed(e -> {
+            Integer row = view.getSelectionModel().getSelectedItem();
+            if (e.getCode() == KeyCode.DELETE && row != null) {
+                trackerService.delete(row);
+            }
+        });
+        return view;
+    }
+
+    // Applies service results to the controls; always called on the FX thread
+    private TrackerService.View trackerView() {
+        return new TrackerService.View() {
+            @Override
+            public void rowsAdded(int code, int[] rows, int count) {
+                historyRows[code].addRows(rows, count);
+            }
+
+            @Override
+            public void rowsReset(int code, int[] rows, int count) {
+                historyRows[code].setRows(rows, count);
+            }
+
+            @Override
+            public void rowChanged(int row, int oldCode, int code) {
+                if (oldCode == code && code != -1) {
+                    historyRows[code].updateRow(row);
+                    return;
+                }
+                if (oldCode != -1) {
+                    historyRows[oldCode].removeRow(row);
+                }
+                if (code != -1) {
+                    historyRows[code].insertRow(row);
+                }
+            }
+
+            @Override
+            public void historyChanged(String undo, String redo) {
+                entryUndoText = undo;
+                entryRedoText = redo;
+                for (Button button : entryUndoButtons) {
+                    labelHistoryButton(button, "Undo", undo);
+                }
+                for (Button button : entryRedoButtons) {
+                    labelHistoryButton(button, "Redo", redo);
+                }
+            }
+
+            @Override
+            public void summaryChanged(TrackerCore.Summary summary) {
+                totalCaloriesLabel.setText("Total Calories: " + summary.totalCalories);
+                totalWorkoutMinutesLabel.setText("Total Workout Minutes: " + summary.totalWorkoutMinutes);
+                totalCaloriesBurnedLabel.setText("Total Calories Burned: " + summary.totalCaloriesBurned);
+                weekSummaryLabel.setText("This Week: " + summary.weekIntake + " eaten, " + summary.weekBurned
+                        + " burned, net " + summary.weekNet());
+                if (trendTab.isSelected()) {
+                    trackerService.requestTrend();
+                    trackerService.requestRules();  // The sums next to the rules have moved too
+                }
+                if (calendarPicker != null && calendarPicker.getValue() != null) {
+                    refreshDayView();  // A cache hit unless the selected day just changed
+                }
+            }
+
+            @Override
+            public void dayChanged(TrackerCore.Day day) {
+                LocalDate selectedDate = calendarPicker.getValue();
+                if (selectedDate == null || selectedDate.toEpochDay() != day.epochDay) {
+                    return;  // The selection moved on while this day was being summarized
+                }
+                dayRows.setRows(day.rows, day.rows.length);
+                dayTotalsLabel.setText(day.foodEntries() + " foods, " + day.intake + " eaten; " + day.workouts
+                        + " workouts, " + day.workoutMinutes + " min, " + day.burned + " burned");
+            }
+
+            @Override
+            public void lapsChanged(int row, SensorSeries.Aggregate[][] laps) {
+                Integer selectedRow = fitnessHistoryView.getSelectionModel().getSelectedItem();
+                if (selectedRow == null || selectedRow != row) {
+                    return;  // Another workout was selected in the meantime
+                }
+                StringBuilder text = new StringBuilder();
+                String[] labels = {"Heart rate", "Pace (s/km)", "Cadence"};
+                for (int stream = SensorStore.HEART_RATE; stream <= SensorStore.CADENCE; stream++) {
+                    if (laps[stream] == null) {
+                        continue;
+                    }
+                    text.append(text.length() == 0 ? "" : "\n").append(labels[stream])
+                            .append(" per ").append(LAP_MILLIS / 60_000).append(" min:");
+                    for (SensorSeries.Aggregate lap : laps[stream]) {
+                        text.append(' ').append(lap.count == 0 ? "-" : String.valueOf(Math.round(lap.mean())));
+                    }
+                }
+                lapsLabel.setText(text.length() == 0 ? "No recording for this workout" : text.toString());
+            }
+
+            @Override
+            public void alertsRaised(List<RuleEngine.Alert> alerts) {
+                for (RuleEngine.Alert alert : alerts) {
+                    alertItems.add(0, LocalDate.ofEpochDay(alert.epochDay) + "  " + alert.describe());
+                }
+                if (alertItems.size() > ALERTS_SHOWN) {
+                    alertItems.remove(ALERTS_SHOWN, alertItems.size());
+                }
+                alertLabel.setText(alerts.get(alerts.size() - 1).describe());
+            }
+
+            @Override
+            public void rulesChanged(List<RuleEngine.Rule> rules, long[] values) {
+                List<String> rows = new ArrayList<>();
+                shownRuleIds.clear();
+                for (int i = 0; i < rules.size(); i++) {
+                    RuleEngine.Rule rule = rules.get(i);
+                    rows.add(rule.describe() + "  (now " + values[i] + (rule.holds(values[i]) ? ", holds)" : ")"));
+                    shownRuleIds.add(rule.id);
+                }
+                ruleItems.setAll(rows);
+            }
+
+            @Override
+            public void trendChanged(TrackerCore.Trend trend) {
+                if (trendChart != null) {
+                    trendChart.setTrend(trend);
+                }
+            }
+
+            @Override
+            public void status(String message) {
+                importStatusLabel.setText(message);
+            }
+        };
+    }
+
+    @Override
+    public void stop() {
+        trackerService.close();  // Saves a snapshot once queued work has finished
+        if (pulseMonitor != null) {
+            pulseMonitor.stop();
+            metricsEndpoint.close();
+        }
+        try {
+            metrics.dump(dataDirectory.resolve("metrics.json"));
+        } catch (IOException ex) {
+            System.err.println("Metrics could not be saved: " + ex.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);  // Launch the JavaFX application
+    }
+}
@@ -0,0 +1,522 @@
+package fitlife;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Food and fitness rules for one user's history, with no UI or threading attached; the desktop app's
+// service thread, the batch job and anything else that needs the tracker's logic all go through this
+public class TrackerCore {
+
+    private static final String[] MEALS = {"Morning", "Lunch", "Dinner"};  // Meal codes used by the store and journal
+
+    // Totals shown in the labels; long, since a long history of large imports can pass Integer.MAX_VALUE
+    public static final class Summary {
+        public final long totalCalories;
+        public final long totalWorkoutMinutes;
+        public final long totalCaloriesBurned;
+        public final long weekIntake;
+        public final long weekBurned;
+
+        Summary(long totalCalories, long totalWorkoutMinutes, long totalCaloriesBurned, long weekIntake, long weekBurned) {
+            this.totalCalories = totalCalories;
+            this.totalWorkoutMinutes = totalWorkoutMinutes;
+            this.totalCaloriesBurned = totalCaloriesBurned;
+            this.weekIntake = weekIntake;
+            this.weekBurned = weekBurned;
+        }
+
+        public long weekNet() {
+            return weekIntake - weekBurned;
+        }
+    }
+
+    // Calories eaten and burned on every day from firstDay to the last logged day, for the trend chart
+    public static final class Trend {
+        public final int firstDay;
+        public final long[] intake;
+        public final long[] burned;
+
+        Trend(int firstDay, long[] intake, long[] burned) {
+            this.firstDay = firstDay;
+            this.intake = intake;
+            this.burned = burned;
+        }
+
+        public int days() {
+            return intake.length;
+        }
+    }
+
+    // One day's entries and totals, for the calendar's day view
+    public static final class Day {
+        public final int epochDay;
+        public final int[] rows;  // Store rows logged on the day, in the order they were logged
+        public final long intake;
+        public final long burned;
+        public final int workoutMinutes;
+        public final int workouts;
+
+        Day(int epochDay, int[] rows, long intake, long burned, int workoutMinutes, int workouts) {
+            this.epochDay = epochDay;
+            this.rows = rows;
+            this.intake = intake;
+            this.burned = burned;
+            this.workoutMinutes = workoutMinutes;
+            this.workouts = workouts;
+        }
+
+        public int foodEntries() {
+            return rows.length - workouts;
+        }
+
+        // Object header, the fields and the row array
+        int estimatedBytes() {
+            return 48 + 16 + 4 * rows.length;
+        }
+    }
+
+    // An entry's values; Edit uses null for an entry that is deleted (or not yet added)
+    public static final class Entry {
+        public final int epochDay;
+        public final int code;  // Meal code or EntryStore.WORKOUT
+        public final String name;
+        public final int calories;
+        public final int minutes;
+
+        Entry(int epochDay, int code, String name, int calories, int minutes) {
+            this.epochDay = epochDay;
+            this.code = code;
+            this.name = name;
+            this.calories = calories;
+            this.minutes = minutes;
+        }
+
+        public boolean isWorkout() {
+            return code == EntryStore.WORKOUT;
+        }
+    }
+
+    // One undoable change to a row: its values before and after
+    public static final class Edit {
+        public final int row;
+        public final Entry before;
+        public final Entry after;
+
+        Edit(int row, Entry before, Entry after) {
+            this.row = row;
+            this.before = before;
+            this.after = after;
+        }
+
+        // For the Undo and Redo buttons, e.g. "delete banana"
+        public String describe() {
+            if (before == null) {
+                return "add " + after.name;
+            }
+            return (after == null ? "delete " : "edit ") + before.name;
+        }
+    }
+
+    public static final int UNDO_DEPTH = 100;     // Changes that can be undone, at least
+    public static final int MAX_NAME_LENGTH = 256; // Characters in a food or activity name; always fits a journal record
+    private static final int CACHED_DAYS = 366;   // Day summaries kept for calendar navigation
+    private static final int PREFETCH_AROUND = 7; // Days either side prefetch() makes sure are cached
+
+    private final FoodCatalog foodCatalog;
+    private final EnergyEngine energy;
+    private final EntryStore entries = new EntryStore();
+    private final RangeAggregator dailyTotals = new RangeAggregator();
+    private final DayIndex dayIndex = new DayIndex();  // Rows by day, so a day summary never scans the store
+    private final DayCache<Day> dayCache = new DayCache<>(CACHED_DAYS, Day::estimatedBytes);
+    private final SensorStore sensors = new SensorStore();  // Recordings of imported workouts, by row
+    private final RuleEngine rules = new RuleEngine(dailyTotals);  // Goals and alerts, fed every change to the totals
+    private UndoHistory<Edit> history = UndoHistory.empty(UNDO_DEPTH);  // Adds, edits and deletes made here; imports and replay are not undoable
+    private long totalCalories = 0;
+    private long totalWorkoutMinutes = 0;
+    private long totalCaloriesBurned = 0;
+
+    public TrackerCore(FoodCatalog foodCatalog, EnergyEngine energy) {
+        this.foodCatalog = foodCatalog;
+        this.energy = energy;
+    }
+
+    public EntryStore entries() {
+        return entries;
+    }
+
+    public RangeAggregator dailyTotals() {
+        return dailyTotals;
+    }
+
+    public EnergyEngine energy() {
+        return energy;
+    }
+
+    public DayCache<Day> dayCache() {
+        return dayCache;
+    }
+
+    public SensorStore sensors() {
+        return sensors;
+    }
+
+    public RuleEngine rules() {
+        return rules;
+    }
+
+    public static int mealCode(String time) {
+        return time == null ? -1 : Arrays.asList(MEALS).indexOf(time);
+    }
+
+    public static String mealName(int code) {
+        return MEALS[code];
+    }
+
+    // Look up the food and log it under the meal; returns the new row, or -1 for unknown foods and meals
+    public int addFood(int epochDay, String foodText, int meal) {
+        int foodIndex = foodCatalog.resolve(foodText);
+        if (foodIndex == -1 || meal < 0 || meal >= MEALS.length) {
+            return -1;
+        }
+        return recordAdd(storeFood(epochDay, meal, foodCatalog.name(foodIndex), foodCatalog.calories(foodIndex)));
+    }
+
+    // Parse the minutes and log the workout with its estimated burn; returns the new row, or -1 for invalid input
+    public int addWorkout(int epochDay, String workout, String minutesText) {
+        int minutes;
+        try {
+            minutes = Integer.parseInt(minutesText.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+        if (workout == null || workout.isEmpty() || workout.length() > MAX_NAME_LENGTH || !validMinutes(minutes)) {
+            return -1;
+        }
+        return recordAdd(storeWorkout(epochDay, workout, minutes, energy.caloriesBurned(workout, minutes)));
+    }
+
+    // A workout length the store holds exactly, so totals never drift from the rows they were summed from
+    public static boolean validMinutes(int minutes) {
+        return minutes >= 1 && minutes <= EntryStore.MAX_MINUTES;
+    }
+
+    private int recordAdd(int row) {
+        history = history.push(new Edit(row, null, entry(row)));
+        return row;
+    }
+
+    // Swap a food entry for another food and meal on the same day; false for unknown foods and meals,
+    // and for rows that are not (or no longer) food entries
+    public boolean editFood(int row, String foodText, int meal) {
+        int foodIndex = foodCatalog.resolve(foodText);
+        Entry old = entry(row);
+        if (foodIndex == -1 || meal < 0 || meal >= MEALS.length || old == null || old.isWorkout()) {
+            return false;
+        }
+        change(row, new Entry(old.epochDay, meal, foodCatalog.name(foodIndex), foodCatalog.calories(foodIndex), 0));
+        return true;
+    }
+
+    // Change a workout's activity and length, estimating the burn again; false for invalid input and
+    // for rows that are not (or no longer) workouts
+    public boolean editWorkout(int row, String workout, String minutesText) {
+        int minutes;
+        try {
+            minutes = Integer.parseInt(minutesText.trim());
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        Entry old = entry(row);
+        if (workout == null || workout.isEmpty() || workout.length() > MAX_NAME_LENGTH || !validMinutes(minutes)
+                || old == null || !old.isWorkout()) {
+            return false;
+        }
+        change(row, new Entry(old.epochDay, EntryStore.WORKOUT, workout, energy.caloriesBurned(workout, minutes), minutes));
+        return true;
+    }
+
+    // False when the row does not exist or is already deleted
+    public boolean delete(int row) {
+        if (entry(row) == null) {
+            return false;
+        }
+        change(row, null);
+        return true;
+    }
+
+    private void change(int row, Entry after) {
+        Edit edit = new Edit(row, entry(row), after);
+        replace(row, after);
+        history = history.push(edit);
+    }
+
+    // Revert the newest change; returns it, or null when there is nothing to undo
+    public Edit undo() {
+        Edit edit = history.nextUndo();
+        if (edit != null) {
+            replace(edit.row, edit.before);
+            history = history.undone();
+        }
+        return edit;
+    }
+
+    // Apply the newest undone change again; returns it, or null when there is nothing to redo
+    public Edit redo() {
+        Edit edit = history.nextRedo();
+        if (edit != null) {
+            replace(edit.row, edit.after);
+            history = history.redone();
+        }
+        return edit;
+    }
+
+    // Immutable, so it can be handed to another thread as it is
+    public UndoHistory<Edit> history() {
+        return history;
+    }
+
+    // A row's current values, or null when it is deleted or does not exist
+    public Entry entry(int row) {
+        if (row < 0 || row >= entries.size() || entries.isDeleted(row)) {
+            return null;
+        }
+        return new Entry(entries.day(row), entries.code(row), entries.name(row), entries.calories(row), entries.minutes(row));
+    }
+
+    // After energy().setProfile(), give every workout that was estimated from METs under the previous profile
+    // the new profile's estimate; returns the changed rows. Their undo records still carry the old burns,
+    // so the undo history starts over when anything changed.
+    public int[] reestimateBurns(UserProfile previous) {
+        int[] burns = new int[entries.size()];
+        if (energy.recompute(entries, previous, burns) == 0) {
+            return new int[0];
+        }
+        int[] changed = new int[burns.length];
+        int count = 0;
+        for (int row = 0; row < burns.length; row++) {
+            if (burns[row] >= 0) {
+                replace(row, new Entry(entries.day(row), EntryStore.WORKOUT, entries.name(row), burns[row], entries.minutes(row)));
+                changed[count++] = row;
+            }
+        }
+        history = UndoHistory.empty(UNDO_DEPTH);
+        return Arrays.copyOf(changed, count);
+    }
+
+    // Give a row new values, or delete it (null), as an edit, undo, redo or journal replay does. The totals
+    // take the old values off and the new ones on, so nothing is summed again; a workout's recording stays
+    // with its row so undoing a delete brings it back.
+    public void replace(int row, Entry values) {
+        if (row < 0 || row >= entries.size()) {
+            return;
+        }
+        if (!entries.isDeleted(row)) {
+            count(row, -1);
+        }
+        if (values == null) {
+            entries.setDeleted(row, true);
+        } else {
+            dayIndex.move(row, entries.day(row), values.epochDay);
+            entries.update(row, values.epochDay, values.code, values.calories, values.minutes, values.name);
+            count(row, 1);
+        }
+    }
+
+    // Add (sign 1) or take away (sign -1) one row's contribution to the running and daily totals
+    private void count(int row, int sign) {
+        int epochDay = entries.day(row);
+        int calories = entries.calories(row);
+        if (entries.isWorkout(row)) {
+            int minutes = entries.minutes(row);
+            if (sign > 0) {
+                dailyTotals.addWorkout(epochDay, minutes, calories);
+            } else {
+                dailyTotals.removeWorkout(epochDay, minutes, calories);
+            }
+            rules.workout(epochDay, minutes, calories, sign);
+            totalWorkoutMinutes += (long) sign * minutes;
+            totalCaloriesBurned += (long) sign * calories;
+        } else {
+            if (sign > 0) {
+                dailyTotals.addFood(epochDay, calories);
+            } else {
+                dailyTotals.removeFood(epochDay, calories);
+            }
+            rules.food(epochDay, calories, sign);
+            totalCalories += (long) sign * calories;
+        }
+        dayCache.invalidate(epochDay);
+    }
+
+    // Log an entry whose calories are already known (imports, journal replay). The day is checked before
+    // the row is stored, so a day the totals refuse leaves the store and the totals as they were.
+    public int storeFood(int epochDay, int meal, String food, int calories) {
+        dailyTotals.checkDay(epochDay);
+        int row = entries.addFood(epochDay, meal, food, calories);
+        dayIndex.add(epochDay, row);
+        dailyTotals.addFood(epochDay, calories);
+        rules.food(epochDay, calories, 1);
+        dayCache.invalidate(epochDay);
+        totalCalories += calories;
+        return row;
+    }
+
+    public int storeWorkout(int epochDay, String workout, int minutes, int caloriesBurned) {
+        dailyTotals.checkDay(epochDay);
+        minutes = Math.min(minutes, EntryStore.MAX_MINUTES);  // Count what the store keeps, for journals older than the checks
+        int row = entries.addWorkout(epochDay, workout, minutes, caloriesBurned);
+        dayIndex.add(epochDay, row);
+        dailyTotals.addWorkout(epochDay, minutes, caloriesBurned);
+        rules.workout(epochDay, minutes, caloriesBurned, 1);
+        dayCache.invalidate(epochDay);
+        totalWorkoutMinutes += minutes;
+        totalCaloriesBurned += caloriesBurned;
+        return row;
+    }
+
+    // Apply the entries of an import batch and return how many were stored. They take the rows from
+    // entries().size() onwards, in order; an entry on a day the totals refuse is skipped, not stored.
+    public int apply(BulkImporter.ImportBatch batch) {
+        int first = entries.size();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                dailyTotals.checkDay(batch.day(i));
+            } catch (IllegalArgumentException ex) {
+                continue;  // E.g. centuries away from the rest of the history
+            }
+            if (batch.isWorkout(i)) {
+                int row = storeWorkout(batch.day(i), batch.name(i), batch.minutes(i), batch.calories(i));
+                if (batch.recording(i) != null) {
+                    try {
+                        sensors.attach(row, batch.recording(i));
+                    } catch (IllegalArgumentException ex) {
+                        // Keep the workout without its recording, e.g. when samples are weeks apart
+                    }
+                }
+            } else {
+                storeFood(batch.day(i), batch.code(i), batch.name(i), batch.calories(i));
+            }
+        }
+        return entries.size() - first;
+    }
+
+    // Running totals plus the Monday-to-Sunday week containing today
+    public Summary summary(LocalDate today) {
+        int from = (int) today.with(DayOfWeek.MONDAY).toEpochDay();
+        int to = from + 6;
+        return new Summary(totalCalories, totalWorkoutMinutes, totalCaloriesBurned,
+                dailyTotals.sum(RangeAggregator.INTAKE, from, to), dailyTotals.sum(RangeAggregator.BURNED, from, to));
+    }
+
+    // Daily intake and burn over the whole history; empty when nothing has been logged
+    public Trend trend() {
+        int from = dailyTotals.firstDay();
+        int days = from < 0 ? 0 : dailyTotals.lastDay() - from + 1;
+        Trend trend = new Trend(Math.max(from, 0), new long[days], new long[days]);
+        if (days > 0) {
+            dailyTotals.daily(RangeAggregator.INTAKE, from, trend.intake);
+            dailyTotals.daily(RangeAggregator.BURNED, from, trend.burned);
+        }
+        return trend;
+    }
+
+    // The entries and totals of one day; a miss reads only that day's rows
+    public Day day(int epochDay) {
+        Day day = dayCache.get(epochDay);
+        if (day == null) {
+            day = load(epochDay, epochDay, epochDay);
+        }
+        return day;
+    }
+
+    // Cache the week either side of a day that was just looked at, so stepping through the calendar
+    // keeps hitting; does nothing when they are already cached
+    public void prefetch(int epochDay) {
+        int from = epochDay - PREFETCH_AROUND;
+        int to = epochDay + PREFETCH_AROUND;
+        while (from <= to && dayCache.contains(from)) {
+            from++;
+        }
+        while (to >= from && dayCache.contains(to)) {
+            to--;
+        }
+        if (from <= to) {
+            load(from, to, -1);
+        }
+    }
+
+    // Summarize each day of [fromDay, toDay] not already cached from its indexed rows, cache it
+    // and return the summary of wanted (null if it is outside the range)
+    private Day load(int fromDay, int toDay, int wanted) {
+        Day result = null;
+        for (int epochDay = fromDay; epochDay <= toDay; epochDay++) {
+            if (epochDay != wanted && dayCache.contains(epochDay)) {
+                continue;
+            }
+            Day day = summarize(epochDay, liveRows(epochDay));
+            dayCache.put(epochDay, day);
+            if (epochDay == wanted) {
+                result = day;
+            }
+        }
+        return result;
+    }
+
+    // The day's rows that are not deleted, in the order they were logged
+    private int[] liveRows(int epochDay) {
+        int count = dayIndex.count(epochDay);
+        int[] rows = new int[count];
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            int row = dayIndex.row(epochDay, i);
+            if (!entries.isDeleted(row)) {
+                rows[live++] = row;
+            }
+        }
+        return live == count ? rows : Arrays.copyOf(rows, live);
+    }
+
+    private Day summarize(int epochDay, int[] rows) {
+        long intake = 0;
+        long burned = 0;
+        int workoutMinutes = 0;
+        int workouts = 0;
+        for (int row : rows) {
+            if (entries.isWorkout(row)) {
+                burned += entries.calories(row);
+                workoutMinutes += entries.minutes(row);
+                workouts++;
+            } else {
+                intake += entries.calories(row);
+            }
+        }
+        return new Day(epochDay, rows, intake, burned, workoutMinutes, workouts);
+    }
+
+    // Snapshot body: the entry columns followed by the running totals
+    public void write(DataOutputStream out) throws IOException {
+        entries.write(out);
+        out.writeLong(totalCalories);
+        out.writeLong(totalWorkoutMinutes);
+        out.writeLong(totalCaloriesBurned);
+    }
+
+    public void read(DataInputStream in) throws IOException {
+        entries.read(in);
+        totalCalories = in.readLong();
+        totalWorkoutMinutes = in.readLong();
+        totalCaloriesBurned = in.readLong();
+        dailyTotals.rebuild(entries);
+        dayIndex.clear();
+        for (int row = 0; row < entries.size(); row++) {
+            dayIndex.add(entries.day(row), row);
+        }
+        rules.refill();
+        dayCache.clear();
+        history = UndoHistory.empty(UNDO_DEPTH);  // The rows it refers to were just replaced
+    }
+}
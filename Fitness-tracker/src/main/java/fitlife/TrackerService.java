@@ -0,0 +1,636 @@
+package fitlife;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Runs a TrackerCore on its own thread, journals what it logs and reports back through a UiPublisher
+public class TrackerService implements AutoCloseable {
+
+    // Receives results on the FX thread
+    public interface View {
+        void rowsAdded(int code, int[] rows, int count);  // New store rows for the history view with this code
+
+        void rowsReset(int code, int[] rows, int count);  // Every row for the history view with this code
+
+        void rowChanged(int row, int oldCode, int code);  // An edited, deleted or restored row; code -1 when not shown
+
+        void historyChanged(String undo, String redo);  // What Undo and Redo would do, null when nothing
+
+        void alertsRaised(List<RuleEngine.Alert> alerts);  // Rules that fired or cleared, oldest first
+
+        void rulesChanged(List<RuleEngine.Rule> rules, long[] values);  // Every rule with its window's current sum
+
+        void summaryChanged(TrackerCore.Summary summary);
+
+        void trendChanged(TrackerCore.Trend trend);
+
+        void dayChanged(TrackerCore.Day day);
+
+        void lapsChanged(int row, SensorSeries.Aggregate[][] laps);  // By stream code, null for streams not recorded
+
+        void status(String message);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tracker-service");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FoodCatalog foodCatalog;
+    private final EnergyEngine energy;
+    private final UiPublisher publisher;
+    private final View view;
+    private final Metrics metrics;
+
+    // Owned by the service thread
+    private final TrackerCore core;
+    private EntryJournal journal;
+    private Path dataDirectory;
+
+    // Rows waiting for the next UI drain, one buffer per history view (meals 0-2, then workouts)
+    private final int[][] pendingRows = new int[EntryStore.WORKOUT + 1][64];
+    private final int[] pendingCounts = new int[EntryStore.WORKOUT + 1];
+    private final Object[] pendingKeys = {new Object(), new Object(), new Object(), new Object()};
+    private final Object summaryKey = new Object();
+    private final Object trendKey = new Object();
+    private final Object dayKey = new Object();
+    private final Object lapsKey = new Object();
+    private final Object historyKey = new Object();
+    private final Object rulesKey = new Object();
+
+    public TrackerService(FoodCatalog foodCatalog, EnergyEngine energy, UiPublisher publisher, View view, Metrics metrics) {
+        this.foodCatalog = foodCatalog;
+        this.energy = energy;
+        this.publisher = publisher;
+        this.view = view;
+        this.metrics = metrics;
+        this.core = new TrackerCore(foodCatalog, energy);
+        DayCache<TrackerCore.Day> dayCache = core.dayCache();
+        metrics.gauge("dayCache.hitRatio", dayCache::hitRatio);
+        metrics.gauge("dayCache.days", dayCache::size);
+        metrics.gauge("dayCache.bytes", dayCache::estimatedBytes);
+        metrics.gauge("dayCache.hits", dayCache::hits);
+        metrics.gauge("dayCache.misses", dayCache::misses);
+        metrics.gauge("dayCache.evictions", dayCache::evictions);
+        SensorStore sensors = core.sensors();
+        metrics.gauge("sensors.samples", sensors::samples);
+        metrics.gauge("sensors.compressedBytes", sensors::compressedBytes);
+        metrics.gauge("sensors.reservedBytes", sensors::reservedBytes);
+    }
+
+    // The store behind the history cells; the FX thread only reads rows it has been handed through the View
+    public EntryStore entries() {
+        return core.entries();
+    }
+
+    // Load the last snapshot and replay whatever was logged after it
+    public void open(Path dataDirectory) {
+        submit("service.open", () -> {
+            this.dataDirectory = dataDirectory;
+            try {
+                journal = EntryJournal.open(dataDirectory);
+                journal.recover(core::read, new EntryJournal.Listener() {
+                    @Override
+                    public void food(int epochDay, int meal, String name, int calories) {
+                        core.storeFood(epochDay, meal, name, calories);
+                    }
+
+                    @Override
+                    public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                        core.storeWorkout(epochDay, activity, minutes, caloriesBurned);
+                    }
+
+                    @Override
+                    public void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+                        core.replace(row, new TrackerCore.Entry(epochDay, code, name, calories, minutes));
+                    }
+
+                    @Override
+                    public void delete(int row) {
+                        core.replace(row, null);
+                    }
+                });
+                if (journal.damagedSegment() != null) {
+                    publisher.publishLatest(view, () -> view.status("The journal was damaged; the changes logged after the damage were lost"));
+                } else if (journal.discardedSnapshot() != null) {
+                    publisher.publishLatest(view, () -> view.status("The snapshot was damaged; history was rebuilt from the journal"));
+                }
+            } catch (IOException ex) {
+                System.err.println("History could not be loaded: " + ex.getMessage());
+                if (journal != null) {
+                    try {
+                        journal.close();  // Stops its flusher thread and releases the log
+                    } catch (IOException closeFailed) {
+                        System.err.println("Journal could not be closed: " + closeFailed.getMessage());
+                    }
+                }
+                journal = null;  // Keep running without persistence rather than refusing to start
+            }
+            try {
+                if (journal != null) {  // Without the history there is nothing to match recordings against
+                    core.sensors().load(dataDirectory.resolve("sensors"), core.entries());
+                }
+            } catch (IOException ex) {
+                System.err.println("Workout recordings could not be loaded: " + ex.getMessage());
+            }
+            try {
+                core.rules().load(dataDirectory.resolve("rules.txt"));  // After the replay, so each window is filled once
+            } catch (IOException ex) {
+                System.err.println("Rules could not be loaded: " + ex.getMessage());
+            }
+            publishAllRows();
+            publishSummary();
+            publishAlerts();
+            publishHistory();
+            publishRules();
+        });
+    }
+
+    // Look up the food and log it under the meal; unknown foods are dropped like before
+    public void addFood(String foodText, int meal) {
+        submit("service.addFood", () -> {
+            int row = core.addFood((int) LocalDate.now().toEpochDay(), foodText, meal);
+            if (row == -1) {
+                return;
+            }
+            logged(row);
+            snapshotIfDue();
+            publishRows();
+            publishSummary();
+            publishAlerts();
+            publishHistory();
+        });
+    }
+
+    // Parse the minutes and log the workout; invalid input is ignored like before
+    public void addWorkout(String workout, String minutesText) {
+        submit("service.addWorkout", () -> {
+            int row = core.addWorkout((int) LocalDate.now().toEpochDay(), workout, minutesText);
+            if (row == -1) {
+                return;
+            }
+            logged(row);
+            snapshotIfDue();
+            publishRows();
+            publishSummary();
+            publishAlerts();
+            publishHistory();
+        });
+    }
+
+    // Swap a food entry for another food and meal; unknown foods are ignored like when adding
+    public void editFood(int row, String foodText, int meal) {
+        submit("service.editFood", () -> {
+            int oldCode = code(row);
+            if (core.editFood(row, foodText, meal)) {
+                changed(row, oldCode);
+            }
+        });
+    }
+
+    public void editWorkout(int row, String workout, String minutesText) {
+        submit("service.editWorkout", () -> {
+            int oldCode = code(row);
+            if (core.editWorkout(row, workout, minutesText)) {
+                changed(row, oldCode);
+            }
+        });
+    }
+
+    public void delete(int row) {
+        submit("service.delete", () -> {
+            int oldCode = code(row);
+            if (core.delete(row)) {
+                changed(row, oldCode);
+            }
+        });
+    }
+
+    public void undo() {
+        submit("service.undo", () -> {
+            TrackerCore.Edit edit = core.undo();
+            if (edit != null) {
+                changed(edit.row, edit.after == null ? -1 : edit.after.code);
+            }
+        });
+    }
+
+    public void redo() {
+        submit("service.redo", () -> {
+            TrackerCore.Edit edit = core.redo();
+            if (edit != null) {
+                changed(edit.row, edit.before == null ? -1 : edit.before.code);
+            }
+        });
+    }
+
+    // The history view a row is shown in, -1 once it is deleted
+    private int code(int row) {
+        TrackerCore.Entry entry = core.entry(row);
+        return entry == null ? -1 : entry.code;
+    }
+
+    // Parse on the importer's workers, apply batches here, report progress to the view
+    public void importFile(Path file, Runnable onFinished) {
+        BulkImporter importer = new BulkImporter(foodCatalog, energy);
+        Thread reader = new Thread(() -> {
+            long[] applied = {0};  // Only touched on the service thread
+            String failure = null;
+            try {
+                importer.importFile(file, batch -> submit("service.importBatch", () -> {
+                    int first = core.entries().size();
+                    try {
+                        core.apply(batch);
+                    } finally {
+                        // Journal whatever was stored, even if apply() stopped part-way, so the journal's
+                        // row numbers keep matching the store's
+                        int end = core.entries().size();
+                        for (int row = first; row < end; row++) {
+                            logged(row);
+                        }
+                        saveRecordings(first, end);
+                        applied[0] += end - first;
+                        batch.complete();  // Let the importer parse the next batch, even after a failure
+                    }
+                    snapshotIfDue();
+                    publishRows();
+                    publishSummary();
+                    publishAlerts();
+                    String progress = "Imported " + applied[0] + " entries...";
+                    publisher.publishLatest(view, () -> view.status(progress));
+                }));
+            } catch (IOException ex) {
+                failure = "Import failed: " + ex.getMessage();
+            }
+            String failed = failure;
+            // Queue behind the last batch so the final message wins over progress updates, and counts
+            // the entries actually stored rather than the ones parsed
+            executor.execute(() -> {
+                String message = failed != null ? failed : "Imported " + applied[0] + " entries from " + file.getFileName();
+                publisher.publishLatest(view, () -> {
+                    view.status(message);
+                    onFinished.run();
+                });
+            });
+        }, "bulk-import");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // Write every entry to a CSV or columnar file (see EntryExporter); runs on the service thread so the
+    // store cannot change underneath it, streaming through a fixed buffer however long the history is
+    public void exportFile(Path file, Runnable onFinished) {
+        submit("service.export", () -> {
+            String result;
+            try (EntryExporter exporter = EntryExporter.open(file)) {
+                exporter.exportStore(core.entries());
+                result = "Exported " + exporter.rows() + " entries to " + file.getFileName();
+            } catch (IOException ex) {
+                result = "Export failed: " + ex.getMessage();
+            }
+            String message = result;
+            publisher.publishLatest(view, () -> {
+                view.status(message);
+                onFinished.run();
+            });
+        });
+    }
+
+    // Workouts estimated from METs are re-estimated with the updated profile and journaled as edits; burns
+    // from a file or from heart rate stay as they are. The profile is saved next to the journal.
+    public void updateProfile(UserProfile profile) {
+        submit("service.updateProfile", () -> {
+            UserProfile previous = energy.profile();
+            energy.setProfile(profile);
+            int[] changed = core.reestimateBurns(previous);
+            if (changed.length > 0) {
+                flushRows();
+                for (int row : changed) {
+                    journalChange(row, core.entry(row));
+                    publisher.publish(() -> view.rowChanged(row, EntryStore.WORKOUT, EntryStore.WORKOUT));
+                }
+                snapshotIfDue();
+                publishSummary();
+                publishAlerts();
+                publishHistory();
+            }
+            String updated = changed.length == 0 ? "" : "; " + changed.length + " workouts re-estimated";
+            if (dataDirectory == null) {
+                publisher.publishLatest(view, () -> view.status("Profile updated" + updated));
+                return;
+            }
+            try {
+                profile.save(dataDirectory.resolve("profile.properties"));
+                publisher.publishLatest(view, () -> view.status("Profile saved" + updated));
+            } catch (IOException ex) {
+                publisher.publishLatest(view, () -> view.status("Profile could not be saved: " + ex.getMessage()));
+            }
+        });
+    }
+
+    // Copy out the daily totals for the trend chart; only the newest copy reaches the view
+    public void requestTrend() {
+        submit("service.trend", () -> {
+            TrackerCore.Trend trend = core.trend();
+            publisher.publishLatest(trendKey, () -> view.trendChanged(trend));
+        });
+    }
+
+    // Summarize one day for the calendar, then warm the weeks around it while the user looks at the result
+    public void requestDay(int epochDay) {
+        submit("service.day", () -> {
+            TrackerCore.Day day = core.day(epochDay);
+            publisher.publishLatest(dayKey, () -> view.dayChanged(day));
+        });
+        submit("service.prefetchDays", () -> core.prefetch(epochDay));
+    }
+
+    // Rules are checked against every change from here on; the text was already checked with RuleEngine.parse
+    public void addRule(String text) {
+        submit("service.addRule", () -> {
+            core.rules().add(text);
+            rulesEdited();
+        });
+    }
+
+    public void removeRule(int id) {
+        submit("service.removeRule", () -> {
+            if (core.rules().remove(id) != null) {
+                rulesEdited();
+            }
+        });
+    }
+
+    // The rules with their current sums, e.g. when the list of rules comes into view
+    public void requestRules() {
+        submit("service.rules", this::publishRules);
+    }
+
+    private void rulesEdited() {
+        publishRules();
+        if (dataDirectory == null) {
+            return;
+        }
+        try {
+            core.rules().save(dataDirectory.resolve("rules.txt"));
+        } catch (IOException ex) {
+            publisher.publishLatest(view, () -> view.status("Rules could not be saved: " + ex.getMessage()));
+        }
+    }
+
+    // Per-lap aggregates of every stream recorded for a workout row; only the newest answer reaches the view
+    public void requestLaps(int row, long lapMillis) {
+        submit("service.laps", () -> {
+            SensorSeries.Aggregate[][] laps = new SensorSeries.Aggregate[SensorStore.STREAMS.length][];
+            for (int stream = 0; stream < laps.length; stream++) {
+                SensorSeries series = core.sensors().series(row, stream);
+                laps[stream] = series == null ? null : series.laps(lapMillis);
+            }
+            publisher.publishLatest(lapsKey, () -> view.lapsChanged(row, laps));
+        });
+    }
+
+    // Run a task on the service thread, recording the time from submission to completion under action,
+    // which is how long the user waits for the result, and emitting a Flight Recorder event for it
+    private void submit(String action, Runnable task) {
+        long submitted = System.nanoTime();
+        executor.execute(() -> {
+            FitlifeEvents.Action event = new FitlifeEvents.Action(action);
+            event.queueWait = System.nanoTime() - submitted;
+            event.begin();
+            try {
+                task.run();
+            } finally {
+                event.commit();
+                metrics.record(action, System.nanoTime() - submitted);
+            }
+        });
+    }
+
+    // Journal a row the core has just stored and queue it for its history view
+    private void logged(int row) {
+        EntryStore entries = core.entries();
+        int code = entries.code(row);
+        queueRow(code, row);
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (entries.isWorkout(row)) {
+                journal.appendWorkout(entries.day(row), entries.name(row), entries.minutes(row), entries.calories(row));
+            } else {
+                journal.appendFood(entries.day(row), code, entries.name(row), entries.calories(row));
+            }
+        } catch (IOException ex) {
+            System.err.println((entries.isWorkout(row) ? "Workout" : "Food") + " entry was not saved: " + ex.getMessage());
+        }
+    }
+
+    // Journal a row's values after an edit, undo or redo, and move it between the history views. Rows queued
+    // for rowsAdded go out first, so a row added and deleted in one drain is not added back after the delete.
+    private void changed(int row, int oldCode) {
+        TrackerCore.Entry entry = core.entry(row);
+        int code = entry == null ? -1 : entry.code;
+        journalChange(row, entry);
+        flushRows();
+        publisher.publish(() -> view.rowChanged(row, oldCode, code));
+        snapshotIfDue();
+        publishSummary();
+        publishAlerts();
+        publishHistory();
+    }
+
+    // Log a row's new values, or its deletion when entry is null
+    private void journalChange(int row, TrackerCore.Entry entry) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (entry == null) {
+                journal.appendDelete(row);
+            } else {
+                journal.appendUpdate(row, entry.epochDay, entry.code, entry.name, entry.calories, entry.minutes);
+            }
+        } catch (IOException ex) {
+            System.err.println("Change to an entry was not saved: " + ex.getMessage());
+        }
+    }
+
+    // Recordings are not journaled; each one goes to its own file once its workout's record is on disk,
+    // so a crash cannot leave a recording behind for a row the journal never kept
+    private void saveRecordings(int fromRow, int toRow) {
+        if (dataDirectory == null || journal == null) {
+            return;
+        }
+        boolean flushed = false;
+        for (int row = fromRow; row < toRow; row++) {
+            if (!core.sensors().has(row)) {
+                continue;
+            }
+            if (!flushed) {
+                journal.flush();
+                flushed = true;
+            }
+            try {
+                core.sensors().save(row, core.entries(), dataDirectory.resolve("sensors"));
+            } catch (IOException ex) {
+                System.err.println("Workout recording was not saved: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void queueRow(int code, int row) {
+        synchronized (pendingRows) {
+            if (pendingCounts[code] == pendingRows[code].length) {
+                pendingRows[code] = Arrays.copyOf(pendingRows[code], pendingCounts[code] * 2);
+            }
+            pendingRows[code][pendingCounts[code]++] = row;
+        }
+    }
+
+    // One refresh per history view per drain, carrying every row queued since the last one
+    private void publishRows() {
+        for (int code = 0; code < pendingKeys.length; code++) {
+            int viewCode = code;
+            publisher.publishLatest(pendingKeys[code], () -> {
+                int[] rows;
+                int count;
+                synchronized (pendingRows) {
+                    rows = pendingRows[viewCode];
+                    count = pendingCounts[viewCode];
+                    pendingRows[viewCode] = new int[64];
+                    pendingCounts[viewCode] = 0;
+                }
+                if (count > 0) {
+                    view.rowsAdded(viewCode, rows, count);
+                }
+            });
+        }
+    }
+
+    // Hand the queued rows over as ordered updates, ahead of anything published after this
+    private void flushRows() {
+        synchronized (pendingRows) {
+            for (int code = 0; code < pendingRows.length; code++) {
+                int viewCode = code;
+                int[] rows = pendingRows[code];
+                int count = pendingCounts[code];
+                if (count > 0) {
+                    pendingRows[code] = new int[64];
+                    pendingCounts[code] = 0;
+                    publisher.publish(() -> view.rowsAdded(viewCode, rows, count));
+                }
+            }
+        }
+    }
+
+    private void publishAllRows() {
+        synchronized (pendingRows) {
+            Arrays.fill(pendingCounts, 0);  // Replaced by the full reset below
+        }
+        int[][] rows = new int[pendingKeys.length][];
+        int[] counts = new int[pendingKeys.length];
+        for (int code = 0; code < rows.length; code++) {
+            rows[code] = new int[64];
+        }
+        EntryStore entries = core.entries();
+        for (int row = 0; row < entries.size(); row++) {
+            if (entries.isDeleted(row)) {
+                continue;
+            }
+            int code = entries.code(row);
+            if (counts[code] == rows[code].length) {
+                rows[code] = Arrays.copyOf(rows[code], counts[code] * 2);
+            }
+            rows[code][counts[code]++] = row;
+        }
+        publisher.publish(() -> {
+            for (int code = 0; code < rows.length; code++) {
+                view.rowsReset(code, rows[code], counts[code]);
+            }
+        });
+    }
+
+    private void publishSummary() {
+        TrackerCore.Summary summary = core.summary(LocalDate.now());
+        publisher.publishLatest(summaryKey, () -> view.summaryChanged(summary));
+    }
+
+    private void publishHistory() {
+        UndoHistory<TrackerCore.Edit> history = core.history();
+        TrackerCore.Edit undo = history.nextUndo();
+        TrackerCore.Edit redo = history.nextRedo();
+        String undoText = undo == null ? null : undo.describe();
+        String redoText = redo == null ? null : redo.describe();
+        publisher.publishLatest(historyKey, () -> view.historyChanged(undoText, redoText));
+    }
+
+    // Move the rules' windows on to today, which is what notices a streak broken by a day without a
+    // workout, and pass on whatever fired or cleared since the last call
+    private void publishAlerts() {
+        RuleEngine rules = core.rules();
+        rules.advanceTo((int) LocalDate.now().toEpochDay());
+        List<RuleEngine.Alert> alerts = rules.drainAlerts();
+        if (!alerts.isEmpty()) {
+            publisher.publish(() -> view.alertsRaised(alerts));
+        }
+    }
+
+    private void publishRules() {
+        List<RuleEngine.Rule> rules = core.rules().rules();
+        long[] values = new long[rules.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = core.rules().value(rules.get(i));
+        }
+        publisher.publishLatest(rulesKey, () -> view.rulesChanged(rules, values));
+    }
+
+    private void snapshotIfDue() {
+        if (journal == null || !journal.snapshotDue()) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException ex) {
+            System.err.println("Snapshot failed: " + ex.getMessage());
+        }
+    }
+
+    private void snapshot() throws IOException {
+        FitlifeEvents.Snapshot event = new FitlifeEvents.Snapshot();
+        event.begin();
+        long started = System.nanoTime();
+        journal.snapshot(core::write);
+        metrics.record("service.snapshot", System.nanoTime() - started);
+        event.entries = core.entries().size();
+        event.commit();
+    }
+
+    // Snapshot and close the journal after any queued work has finished
+    @Override
+    public void close() {
+        executor.execute(() -> {
+            if (journal == null) {
+                return;
+            }
+            try {
+                snapshot();  // Next start only has to read the snapshot
+                journal.close();
+            } catch (IOException ex) {
+                System.err.println("History could not be saved on exit: " + ex.getMessage());
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
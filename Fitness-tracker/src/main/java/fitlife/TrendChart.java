@@ -0,0 +1,274 @@
+package fitlife;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.time.LocalDate;
+
+// Calories eaten against calories burned per day, drawn straight onto a Canvas. Each series is reduced
+// to one LTTB point per pixel column over a light min/max band, so a decade of history draws as many
+// points as the chart is wide and no node is created per day. Scroll or pinch zooms around the pointer,
+// dragging pans and a double click shows the whole history. Input only marks the chart dirty; the draw
+// happens once in the next layout pass however many mouse events arrived in between.
+public class TrendChart extends Region {
+
+    private static final Color INTAKE = Color.web("#e07b00");
+    private static final Color BURNED = Color.web("#00a01e");
+    private static final Color INTAKE_BAND = INTAKE.deriveColor(0, 1, 1, 0.25);
+    private static final Color BURNED_BAND = BURNED.deriveColor(0, 1, 1, 0.25);
+    private static final Color GRID = Color.web("#d8d8d8");
+    private static final Color TEXT = Color.web("#333333");
+    private static final Font FONT = Font.font("Arial", 11);
+    private static final double LEFT = 56, RIGHT = 12, TOP = 28, BOTTOM = 24;  // Plot margins
+    private static final double MIN_SPAN = 7;           // Never zoom in past a week
+    private static final int DEFAULT_SPAN = 365;        // Days shown when history first arrives
+    private static final int[] TICK_STEPS = {1, 2, 7, 14, 28, 91, 182, 364, 728, 1820, 3640};  // Days between date labels
+    private static final long[] STEP_MULTIPLES = {1, 2, 5, 10};
+    private static final int FIRST_MONDAY = 4;          // Epoch day of 1970-01-05, so weekly labels land on Mondays
+
+    private final Canvas canvas = new Canvas();
+    private final Metrics metrics;
+    private TrackerCore.Trend trend;
+    private double viewFrom;             // First visible day, as an index into the trend arrays
+    private double viewSpan = DEFAULT_SPAN;
+    private boolean followLatest = true; // Keep the newest day in view as entries arrive
+    private boolean dirty = true;
+    private double dragX;
+
+    // Per-frame buffers, grown with the chart's width and reused between draws
+    private int[] picked = new int[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private long[] lows = new long[0];
+    private long[] highs = new long[0];
+
+    public TrendChart(Metrics metrics) {
+        this.metrics = metrics;
+        getChildren().add(canvas);
+        setPrefSize(700, 400);
+        setMinSize(0, 0);
+
+        setOnScroll(e -> {
+            zoom(e.getX(), Math.pow(1.002, -e.getDeltaY()));
+            e.consume();
+        });
+        setOnZoom(e -> zoom(e.getX(), 1 / e.getZoomFactor()));
+        setOnMousePressed(e -> dragX = e.getX());
+        setOnMouseDragged(e -> {
+            viewFrom -= (e.getX() - dragX) / plotWidth() * viewSpan;
+            dragX = e.getX();
+            viewChanged();
+        });
+        setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                viewFrom = 0;
+                viewSpan = trend == null ? DEFAULT_SPAN : trend.days();
+                viewChanged();
+            }
+        });
+    }
+
+    // Show a new copy of the history, keeping the same dates in view (or the newest ones, if they were)
+    public void setTrend(TrackerCore.Trend newTrend) {
+        if (trend == null || trend.days() == 0) {
+            viewSpan = Math.min(DEFAULT_SPAN, Math.max(newTrend.days(), MIN_SPAN));
+            followLatest = true;
+        } else {
+            viewFrom += newTrend.firstDay - trend.firstDay;  // Back-dated entries move the first day
+        }
+        trend = newTrend;
+        if (followLatest) {
+            viewFrom = trend.days() - viewSpan;
+        }
+        viewChanged();
+    }
+
+    // Scale the visible span by factor, keeping the day under the pointer where it is
+    private void zoom(double x, double factor) {
+        double fraction = Math.min(Math.max((x - LEFT) / plotWidth(), 0), 1);
+        double anchor = viewFrom + fraction * viewSpan;
+        viewSpan *= factor;
+        clampView();
+        viewFrom = anchor - fraction * viewSpan;
+        viewChanged();
+    }
+
+    private void viewChanged() {
+        clampView();
+        followLatest = trend != null && viewFrom + viewSpan >= trend.days() - 0.5;
+        dirty = true;
+        requestLayout();
+    }
+
+    private void clampView() {
+        int days = trend == null ? 0 : trend.days();
+        viewSpan = Math.min(Math.max(viewSpan, MIN_SPAN), Math.max(days, MIN_SPAN));
+        viewFrom = Math.min(Math.max(viewFrom, 0), Math.max(days - viewSpan, 0));
+    }
+
+    private int plotWidth() {
+        return Math.max((int) (canvas.getWidth() - LEFT - RIGHT), 1);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (width != canvas.getWidth() || height != canvas.getHeight()) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            dirty = true;
+        }
+        if (dirty) {
+            dirty = false;
+            draw();
+        }
+    }
+
+    private void draw() {
+        long started = System.nanoTime();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        g.clearRect(0, 0, width, height);
+        g.setFont(FONT);
+        g.setFill(TEXT);
+        int plotWidth = (int) (width - LEFT - RIGHT);
+        double plotHeight = height - TOP - BOTTOM;
+        if (trend == null || trend.days() == 0 || plotWidth < 3 || plotHeight < 10) {
+            g.setTextAlign(TextAlignment.CENTER);
+            g.setTextBaseline(VPos.CENTER);
+            g.fillText(trend == null ? "Loading..." : "No entries yet", width / 2, height / 2);
+            return;
+        }
+        ensureCapacity(plotWidth);
+
+        // Visible slice plus one day past each edge, so the lines run off the plot instead of stopping short
+        int from = Math.max((int) Math.floor(viewFrom) - 1, 0);
+        int to = Math.min((int) Math.ceil(viewFrom + viewSpan) + 1, trend.days());
+        long largest = 1;
+        for (int i = from; i < to; i++) {
+            largest = Math.max(largest, Math.max(trend.intake[i], trend.burned[i]));
+        }
+        long step = niceStep(largest / 4.0);
+        double top = step * (double) ((largest + step - 1) / step);
+
+        // Horizontal grid with calorie labels
+        g.setLineWidth(1);
+        g.setStroke(GRID);
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.setTextBaseline(VPos.CENTER);
+        for (long value = 0; value <= top; value += step) {
+            double y = Math.round(TOP + plotHeight - value / top * plotHeight) + 0.5;
+            g.strokeLine(LEFT, y, LEFT + plotWidth, y);
+            g.fillText(Long.toString(value), LEFT - 6, y);
+        }
+
+        // Date labels every tickStep days counted from a fixed Monday, so they stay put while panning
+        int tickStep = TICK_STEPS[TICK_STEPS.length - 1];
+        for (int candidate : TICK_STEPS) {
+            if (candidate / viewSpan * plotWidth >= 110) {
+                tickStep = candidate;
+                break;
+            }
+        }
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.TOP);
+        int firstTick = Math.floorDiv(trend.firstDay + (int) viewFrom - FIRST_MONDAY + tickStep - 1, tickStep) * tickStep
+                + FIRST_MONDAY;
+        for (int day = firstTick; day <= trend.firstDay + viewFrom + viewSpan; day += tickStep) {
+            double x = Math.round(xOf(day - trend.firstDay, plotWidth)) + 0.5;
+            g.strokeLine(x, TOP, x, TOP + plotHeight);
+            g.fillText(LocalDate.ofEpochDay(day).toString(), x, TOP + plotHeight + 6);
+        }
+
+        g.save();
+        g.beginPath();
+        g.rect(LEFT, TOP, plotWidth, plotHeight);
+        g.clip();
+        drawSeries(g, trend.intake, from, to, plotWidth, plotHeight, top, INTAKE, INTAKE_BAND);
+        drawSeries(g, trend.burned, from, to, plotWidth, plotHeight, top, BURNED, BURNED_BAND);
+        g.restore();
+
+        // Legend and the visible range
+        g.setTextBaseline(VPos.CENTER);
+        g.setTextAlign(TextAlignment.LEFT);
+        g.setFill(INTAKE);
+        g.fillRect(LEFT, 10, 12, 4);
+        g.setFill(TEXT);
+        g.fillText("Eaten", LEFT + 16, 12);
+        g.setFill(BURNED);
+        g.fillRect(LEFT + 70, 10, 12, 4);
+        g.setFill(TEXT);
+        g.fillText("Burned", LEFT + 86, 12);
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.fillText(LocalDate.ofEpochDay(trend.firstDay + (int) viewFrom) + " to "
+                + LocalDate.ofEpochDay(trend.firstDay + (int) (viewFrom + viewSpan) - 1), LEFT + plotWidth, 12);
+
+        metrics.record("fx.drawTrend", System.nanoTime() - started);
+    }
+
+    // The min/max band when there are more days than pixels, then the LTTB line on top
+    private void drawSeries(GraphicsContext g, long[] values, int from, int to, int plotWidth, double plotHeight,
+                            double top, Color line, Color band) {
+        int days = to - from;
+        if (days > plotWidth) {
+            Downsampler.minMax(values, from, to, plotWidth, lows, highs);
+            g.setStroke(band);
+            g.setLineWidth(1);
+            for (int column = 0; column < plotWidth; column++) {
+                double x = xOf(from + (column + 0.5) * days / plotWidth, plotWidth);
+                g.strokeLine(x, yOf(lows[column], top, plotHeight), x, yOf(highs[column], top, plotHeight));
+            }
+        }
+        int count = Downsampler.lttb(values, from, to, plotWidth, picked);
+        for (int i = 0; i < count; i++) {
+            xs[i] = xOf(picked[i], plotWidth);
+            ys[i] = yOf(values[picked[i]], top, plotHeight);
+        }
+        g.setStroke(line);
+        g.setLineWidth(1.5);
+        if (count == 1) {
+            g.setFill(line);
+            g.fillOval(xs[0] - 3, ys[0] - 3, 6, 6);  // A single day has no line to draw
+        }
+        g.strokePolyline(xs, ys, count);
+    }
+
+    private double xOf(double index, int plotWidth) {
+        return LEFT + (index - viewFrom) / viewSpan * plotWidth;
+    }
+
+    private static double yOf(long value, double top, double plotHeight) {
+        return TOP + plotHeight - value / top * plotHeight;
+    }
+
+    // The smallest 1, 2 or 5 times a power of ten that is at least rough
+    private static long niceStep(double rough) {
+        long magnitude = 1;
+        while (magnitude * 10 <= rough) {
+            magnitude *= 10;
+        }
+        for (long multiple : STEP_MULTIPLES) {
+            if (magnitude * multiple >= rough) {
+                return magnitude * multiple;
+            }
+        }
+        return magnitude * 10;
+    }
+
+    private void ensureCapacity(int plotWidth) {
+        if (picked.length < plotWidth) {
+            picked = new int[plotWidth];
+            xs = new double[plotWidth];
+            ys = new double[plotWidth];
+            lows = new long[plotWidth];
+            highs = new long[plotWidth];
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fitlife;
+
+import javafx.application.Platform;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Collects UI updates from background threads and runs them together in a single Platform.runLater
+public class UiPublisher {
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();  // Run in order, every one
+    private final Map<Object, Runnable> latest = new ConcurrentHashMap<>();  // Only the newest per key survives
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);      // True while a drain is queued
+    private final Executor fxThread;  // Where drains run: Platform.runLater, or a plain executor without JavaFX
+
+    public UiPublisher() {
+        this(Platform::runLater);
+    }
+
+    // Drains on the given executor instead, so the service can be driven without a toolkit, e.g. in tests
+    UiPublisher(Executor fxThread) {
+        this.fxThread = fxThread;
+    }
+
+    // Queue an update that must run
+    public void publish(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    // Queue an update that replaces any pending update with the same key, e.g. refreshing a label
+    public void publishLatest(Object key, Runnable task) {
+        latest.put(key, task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            fxThread.execute(this::drain);
+        }
+    }
+
+    // Runs on the FX thread: every queued task first, then the latest refresh for each key
+    private void drain() {
+        scheduled.set(false);  // Anything published from here on schedules the next drain
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+        for (Object key : latest.keySet()) {
+            Runnable refresh = latest.remove(key);
+            if (refresh != null) {
+                refresh.run();
+            }
+        }
+    }
+}
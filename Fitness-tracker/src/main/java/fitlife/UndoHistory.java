@@ -0,0 +1,101 @@
+package fitlife;
+
+// Undo and redo stacks of changes, held as persistent linked lists: a history value never changes, and
+// recording, undoing or redoing a change makes a new value that shares every other node with the old one.
+// A step therefore costs one node plus the change record, however long the history gets, and the owner
+// can hand its current history to another thread (e.g. to label the Undo button) without copying or
+// locking. The owner keeps the newest value in a field, and the change records carry the values before
+// and after the change, so undoing never replays or rescans anything.
+public final class UndoHistory<T> {
+
+    // One change and everything older than it
+    private static final class Node<T> {
+        final T change;
+        final Node<T> next;
+        final int depth;  // Nodes from here to the bottom of the stack
+
+        Node(T change, Node<T> next) {
+            this.change = change;
+            this.next = next;
+            this.depth = next == null ? 1 : next.depth + 1;
+        }
+    }
+
+    private final Node<T> undo;  // Newest change first
+    private final Node<T> redo;  // Most recently undone change first
+    private final int limit;     // Changes kept for undo; older ones are dropped
+
+    private UndoHistory(Node<T> undo, Node<T> redo, int limit) {
+        this.undo = undo;
+        this.redo = redo;
+        this.limit = limit;
+    }
+
+    public static <T> UndoHistory<T> empty(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("An undo history needs room for at least one change");
+        }
+        return new UndoHistory<>(null, null, limit);
+    }
+
+    // Record a new change; whatever could be redone is gone, as in any editor
+    public UndoHistory<T> push(T change) {
+        Node<T> top = new Node<>(change, undo);
+        if (top.depth > 2 * limit) {
+            top = newest(top, limit);  // Trimming copies limit nodes once every limit changes
+        }
+        return new UndoHistory<>(top, null, limit);
+    }
+
+    // The change undo() would revert, or null
+    public T nextUndo() {
+        return undo == null ? null : undo.change;
+    }
+
+    // The change redo() would apply again, or null
+    public T nextRedo() {
+        return redo == null ? null : redo.change;
+    }
+
+    // The history after the owner has reverted nextUndo()
+    public UndoHistory<T> undone() {
+        if (undo == null) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        return new UndoHistory<>(undo.next, new Node<>(undo.change, redo), limit);
+    }
+
+    // The history after the owner has applied nextRedo() again
+    public UndoHistory<T> redone() {
+        if (redo == null) {
+            throw new IllegalStateException("Nothing to redo");
+        }
+        return new UndoHistory<>(new Node<>(redo.change, undo), redo.next, limit);
+    }
+
+    // Changes that can be undone: every one recorded, or at least the limit once older ones are dropped
+    public int undoDepth() {
+        return undo == null ? 0 : undo.depth;
+    }
+
+    public int redoDepth() {
+        return redo == null ? 0 : redo.depth;
+    }
+
+    // A copy of the newest count nodes of a stack
+    private static <T> Node<T> newest(Node<T> top, int count) {
+        Object[] changes = new Object[count];
+        Node<T> node = top;
+        for (int i = 0; i < count; i++) {
+            changes[i] = node.change;
+            node = node.next;
+        }
+        Node<T> copy = null;
+        for (int i = count - 1; i >= 0; i--) {
+            @SuppressWarnings("unchecked")
+            T change = (T) changes[i];
+            copy = new Node<>(change, copy);
+        }
+        return copy;
+    }
+}
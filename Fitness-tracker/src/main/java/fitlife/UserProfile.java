@@ -0,0 +1,84 @@
+package fitlife;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+// Body measurements used for calorie burn estimates, saved as a small properties file
+public class UserProfile {
+
+    public static final String MALE = "male";
+    public static final String FEMALE = "female";
+    public static final String UNSPECIFIED = "unspecified";
+
+    public final double weightKg;
+    public final double heightCm;
+    public final int age;
+    public final String sex;        // MALE, FEMALE or UNSPECIFIED; unspecified averages the two formulas
+    public final int restingHeartRate;
+
+    public UserProfile(double weightKg, double heightCm, int age, String sex, int restingHeartRate) {
+        if (weightKg <= 0 || heightCm <= 0 || age <= 0 || restingHeartRate <= 0) {
+            throw new IllegalArgumentException("Profile values must be positive");
+        }
+        this.weightKg = weightKg;
+        this.heightCm = heightCm;
+        this.age = age;
+        this.sex = MALE.equals(sex) || FEMALE.equals(sex) ? sex : UNSPECIFIED;
+        this.restingHeartRate = restingHeartRate;
+    }
+
+    // Used until the user enters their own values
+    public static UserProfile defaults() {
+        return new UserProfile(70, 170, 30, UNSPECIFIED, 65);
+    }
+
+    // Resting energy use in kcal per day (Mifflin-St Jeor)
+    public double restingKcalPerDay() {
+        double base = 10 * weightKg + 6.25 * heightCm - 5 * age;
+        switch (sex) {
+            case MALE:
+                return base + 5;
+            case FEMALE:
+                return base - 161;
+            default:
+                return base - 78;
+        }
+    }
+
+    public static UserProfile load(Path file) {
+        if (!Files.isReadable(file)) {
+            return defaults();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            UserProfile fallback = defaults();
+            return new UserProfile(
+                    Double.parseDouble(properties.getProperty("weightKg", String.valueOf(fallback.weightKg))),
+                    Double.parseDouble(properties.getProperty("heightCm", String.valueOf(fallback.heightCm))),
+                    Integer.parseInt(properties.getProperty("age", String.valueOf(fallback.age))),
+                    properties.getProperty("sex", fallback.sex),
+                    Integer.parseInt(properties.getProperty("restingHeartRate", String.valueOf(fallback.restingHeartRate))));
+        } catch (IOException | IllegalArgumentException ex) {
+            return defaults();  // A damaged profile should not stop the app from starting
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("weightKg", String.valueOf(weightKg));
+        properties.setProperty("heightCm", String.valueOf(heightCm));
+        properties.setProperty("age", String.valueOf(age));
+        properties.setProperty("sex", sex);
+        properties.setProperty("restingHeartRate", String.valueOf(restingHeartRate));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Fitlife profile");
+        }
+    }
+}
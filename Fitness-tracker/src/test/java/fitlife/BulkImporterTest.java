@@ -0,0 +1,191 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkImporterTest {
+
+    private static final int DAY = (int) LocalDate.of(2024, 3, 1).toEpochDay();
+
+    @TempDir
+    Path directory;
+
+    private static TrackerCore newCore() {
+        return new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+    }
+
+    // Imports on the calling thread into a fresh core, the way FitlifeBatch does
+    private TrackerCore importInto(String fileName, String content) throws IOException {
+        Path file = directory.resolve(fileName);
+        Files.writeString(file, content);
+        TrackerCore core = newCore();
+        BulkImporter importer = new BulkImporter(FoodCatalog.loadDefault(), core.energy(), 0);
+        long parsed = importer.importFile(file, batch -> {
+            try {
+                core.apply(batch);
+            } finally {
+                batch.complete();
+            }
+        });
+        assertEquals(parsed, core.entries().size());
+        return core;
+    }
+
+    @Test
+    void readsFoodsAndWorkoutsFromCsv() throws IOException {
+        TrackerCore core = importInto("log.csv", String.join("\n",
+                "date,food,meal,activity,minutes,duration,calories",
+                "2024-03-01,Banana,breakfast,,,,",
+                "2024-03-01T19:30:00,pizza,,,,,300",
+                "2024-03-01,dragon fruit custard,lunch,,,,",      // Unknown food without calories
+                "2024-03-02,,,jogging,45,,",
+                "2024-03-02,,,Bike ride,,1:30:00,800",
+                "2024-03-02,,,Running,0,,",                       // No minutes
+                "not a date,banana,lunch,,,,",
+                "\"2024-03-03\",\"apple\",\"lunch\",,,,"));
+        EntryStore entries = core.entries();
+        assertEquals(5, entries.size());
+        assertEquals("banana", entries.name(0));
+        assertEquals(EntryStore.MORNING, entries.code(0));
+        assertEquals(105, entries.calories(0));
+        assertEquals(EntryStore.DINNER, entries.code(1));
+        assertEquals(300, entries.calories(1));
+        assertEquals("Running", entries.name(2));
+        assertEquals(45, entries.minutes(2));
+        assertEquals(core.energy().caloriesBurned("Running", 45), entries.calories(2));
+        assertEquals("Cycling", entries.name(3));
+        assertEquals(90, entries.minutes(3));
+        assertEquals(800, entries.calories(3));
+        assertEquals(DAY + 2, entries.day(4));
+    }
+
+    @Test
+    void skipsDatesTheTotalsCouldNotHold() throws IOException {
+        String farFuture = LocalDate.now().plusYears(2).toString();
+        TrackerCore core = importInto("log.csv", String.join("\n",
+                "date,food,calories",
+                "2024-03-01,banana,105",
+                "1969-12-31,banana,105",
+                "2399-01-01,banana,105",
+                farFuture + ",banana,105",
+                "2024-02-30,banana,105",
+                "2024-03-02,apple,95"));
+        assertEquals(2, core.entries().size());
+        assertEquals(DAY + 1, core.entries().day(1));
+        assertEquals(200, core.dailyTotals().sum(RangeAggregator.INTAKE, DAY, DAY + 1));
+        assertEquals(-1, BulkImporter.parseDay("2300-01-01", DAY));
+        assertEquals(DAY, BulkImporter.parseDay("2024-03-01T07:00:00Z", DAY));
+    }
+
+    @Test
+    void skipsNamesTooLongForTheJournal() throws IOException {
+        String longName = "x".repeat(TrackerCore.MAX_NAME_LENGTH + 1);
+        TrackerCore core = importInto("log.csv", String.join("\n",
+                "date,food,activity,minutes,calories",
+                "2024-03-01," + longName + ",,,100",
+                "2024-03-01,," + longName + ",30,100",
+                "2024-03-01,banana,,,"));
+        assertEquals(1, core.entries().size());
+    }
+
+    @Test
+    void readsGpxTracksWithTheirRecording() throws IOException {
+        TrackerCore core = importInto("run.gpx", """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <gpx version="1.1" xmlns:gpxtpx="http://www.garmin.com/xmlschemas/TrackPointExtension/v1">
+                  <trk><type>running</type><trkseg>
+                    <trkpt lat="52.1" lon="4.3"><time>2024-03-01T07:00:00Z</time>
+                      <extensions><gpxtpx:TrackPointExtension><gpxtpx:hr>120</gpxtpx:hr></gpxtpx:TrackPointExtension></extensions></trkpt>
+                    <trkpt lat="52.2" lon="4.4"><time>2024-03-01T07:20:00Z</time>
+                      <extensions><gpxtpx:TrackPointExtension><gpxtpx:hr>150</gpxtpx:hr></gpxtpx:TrackPointExtension></extensions></trkpt>
+                    <trkpt lat="52.3" lon="4.5"><time>2024-03-01T07:40:00Z</time>
+                      <extensions><gpxtpx:TrackPointExtension><gpxtpx:hr>160</gpxtpx:hr></gpxtpx:TrackPointExtension></extensions></trkpt>
+                  </trkseg></trk>
+                </gpx>
+                """);
+        assertEquals(1, core.entries().size());
+        assertEquals("Running", core.entries().name(0));
+        assertEquals(DAY, core.entries().day(0));
+        assertEquals(40, core.entries().minutes(0));
+        assertTrue(core.entries().calories(0) > 0);
+        assertTrue(core.sensors().has(0));
+        assertEquals(3, core.sensors().series(0, SensorStore.HEART_RATE).samples());
+    }
+
+    @Test
+    void readsTcxActivitiesWithTheirOwnCalories() throws IOException {
+        TrackerCore core = importInto("ride.tcx", """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <TrainingCenterDatabase><Activities>
+                  <Activity Sport="Biking"><Id>2024-03-01T17:00:00Z</Id>
+                    <Lap><TotalTimeSeconds>3600</TotalTimeSeconds><Calories>650</Calories></Lap>
+                  </Activity>
+                  <Activity Sport="Running"><Id>2399-01-01T17:00:00Z</Id>
+                    <Lap><TotalTimeSeconds>1800</TotalTimeSeconds><Calories>300</Calories></Lap>
+                  </Activity>
+                </Activities></TrainingCenterDatabase>
+                """);
+        assertEquals(1, core.entries().size());
+        assertEquals("Cycling", core.entries().name(0));
+        assertEquals(60, core.entries().minutes(0));
+        assertEquals(650, core.entries().calories(0));
+    }
+
+    @Test
+    void applySkipsADayTheTotalsRefuseInTheMiddleOfABatch() {
+        TrackerCore core = newCore();
+        BulkImporter.ImportBatch batch = new BulkImporter.ImportBatch(4);
+        batch.addFood(DAY, EntryStore.LUNCH, "banana", 105);
+        batch.addFood(DAY + RangeAggregator.MAX_SPAN, EntryStore.LUNCH, "banana", 105);
+        batch.addWorkout(DAY + 1, "Running", 30, 300);
+        assertEquals(2, core.apply(batch));
+        assertEquals(2, core.entries().size());
+        assertEquals(DAY + 1, core.entries().day(1));
+        assertEquals(105, core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertEquals(300, core.dailyTotals().sum(RangeAggregator.BURNED, DAY, DAY + 1));
+    }
+
+    @Test
+    void serviceJournalsExactlyTheRowsItStored() throws Exception {
+        Path data = Files.createDirectory(directory.resolve("data"));
+        Path file = directory.resolve("log.csv");
+        Files.writeString(file, String.join("\n",
+                "date,food,calories",
+                "2024-03-01,banana,105",
+                "2399-01-01,banana,105",
+                "2024-03-02,apple,95"));
+        StatusView view = new StatusView();
+        TrackerService service = new TrackerService(FoodCatalog.loadDefault(),
+                EnergyEngine.loadDefault(UserProfile.defaults()), new UiPublisher(Runnable::run), view, new Metrics());
+        service.open(data);
+        CountDownLatch finished = new CountDownLatch(1);
+        service.importFile(file, finished::countDown);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        service.close();
+        assertEquals("Imported 2 entries from log.csv", view.lastStatus());
+
+        TrackerCore replayed = newCore();
+        EntryJournal.read(data, replayed::read, new EntryJournal.Listener() {
+            public void food(int epochDay, int meal, String name, int calories) {
+                replayed.storeFood(epochDay, meal, name, calories);
+            }
+
+            public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                replayed.storeWorkout(epochDay, activity, minutes, caloriesBurned);
+            }
+        });
+        assertEquals(service.entries().size(), replayed.entries().size());
+        assertEquals(2, replayed.entries().size());
+        assertEquals(200, replayed.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+    }
+}
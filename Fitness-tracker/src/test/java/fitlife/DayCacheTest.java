@@ -0,0 +1,87 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DayCacheTest {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    // Look a day up and cache it on a miss, as TrackerCore.day() does
+    private static void view(DayCache<String> cache, int day) {
+        if (cache.get(day) == null) {
+            cache.put(day, "day " + day);
+        }
+    }
+
+    @Test
+    void neverHoldsMoreThanItsCapacity() {
+        DayCache<String> cache = new DayCache<>(64, String::length);
+        for (int day = 0; day < 1_000; day++) {
+            view(cache, day);
+            assertTrue(cache.size() <= 64, "after day " + day);
+        }
+        assertEquals(64, cache.size());
+        assertEquals(1_000 - 64, cache.evictions());
+        assertEquals(1_000, cache.misses());
+    }
+
+    @Test
+    void frequentDaysSurviveAOneOffScan() {
+        DayCache<String> cache = new DayCache<>(366, String::length);  // TrackerCore's size
+        for (int round = 0; round < 5; round++) {
+            for (int day = 0; day < 10; day++) {
+                view(cache, day);
+            }
+        }
+        for (int day = 1_000; day < 3_000; day++) {  // Paging through five years of the calendar
+            view(cache, day);
+        }
+        for (int day = 0; day < 10; day++) {
+            assertTrue(cache.contains(day), "hot day " + day + " was evicted by the scan");
+        }
+        long hits = cache.hits();
+        for (int day = 0; day < 10; day++) {
+            view(cache, day);
+        }
+        assertEquals(hits + 10, cache.hits());
+    }
+
+    @Test
+    void admitsNewDaysWhileThereIsRoom() {
+        DayCache<String> cache = new DayCache<>(16, String::length);
+        for (int day = 0; day < 16; day++) {
+            cache.put(day, "day " + day);
+        }
+        for (int day = 0; day < 16; day++) {
+            assertTrue(cache.contains(day), "day " + day);
+        }
+        assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    void invalidateAndReplaceKeepTheByteEstimate() {
+        DayCache<String> cache = new DayCache<>(16, String::length);
+        cache.put(1, "abc");
+        cache.put(2, "abcdef");
+        assertEquals(2 * ENTRY_OVERHEAD + 9, cache.estimatedBytes());
+        cache.put(1, "a");
+        assertEquals(2 * ENTRY_OVERHEAD + 7, cache.estimatedBytes());
+        assertEquals(2, cache.size());
+
+        cache.invalidate(2);
+        cache.invalidate(3);  // Not cached: no effect
+        assertFalse(cache.contains(2));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.invalidations());
+        assertEquals(ENTRY_OVERHEAD + 1, cache.estimatedBytes());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.estimatedBytes());
+    }
+}
@@ -0,0 +1,100 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownsamplerTest {
+
+    private static long[] randomSeries(int length, Random random) {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = 1_500 + random.nextInt(2_000);
+        }
+        return values;
+    }
+
+    @Test
+    void lttbKeepsEveryPointWhenThereIsRoom() {
+        long[] values = randomSeries(50, new Random(1));
+        int[] indexes = new int[50];
+        assertEquals(20, Downsampler.lttb(values, 10, 30, 20, indexes));
+        assertEquals(20, Downsampler.lttb(values, 10, 30, 25, indexes));
+        assertEquals(20, Downsampler.lttb(values, 10, 30, 2, indexes));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(10 + i, indexes[i]);
+        }
+        assertEquals(0, Downsampler.lttb(values, 10, 10, 5, indexes));
+    }
+
+    @Test
+    void lttbPicksOnePointPerBucketInOrder() {
+        Random random = new Random(2);
+        long[] values = randomSeries(10_000, random);
+        int from = 1_234;
+        int to = 9_876;
+        int threshold = 300;
+        int[] indexes = new int[threshold];
+        assertEquals(threshold, Downsampler.lttb(values, from, to, threshold, indexes));
+        assertEquals(from, indexes[0]);
+        assertEquals(to - 1, indexes[threshold - 1]);
+        double bucketSize = (double) (to - from - 2) / (threshold - 2);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int index = indexes[bucket + 1];
+            assertTrue(index >= from + (int) (bucket * bucketSize) + 1, "bucket " + bucket);
+            assertTrue(index < from + (int) ((bucket + 1) * bucketSize) + 1, "bucket " + bucket);
+        }
+    }
+
+    @Test
+    void lttbKeepsSpikesAFlatSeriesWouldHide() {
+        long[] values = new long[3_650];
+        Arrays.fill(values, 2_000);
+        int[] spikes = {17, 900, 2_222, 3_600};
+        for (int spike : spikes) {
+            values[spike] = spike % 2 == 0 ? 6_000 : 0;  // Feasts and fasts
+        }
+        int[] indexes = new int[100];
+        int count = Downsampler.lttb(values, 0, values.length, 100, indexes);
+        for (int spike : spikes) {
+            assertTrue(Arrays.stream(indexes, 0, count).anyMatch(i -> i == spike), "day " + spike);
+        }
+    }
+
+    @Test
+    void minMaxCoversEverySliceOfTheRange() {
+        Random random = new Random(3);
+        long[] values = randomSeries(5_000, random);
+        int from = 333;
+        int to = 4_444;
+        for (int buckets : new int[] {1, 7, 640, to - from}) {
+            long[] min = new long[buckets];
+            long[] max = new long[buckets];
+            Downsampler.minMax(values, from, to, buckets, min, max);
+            long[] slice = Arrays.copyOfRange(values, from, to);
+            assertEquals(Arrays.stream(slice).min().getAsLong(), Arrays.stream(min).min().getAsLong());
+            assertEquals(Arrays.stream(slice).max().getAsLong(), Arrays.stream(max).max().getAsLong());
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                assertTrue(min[bucket] <= max[bucket]);
+            }
+            if (buckets == to - from) {
+                assertArrayEquals(slice, min, "one value per bucket");
+                assertArrayEquals(slice, max, "one value per bucket");
+            }
+        }
+
+        // A single spike shows up in exactly one column, and only there
+        long[] flat = new long[10_000];
+        flat[6_543] = 9_999;
+        long[] min = new long[640];
+        long[] max = new long[640];
+        Downsampler.minMax(flat, 0, flat.length, 640, min, max);
+        assertEquals(1, Arrays.stream(max).filter(v -> v == 9_999).count());
+        assertEquals(0, Arrays.stream(min).max().getAsLong());
+    }
+}
@@ -0,0 +1,129 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnergyEngineTest {
+
+    private static final int DAY = 20_000;
+    private static final UserProfile HEAVIER = new UserProfile(95, 185, 40, UserProfile.MALE, 60);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void looksUpMetsByNameAndFirstWord() {
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        assertEquals(9.8, energy.met("Running"));
+        assertEquals(9.8, energy.met("  running "));
+        assertEquals(6.0, energy.met("Running 4 mph"));
+        assertEquals(9.8, energy.met("Running, with the club"));
+        assertEquals(5.0, energy.met("Underwater basket weaving"));
+    }
+
+    @Test
+    void scalesBurnWithTheProfile() {
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        double expected = 9.8 * UserProfile.defaults().restingKcalPerDay() / 1440 * 30;
+        assertEquals(Math.round(expected), energy.caloriesBurned("Running", 30));
+        int before = energy.caloriesBurned("Running", 30);
+        energy.setProfile(HEAVIER);
+        assertTrue(energy.caloriesBurned("Running", 30) > before);
+        assertEquals(2 * energy.caloriesBurned("Walking", 30), energy.caloriesBurned("Walking", 60), 1);
+    }
+
+    @Test
+    void heartRateBurnNeverDropsBelowResting() {
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        double restingPerMinute = EnergyEngine.restingKcalPerMinute(UserProfile.defaults());
+        int[] resting = {50, 60, 0, 40};
+        // One sample a minute; the dropout (0) is not counted
+        assertEquals(3 * restingPerMinute, energy.kcalFromHeartRate(resting, 0, resting.length, 60), 1e-9);
+        int[] hard = {160, 165, 170, 175};
+        double kcal = energy.kcalFromHeartRate(hard, 0, hard.length, 60);
+        assertTrue(kcal > 4 * restingPerMinute * 5, "hard effort burns several times resting: " + kcal);
+        assertEquals(energy.kcalFromHeartRate(hard, 1, 2, 60), energy.kcalFromHeartRate(new int[] {165, 170}, 0, 2, 60), 1e-9);
+    }
+
+    @Test
+    void recomputeOnlyTouchesMetEstimates() {
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        EntryStore store = new EntryStore();
+        store.addWorkout(DAY, "Running", 30, energy.caloriesBurned("Running", 30));
+        store.addWorkout(DAY, "Cycling", 45, 612);  // From a watch file
+        store.addFood(DAY, EntryStore.LUNCH, "banana", 105);
+        store.addWorkout(DAY, "Swimming", 20, energy.caloriesBurned("Swimming", 20));
+        store.setDeleted(3, true);
+
+        UserProfile previous = energy.profile();
+        energy.setProfile(HEAVIER);
+        int[] burns = new int[store.size()];
+        assertEquals(1, energy.recompute(store, previous, burns));
+        assertArrayEquals(new int[] {energy.caloriesBurned("Running", 30), -1, -1, -1}, burns);
+    }
+
+    @Test
+    void profileChangeReestimatesAndJournalsWorkouts() throws Exception {
+        Path data = Files.createDirectory(directory.resolve("data"));
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        StatusView view = new StatusView();
+        TrackerService service = new TrackerService(FoodCatalog.loadDefault(), energy, new UiPublisher(Runnable::run), view, new Metrics());
+        service.open(data);
+        service.addWorkout("Running", "30");
+        service.addWorkout("Walking", "60");
+        service.addFood("banana", EntryStore.LUNCH);
+        service.updateProfile(HEAVIER);
+        CountDownLatch done = new CountDownLatch(1);
+        service.exportFile(directory.resolve("out.csv"), done::countDown);  // Queued behind the update
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        service.close();
+        assertTrue(view.statuses.contains("Profile saved; 2 workouts re-estimated"), view.statuses.toString());
+
+        TrackerCore replayed = new TrackerCore(FoodCatalog.loadDefault(), energy);
+        EntryJournal.read(data, replayed::read, new EntryJournal.Listener() {
+            public void food(int epochDay, int meal, String name, int calories) {
+                replayed.storeFood(epochDay, meal, name, calories);
+            }
+
+            public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                replayed.storeWorkout(epochDay, activity, minutes, caloriesBurned);
+            }
+
+            public void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+                replayed.replace(row, new TrackerCore.Entry(epochDay, code, name, calories, minutes));
+            }
+        });
+        assertEquals(energy.caloriesBurned("Running", 30), replayed.entries().calories(0));
+        assertEquals(energy.caloriesBurned("Walking", 60), replayed.entries().calories(1));
+        int today = (int) LocalDate.now().toEpochDay();
+        assertEquals(energy.caloriesBurned("Running", 30) + energy.caloriesBurned("Walking", 60),
+                replayed.dailyTotals().sum(RangeAggregator.BURNED, today, today));
+    }
+
+    @Test
+    void reestimatingKeepsTheCoreTotalsConsistent() {
+        EnergyEngine energy = EnergyEngine.loadDefault(UserProfile.defaults());
+        TrackerCore core = new TrackerCore(FoodCatalog.loadDefault(), energy);
+        core.addWorkout(DAY, "Running", "30");
+        core.storeWorkout(DAY + 1, "Cycling", 45, 612);
+        core.addFood(DAY, "banana", EntryStore.MORNING);
+        UserProfile previous = energy.profile();
+        energy.setProfile(HEAVIER);
+        assertArrayEquals(new int[] {0}, core.reestimateBurns(previous));
+        assertEquals(0, core.history().undoDepth(), "undo records held the old burns");
+        long burned = energy.caloriesBurned("Running", 30) + 612;
+        assertEquals(burned, core.summary(LocalDate.ofEpochDay(DAY)).totalCaloriesBurned);
+        assertEquals(burned, core.dailyTotals().sum(RangeAggregator.BURNED, DAY, DAY + 1));
+        assertEquals(0, core.reestimateBurns(HEAVIER).length, "nothing left to change");
+    }
+}
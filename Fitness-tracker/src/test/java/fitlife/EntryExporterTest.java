@@ -0,0 +1,196 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntryExporterTest {
+
+    private static final int DAY = (int) LocalDate.of(2024, 3, 1).toEpochDay();
+    private static final String[] NAMES = {"banana", "Running", "crème brûlée", "fish, chips", "the \"big\" salad", "Cycling"};
+
+    @TempDir
+    Path directory;
+
+    // Rows out of order in time, repeated names, every meal, and some deleted
+    private static EntryStore randomStore(int rows, Random random) {
+        EntryStore store = new EntryStore();
+        int day = DAY;
+        for (int i = 0; i < rows; i++) {
+            day += random.nextInt(10) == 0 ? -random.nextInt(Math.min(day, 3_000)) : random.nextInt(3);  // Not before 1970
+            String name = NAMES[random.nextInt(NAMES.length)];
+            if (random.nextInt(3) == 0) {
+                store.addWorkout(day, name, 1 + random.nextInt(EntryStore.MAX_MINUTES), random.nextInt(5_000));
+            } else {
+                store.addFood(day, random.nextInt(3), name, random.nextInt(2_000));
+            }
+            if (random.nextInt(20) == 0) {
+                store.setDeleted(i, true);
+            }
+        }
+        return store;
+    }
+
+    // A listener that appends what it is given, so a read-back can be compared with the store row by row
+    private static EntryJournal.Listener into(EntryStore store) {
+        return new EntryJournal.Listener() {
+            @Override
+            public void food(int epochDay, int meal, String name, int calories) {
+                store.addFood(epochDay, meal, name, calories);
+            }
+
+            @Override
+            public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+                store.addWorkout(epochDay, activity, minutes, caloriesBurned);
+            }
+        };
+    }
+
+    private static void assertSameLiveRows(EntryStore expected, EntryStore actual) {
+        assertSameLiveRows(expected, actual, false);
+    }
+
+    private static void assertSameLiveRows(EntryStore expected, EntryStore actual, boolean ignoreNameCase) {
+        int row = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.isDeleted(i)) {
+                continue;
+            }
+            assertEquals(expected.day(i), actual.day(row), "row " + i);
+            assertEquals(expected.code(i), actual.code(row), "row " + i);
+            if (ignoreNameCase) {
+                assertEquals(expected.name(i).toLowerCase(Locale.ROOT), actual.name(row).toLowerCase(Locale.ROOT), "row " + i);
+            } else {
+                assertEquals(expected.name(i), actual.name(row), "row " + i);
+            }
+            assertEquals(expected.minutes(i), actual.minutes(row), "row " + i);
+            assertEquals(expected.calories(i), actual.calories(row), "row " + i);
+            row++;
+        }
+        assertEquals(row, actual.size());
+    }
+
+    @Test
+    void columnarExportReadsBackEveryLiveRow() throws IOException {
+        EntryStore store = randomStore(40_000, new Random(4));  // Three row groups
+        Path file = directory.resolve("history.flc");
+        long written;
+        try (EntryExporter exporter = EntryExporter.open(file)) {
+            exporter.exportStore(store);
+            written = exporter.rows();
+        }
+        EntryStore readBack = new EntryStore();
+        assertEquals(written, EntryExporter.readColumnar(file, into(readBack)));
+        assertEquals(written, readBack.size());
+        assertSameLiveRows(store, readBack);
+    }
+
+    @Test
+    void emptyAndForeignFilesAreHandled() throws IOException {
+        Path empty = directory.resolve("empty.flc");
+        EntryExporter.open(empty).close();
+        EntryStore readBack = new EntryStore();
+        assertEquals(0, EntryExporter.readColumnar(empty, into(readBack)));
+        assertEquals(0, readBack.size());
+
+        Path csv = directory.resolve("history.csv");
+        try (EntryExporter exporter = EntryExporter.open(csv)) {
+            exporter.exportStore(randomStore(100, new Random(5)));
+        }
+        assertThrows(IOException.class, () -> EntryExporter.readColumnar(csv, into(new EntryStore())));
+
+        Path file = directory.resolve("history.flc");
+        try (EntryExporter exporter = EntryExporter.open(file)) {
+            exporter.exportStore(randomStore(100, new Random(6)));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = directory.resolve("truncated.flc");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> EntryExporter.readColumnar(truncated, into(new EntryStore())));
+    }
+
+    @Test
+    void replayedRowsAreWrittenAsTheyEndedUp() throws IOException {
+        Path file = directory.resolve("replay.flc");
+        Map<Integer, TrackerCore.Entry> edited = new HashMap<>();
+        edited.put(11, new TrackerCore.Entry(DAY + 1, EntryStore.DINNER, "apple", 95, 0));
+        edited.put(12, null);  // Deleted
+        try (EntryExporter exporter = EntryExporter.open(file)) {
+            exporter.replayEdits(10, edited);
+            exporter.food(DAY, EntryStore.MORNING, "banana", 105);
+            exporter.food(DAY, EntryStore.LUNCH, "pizza", 285);
+            exporter.workout(DAY, "Running", 30, 300);
+            exporter.workout(DAY, "Cycling", 45, 400);
+        }
+        EntryStore readBack = new EntryStore();
+        assertEquals(3, EntryExporter.readColumnar(file, into(readBack)));
+        assertEquals("banana", readBack.name(0));
+        assertEquals("apple", readBack.name(1));
+        assertEquals(DAY + 1, readBack.day(1));
+        assertEquals(EntryStore.DINNER, readBack.code(1));
+        assertEquals(95, readBack.calories(1));
+        assertEquals("Cycling", readBack.name(2));
+        assertEquals(45, readBack.minutes(2));
+    }
+
+    @Test
+    void csvExportFormatsDatesAndQuotesNames() throws IOException {
+        EntryStore store = new EntryStore();
+        store.addFood(DAY, EntryStore.LUNCH, "fish, chips", 700);
+        store.addFood(DAY, EntryStore.DINNER, "the \"big\" salad", 0);
+        store.addWorkout(DAY, "Running", 30, 300);
+        store.addFood(DAY, EntryStore.MORNING, "crème brûlée", -50);
+        // Leap days, century years and the epoch, against LocalDate's own formatting
+        int[] days = {0, (int) LocalDate.of(2000, 2, 29).toEpochDay(), (int) LocalDate.of(2100, 3, 1).toEpochDay(),
+                (int) LocalDate.of(1999, 12, 31).toEpochDay()};
+        for (int day : days) {
+            store.addFood(day, EntryStore.MORNING, "banana", 105);
+        }
+        Path file = directory.resolve("history.csv");
+        try (EntryExporter exporter = EntryExporter.open(file)) {
+            exporter.exportStore(store);
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals("date,meal,food,activity,minutes,calories", lines.get(0));
+        assertEquals("2024-03-01,Lunch,\"fish, chips\",,,700", lines.get(1));
+        assertEquals("2024-03-01,Dinner,\"the \"\"big\"\" salad\",,,0", lines.get(2));
+        assertEquals("2024-03-01,,,Running,30,300", lines.get(3));
+        assertEquals("2024-03-01,Morning,crème brûlée,,,-50", lines.get(4));
+        for (int i = 0; i < days.length; i++) {
+            assertEquals(LocalDate.ofEpochDay(days[i]) + ",Morning,banana,,,105", lines.get(5 + i));
+        }
+        assertEquals(1 + store.size(), lines.size());
+    }
+
+    @Test
+    void csvExportImportsAgain() throws IOException {
+        EntryStore store = randomStore(2_000, new Random(7));
+        Path file = directory.resolve("history.csv");
+        try (EntryExporter exporter = EntryExporter.open(file)) {
+            exporter.exportStore(store);
+        }
+        TrackerCore core = new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        BulkImporter importer = new BulkImporter(FoodCatalog.loadDefault(), core.energy(), 0);
+        importer.importFile(file, batch -> {
+            try {
+                core.apply(batch);
+            } finally {
+                batch.complete();
+            }
+        });
+        assertSameLiveRows(store, core.entries(), true);  // Known foods come back with the catalog's spelling
+    }
+}
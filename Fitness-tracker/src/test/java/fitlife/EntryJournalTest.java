@@ -0,0 +1,391 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntryJournalTest {
+
+    private static final int DAY = 20_000;
+    private static final String FIRST_SEGMENT = "journal-00000001.log";
+
+    @TempDir
+    Path directory;
+
+    // Records as one line each, in the order a replay delivered them
+    private static final class Recorder implements EntryJournal.Listener {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void food(int epochDay, int meal, String name, int calories) {
+            records.add("food " + epochDay + " " + meal + " " + name + " " + calories);
+        }
+
+        @Override
+        public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+            records.add("workout " + epochDay + " " + activity + " " + minutes + " " + caloriesBurned);
+        }
+
+        @Override
+        public void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+            records.add("update " + row + " " + epochDay + " " + code + " " + name + " " + calories + " " + minutes);
+        }
+
+        @Override
+        public void delete(int row) {
+            records.add("delete " + row);
+        }
+    }
+
+    // Replays into a TrackerCore the way TrackerService does
+    private static final class Replay implements EntryJournal.Listener {
+        final TrackerCore core = newCore();
+
+        @Override
+        public void food(int epochDay, int meal, String name, int calories) {
+            core.storeFood(epochDay, meal, name, calories);
+        }
+
+        @Override
+        public void workout(int epochDay, String activity, int minutes, int caloriesBurned) {
+            core.storeWorkout(epochDay, activity, minutes, caloriesBurned);
+        }
+
+        @Override
+        public void update(int row, int epochDay, int code, String name, int calories, int minutes) {
+            core.replace(row, new TrackerCore.Entry(epochDay, code, name, calories, minutes));
+        }
+
+        @Override
+        public void delete(int row) {
+            core.replace(row, null);
+        }
+    }
+
+    private static TrackerCore newCore() {
+        return new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+    }
+
+    // Length and checksum plus type, day, slot, two values and the name length; see EntryJournal's record layout
+    private static long recordBytes(String name) {
+        return 8 + 16 + name.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0x10)).rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private List<String> replay() throws IOException {
+        Recorder recorder = new Recorder();
+        EntryJournal.read(directory, in -> { }, recorder);
+        return recorder.records;
+    }
+
+    private EntryJournal openEmpty() throws IOException {
+        EntryJournal journal = EntryJournal.open(directory);
+        assertEquals(0, journal.recover(in -> { }, new Recorder()));
+        return journal;
+    }
+
+    @Test
+    void replaysEveryRecordInOrder() throws IOException {
+        try (EntryJournal journal = openEmpty()) {
+            journal.appendFood(DAY, EntryStore.LUNCH, "banana", 105);
+            journal.appendWorkout(DAY + 1, "Running", 30, 300);
+            journal.appendUpdate(0, DAY, EntryStore.DINNER, "apple", 95, 0);
+            journal.appendDelete(1);
+        }
+        assertEquals(List.of(
+                "food 20000 1 banana 105",
+                "workout 20001 Running 30 300",
+                "update 0 20000 2 apple 95 0",
+                "delete 1"), replay());
+    }
+
+    @Test
+    void recordWithoutItsLengthEndsTheLog() throws IOException {
+        try (EntryJournal journal = openEmpty()) {
+            for (int i = 0; i < 3; i++) {
+                journal.appendFood(DAY, EntryStore.MORNING, "banana", 105);
+            }
+        }
+        // A crash after the body but before the length: the length is written last, so it reads as zero
+        try (FileChannel channel = FileChannel.open(directory.resolve(FIRST_SEGMENT), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 2 * recordBytes("banana"));
+        }
+        assertEquals(2, replay().size());
+
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(2, journal.recover(in -> { }, new Recorder()));
+            journal.appendFood(DAY, EntryStore.MORNING, "apple", 95);
+        }
+        List<String> records = replay();
+        assertEquals(3, records.size());
+        assertEquals("food 20000 0 apple 95", records.get(2));
+    }
+
+    @Test
+    void truncatedRecordEndsTheLog() throws IOException {
+        try (EntryJournal journal = openEmpty()) {
+            journal.appendFood(DAY, EntryStore.MORNING, "banana", 105);
+            journal.appendWorkout(DAY, "Cycling", 45, 400);
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(FIRST_SEGMENT), StandardOpenOption.WRITE)) {
+            channel.truncate(recordBytes("banana") + 10);
+        }
+        assertEquals(List.of("food 20000 0 banana 105"), replay());
+
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(1, journal.recover(in -> { }, new Recorder()));
+            journal.appendWorkout(DAY, "Rowing", 20, 200);
+        }
+        assertEquals(List.of("food 20000 0 banana 105", "workout 20000 Rowing 20 200"), replay());
+    }
+
+    // Fifty foods in the snapshot and five more in the log after it; returns the calories of all of them
+    private int logWithSnapshot() throws IOException {
+        int calories = 0;
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            Replay replay = new Replay();
+            journal.recover(replay.core::read, replay);
+            for (int i = 0; i < 55; i++) {
+                if (i == 50) {
+                    journal.snapshot(replay.core::write);
+                }
+                int kcal = 100 + i;
+                replay.core.storeFood(DAY + i % 7, EntryStore.LUNCH, "food " + i, kcal);
+                journal.appendFood(DAY + i % 7, EntryStore.LUNCH, "food " + i, kcal);
+                calories += kcal;
+            }
+        }
+        return calories;
+    }
+
+    private void recoverAndCheck(int calories, boolean discarded) throws IOException {
+        Replay replay = new Replay();
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            int replayed = journal.recover(replay.core::read, replay);
+            assertEquals(discarded ? 55 : 5, replayed);
+            if (discarded) {
+                assertNotNull(journal.discardedSnapshot());
+            } else {
+                assertNull(journal.discardedSnapshot());
+            }
+        }
+        assertEquals(55, replay.core.entries().size());
+        assertEquals(calories, replay.core.summary(java.time.LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertEquals(calories, replay.core.dailyTotals().sum(RangeAggregator.INTAKE, DAY, DAY + 6));
+        assertEquals(discarded, Files.exists(directory.resolve("snapshot.bad")));
+    }
+
+    @Test
+    void intactSnapshotSkipsTheLogBeforeIt() throws IOException {
+        recoverAndCheck(logWithSnapshot(), false);
+    }
+
+    @Test
+    void flippedSnapshotByteFallsBackToFullReplay() throws IOException {
+        int calories = logWithSnapshot();
+        Path snapshot = directory.resolve("snapshot.bin");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(snapshot, bytes);
+        recoverAndCheck(calories, true);
+    }
+
+    @Test
+    void truncatedSnapshotFallsBackToFullReplay() throws IOException {
+        int calories = logWithSnapshot();
+        Path snapshot = directory.resolve("snapshot.bin");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        recoverAndCheck(calories, true);
+    }
+
+    @Test
+    void emptySnapshotFallsBackToFullReplay() throws IOException {
+        int calories = logWithSnapshot();
+        Files.write(directory.resolve("snapshot.bin"), new byte[0]);
+        recoverAndCheck(calories, true);
+        assertFalse(Files.exists(directory.resolve("snapshot.bin")));
+        assertTrue(Files.exists(directory.resolve(FIRST_SEGMENT)));
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsTheLog() throws IOException {
+        try (EntryJournal journal = openEmpty()) {
+            journal.appendFood(DAY, EntryStore.MORNING, "banana", 105);
+            journal.appendFood(DAY, EntryStore.LUNCH, "apple", 95);
+            journal.appendFood(DAY, EntryStore.DINNER, "pizza", 272);
+        }
+        // The length is intact, so only the checksum can tell that the calories of the second record changed
+        flipByte(directory.resolve(FIRST_SEGMENT), recordBytes("banana") + 8 + 7);
+        assertEquals(List.of("food 20000 0 banana 105"), replay());
+
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(1, journal.recover(in -> { }, new Recorder()));
+            assertEquals(directory.resolve(FIRST_SEGMENT), journal.damagedSegment());
+            journal.appendFood(DAY, EntryStore.MORNING, "soda", 190);
+        }
+        // The third record was cleared along with the damaged one, so it cannot reappear after the new one
+        assertEquals(List.of("food 20000 0 banana 105", "food 20000 0 soda 190"), replay());
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(2, journal.recover(in -> { }, new Recorder()));
+            assertNull(journal.damagedSegment());
+        }
+    }
+
+    @Test
+    void damageInOneSegmentSetsTheLaterOnesAside() throws IOException {
+        Replay replay = new Replay();
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            journal.recover(replay.core::read, replay);
+            journal.appendFood(DAY, EntryStore.MORNING, "banana", 105);
+            journal.appendFood(DAY, EntryStore.LUNCH, "apple", 95);
+            journal.snapshot(out -> { });  // Rolls over to the second segment
+            journal.appendFood(DAY, EntryStore.DINNER, "pizza", 272);
+        }
+        Files.delete(directory.resolve("snapshot.bin"));
+        flipByte(directory.resolve(FIRST_SEGMENT), recordBytes("banana") + 8 + 7);
+
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(1, journal.recover(in -> { }, new Recorder()));
+            journal.appendFood(DAY, EntryStore.LUNCH, "soda", 190);
+        }
+        assertTrue(Files.exists(directory.resolve("journal-00000002.log.bad")));
+        assertEquals(List.of("food 20000 0 banana 105", "food 20000 1 soda 190"), replay());
+    }
+
+    // Writes a snapshot after every ten foods; returns the calories of all of them
+    private int logWithSnapshots(int snapshots) throws IOException {
+        int calories = 0;
+        Replay replay = new Replay();
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            journal.recover(replay.core::read, replay);
+            for (int i = 0; i < 10 * snapshots + 5; i++) {
+                if (i > 0 && i % 10 == 0) {
+                    journal.snapshot(replay.core::write);
+                }
+                int kcal = 100 + i;
+                replay.core.storeFood(DAY + i % 7, EntryStore.LUNCH, "food " + i, kcal);
+                journal.appendFood(DAY + i % 7, EntryStore.LUNCH, "food " + i, kcal);
+                calories += kcal;
+            }
+            if (snapshots > 0) {
+                journal.appendUpdate(0, DAY, EntryStore.DINNER, "food 0", 100, 0);  // Refers to a row in the first segment
+            }
+        }
+        return calories;
+    }
+
+    private Replay recover(int expectedReplayed) throws IOException {
+        Replay replay = new Replay();
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(expectedReplayed, journal.recover(replay.core::read, replay));
+        }
+        return replay;
+    }
+
+    @Test
+    void snapshotsCompactTheLog() throws IOException {
+        int calories = logWithSnapshots(4);
+        // Segment 5 follows the newest snapshot; segment 4 is kept for the one before it
+        assertFalse(Files.exists(directory.resolve(FIRST_SEGMENT)));
+        assertFalse(Files.exists(directory.resolve("journal-00000003.log")));
+        assertTrue(Files.exists(directory.resolve("journal-00000004.log")));
+        assertTrue(Files.exists(directory.resolve("journal-00000005.log")));
+        assertTrue(Files.exists(directory.resolve("snapshot.prev")));
+
+        Replay replay = recover(6);
+        assertEquals(45, replay.core.entries().size());
+        assertEquals(calories, replay.core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertEquals(EntryStore.DINNER, replay.core.entries().code(0));
+    }
+
+    @Test
+    void damagedSnapshotFallsBackToThePreviousOne() throws IOException {
+        int calories = logWithSnapshots(4);
+        Path snapshot = directory.resolve("snapshot.bin");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(snapshot, bytes);
+
+        Replay replay = recover(16);  // Ten foods in segment 4, five and the update in segment 5
+        assertEquals(45, replay.core.entries().size());
+        assertEquals(calories, replay.core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertTrue(Files.exists(directory.resolve("snapshot.bad")));
+    }
+
+    @Test
+    void snapshotLostBetweenTheRenamesFallsBackToThePreviousOne() throws IOException {
+        int calories = logWithSnapshots(3);
+        Files.delete(directory.resolve("snapshot.bin"));
+        Replay replay = recover(16);
+        assertEquals(35, replay.core.entries().size());
+        assertEquals(calories, replay.core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+    }
+
+    @Test
+    void bothSnapshotsDamagedAfterCompactionIsReported() throws IOException {
+        logWithSnapshots(4);
+        Files.write(directory.resolve("snapshot.bin"), new byte[0]);
+        Files.write(directory.resolve("snapshot.prev"), new byte[0]);
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertThrows(IOException.class, () -> journal.recover(in -> { }, new Recorder()));
+        }
+    }
+
+    @Test
+    void legacyLogIsReplayedAndContinuedInASegment() throws IOException {
+        // journal.log from before checksums: a length in front of each payload and nothing else
+        byte[] name = "banana".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer legacy = ByteBuffer.allocate(2 * (4 + 16 + name.length) + 64);  // Zero tail, as the mapping left it
+        for (int i = 0; i < 2; i++) {
+            legacy.putInt(16 + name.length).put(EntryJournal.FOOD).putInt(DAY + i).put(EntryStore.LUNCH)
+                    .putInt(105).putInt(0).putShort((short) name.length).put(name);
+        }
+        Files.write(directory.resolve("journal.log"), legacy.array());
+
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            assertEquals(2, journal.recover(in -> { }, new Recorder()));
+            journal.appendDelete(0);
+        }
+        assertTrue(Files.exists(directory.resolve(FIRST_SEGMENT)));
+        assertEquals(List.of("food 20000 1 banana 105", "food 20001 1 banana 105", "delete 0"), replay());
+
+        // Two snapshots later the legacy log is no longer needed
+        Replay replay = new Replay();
+        try (EntryJournal journal = EntryJournal.open(directory)) {
+            journal.recover(replay.core::read, replay);
+            journal.snapshot(replay.core::write);
+            journal.snapshot(replay.core::write);
+        }
+        assertFalse(Files.exists(directory.resolve("journal.log")));
+        EntryStore entries = recover(0).core.entries();
+        assertEquals(2, entries.size());
+        assertTrue(entries.isDeleted(0));
+    }
+}
@@ -0,0 +1,84 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntryStoreTest {
+
+    @Test
+    void rowsKeepTheirNumbersThroughGrowthEditsAndDeletes() {
+        EntryStore store = new EntryStore();
+        for (int i = 0; i < 5_000; i++) {
+            int row = i % 2 == 0
+                    ? store.addFood(20_000 + i, EntryStore.LUNCH, "banana", i)
+                    : store.addWorkout(20_000 + i, "Running", i, 2 * i);
+            assertEquals(i, row);
+        }
+        assertEquals(5_000, store.size());
+        assertEquals(2, store.nameCount());  // Names are stored once
+        assertEquals(store.nameId(0), store.nameId(4_998));
+        assertEquals(21_001, store.day(1_001));
+        assertEquals(EntryStore.WORKOUT, store.code(1_001));
+        assertEquals(1_001, store.minutes(1_001));
+        assertEquals(2_002, store.calories(1_001));
+
+        int edits = store.edits();
+        store.setDeleted(10, true);
+        assertTrue(store.isDeleted(10));
+        store.update(10, 21_000, EntryStore.DINNER, 95, 0, "apple");
+        assertFalse(store.isDeleted(10), "an update brings a deleted row back");
+        assertEquals("apple - 95 calories", store.describe(10));
+        assertEquals("Running - 11 minutes - 22 calories burned", store.describe(11));
+        assertEquals(edits + 2, store.edits());
+    }
+
+    @Test
+    void minutesAreCappedAtWhatARowHolds() {
+        EntryStore store = new EntryStore();
+        int row = store.addWorkout(20_000, "Hike", EntryStore.MAX_MINUTES + 100, 500);
+        assertEquals(EntryStore.MAX_MINUTES, store.minutes(row));
+        store.update(row, 20_000, EntryStore.WORKOUT, 500, Integer.MAX_VALUE, "Hike");
+        assertEquals(EntryStore.MAX_MINUTES, store.minutes(row));
+    }
+
+    @Test
+    void snapshotRoundTripRestoresEveryColumn() throws IOException {
+        EntryStore store = new EntryStore();
+        for (int i = 0; i < 3_000; i++) {
+            store.addFood(20_000 + i % 40, i % 3, "food " + i % 7, 100 + i);
+        }
+        store.addWorkout(20_001, "Swimming", 45, 400);
+        store.setDeleted(17, true);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.write(new DataOutputStream(bytes));
+        EntryStore copy = new EntryStore();
+        copy.addFood(1, 0, "left over", 1);
+        int edits = copy.edits();
+        copy.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(store.size(), copy.size());
+        assertEquals(store.nameCount(), copy.nameCount());
+        for (int row = 0; row < store.size(); row++) {
+            assertEquals(store.day(row), copy.day(row));
+            assertEquals(store.code(row), copy.code(row));
+            assertEquals(store.calories(row), copy.calories(row));
+            assertEquals(store.minutes(row), copy.minutes(row));
+            assertEquals(store.name(row), copy.name(row));
+            assertEquals(store.isDeleted(row), copy.isDeleted(row));
+        }
+        assertNotEquals(edits, copy.edits(), "cells must re-format after a snapshot load");
+        assertEquals(store.size(), copy.addFood(20_000, 0, "food 3", 1));  // Appends continue after the snapshot
+        assertEquals(store.nameCount(), copy.nameCount());
+    }
+}
@@ -0,0 +1,194 @@
+package fitlife;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FitlifeServerTest {
+
+    private FitlifeServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new FitlifeServer(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+        server.start(0, 4);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/api/" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void assertStatus(int status, String method, String path, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(method, path, body);
+        assertEquals(status, response.statusCode(), method + " " + path + ": " + response.body());
+        assertTrue(response.body().contains("\"error\""), response.body());
+    }
+
+    private String ok(String method, String path, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(method, path, body);
+        assertTrue(response.statusCode() < 300, method + " " + path + ": " + response.body());
+        return response.body();
+    }
+
+    // A top-level number from a response that may also hold arrays, which Json.parseObject refuses
+    private static long number(String json, String field) {
+        Matcher matcher = Pattern.compile("\"" + field + "\":(-?\\d+)").matcher(json);
+        assertTrue(matcher.find(), field + " in " + json);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private void assertStatsMatchSummaries(String... users) throws IOException, InterruptedException {
+        Map<String, String> stats = Json.parseObject(ok("GET", "stats", null));
+        long calories = 0;
+        long minutes = 0;
+        long burned = 0;
+        for (String user : users) {
+            Map<String, String> summary = Json.parseObject(ok("GET", "users/" + user + "/summary", null));
+            calories += Long.parseLong(summary.get("totalCalories"));
+            minutes += Long.parseLong(summary.get("totalWorkoutMinutes"));
+            burned += Long.parseLong(summary.get("totalCaloriesBurned"));
+        }
+        assertEquals(calories, Long.parseLong(stats.get("totalCalories")));
+        assertEquals(minutes, Long.parseLong(stats.get("totalWorkoutMinutes")));
+        assertEquals(burned, Long.parseLong(stats.get("totalCaloriesBurned")));
+    }
+
+    @Test
+    void statsFollowEditsDeletesAndUndos() throws Exception {
+        long banana = number(ok("POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"2024-03-01\"}"), "row");
+        long pizza = number(ok("POST", "users/ann/foods", "{\"food\":\"pizza\",\"meal\":\"Dinner\",\"date\":\"2024-03-01\"}"), "row");
+        long run = number(ok("POST", "users/bob/workouts", "{\"activity\":\"Running\",\"minutes\":\"30\",\"date\":\"2024-03-01\"}"), "row");
+        ok("POST", "users/bob/foods", "{\"food\":\"apple\",\"date\":\"2024-03-02\"}");
+        assertStatsMatchSummaries("ann", "bob");
+
+        ok("PUT", "users/ann/entries/" + banana, "{\"food\":\"soda\"}");
+        ok("PUT", "users/bob/entries/" + run, "{\"minutes\":\"60\"}");
+        assertStatsMatchSummaries("ann", "bob");
+
+        ok("DELETE", "users/ann/entries/" + pizza, null);
+        assertStatsMatchSummaries("ann", "bob");
+        assertEquals(2, number(ok("GET", "stats", null), "foodEntries"));
+
+        ok("POST", "users/ann/entries/undo", null);  // The delete
+        ok("POST", "users/ann/entries/undo", null);  // The edit
+        ok("POST", "users/bob/entries/undo", null);
+        assertStatsMatchSummaries("ann", "bob");
+        ok("POST", "users/ann/entries/redo", null);
+        ok("POST", "users/bob/entries/redo", null);
+        assertStatsMatchSummaries("ann", "bob");
+        assertEquals(3, number(ok("GET", "stats", null), "foodEntries"));
+        assertEquals(1, number(ok("GET", "stats", null), "workoutEntries"));
+    }
+
+    @Test
+    void unknownRoutesAre404() throws Exception {
+        assertStatus(404, "GET", "nothing", null);
+        assertStatus(404, "GET", "users", null);
+        assertStatus(404, "GET", "users/ann", null);
+        assertStatus(404, "GET", "users//summary", null);
+        assertStatus(404, "GET", "users/ann/unknown", null);
+        assertStatus(404, "DELETE", "users/ann/foods", null);
+        assertStatus(404, "GET", "users/ann/entries/0", null);
+        assertStatus(404, "POST", "users/ann/summary/undo", null);
+        assertStatus(404, "GET", "users/ann/workouts/0/nothing", null);
+        assertStatus(404, "POST", "stats", null);
+        // Known routes whose row, plan or rule does not exist
+        assertStatus(404, "PUT", "users/ann/entries/7", "{\"food\":\"apple\"}");
+        assertStatus(404, "DELETE", "users/ann/entries/7", null);
+        assertStatus(404, "DELETE", "users/ann/plans/7", null);
+        assertStatus(404, "DELETE", "users/ann/rules/7", null);
+        assertStatus(404, "POST", "users/ann/foods", "{\"food\":\"no such food\",\"date\":\"2024-03-01\"}");
+        assertStatus(409, "POST", "users/ann/entries/undo", null);
+        assertStatus(409, "POST", "users/ann/plans/redo", null);
+        assertEquals(17, number(ok("GET", "stats", null), "failures"));
+    }
+
+    @Test
+    void badRequestsAre400AndChangeNothing() throws Exception {
+        LocalDate today = LocalDate.now();
+        assertStatus(400, "POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"2024-02-30\"}");
+        assertStatus(400, "POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"yesterday\"}");
+        assertStatus(400, "POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"1969-12-31\"}");
+        assertStatus(400, "POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"" + today.plusYears(1).plusDays(1) + "\"}");
+        assertStatus(400, "POST", "users/ann/workouts", "{\"activity\":\"Running\",\"minutes\":\"30\",\"date\":\"+999999999-12-31\"}");
+        assertStatus(400, "POST", "users/ann/foods", "{\"date\":\"2024-03-01\"}");
+        assertStatus(400, "POST", "users/ann/foods", "not json");
+        assertStatus(400, "POST", "users/ann/workouts", "{\"activity\":\"Running\",\"minutes\":\"-5\",\"date\":\"2024-03-01\"}");
+        assertStatus(400, "GET", "users/ann/summary?date=2024-13-01", null);
+        assertStatus(400, "GET", "users/ann/plans?date=1900-01-01", null);
+        assertStatus(400, "PUT", "users/ann/entries/first", "{\"food\":\"apple\"}");
+        assertStatus(400, "POST", "users/ann/plans", "{\"description\":\"Legs\",\"date\":\"2024-03-01\",\"weekdays\":\"often\"}");
+
+        // The edges of the range are accepted
+        ok("POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"1970-01-01\"}");
+        ok("POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"" + today.plusYears(1) + "\"}");
+        String stats = ok("GET", "stats", null);
+        assertEquals(2, number(stats, "foodEntries"));
+        assertEquals(0, number(stats, "workoutEntries"));
+        assertEquals(12, number(stats, "failures"));
+        assertStatsMatchSummaries("ann");
+        assertTrue(ok("GET", "users/ann/plans", null).contains("\"plans\":[]"));
+    }
+
+    @Test
+    void summaryReportsTheRequestedDay() throws Exception {
+        long banana = number(ok("POST", "users/ann/foods", "{\"food\":\"banana\",\"date\":\"2024-03-01\"}"), "calories");
+        long apple = number(ok("POST", "users/ann/foods", "{\"food\":\"apple\",\"date\":\"2024-03-02\"}"), "calories");
+        long burned = number(ok("POST", "users/ann/workouts", "{\"activity\":\"Running\",\"minutes\":30,\"date\":\"2024-03-02\"}"), "caloriesBurned");
+        String march2 = ok("GET", "users/ann/summary?date=2024-03-02", null);
+        assertTrue(march2.contains("\"date\":\"2024-03-02\""), march2);
+        assertEquals(apple, number(march2, "dayIntake"));
+        assertEquals(burned, number(march2, "dayBurned"));
+        assertEquals(banana + apple, number(march2, "totalCalories"));
+        assertEquals(30, number(march2, "totalWorkoutMinutes"));
+        String march3 = ok("GET", "users/ann/summary?date=2024-03-03", null);
+        assertEquals(0, number(march3, "dayIntake"));
+        // Users do not see each other's entries
+        assertEquals(0, number(ok("GET", "users/bob/summary?date=2024-03-02", null), "totalCalories"));
+        assertEquals(2, number(ok("GET", "stats", null), "users"));
+    }
+
+    @Test
+    void plansRouteThroughAddUpdateRemoveAndUndo() throws Exception {
+        long once = number(ok("POST", "users/ann/plans", "{\"description\":\"Squat day\",\"date\":\"2024-03-04\"}"), "id");
+        // Mondays and Wednesdays for two weeks from Monday 2024-03-04
+        long weekly = number(ok("POST", "users/ann/plans", "{\"description\":\"Deadlift\",\"date\":\"2024-03-04\",\"weekdays\":5,\"weeks\":2}"), "id");
+        ok("POST", "users/ann/plans", "{\"description\":\"Stretch more\"}");
+        assertEquals(3, ok("GET", "users/ann/plans", null).split("\"id\":").length - 1);
+        String monday = ok("GET", "users/ann/plans?date=2024-03-04", null);
+        assertTrue(monday.contains("Squat day") && monday.contains("Deadlift"), monday);
+        String wednesday = ok("GET", "users/ann/plans?date=2024-03-13", null);
+        assertTrue(wednesday.contains("Deadlift") && !wednesday.contains("Squat day"), wednesday);
+        assertTrue(ok("GET", "users/ann/plans?date=2024-03-05", null).contains("\"plans\":[]"));
+        assertTrue(ok("GET", "users/ann/plans?q=deadlift", null).contains("\"id\":" + weekly));
+
+        assertTrue(ok("PUT", "users/ann/plans/" + once, "{\"description\":\"Front squat day\"}").contains("Front squat day"));
+        ok("DELETE", "users/ann/plans/" + weekly, null);
+        assertTrue(ok("GET", "users/ann/plans?date=2024-03-13", null).contains("\"plans\":[]"));
+        ok("POST", "users/ann/plans/undo", null);
+        assertTrue(ok("GET", "users/ann/plans?date=2024-03-13", null).contains("Deadlift"));
+        assertTrue(ok("GET", "users/bob/plans", null).contains("\"plans\":[]"));
+    }
+}
@@ -0,0 +1,175 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FoodCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                d[i][j] = i == 0 ? j : j == 0 ? i : Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append("abcdeilnorst ".charAt(random.nextInt(13)));
+        }
+        return word.toString().trim();
+    }
+
+    // Lots of short names, so keys of every length have neighbours within one or two edits
+    private static FoodCatalog randomCatalog(Random random) {
+        FoodCatalog.Builder builder = new FoodCatalog.Builder();
+        for (int i = 0; i < 3_000; i++) {
+            String name = randomWord(random, 1 + random.nextInt(12));
+            if (!name.isEmpty()) {
+                builder.add(name, "1 serving", i, 0f, 0f, 0f);
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    void indexedLookupFindsWhatScanningEveryNameFinds() {
+        Random random = new Random(5);
+        FoodCatalog catalog = randomCatalog(random);
+        int[] indexed = new int[8];
+        int[] scanned = new int[8];
+        for (int query = 0; query < 3_000; query++) {
+            String key = query % 2 == 0
+                    ? randomWord(random, 1 + random.nextInt(10))
+                    : catalog.name(random.nextInt(catalog.size()));
+            if (key.isEmpty()) {
+                continue;
+            }
+            if (query % 4 == 1) {
+                StringBuilder typo = new StringBuilder(key);
+                typo.setCharAt(random.nextInt(typo.length()), 'x');
+                key = typo.toString();
+            }
+            int count = catalog.fuzzy(key, indexed, indexed.length);
+            assertEquals(catalog.fuzzyScan(key, scanned, scanned.length), count, key);
+            assertArrayEquals(Arrays.copyOf(scanned, count), Arrays.copyOf(indexed, count), key);
+        }
+    }
+
+    @Test
+    void scanMatchesEveryNameWithinTheAllowedEdits() {
+        Random random = new Random(9);
+        FoodCatalog catalog = randomCatalog(random);
+        int[] out = new int[catalog.size()];
+        for (int query = 0; query < 300; query++) {
+            String key = randomWord(random, 1 + random.nextInt(8));
+            if (key.isEmpty()) {
+                continue;
+            }
+            int allowed = key.length() <= 4 ? 1 : 2;
+            TreeSet<String> expected = new TreeSet<>();
+            for (int i = 0; i < catalog.size(); i++) {
+                if (levenshtein(key, catalog.name(i)) <= allowed) {
+                    expected.add(catalog.name(i));
+                }
+            }
+            int count = catalog.fuzzy(key, out, out.length);
+            TreeSet<String> found = new TreeSet<>();
+            int previous = 0;
+            for (int c = 0; c < count; c++) {
+                found.add(catalog.name(out[c]));
+                int distance = levenshtein(key, catalog.name(out[c]));
+                assertTrue(distance >= previous, "best match first for " + key);
+                previous = distance;
+            }
+            assertEquals(expected, found, key);
+        }
+    }
+
+    @Test
+    void resolveForgivesCaseSpacingAndTypos() {
+        FoodCatalog catalog = FoodCatalog.loadDefault();
+        int banana = catalog.indexOf("banana");
+        assertTrue(banana >= 0);
+        assertEquals(banana, catalog.resolve("  BANANA "));
+        assertEquals(banana, catalog.resolve("banan"));
+        assertEquals(banana, catalog.resolve("bananna"));
+        assertEquals(catalog.indexOf("soda"), catalog.resolve("sodq"));
+        assertEquals(-1, catalog.resolve("xylophone"));
+        assertEquals(-1, catalog.indexOf("banan"));
+        assertEquals(-1, catalog.resolve(null));
+    }
+
+    @Test
+    void lookupsIgnoreTheDefaultLocale() {
+        FoodCatalog catalog = FoodCatalog.loadDefault();
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertEquals(catalog.indexOf("pizza"), catalog.indexOf("PIZZA"));
+            assertEquals(catalog.indexOf("pizza"), catalog.resolve("PIZZA"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void suggestPrefersPrefixesAndFallsBackToTypos() {
+        FoodCatalog.Builder builder = new FoodCatalog.Builder();
+        for (String name : new String[] {"oatmeal", "oat milk", "oats", "orange", "omelette"}) {
+            builder.add(name, "1 cup", 100, 0f, 0f, 0f);
+        }
+        FoodCatalog catalog = builder.build();
+        int[] out = new int[8];
+        int count = catalog.suggest("OAT", out, 8);
+        assertEquals(3, count);
+        assertEquals("oat milk", catalog.name(out[0]));  // Sorted order
+        assertEquals(2, catalog.prefix("oat", out, 2));
+        assertEquals(0, catalog.prefix(" ", out, 8));
+
+        count = catalog.suggest("ornage", out, 8);
+        assertEquals(1, count);
+        assertEquals("orange", catalog.name(out[0]));
+        assertEquals(0, catalog.suggest("zz", out, 8));  // Too short to guess from
+    }
+
+    @Test
+    void loadSkipsMalformedRowsAndKeepsTheLastDuplicate() throws IOException {
+        Path file = directory.resolve("foods.csv");
+        Files.writeString(file, "# name,serving,kcal,protein,carbs,fat\n"
+                + "Apple,1 medium,95,0.5,25,0.3\n"
+                + "\n"
+                + "bread,1 slice,lots\n"
+                + "toast\n"
+                + "apple,1 large,116\n"
+                + "Rice,1 cup,206,4.3,45,0.4\n");
+        FoodCatalog catalog = FoodCatalog.load(file);
+        assertEquals(2, catalog.size());
+        int apple = catalog.indexOf("apple");
+        assertEquals(116, catalog.calories(apple));
+        assertEquals("1 large", catalog.serving(apple));
+        int rice = catalog.indexOf("RICE");
+        assertEquals(206, catalog.calories(rice));
+        assertEquals(45f, catalog.carbs(rice));
+        assertEquals(0.4f, catalog.fat(rice));
+    }
+}
@@ -0,0 +1,79 @@
+package fitlife;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryRowsTest {
+
+    // Each change the list fired, as "+from..to", "-from" or "~from"
+    private static List<String> record(HistoryRows rows) {
+        List<String> changes = new ArrayList<>();
+        rows.addListener((ListChangeListener<Integer>) change -> {
+            while (change.next()) {
+                if (change.wasUpdated()) {
+                    changes.add("~" + change.getFrom());
+                } else {
+                    if (change.wasRemoved()) {
+                        changes.add("-" + change.getFrom() + "x" + change.getRemovedSize());
+                    }
+                    if (change.wasAdded()) {
+                        changes.add("+" + change.getFrom() + ".." + change.getTo());
+                    }
+                }
+            }
+        });
+        return changes;
+    }
+
+    @Test
+    void addRowsFiresOneChangeHoweverManyRows() {
+        HistoryRows rows = new HistoryRows();
+        List<String> changes = record(rows);
+        int[] batch = new int[1_000];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i * 2;
+        }
+        rows.addRows(batch, 600);
+        rows.addRows(batch, 0);
+        assertEquals(List.of("+0..600"), changes);
+        assertEquals(600, rows.size());
+        assertEquals(1_198, rows.row(599));
+        assertThrows(IndexOutOfBoundsException.class, () -> rows.get(600));
+    }
+
+    @Test
+    void removeAndInsertKeepStoreOrder() {
+        HistoryRows rows = new HistoryRows();
+        rows.setRows(new int[] {1, 4, 7, 9}, 4);
+        List<String> changes = record(rows);
+
+        rows.removeRow(7);
+        rows.removeRow(8);  // Not shown: no change
+        assertEquals(List.of(1, 4, 9), List.copyOf(rows));
+        rows.insertRow(7);
+        rows.insertRow(7);  // Already shown: no change
+        rows.insertRow(0);
+        assertEquals(List.of(0, 1, 4, 7, 9), List.copyOf(rows));
+        rows.updateRow(4);
+        rows.updateRow(5);
+        assertEquals(List.of("-2x1", "+2..3", "+0..1", "~2"), changes);
+    }
+
+    @Test
+    void setRowsReplacesEverythingInOneChange() {
+        HistoryRows rows = new HistoryRows();
+        rows.addRows(new int[] {3, 5}, 2);
+        List<String> changes = record(rows);
+        rows.setRows(new int[] {8, 9, 10}, 3);
+        assertEquals(List.of(8, 9, 10), List.copyOf(rows));
+        rows.setRows(new int[0], 0);
+        assertEquals(0, rows.size());
+        assertEquals(List.of("-0x2", "+0..3", "-0x3"), changes);
+    }
+}
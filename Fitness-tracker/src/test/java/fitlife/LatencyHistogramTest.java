@@ -0,0 +1,93 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    // The error the class comment promises: one bucket per 1/64 of a power of two above 128 ns
+    private static void assertWithinBucketError(long expected, long reported) {
+        assertTrue(reported >= expected && reported - expected <= expected / 64, "expected " + expected + " got " + reported);
+    }
+
+    @Test
+    void bucketsTileTheWholeRangeInOrder() {
+        int top = LatencyHistogram.bucket(Long.MAX_VALUE);
+        assertEquals(0, LatencyHistogram.bucket(-5));
+        assertEquals(0, LatencyHistogram.bucket(0));
+        for (int b = 0; b < top; b++) {
+            long highest = LatencyHistogram.highestInBucket(b);
+            assertEquals(b, LatencyHistogram.bucket(highest), "bucket " + b);
+            assertEquals(b + 1, LatencyHistogram.bucket(highest + 1), "bucket after " + b);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestInBucket(top));
+        for (long value = 0; value < 128; value++) {
+            assertEquals(value, LatencyHistogram.highestInBucket(LatencyHistogram.bucket(value)), "small values are exact");
+        }
+    }
+
+    @Test
+    void everyValueIsReportedWithinItsBucketError() {
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> 1 + random.nextInt(63);  // Every magnitude, never negative
+            assertWithinBucketError(value, LatencyHistogram.highestInBucket(LatencyHistogram.bucket(value)));
+        }
+        for (int power = 7; power < 63; power++) {
+            long edge = 1L << power;
+            assertWithinBucketError(edge - 1, LatencyHistogram.highestInBucket(LatencyHistogram.bucket(edge - 1)));
+            assertWithinBucketError(edge, LatencyHistogram.highestInBucket(LatencyHistogram.bucket(edge)));
+        }
+    }
+
+    @Test
+    void percentilesMeanAndMaxFollowTheRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, histogram.mean());
+        for (long micros = 1_000; micros >= 1; micros--) {
+            histogram.record(micros * 1_000);
+        }
+        assertEquals(1_000, histogram.count());
+        assertEquals(500_500.0, histogram.mean());
+        assertEquals(1_000_000, histogram.max());
+        assertWithinBucketError(1_000, histogram.percentile(0));
+        assertWithinBucketError(500_000, histogram.percentile(0.5));
+        assertWithinBucketError(900_000, histogram.percentile(0.9));
+        assertWithinBucketError(990_000, histogram.percentile(0.99));
+        assertEquals(1_000_000, histogram.percentile(1.0), "never above the largest recording");
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(0.99));
+        histogram.record(42);
+        assertEquals(42, histogram.percentile(0.5));
+    }
+
+    @Test
+    void concurrentRecordingsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long value = 1_000L * (t + 1);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.count());
+        assertEquals(2_500.0, histogram.mean());
+        assertEquals(4_000, histogram.max());
+        assertWithinBucketError(2_000, histogram.percentile(0.5));
+    }
+}
@@ -0,0 +1,75 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PlanIndexTest {
+
+    private static int[] sorted(int[] ids) {
+        int[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void moreOccurrencesRankHigher() {
+        PlanIndex index = new PlanIndex();
+        index.put(1, "tempo easy run");
+        index.put(2, "tempo tempo run");
+        index.put(3, "long easy ride");
+        assertArrayEquals(new int[] {2, 1}, index.search("tempo", 10));
+    }
+
+    @Test
+    void shorterPlansRankHigher() {
+        PlanIndex index = new PlanIndex();
+        index.put(1, "tempo run with a long warm up and an easy cool down");
+        index.put(2, "tempo run");
+        assertArrayEquals(new int[] {2, 1}, index.search("tempo", 10));
+    }
+
+    @Test
+    void rarerTermsWeighMore() {
+        PlanIndex index = new PlanIndex();
+        index.put(1, "run easy");
+        index.put(2, "hills easy");
+        index.put(3, "run long");
+        index.put(4, "run short");
+        int[] ranked = index.search("run OR hills", 10);
+        assertEquals(4, ranked.length);
+        assertEquals(2, ranked[0]);
+        assertArrayEquals(new int[] {1, 3, 4}, sorted(Arrays.copyOfRange(ranked, 1, 4)));
+    }
+
+    @Test
+    void wordsAreAndedAndClausesOred() {
+        PlanIndex index = new PlanIndex();
+        index.put(1, "squats and deadlifts");
+        index.put(2, "squats only");
+        index.put(3, "deadlift day");
+        index.put(4, "bench press");
+        assertArrayEquals(new int[] {1}, index.search("squat deadlift", 10));
+        assertArrayEquals(new int[] {1}, index.search("squat AND deadlift", 10));
+        assertArrayEquals(new int[] {1, 2, 3}, sorted(index.search("squat OR deadlift", 10)));
+        assertArrayEquals(new int[] {1, 4}, sorted(index.search("squat deadlift OR bench", 10)));
+        assertEquals(0, index.search("rowing", 10).length);
+        assertEquals(2, index.search("squat OR deadlift", 2).length);
+    }
+
+    @Test
+    void putReplacesAndRemoveForgets() {
+        PlanIndex index = new PlanIndex();
+        index.put(1, "tempo run");
+        index.put(2, "easy run");
+        index.put(1, "hill repeats");
+        assertArrayEquals(new int[] {2}, index.search("run", 10));
+        assertArrayEquals(new int[] {1}, index.search("hill", 10));
+        index.remove(2);
+        assertEquals(0, index.search("run", 10).length);
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,136 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlanStoreTest {
+
+    private static final int DAY = (int) LocalDate.of(2024, 1, 1).toEpochDay();  // A Monday
+
+    private static List<String> describe(List<PlanStore.Occurrence> occurrences) {
+        List<String> result = new ArrayList<>();
+        for (PlanStore.Occurrence occurrence : occurrences) {
+            result.add(occurrence.plan.id + "@" + occurrence.epochDay);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    // What the day lookups must return: every plan that occurs on the day, found by checking them all
+    private static List<String> expected(PlanStore store, int fromDay, int toDay) {
+        List<String> result = new ArrayList<>();
+        for (int day = fromDay; day <= toDay; day++) {
+            for (PlanStore.Plan plan : store.all()) {
+                if (plan.occursOn(day)) {
+                    result.add(plan.id + "@" + day);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    void lookupsMatchCheckingEveryPlan() {
+        Random random = new Random(3);
+        PlanStore store = new PlanStore();
+        List<Integer> ids = new ArrayList<>();
+        for (int step = 0; step < 1_500; step++) {
+            // Around the epoch too, where week numbers turn negative
+            int start = (step % 3 == 0 ? 0 : DAY) + random.nextInt(4_000) - 2_000;
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                    ids.add(store.addOnDay("one-off " + step, start).id);
+                    break;
+                case 2:
+                case 3:
+                    ids.add(store.addRecurring("recurring " + step, start, 1 + random.nextInt(127),
+                            1 + random.nextInt(PlanStore.MAX_WEEKS)).id);
+                    break;
+                case 4:
+                    ids.add(store.addUndated("undated " + step).id);
+                    break;
+                case 5:
+                    if (!ids.isEmpty()) {
+                        store.remove(ids.get(random.nextInt(ids.size())));
+                    }
+                    break;
+                case 6:
+                    if (!ids.isEmpty()) {
+                        store.updateDescription(ids.get(random.nextInt(ids.size())), "edited " + step);
+                    }
+                    break;
+                default:
+                    if (random.nextBoolean()) {
+                        store.undo();
+                    } else {
+                        store.redo();
+                    }
+            }
+            if (step % 50 == 0) {
+                int day = start + random.nextInt(200) - 100;
+                assertEquals(expected(store, day, day), describe(store.on(day)), "step " + step + ", day " + day);
+                assertEquals(expected(store, day, day).size(), store.countOn(day), "step " + step + ", day " + day);
+                assertEquals(expected(store, day - 3, day + 40), describe(store.between(day - 3, day + 40)), "step " + step);
+            }
+        }
+    }
+
+    @Test
+    void recurringPlanCoversExactlyItsWeeks() {
+        PlanStore store = new PlanStore();
+        int wednesday = DAY + 2;
+        PlanStore.Plan plan = store.addRecurring("Long run", wednesday, 0b1000101, PlanStore.MAX_WEEKS);  // Mon, Wed, Sun
+        assertEquals(wednesday + PlanStore.MAX_WEEKS * 7 - 1, plan.endDay);
+        assertEquals(0, store.countOn(DAY));  // The Monday before it starts
+        assertEquals(1, store.countOn(wednesday));
+        assertEquals(0, store.countOn(wednesday + 1));
+        assertEquals(1, store.countOn(wednesday + 4));  // Sunday
+        assertEquals(0, store.countOn(plan.endDay));  // The last day is a Tuesday
+        assertEquals(1, store.countOn(plan.endDay - 1));  // The last Monday
+        assertEquals(0, store.countOn(plan.endDay + 6));  // The Monday after
+        assertEquals(3 * PlanStore.MAX_WEEKS, store.between(DAY - 30, plan.endDay + 30).size());
+
+        store.remove(plan.id);
+        assertEquals(0, store.between(DAY - 30, plan.endDay + 30).size());
+        assertNotNull(store.undo());
+        assertEquals(3 * PlanStore.MAX_WEEKS, store.between(DAY - 30, plan.endDay + 30).size());
+    }
+
+    @Test
+    void plansOnADayComeInCreationOrder() {
+        PlanStore store = new PlanStore();
+        PlanStore.Plan weekly = store.addRecurring("Swim", DAY - 70, 0x7F, 20);
+        PlanStore.Plan shortBlock = store.addRecurring("Intervals", DAY, 0x7F, 1);
+        PlanStore.Plan longBlock = store.addRecurring("Stretch", DAY - 7 * 64, 0x7F, 200);
+        store.remove(weekly.id);
+        store.undo();  // Back in its old place, not at the end
+        List<PlanStore.Occurrence> today = store.on(DAY);
+        assertEquals(3, today.size());
+        assertEquals(weekly.id, today.get(0).plan.id);
+        assertEquals(shortBlock.id, today.get(1).plan.id);
+        assertEquals(longBlock.id, today.get(2).plan.id);
+    }
+
+    @Test
+    void rejectsSchedulesItCannotStore() {
+        PlanStore store = new PlanStore();
+        assertThrows(IllegalArgumentException.class, () -> store.addRecurring("x", DAY, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> store.addRecurring("x", DAY, 0x80, 4));
+        assertThrows(IllegalArgumentException.class, () -> store.addRecurring("x", DAY, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.addRecurring("x", DAY, 1, PlanStore.MAX_WEEKS + 1));
+        assertEquals(0, store.size());
+        assertEquals("Leg day (Every Mon/Fri from 2024-01-01 to 2024-01-14)",
+                store.addRecurring("Leg day", DAY, 0b10001, 2).describe());
+    }
+}
@@ -0,0 +1,91 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangeAggregatorTest {
+
+    private static final int BASE = 18_000;
+
+    // Every series' sum over random ranges, against a plain array of the same days
+    private static void assertMatches(long[][] expected, RangeAggregator totals, Random random) {
+        for (int series = 0; series < expected.length; series++) {
+            for (int i = 0; i < 200; i++) {
+                int from = random.nextInt(expected[series].length);
+                int to = from + random.nextInt(expected[series].length - from);
+                long sum = 0;
+                for (int day = from; day <= to; day++) {
+                    sum += expected[series][day];
+                }
+                assertEquals(sum, totals.sum(series, BASE + from, BASE + to), "series " + series);
+            }
+        }
+    }
+
+    @Test
+    void growsAndRebasesWithoutLosingTotals() {
+        Random random = new Random(7);
+        long[][] expected = new long[5][4_000];
+        RangeAggregator totals = new RangeAggregator(4);
+        // Start in the middle so the tree has to grow towards later days and rebase towards earlier ones
+        int[] order = {2_000, 2_001, 2_100, 1_990, 3_999, 0, 1_500};
+        for (int day : order) {
+            totals.add(RangeAggregator.INTAKE, BASE + day, 10);
+            expected[RangeAggregator.INTAKE][day] += 10;
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int series = random.nextInt(5);
+            int day = random.nextInt(expected[series].length);
+            long delta = random.nextInt(2_000) - 500;
+            totals.add(series, BASE + day, delta);
+            expected[series][day] += delta;
+        }
+        assertEquals(BASE, totals.firstDay());
+        assertEquals(BASE + 3_999, totals.lastDay());
+        assertMatches(expected, totals, random);
+    }
+
+    @Test
+    void rebuildMatchesIncrementalAdds() {
+        Random random = new Random(11);
+        EntryStore store = new EntryStore();
+        RangeAggregator incremental = new RangeAggregator();
+        for (int i = 0; i < 2_000; i++) {
+            int day = BASE + random.nextInt(900);
+            if (random.nextBoolean()) {
+                int kcal = random.nextInt(800);
+                store.addFood(day, random.nextInt(3), "food", kcal);
+                incremental.addFood(day, kcal);
+            } else {
+                int minutes = 1 + random.nextInt(90);
+                int burned = random.nextInt(900);
+                store.addWorkout(day, "Running", minutes, burned);
+                incremental.addWorkout(day, minutes, burned);
+            }
+        }
+        RangeAggregator rebuilt = new RangeAggregator();
+        rebuilt.rebuild(store);
+        for (int series = 0; series < 5; series++) {
+            for (int day = BASE - 1; day <= BASE + 900; day++) {
+                assertEquals(incremental.day(series, day), rebuilt.day(series, day), "series " + series + " day " + day);
+            }
+        }
+    }
+
+    @Test
+    void refusesDaysItCannotCover() {
+        RangeAggregator totals = new RangeAggregator();
+        totals.addFood(BASE, 500);
+        assertThrows(IllegalArgumentException.class, () -> totals.addFood(-1, 100));
+        assertThrows(IllegalArgumentException.class, () -> totals.addFood(BASE + RangeAggregator.MAX_SPAN, 100));
+        assertThrows(IllegalArgumentException.class, () -> totals.checkDay(Integer.MAX_VALUE));
+        totals.checkDay(BASE + RangeAggregator.MAX_SPAN / 2);
+        assertEquals(BASE, totals.firstDay());
+        assertEquals(BASE, totals.lastDay());
+        assertEquals(500, totals.sum(RangeAggregator.INTAKE, 0, BASE + 10));
+    }
+}
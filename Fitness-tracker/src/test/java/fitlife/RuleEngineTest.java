@@ -0,0 +1,124 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleEngineTest {
+
+    private static final int DAY = 20_000;
+
+    private static TrackerCore newCore() {
+        return new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+    }
+
+    @Test
+    void firesOnceWhenCrossedAndClearsWhenBack() {
+        TrackerCore core = newCore();
+        RuleEngine rules = core.rules();
+        rules.advanceTo(DAY);
+        RuleEngine.Rule rule = rules.add("intake > 1000");
+
+        core.storeFood(DAY, EntryStore.LUNCH, "pizza", 800);
+        assertTrue(rules.drainAlerts().isEmpty());
+        int over = core.storeFood(DAY, EntryStore.DINNER, "pizza", 800);
+        List<RuleEngine.Alert> alerts = rules.drainAlerts();
+        assertEquals(1, alerts.size());
+        assertSame(rule, alerts.get(0).rule);
+        assertTrue(alerts.get(0).fired);
+        assertEquals(1600, alerts.get(0).value);
+
+        // Still above: edge triggered, so no second alert
+        core.storeFood(DAY, EntryStore.DINNER, "soda", 150);
+        assertEquals(1750, rules.value(rule));
+        assertTrue(rules.drainAlerts().isEmpty());
+
+        core.replace(over, null);
+        alerts = rules.drainAlerts();
+        assertEquals(1, alerts.size());
+        assertFalse(alerts.get(0).fired);
+        assertEquals(950, alerts.get(0).value);
+    }
+
+    @Test
+    void dayWithoutWorkoutBreaksTheStreak() {
+        TrackerCore core = newCore();
+        RuleEngine rules = core.rules();
+        rules.advanceTo(DAY);
+        RuleEngine.Rule streak = rules.add("workouts < 1 over 2 days");
+        assertEquals(0, rules.value(streak));
+
+        core.storeWorkout(DAY, "Running", 30, 300);
+        List<RuleEngine.Alert> alerts = rules.drainAlerts();
+        assertEquals(1, alerts.size());
+        assertFalse(alerts.get(0).fired);
+
+        rules.advanceTo(DAY + 1);
+        assertTrue(rules.drainAlerts().isEmpty(), "yesterday's run still counts");
+        rules.advanceTo(DAY + 2);
+        alerts = rules.drainAlerts();
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).fired);
+        assertEquals(DAY + 2, alerts.get(0).epochDay);
+    }
+
+    @Test
+    void entriesAheadOfTheWindowWaitForTheirDay() {
+        TrackerCore core = newCore();
+        RuleEngine rules = core.rules();
+        rules.advanceTo(DAY);
+        RuleEngine.Rule rule = rules.add("intake > 500");
+
+        core.storeFood(DAY + 3, EntryStore.LUNCH, "pizza", 900);
+        assertEquals(DAY, rules.endDay());
+        assertEquals(0, rules.value(rule));
+        assertTrue(rules.drainAlerts().isEmpty());
+
+        rules.advanceTo(DAY + 3);
+        assertEquals(900, rules.value(rule));
+        assertEquals(1, rules.drainAlerts().size());
+    }
+
+    @Test
+    void windowsMatchTheDailyTotals() {
+        Random random = new Random(23);
+        TrackerCore core = newCore();
+        RuleEngine rules = core.rules();
+        rules.advanceTo(DAY);
+        RuleEngine.Rule intake = rules.add("intake > 5000 over 7 days");
+        RuleEngine.Rule net = rules.add("net < 0 over 3 days");
+        RuleEngine.Rule minutes = rules.add("minutes > 100 over 30 days");
+        int today = DAY;
+        for (int step = 0; step < 3_000; step++) {
+            if (random.nextInt(50) == 0) {
+                today += 1 + random.nextInt(random.nextBoolean() ? 2 : 40);
+                rules.advanceTo(today);
+            }
+            int day = today - random.nextInt(45) + (random.nextInt(20) == 0 ? 5 : 0);
+            if (random.nextBoolean()) {
+                core.storeFood(day, EntryStore.LUNCH, "food", random.nextInt(900));
+            } else {
+                core.storeWorkout(day, "Running", 1 + random.nextInt(90), random.nextInt(700));
+            }
+        }
+        RangeAggregator totals = core.dailyTotals();
+        assertEquals(totals.sum(RangeAggregator.INTAKE, today - 6, today), rules.value(intake));
+        assertEquals(totals.netCalories(today - 2, today), rules.value(net));
+        assertEquals(totals.sum(RangeAggregator.WORKOUT_MINUTES, today - 29, today), rules.value(minutes));
+    }
+
+    @Test
+    void rejectsMalformedRules() {
+        assertThrows(IllegalArgumentException.class, () -> RuleEngine.parse("intake >"));
+        assertThrows(IllegalArgumentException.class, () -> RuleEngine.parse("steps > 10"));
+        assertThrows(IllegalArgumentException.class, () -> RuleEngine.parse("intake > 10 over 0 days"));
+        assertThrows(IllegalArgumentException.class, () -> RuleEngine.parse("intake > 10 over " + (RuleEngine.MAX_DAYS + 1) + " days"));
+    }
+}
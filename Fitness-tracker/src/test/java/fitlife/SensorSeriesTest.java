@@ -0,0 +1,135 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorSeriesTest {
+
+    // Irregular times and values that exercise every Gorilla case: repeats, small and large XORs, signs
+    private static void fill(SensorSeries series, List<long[]> expected, int count, long start, Random random) {
+        long time = start;
+        double value = 120;
+        for (int i = 0; i < count; i++) {
+            time += random.nextInt(10) == 0 ? random.nextInt(100_000) : 1_000;
+            switch (random.nextInt(5)) {
+                case 0:
+                    break;  // Same value again
+                case 1:
+                    value = -value;
+                    break;
+                case 2:
+                    value = random.nextDouble() * 1e9;
+                    break;
+                case 3:
+                    value = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+                    break;
+                default:
+                    value += random.nextInt(7) - 3;
+            }
+            series.append(time, value);
+            expected.add(new long[] {time, Double.doubleToRawLongBits(value)});
+        }
+    }
+
+    private static void assertSamples(List<long[]> expected, SensorSeries series) {
+        List<long[]> actual = new ArrayList<>();
+        series.scan(Long.MIN_VALUE, Long.MAX_VALUE, (time, value) -> actual.add(new long[] {time, Double.doubleToRawLongBits(value)}));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.size(), series.samples());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i)[0], actual.get(i)[0], "time of sample " + i);
+            assertEquals(expected.get(i)[1], actual.get(i)[1], "value of sample " + i);
+        }
+    }
+
+    @Test
+    void decodesExactlyWhatWasAppended() {
+        List<long[]> expected = new ArrayList<>();
+        SensorSeries series = new SensorSeries(new SensorSeries.Pool());
+        fill(series, expected, 20_000, 1_700_000_000_000L, new Random(3));
+        assertTrue(series.compressedBytes() > SensorSeries.CHUNK_BYTES * 10, "spans many chunks");
+        assertSamples(expected, series);
+    }
+
+    @Test
+    void scanAndAggregateSeeOnlyTheirRange() {
+        List<long[]> expected = new ArrayList<>();
+        SensorSeries series = new SensorSeries(new SensorSeries.Pool());
+        fill(series, expected, 5_000, 0, new Random(5));
+        long from = expected.get(1_000)[0];
+        long to = expected.get(3_000)[0];
+        int count = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (long[] sample : expected) {
+            if (sample[0] >= from && sample[0] < to) {  // Aggregates cover [from, to)
+                double value = Double.longBitsToDouble(sample[1]);
+                count++;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        SensorSeries.Aggregate aggregate = series.aggregate(from, to);
+        assertEquals(count, aggregate.count);
+        assertEquals(min, aggregate.min);
+        assertEquals(max, aggregate.max);
+    }
+
+    @Test
+    void writeAndReadKeepSamplesAndAllowMoreAppends() throws IOException {
+        Random random = new Random(9);
+        List<long[]> expected = new ArrayList<>();
+        SensorSeries series = new SensorSeries(new SensorSeries.Pool());
+        fill(series, expected, 3_000, 1_000, random);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            series.write(out);
+        }
+        series.release();
+
+        SensorSeries copy;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = SensorSeries.read(in, new SensorSeries.Pool());
+        }
+        assertSamples(expected, copy);
+        fill(copy, expected, 1_000, copy.lastTime(), random);
+        assertSamples(expected, copy);
+    }
+
+    @Test
+    void truncatedDataReturnsItsChunksToThePool() throws IOException {
+        List<long[]> expected = new ArrayList<>();
+        SensorSeries series = new SensorSeries(new SensorSeries.Pool());
+        fill(series, expected, 3_000, 0, new Random(13));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            series.write(out);
+        }
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        SensorSeries.Pool pool = new SensorSeries.Pool();
+        assertThrows(IOException.class, () -> SensorSeries.read(new DataInputStream(new ByteArrayInputStream(truncated)), pool));
+        assertEquals(0, pool.chunksInUse());
+    }
+
+    @Test
+    void rejectsTimeGoingBackwards() {
+        SensorSeries series = new SensorSeries(new SensorSeries.Pool());
+        series.append(5_000, 80);
+        series.append(5_000, 81);
+        assertThrows(IllegalArgumentException.class, () -> series.append(4_999, 82));
+        assertEquals(2, series.samples());
+    }
+}
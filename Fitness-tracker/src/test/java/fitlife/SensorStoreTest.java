@@ -0,0 +1,103 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorStoreTest {
+
+    private static final int DAY = 20_000;
+
+    @TempDir
+    Path directory;
+
+    private static SensorStore.Recording recording(int points, int heartRate) {
+        SensorStore.Recording recording = new SensorStore.Recording();
+        for (int i = 0; i < points; i++) {
+            recording.add(i * 1_000L);
+            recording.set(SensorStore.HEART_RATE, heartRate + i % 7);
+            if (i % 2 == 0) {
+                recording.set(SensorStore.CADENCE, 170);
+            }
+        }
+        return recording;
+    }
+
+    private Path file(int row) {
+        return directory.resolve(row + ".sensors");
+    }
+
+    @Test
+    void savedRecordingsLoadBackForTheirWorkouts() throws IOException {
+        EntryStore entries = new EntryStore();
+        int run = entries.addWorkout(DAY, "Running", 40, 400);
+        int ride = entries.addWorkout(DAY + 1, "Cycling", 60, 500);
+        SensorStore sensors = new SensorStore();
+        sensors.attach(run, recording(2_400, 140));
+        sensors.attach(ride, recording(100, 120));
+        sensors.save(run, entries, directory);
+        sensors.save(ride, entries, directory);
+
+        SensorStore loaded = new SensorStore();
+        assertEquals(2, loaded.load(directory, entries));
+        assertEquals(sensors.samples(), loaded.samples());
+        assertEquals(2_400, loaded.series(run, SensorStore.HEART_RATE).samples());
+        assertEquals(1_200, loaded.series(run, SensorStore.CADENCE).samples());
+        assertEquals(null, loaded.series(run, SensorStore.PACE));
+        assertEquals(sensors.series(run, SensorStore.HEART_RATE).aggregate(0, Long.MAX_VALUE).sum,
+                loaded.series(run, SensorStore.HEART_RATE).aggregate(0, Long.MAX_VALUE).sum);
+    }
+
+    @Test
+    void dropsRecordingsWhoseRowNowHoldsSomethingElse() throws IOException {
+        EntryStore before = new EntryStore();
+        SensorStore sensors = new SensorStore();
+        for (int row = 0; row < 4; row++) {
+            before.addWorkout(DAY, "Running", 30, 300);
+            sensors.attach(row, recording(50, 130));
+            sensors.save(row, before, directory);
+        }
+        // After a crash the journal kept only row 0; rows 1 and 2 went to new entries, row 3 was never reused
+        EntryStore after = new EntryStore();
+        after.addWorkout(DAY, "Running", 30, 300);
+        after.addFood(DAY, EntryStore.LUNCH, "banana", 105);
+        after.addWorkout(DAY + 5, "Rowing", 20, 200);
+
+        SensorStore loaded = new SensorStore();
+        assertEquals(1, loaded.load(directory, after));
+        assertTrue(loaded.has(0));
+        assertFalse(loaded.has(1) || loaded.has(2) || loaded.has(3));
+        assertTrue(Files.exists(file(0)));
+        assertFalse(Files.exists(file(1)), "a food row never has a recording");
+        assertFalse(Files.exists(file(2)), "a different workout took the row");
+        assertFalse(Files.exists(file(3)), "the row is gone");
+    }
+
+    @Test
+    void skipsADamagedFileAndLoadsTheRest() throws IOException {
+        EntryStore entries = new EntryStore();
+        SensorStore sensors = new SensorStore();
+        for (int row = 0; row < 3; row++) {
+            entries.addWorkout(DAY + row, "Running", 30, 300);
+            sensors.attach(row, recording(1_000, 150));
+            sensors.save(row, entries, directory);
+        }
+        byte[] bytes = Files.readAllBytes(file(1));
+        Files.write(file(1), Arrays.copyOf(bytes, bytes.length / 2));
+
+        SensorStore loaded = new SensorStore();
+        assertEquals(2, loaded.load(directory, entries));
+        assertTrue(loaded.has(0) && loaded.has(2));
+        assertFalse(loaded.has(1));
+        assertEquals(2 * sensors.samples() / 3, loaded.samples());
+        assertEquals(0, new SensorStore().load(directory.resolve("missing"), entries));
+    }
+}
@@ -0,0 +1,59 @@
+package fitlife;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Stands in for the FX views in service tests, keeping only the status lines
+final class StatusView implements TrackerService.View {
+    final List<String> statuses = Collections.synchronizedList(new ArrayList<>());
+
+    String lastStatus() {
+        return statuses.get(statuses.size() - 1);
+    }
+
+    @Override
+    public void rowsAdded(int code, int[] rows, int count) {
+    }
+
+    @Override
+    public void rowsReset(int code, int[] rows, int count) {
+    }
+
+    @Override
+    public void rowChanged(int row, int oldCode, int code) {
+    }
+
+    @Override
+    public void historyChanged(String undo, String redo) {
+    }
+
+    @Override
+    public void alertsRaised(List<RuleEngine.Alert> alerts) {
+    }
+
+    @Override
+    public void rulesChanged(List<RuleEngine.Rule> rules, long[] values) {
+    }
+
+    @Override
+    public void summaryChanged(TrackerCore.Summary summary) {
+    }
+
+    @Override
+    public void trendChanged(TrackerCore.Trend trend) {
+    }
+
+    @Override
+    public void dayChanged(TrackerCore.Day day) {
+    }
+
+    @Override
+    public void lapsChanged(int row, SensorSeries.Aggregate[][] laps) {
+    }
+
+    @Override
+    public void status(String message) {
+        statuses.add(message);
+    }
+}
@@ -0,0 +1,234 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackerCoreTest {
+
+    private static final int DAY = 20_000;
+    private static final String[] FOODS = {"banana", "apple", "pizza", "soda"};
+    private static final String[] ACTIVITIES = {"Running", "Cycling", "Swimming"};
+
+    private static TrackerCore newCore() {
+        return new TrackerCore(FoodCatalog.loadDefault(), EnergyEngine.loadDefault(UserProfile.defaults()));
+    }
+
+    // The incremental totals must equal totals rebuilt from the rows that are not deleted
+    private static void assertTotalsInvariant(TrackerCore core, String step) {
+        EntryStore entries = core.entries();
+        RangeAggregator fresh = new RangeAggregator();
+        fresh.rebuild(entries);
+        for (int series = 0; series < 5; series++) {
+            for (int day = DAY - 1; day <= DAY + 10; day++) {
+                assertEquals(fresh.day(series, day), core.dailyTotals().day(series, day), step + ", series " + series + " day " + day);
+            }
+        }
+        long calories = 0;
+        long minutes = 0;
+        long burned = 0;
+        for (int row = 0; row < entries.size(); row++) {
+            if (entries.isDeleted(row)) {
+                continue;
+            }
+            if (entries.isWorkout(row)) {
+                minutes += entries.minutes(row);
+                burned += entries.calories(row);
+            } else {
+                calories += entries.calories(row);
+            }
+        }
+        TrackerCore.Summary summary = core.summary(LocalDate.ofEpochDay(DAY));
+        assertEquals(calories, summary.totalCalories, step);
+        assertEquals(minutes, summary.totalWorkoutMinutes, step);
+        assertEquals(burned, summary.totalCaloriesBurned, step);
+    }
+
+    // Every day summary, cached or not, must list the same rows and totals as a scan of the store
+    private static void assertDaysMatchScan(TrackerCore core, String step) {
+        EntryStore entries = core.entries();
+        for (int day = DAY - 1; day <= DAY + 10; day++) {
+            List<Integer> expected = new ArrayList<>();
+            long intake = 0;
+            long burned = 0;
+            for (int row = 0; row < entries.size(); row++) {
+                if (entries.day(row) != day || entries.isDeleted(row)) {
+                    continue;
+                }
+                expected.add(row);
+                if (entries.isWorkout(row)) {
+                    burned += entries.calories(row);
+                } else {
+                    intake += entries.calories(row);
+                }
+            }
+            TrackerCore.Day summary = core.day(day);
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), summary.rows, step + ", day " + day);
+            assertEquals(intake, summary.intake, step + ", day " + day);
+            assertEquals(burned, summary.burned, step + ", day " + day);
+        }
+    }
+
+    @Test
+    void randomEditsUndosAndRedosKeepTotalsInvariant() {
+        Random random = new Random(17);
+        TrackerCore core = newCore();
+        List<Integer> rows = new ArrayList<>();
+        for (int step = 0; step < 2_000; step++) {
+            int day = DAY + random.nextInt(10);
+            switch (random.nextInt(7)) {
+                case 0:
+                    rows.add(core.addFood(day, FOODS[random.nextInt(FOODS.length)], random.nextInt(3)));
+                    break;
+                case 1:
+                    rows.add(core.addWorkout(day, ACTIVITIES[random.nextInt(ACTIVITIES.length)], String.valueOf(1 + random.nextInt(120))));
+                    break;
+                case 2:
+                    if (!rows.isEmpty()) {
+                        int row = rows.get(random.nextInt(rows.size()));
+                        if (core.entries().isWorkout(row)) {
+                            core.editWorkout(row, ACTIVITIES[random.nextInt(ACTIVITIES.length)], String.valueOf(1 + random.nextInt(120)));
+                        } else {
+                            core.editFood(row, FOODS[random.nextInt(FOODS.length)], random.nextInt(3));
+                        }
+                    }
+                    break;
+                case 3:
+                    if (!rows.isEmpty()) {
+                        core.delete(rows.get(random.nextInt(rows.size())));
+                    }
+                    break;
+                case 4:
+                case 5:
+                    core.undo();
+                    break;
+                default:
+                    core.redo();
+            }
+            assertTotalsInvariant(core, "step " + step);
+        }
+    }
+
+    @Test
+    void daySummariesFollowAddsEditsMovesAndSnapshots() throws IOException {
+        Random random = new Random(29);
+        TrackerCore core = newCore();
+        List<Integer> rows = new ArrayList<>();
+        for (int step = 0; step < 500; step++) {
+            int day = DAY + random.nextInt(10);
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    rows.add(core.addFood(day, FOODS[random.nextInt(FOODS.length)], random.nextInt(3)));
+                    break;
+                case 2:
+                    rows.add(core.addWorkout(day, ACTIVITIES[random.nextInt(ACTIVITIES.length)], String.valueOf(1 + random.nextInt(120))));
+                    break;
+                case 3:
+                    if (!rows.isEmpty()) {
+                        // replace() may move a row to another day
+                        int row = rows.get(random.nextInt(rows.size()));
+                        TrackerCore.Entry old = core.entry(row);
+                        if (old != null) {
+                            core.replace(row, new TrackerCore.Entry(day, old.code, old.name, old.calories, old.minutes));
+                        }
+                    }
+                    break;
+                case 4:
+                    if (!rows.isEmpty()) {
+                        core.delete(rows.get(random.nextInt(rows.size())));
+                    }
+                    break;
+                default:
+                    core.undo();
+            }
+            core.prefetch(day);
+            assertDaysMatchScan(core, "step " + step);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        core.write(new DataOutputStream(bytes));
+        TrackerCore restored = newCore();
+        restored.addFood(DAY + 3, "soda", EntryStore.LUNCH);  // Replaced by the snapshot, index included
+        restored.day(DAY + 3);
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertDaysMatchScan(restored, "restored");
+        int added = restored.addFood(DAY + 3, "banana", EntryStore.MORNING);
+        int[] dayRows = restored.day(DAY + 3).rows;
+        assertEquals(added, dayRows[dayRows.length - 1]);
+    }
+
+    @Test
+    void undoingEverythingEmptiesTheTotals() {
+        TrackerCore core = newCore();
+        int banana = core.addFood(DAY, "banana", EntryStore.MORNING);
+        int run = core.addWorkout(DAY, "Running", "30");
+        assertTrue(core.editFood(banana, "pizza", EntryStore.DINNER));
+        assertTrue(core.delete(run));
+        assertFalse(core.delete(run));
+        while (core.undo() != null) {
+            assertTotalsInvariant(core, "undo");
+        }
+        assertEquals(0, core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertEquals(0, core.dailyTotals().sum(RangeAggregator.WORKOUTS, DAY, DAY));
+        while (core.redo() != null) {
+            assertTotalsInvariant(core, "redo");
+        }
+        assertTrue(core.entries().isDeleted(run));
+        assertEquals(0, core.history().redoDepth());
+        core.addFood(DAY, "apple", EntryStore.LUNCH);
+        assertNotNull(core.undo());
+        assertEquals(1, core.history().redoDepth());
+    }
+
+    @Test
+    void rejectedWorkoutLeavesNothingBehind() {
+        TrackerCore core = newCore();
+        assertThrows(IllegalArgumentException.class, () -> core.storeFood(-5, EntryStore.LUNCH, "banana", 105));
+        assertEquals(0, core.entries().size());
+        assertEquals(-1, core.addWorkout(DAY, "Running", String.valueOf(EntryStore.MAX_MINUTES + 1)));
+        assertEquals(-1, core.addWorkout(DAY, "Running", "0"));
+        assertEquals(0, core.entries().size());
+        assertTotalsInvariant(core, "rejected");
+    }
+
+    @Test
+    void totalsPastIntegerRangeSurviveEditsAndSnapshots() throws IOException {
+        TrackerCore core = newCore();
+        for (int i = 0; i < 3; i++) {
+            core.storeFood(DAY + i, EntryStore.DINNER, "feast", 1_000_000_000);
+            core.storeWorkout(DAY + i, "Ultra", EntryStore.MAX_MINUTES, 1_000_000_000);
+        }
+        TrackerCore.Summary summary = core.summary(LocalDate.ofEpochDay(DAY));
+        assertEquals(3_000_000_000L, summary.totalCalories);
+        assertEquals(3_000_000_000L, summary.totalCaloriesBurned);
+        assertTrue(core.delete(0));
+        assertEquals(2_000_000_000L, core.summary(LocalDate.ofEpochDay(DAY)).totalCalories);
+        assertNotNull(core.undo());
+        assertTotalsInvariant(core, "undo");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        core.write(new DataOutputStream(bytes));
+        TrackerCore restored = newCore();
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        summary = restored.summary(LocalDate.ofEpochDay(DAY));
+        assertEquals(3_000_000_000L, summary.totalCalories);
+        assertEquals(3L * EntryStore.MAX_MINUTES, summary.totalWorkoutMinutes);
+        assertTotalsInvariant(restored, "restored");
+    }
+}
@@ -0,0 +1,72 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UiPublisherTest {
+
+    // Stands in for the FX thread: drains queue up here and run when the test says so
+    private final Queue<Runnable> fxQueue = new ArrayDeque<>();
+    private final UiPublisher publisher = new UiPublisher(fxQueue::add);
+    private final List<String> ran = new ArrayList<>();
+
+    private void runFxQueue() {
+        Runnable drain;
+        while ((drain = fxQueue.poll()) != null) {
+            drain.run();
+        }
+    }
+
+    @Test
+    void coalescesRefreshesWithTheSameKey() {
+        Object summary = new Object();
+        Object status = new Object();
+        for (int i = 0; i < 100; i++) {
+            String text = "summary " + i;
+            publisher.publishLatest(summary, () -> ran.add(text));
+        }
+        publisher.publishLatest(status, () -> ran.add("status"));
+        assertEquals(1, fxQueue.size(), "one drain for the whole burst");
+        runFxQueue();
+        assertEquals(List.of("status", "summary 99"), ran.stream().sorted().toList());  // Keys drain in any order
+    }
+
+    @Test
+    void runsEveryTaskInOrderBeforeTheRefreshes() {
+        Object key = new Object();
+        publisher.publishLatest(key, () -> ran.add("refresh"));
+        for (int i = 0; i < 5; i++) {
+            String text = "row " + i;
+            publisher.publish(() -> ran.add(text));
+        }
+        runFxQueue();
+        assertEquals(List.of("row 0", "row 1", "row 2", "row 3", "row 4", "refresh"), ran);
+    }
+
+    @Test
+    void publishingDuringADrainSchedulesTheNextOne() {
+        Object key = new Object();
+        publisher.publish(() -> {
+            ran.add("first");
+            publisher.publishLatest(key, () -> ran.add("from the drain"));
+        });
+        Runnable drain = fxQueue.poll();
+        drain.run();
+        // The refresh was picked up by the running drain, but a new one is queued as well in case it was not
+        assertEquals(List.of("first", "from the drain"), ran);
+        assertEquals(1, fxQueue.size());
+        runFxQueue();
+        assertEquals(2, ran.size());
+
+        publisher.publish(() -> ran.add("later"));
+        assertEquals(1, fxQueue.size());
+        runFxQueue();
+        assertEquals("later", ran.get(2));
+    }
+}
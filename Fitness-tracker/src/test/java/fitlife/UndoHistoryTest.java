@@ -0,0 +1,59 @@
+package fitlife;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UndoHistoryTest {
+
+    @Test
+    void undoAndRedoWalkTheChangesInOrder() {
+        UndoHistory<String> history = UndoHistory.<String>empty(10).push("a").push("b").push("c");
+        assertEquals("c", history.nextUndo());
+        history = history.undone().undone();
+        assertEquals("a", history.nextUndo());
+        assertEquals("b", history.nextRedo());
+        assertEquals(2, history.redoDepth());
+        history = history.redone();
+        assertEquals("b", history.nextUndo());
+        assertEquals("c", history.nextRedo());
+    }
+
+    @Test
+    void pushingClearsRedoAndLeavesOlderValuesAlone() {
+        UndoHistory<String> before = UndoHistory.<String>empty(10).push("a").push("b").undone();
+        UndoHistory<String> after = before.push("c");
+        assertNull(after.nextRedo());
+        assertEquals("c", after.nextUndo());
+        assertEquals("b", before.nextRedo(), "histories are values; the old one still redoes b");
+        assertEquals("a", before.nextUndo());
+    }
+
+    @Test
+    void trimsToTheLimitKeepingTheNewestChanges() {
+        int limit = 50;
+        UndoHistory<Integer> history = UndoHistory.empty(limit);
+        for (int i = 0; i < 1_000; i++) {
+            history = history.push(i);
+            assertTrue(history.undoDepth() <= 2 * limit, "depth " + history.undoDepth());
+            assertTrue(history.undoDepth() >= Math.min(i + 1, limit), "depth " + history.undoDepth());
+        }
+        // Whatever was kept is the newest changes, newest first
+        int expected = 999;
+        while (history.nextUndo() != null) {
+            assertEquals(expected--, history.nextUndo());
+            history = history.undone();
+        }
+        assertTrue(999 - expected >= limit);
+        assertEquals(999 - expected, history.redoDepth());
+        assertThrows(IllegalStateException.class, history::undone);
+    }
+
+    @Test
+    void refusesAnEmptyLimit() {
+        assertThrows(IllegalArgumentException.class, () -> UndoHistory.empty(0));
+    }
+}